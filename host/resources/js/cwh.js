@@ -291,12 +291,32 @@
 		}); // end of ajax currentSlice
 	}//end of refressStatus
 	
+	function mergeJobEvent(target, delta) {
+		for (var name in delta) {
+			if (delta[name] !== null && typeof delta[name] === 'object' && !Array.isArray(delta[name]) && target[name] !== null && typeof target[name] === 'object') {
+				mergeJobEvent(target[name], delta[name]);
+			} else {
+				target[name] = delta[name];
+			}
+		}
+		return target;
+	}
+	
 	function createJobWebSocket(jobName, onMessageFunction) {
 	  	if ("WebSocket" in window) {
 		     var ws = new WebSocket(createWebSocketURL("printJobNotification/" + encodeURIComponent(jobName)));
+		     var lastJobEvent = null;
 		     ws.onopen = function() {
 		     };
-		     ws.onmessage = onMessageFunction;
+		     //Only the first job change is the whole job, the rest just have the fields that changed
+		     ws.onmessage = function(evt) {
+		    	 var data = JSON.parse(evt.data);
+		    	 if (data.notificationEvent == "PrintJobChanged") {
+		    		 lastJobEvent = data.delta && lastJobEvent != null? mergeJobEvent(lastJobEvent, data): data;
+		    		 data = lastJobEvent;
+		    	 }
+		    	 onMessageFunction({data: JSON.stringify(data)});
+		     };
 		     ws.onclose = function() {
 		     };
 		     
@@ -0,0 +1,197 @@
+package org.area515.resinprinter.display;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Presents a display by flipping the pages of a BufferStrategy instead of waiting for Swing to repaint it. Slices are kept in two
+ * VolatileImages so that the next slice can be copied into video memory while the current slice is still on the screen.
+ *
+ * Everything this draws on comes from a Surface, so the page flipping and the recovery of lost video memory can be exercised
+ * without a screen.
+ */
+public class ActiveRenderer {
+	public interface Surface {
+		BufferStrategy createBufferStrategy();
+		VolatileImage createVolatileImage(int width, int height);
+		/**
+		 * @return one of VolatileImage.IMAGE_OK, IMAGE_RESTORED or IMAGE_INCOMPATIBLE
+		 */
+		int validate(VolatileImage image);
+	}
+
+	public interface Painter {
+		/**
+		 * Draws one page. It's called with the renderer locked, and again whenever the page was lost before it was shown.
+		 */
+		void paint(Graphics2D g2);
+	}
+
+	private Surface surface;
+	private BufferStrategy bufferStrategy;
+	private ReentrantLock renderLock = new ReentrantLock();
+	private VolatileImage[] sliceCaches = new VolatileImage[2];
+	private int frontSliceCache;
+	private BufferedImage frontImage;
+	private Object stagedToken;
+	private VolatileImage paintedSlice;
+
+	public ActiveRenderer(Surface surface) {
+		this.surface = surface;
+		this.bufferStrategy = surface.createBufferStrategy();
+	}
+
+	public boolean isPageFlipping() {
+		return bufferStrategy.getCapabilities().isPageFlipping();
+	}
+
+	private VolatileImage uploadSlice(int cacheIndex, BufferedImage image) {
+		VolatileImage cache = sliceCaches[cacheIndex];
+		if (cache == null || cache.getWidth() != image.getWidth() || cache.getHeight() != image.getHeight() || surface.validate(cache) == VolatileImage.IMAGE_INCOMPATIBLE) {
+			if (cache != null) {
+				cache.flush();
+			}
+			cache = surface.createVolatileImage(image.getWidth(), image.getHeight());
+			sliceCaches[cacheIndex] = cache;
+		}
+
+		Graphics2D graphics = cache.createGraphics();
+		try {
+			graphics.setBackground(Color.black);
+			graphics.clearRect(0, 0, image.getWidth(), image.getHeight());
+			graphics.drawImage(image, 0, 0, null);
+		} finally {
+			graphics.dispose();
+		}
+		return cache;
+	}
+
+	private boolean isSliceCached(int cacheIndex) {
+		VolatileImage cache = sliceCaches[cacheIndex];
+		return cache != null && surface.validate(cache) == VolatileImage.IMAGE_OK;
+	}
+
+	/**
+	 * Copies the slice that will be shown next into video memory. A later showSlice with the same token uses this copy.
+	 */
+	public void stageSlice(BufferedImage image, Object sliceToken) {
+		renderLock.lock();
+		try {
+			if (bufferStrategy == null) {
+				return;
+			}
+
+			stagedToken = null;
+			uploadSlice(1 - frontSliceCache, image);
+			stagedToken = sliceToken;
+		} finally {
+			renderLock.unlock();
+		}
+	}
+
+	public void clearStagedSlice() {
+		renderLock.lock();
+		try {
+			stagedToken = null;
+		} finally {
+			renderLock.unlock();
+		}
+	}
+
+	/**
+	 * Makes the image the front slice and presents it. The staged copy is used when it was staged with this token and video memory
+	 * still holds it, otherwise the image is copied now.
+	 */
+	public void showSlice(BufferedImage image, Object sliceToken, Painter painter) {
+		renderLock.lock();
+		try {
+			if (bufferStrategy == null) {
+				return;
+			}
+
+			int backSliceCache = 1 - frontSliceCache;
+			if (sliceToken == null || sliceToken != stagedToken || !isSliceCached(backSliceCache)) {
+				uploadSlice(backSliceCache, image);
+			}
+			stagedToken = null;
+			frontSliceCache = backSliceCache;
+			frontImage = image;
+			present(painter);
+		} finally {
+			renderLock.unlock();
+		}
+	}
+
+	/**
+	 * Only meant to be called by a Painter. The front slice is copied into video memory again if it was lost.
+	 */
+	public VolatileImage getFrontSlice() {
+		renderLock.lock();
+		try {
+			if (frontImage == null) {
+				return null;
+			}
+
+			paintedSlice = isSliceCached(frontSliceCache)?sliceCaches[frontSliceCache]:uploadSlice(frontSliceCache, frontImage);
+			return paintedSlice;
+		} finally {
+			renderLock.unlock();
+		}
+	}
+
+	/**
+	 * Draws a page with the painter and flips it onto the screen, drawing it again until neither the page nor the slice on it was
+	 * lost along the way.
+	 */
+	public void present(Painter painter) {
+		renderLock.lock();
+		try {
+			//Disposed
+			if (bufferStrategy == null) {
+				return;
+			}
+
+			do {
+				do {
+					paintedSlice = null;
+					Graphics2D g2 = (Graphics2D)bufferStrategy.getDrawGraphics();
+					try {
+						painter.paint(g2);
+					} finally {
+						g2.dispose();
+					}
+				} while (bufferStrategy.contentsRestored() || (paintedSlice != null && paintedSlice.contentsLost()));
+
+				bufferStrategy.show();
+				Toolkit.getDefaultToolkit().sync();
+			} while (bufferStrategy.contentsLost());
+		} finally {
+			renderLock.unlock();
+		}
+	}
+
+	public void dispose() {
+		renderLock.lock();
+		try {
+			if (bufferStrategy != null) {
+				bufferStrategy.dispose();
+				bufferStrategy = null;
+			}
+			for (int t = 0; t < sliceCaches.length; t++) {
+				if (sliceCaches[t] != null) {
+					sliceCaches[t].flush();
+					sliceCaches[t] = null;
+				}
+			}
+			frontImage = null;
+			stagedToken = null;
+		} finally {
+			renderLock.unlock();
+		}
+	}
+}
@@ -100,6 +100,10 @@ public class GraphicsDeviceOutputInterface implements GraphicsOutputInterface {
 			(fullScreenMode == FullScreenMode.UseFullScreenWhenExclusiveIsAvailable && device.isFullScreenSupported())) {
 			device.setFullScreenWindow(refreshFrame);
 		}
+		//Page flipping is only available once the frame is in full screen mode
+		if (configuration.getMachineConfig().getMonitorDriverConfig().isActiveRendering()) {
+			refreshFrame.enableActiveRendering();
+		}
 		//This can only be done with a real graphics device since it would reassign the printer Simulation
 		//OLD getConfiguration().getMachineConfig().setOSMonitorID(device.getDefaultConfiguration().getDevice().getIDstring());
 		//TODO: we shut this off. Is that bad?
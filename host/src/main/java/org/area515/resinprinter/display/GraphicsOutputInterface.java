@@ -21,6 +21,29 @@ public interface GraphicsOutputInterface {
 	public String buildIDString();
 	public GraphicsOutputInterface initializeDisplay(String displayId, PrinterConfiguration configuration);
 	
+	/**
+	 * @return the System.nanoTime() of when the last image actually made it onto the display, 0 when the display doesn't report it
+	 */
+	public default long getLastPresentNanos() {
+		return 0;
+	}
+	
+	/**
+	 * Gives the display a chance to upload an image that is about to be shown while the current image is still on the screen.
+	 * The upload is only used by a show with the same sliceToken. Images are recycled, so a token must stand for one showing of
+	 * one slice, never for an image. Displays that can't do anything ahead of time ignore this.
+	 */
+	public default void stageImage(BufferedImage image, Object sliceToken) {
+	}
+	
+	/**
+	 * Same as showImage(BufferedImage, boolean), except that the display may show what was staged with this sliceToken instead
+	 * of uploading the image again.
+	 */
+	public default void showImage(BufferedImage image, boolean performFullUpdate, Object sliceToken) {
+		showImage(image, performFullUpdate);
+	}
+	
 	public static void showGrid(Graphics2D g2, Rectangle screenSize, int gridSquareSize) {
 		g2.setBackground(Color.black);
 		g2.clearRect(0, 0, screenSize.width, screenSize.height);
@@ -5,11 +5,18 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GraphicsDevice;
 import java.awt.HeadlessException;
+import java.awt.Image;
+import java.awt.Insets;
 import java.awt.Rectangle;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -30,6 +37,10 @@ public class PrinterDisplayFrame extends JFrame implements GraphicsOutputInterfa
 	private int sliceNumber;
 	private boolean isSimulatedDisplay;
 	private String displayId;
+	private volatile long lastPresentNanos = System.nanoTime();
+	
+	//Only used for active rendering, Swing paints everything otherwise
+	private volatile ActiveRenderer activeRenderer;
 
 	private class DoubleBufferedJPanel extends JPanel {
 		private static final long serialVersionUID = 5629943117146058839L;
@@ -41,33 +52,41 @@ public class PrinterDisplayFrame extends JFrame implements GraphicsOutputInterfa
 			
 			Graphics2D g2 = (Graphics2D)g;
 			Rectangle screenSize = getGraphicsConfiguration().getBounds();
-			switch (displayState) {
-			case Blank :
-				g2.setBackground(Color.black);
-				g2.clearRect(0, 0, screenSize.width, screenSize.height);
-				logger.debug("Blank realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
-				return;
-			case Grid :
-				GraphicsOutputInterface.showGrid(g2, screenSize, gridSquareSize);
-				logger.debug("Grid realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
-				return;
-			case Calibration :
-				GraphicsOutputInterface.showCalibration(g2, screenSize, calibrationX, calibrationY);
-				logger.debug("Calibration realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
-				return;
-			case CurrentSlice :
-				logger.trace("Writing paintComponent1aboutToDisplay:{}", () -> Log4jUtil.logImage(displayImage, "paintComponent1aboutToDisplay.png"));
-
-				g2.drawImage(displayImage, null, screenSize.width / 2 - displayImage.getWidth() / 2, screenSize.height / 2 - displayImage.getHeight() / 2);
-				if (isSimulatedDisplay) {
-					g2.setColor(Color.RED);
-					g2.setFont(getFont());
-					g2.drawString("Slice:" + sliceNumber, getInsets().left, getInsets().top + g2.getFontMetrics().getHeight());
-				}
-				logger.debug("Image realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
-				return;
+			//Swing paints into it's back buffer first, it's copied to the screen once this paint event is finished
+			SwingUtilities.invokeLater(() -> {
+				Toolkit.getDefaultToolkit().sync();
+				lastPresentNanos = System.nanoTime();
+			});
+			paintDisplayState(g2, screenSize, displayState, displayImage);
+		}
+	}
+	
+	private void paintDisplayState(Graphics2D g2, Rectangle screenSize, DisplayState displayState, Image slice) {
+		switch (displayState) {
+		case Blank :
+			g2.setBackground(Color.black);
+			g2.clearRect(0, 0, screenSize.width, screenSize.height);
+			logger.debug("Blank realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
+			return;
+		case Grid :
+			GraphicsOutputInterface.showGrid(g2, screenSize, gridSquareSize);
+			logger.debug("Grid realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
+			return;
+		case Calibration :
+			GraphicsOutputInterface.showCalibration(g2, screenSize, calibrationX, calibrationY);
+			logger.debug("Calibration realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
+			return;
+		case CurrentSlice :
+			logger.trace("Writing paintComponent1aboutToDisplay:{}", () -> Log4jUtil.logImage(displayImage, "paintComponent1aboutToDisplay.png"));
+
+			g2.drawImage(slice, screenSize.width / 2 - slice.getWidth(null) / 2, screenSize.height / 2 - slice.getHeight(null) / 2, null);
+			if (isSimulatedDisplay) {
+				g2.setColor(Color.RED);
+				g2.setFont(getFont());
+				g2.drawString("Slice:" + sliceNumber, getInsets().left, getInsets().top + g2.getFontMetrics().getHeight());
 			}
-			
+			logger.debug("Image realized:{}", () -> Log4jUtil.completeGlobalTimer(IMAGE_REALIZE_TIMER));
+			return;
 		}
 	}
 	
@@ -92,6 +111,101 @@ public class PrinterDisplayFrame extends JFrame implements GraphicsOutputInterfa
 		IMAGE_REALIZE_TIMER += hashCode();
 	}
 
+	/**
+	 * Stops waiting for Swing to repaint this frame and flips pages of a BufferStrategy instead. Every show method returns once
+	 * it's image has been flipped onto the screen. The frame has to be visible(and full screen if that's going to be used) first.
+	 */
+	public void enableActiveRendering() {
+		getContentPane().removeAll();
+		ActiveRenderer renderer = new ActiveRenderer(new ActiveRenderer.Surface() {
+			@Override
+			public BufferStrategy createBufferStrategy() {
+				PrinterDisplayFrame.this.createBufferStrategy(2);
+				return getBufferStrategy();
+			}
+			
+			@Override
+			public VolatileImage createVolatileImage(int width, int height) {
+				return getGraphicsConfiguration().createCompatibleVolatileImage(width, height, Transparency.OPAQUE);
+			}
+			
+			@Override
+			public int validate(VolatileImage image) {
+				return image.validate(getGraphicsConfiguration());
+			}
+		});
+		logger.info("Active rendering for {} with page flipping:{}", getGraphicsConfiguration().getDevice().getIDstring(), renderer.isPageFlipping());
+		activeRenderer = renderer;
+		
+		BufferedImage image = displayImage;
+		if (displayState == DisplayState.CurrentSlice && image != null) {
+			renderer.showSlice(image, null, g2 -> paintPage(g2, renderer));
+			lastPresentNanos = System.nanoTime();
+		} else {
+			present(renderer);
+		}
+	}
+	
+	public boolean isActiveRendering() {
+		return activeRenderer != null;
+	}
+	
+	//Called by the active renderer with it locked
+	private void paintPage(Graphics2D g2, ActiveRenderer renderer) {
+		Rectangle screenSize = getGraphicsConfiguration().getBounds();
+		Insets insets = getInsets();
+		DisplayState state = displayState;
+		VolatileImage slice = state == DisplayState.CurrentSlice?renderer.getFrontSlice():null;
+		
+		g2.translate(insets.left, insets.top);
+		g2.setBackground(Color.black);
+		g2.clearRect(0, 0, screenSize.width, screenSize.height);
+		if (state != DisplayState.CurrentSlice || slice != null) {
+			paintDisplayState(g2, screenSize, state, slice);
+		}
+	}
+	
+	private void present(ActiveRenderer renderer) {
+		renderer.present(g2 -> paintPage(g2, renderer));
+		lastPresentNanos = System.nanoTime();
+	}
+	
+	private void refresh() {
+		ActiveRenderer renderer = activeRenderer;
+		if (renderer != null) {
+			present(renderer);
+		} else {
+			repaint();
+		}
+	}
+	
+	@Override
+	public void paint(Graphics g) {
+		//The window was uncovered or resized
+		ActiveRenderer renderer = activeRenderer;
+		if (renderer != null) {
+			present(renderer);
+			return;
+		}
+		
+		super.paint(g);
+	}
+	
+	@Override
+	public void dispose() {
+		ActiveRenderer renderer = activeRenderer;
+		activeRenderer = null;
+		if (renderer != null) {
+			renderer.dispose();
+		}
+		super.dispose();
+	}
+
+	@Override
+	public long getLastPresentNanos() {
+		return lastPresentNanos;
+	}
+
 	public DisplayState getDisplayState() {
 		return displayState;
 	}
@@ -101,12 +215,16 @@ public class PrinterDisplayFrame extends JFrame implements GraphicsOutputInterfa
 	
 	public void resetSliceCount() {
 		sliceNumber = 0;
+		ActiveRenderer renderer = activeRenderer;
+		if (renderer != null) {
+			renderer.clearStagedSlice();
+		}
 	}
 	
 	public void showBlankImage() {
 		logger.debug("Blank assigned:{}", () -> Log4jUtil.startGlobalTimer(IMAGE_REALIZE_TIMER));
 		setDisplayState(DisplayState.Blank);	
-		repaint();
+		refresh();
 	}
 	
 	public void showCalibrationImage(int xPixels, int yPixels) {
@@ -114,24 +232,48 @@ public class PrinterDisplayFrame extends JFrame implements GraphicsOutputInterfa
 		setDisplayState(DisplayState.Calibration);
 		calibrationX = xPixels;
 		calibrationY = yPixels;
-		repaint();
+		refresh();
 	}
 	
 	public void showGridImage(int pixels) {
 		logger.debug("Grid assigned:{}", () -> Log4jUtil.startGlobalTimer(IMAGE_REALIZE_TIMER));
 		setDisplayState(DisplayState.Grid);
 		gridSquareSize = pixels;
-		repaint();
+		refresh();
+	}
+	
+	/**
+	 * Copies the slice that will be shown next into video memory while the current slice is still on the screen.
+	 */
+	@Override
+	public void stageImage(BufferedImage image, Object sliceToken) {
+		ActiveRenderer renderer = activeRenderer;
+		if (renderer != null) {
+			renderer.stageSlice(image, sliceToken);
+		}
 	}
 	
 	public void showImage(BufferedImage image, boolean performFullUpdate) {
+		showImage(image, performFullUpdate, null);
+	}
+	
+	@Override
+	public void showImage(BufferedImage image, boolean performFullUpdate, Object sliceToken) {
 		logger.debug("Image assigned:{}", () -> Log4jUtil.startGlobalTimer(IMAGE_REALIZE_TIMER));
 		if (performFullUpdate) {
 			sliceNumber++;
 		}
 		setDisplayState(DisplayState.CurrentSlice);	
 		displayImage = image;
-		repaint();
+		
+		ActiveRenderer renderer = activeRenderer;
+		if (renderer == null) {
+			repaint();
+			return;
+		}
+		
+		renderer.showSlice(image, sliceToken, g2 -> paintPage(g2, renderer));
+		lastPresentNanos = System.nanoTime();
 	}
 
 	@Override
@@ -37,6 +37,9 @@ public class SimulatedDisplay extends GraphicsDeviceOutputInterface {
 		refreshFrame.setVisible(true);
 		refreshFrame.setExtendedState(JFrame.MAXIMIZED_BOTH);
 		refreshFrame.setMinimumSize(new Dimension(500, 500));
+		if (configuration != null && configuration.getMachineConfig().getMonitorDriverConfig().isActiveRendering()) {
+			refreshFrame.enableActiveRendering();
+		}
 		return refreshFrame;
 	}
 }
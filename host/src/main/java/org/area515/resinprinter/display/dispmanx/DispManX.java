@@ -33,6 +33,7 @@ public interface DispManX extends Library {
 			Pointer imageConvertedFromBufferedImage, 
 			VC_RECT_T.ByReference copyRectangle);
 	public int vc_dispmanx_element_remove(int updateHandle, int elementHandle);
+	public int vc_dispmanx_element_change_source(int updateHandle, int elementHandle, int sourceResourceHandle);
 	public int vc_dispmanx_resource_delete(int resourceHandle);
 	public int vc_dispmanx_display_close(int displayHandle);
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package org.area515.resinprinter.display.dispmanx;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
@@ -17,30 +21,81 @@ import com.sun.jna.ptr.IntByReference;
 
 public class DispManXDevice implements GraphicsOutputInterface {
 	private static final String IMAGE_REALIZE_TIMER = "Image Realize";
+	private static final int MAX_PATTERN_SURFACES = 4;
     private static final Logger logger = LogManager.getLogger();
     private static boolean BCM_INIT = false;
     private static ReentrantLock BCM_LOCK = new ReentrantLock(true);
 
     private ReentrantLock displayLock = new ReentrantLock(true);
     private ReentrantLock activityLock = new ReentrantLock(true);
+    //Guards the slice surfaces so that staging never holds up a blank, always taken before the activityLock
+    private ReentrantLock stagingLock = new ReentrantLock(true);
     private Rectangle bounds = new Rectangle();
     private SCREEN screen;
     private VC_DISPMANX_ALPHA_T.ByReference alpha;
     private int displayHandle;
     private boolean screenInitialized = false;
+    private volatile long lastPresentNanos;
     private String displayName;
     
-    //For dispmanx
-    private int imageResourceHandle;
-    private int imageElementHandle;
-    //For Image
-    private Memory imagePixels;
-    private int imageWidth;
-    private int imageHeight;
-    //For Calibration and Grid
-    private Memory calibrationAndGridPixels;
+    //The element that is on the screen and the surface it's showing
+    private int elementHandle;
+    private Surface elementSurface;
+    //Slices are written into the back surface while the front one is on the screen
+    private Surface[] sliceSurfaces = new Surface[2];
+    private int frontSlice;
+    private Object stagedToken;
+    //Blank, grid and calibration frames are only uploaded once
+    private Map<String, Surface> patternSurfaces = new LinkedHashMap<String, Surface>(16, 0.75f, true);
     private BufferedImage calibrationAndGridImage;
     
+    /**
+     * An image resource that lives as long as the screen does, along with the native memory it's pixels are written from.
+     */
+    private static class Surface {
+    	private int resourceHandle;
+    	private int width;
+    	private int height;
+    	private int pitch;
+    	private Memory pixels;
+    	
+    	private Surface(int width, int height) {
+    		this.width = width;
+    		this.height = height;
+    		this.pitch = RasterConverter.getPitch(width, RasterConverter.ARGB8888_BYTES_PER_PIXEL);
+	        IntByReference nativeImageReference = new IntByReference();
+	        resourceHandle = DispManX.INSTANCE.vc_dispmanx_resource_create(VC_IMAGE_TYPE_T.VC_IMAGE_ARGB8888.getcIndex(), width, height, nativeImageReference);
+	        if (resourceHandle == 0) {
+	        	throw new IllegalArgumentException("Couldn't create resourceHandle for dispmanx");
+	        }
+    	}
+    	
+    	private boolean fits(BufferedImage image) {
+    		return image.getWidth() == width && image.getHeight() == height;
+    	}
+    	
+    	private void write(BufferedImage image) {
+    		if (pixels == null) {
+    			pixels = new Memory(pitch * height);
+    		}
+    		
+			logger.debug("write surface started:{}", () -> Log4jUtil.splitTimer(IMAGE_REALIZE_TIMER));
+    		RasterConverter.writeARGB8888(image, pixels.getByteBuffer(0, pixels.size()), pitch);
+	        VC_RECT_T.ByReference sizeRect = new VC_RECT_T.ByReference();
+	        DispManX.INSTANCE.vc_dispmanx_rect_set(sizeRect, 0, 0, width, height);
+	        int returnCode = DispManX.INSTANCE.vc_dispmanx_resource_write_data(resourceHandle, VC_IMAGE_TYPE_T.VC_IMAGE_ARGB8888.getcIndex(), pitch, pixels, sizeRect);
+	        if (returnCode != 0) {
+	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_resource_write_data for dispmanx:" + returnCode);
+	        }
+			logger.debug("write surface complete:{}", () -> Log4jUtil.splitTimer(IMAGE_REALIZE_TIMER));
+    	}
+    	
+    	private void delete() {
+        	logger.debug("image vc_dispmanx_resource_delete result:" + DispManX.INSTANCE.vc_dispmanx_resource_delete(resourceHandle));
+        	pixels = null;
+    	}
+    }
+    
     public DispManXDevice(String displayName, SCREEN screen) throws InappropriateDeviceException {
 		this.displayName = displayName;
 		this.screen = screen;
@@ -99,9 +154,10 @@ public class DispManXDevice implements GraphicsOutputInterface {
 	    		throw new IllegalArgumentException("vc_dispmanx_display_open failed with:" + returnCode);
 	    	}
 	    	
-	        VC_DISPMANX_ALPHA_T.ByReference alpha = new VC_DISPMANX_ALPHA_T.ByReference();
+	        alpha = new VC_DISPMANX_ALPHA_T.ByReference();
 	        alpha.flags = ALPHA.DISPMANX_FLAGS_ALPHA_FROM_SOURCE.getFlag() | ALPHA.DISPMANX_FLAGS_ALPHA_FIXED_ALL_PIXELS.getFlag();
 	        alpha.opacity = 255;
+	        lastPresentNanos = System.nanoTime();
 	        screenInitialized = true;
     	} finally {
     		displayLock.unlock();
@@ -115,11 +171,7 @@ public class DispManXDevice implements GraphicsOutputInterface {
 			logger.info("dispose screen");
 			removeAllElementsFromScreen();
 	    	logger.info("vc_dispmanx_display_close result:" + DispManX.INSTANCE.vc_dispmanx_display_close(displayHandle));
-	    	calibrationAndGridPixels = null;
-	    	imagePixels = null;
 	    	calibrationAndGridImage = null;
-	    	imageWidth = 0;
-	    	imageHeight = 0;
 	    	screenInitialized = false;
     	} finally {
     		displayLock.unlock();
@@ -138,33 +190,7 @@ public class DispManXDevice implements GraphicsOutputInterface {
 			destPixels = new Memory(pitch * image.getHeight());
 		}
 		
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-        		int rgb = image.getRGB(x, y);
-        		destPixels.setShort((y*(pitch / bytesPerPixel) + x) * bytesPerPixel, (short)(((rgb & 0xf80000) >>> 8) | ((rgb & 0xfc00) >>> 5) | (rgb & 0xf8 >>> 3)));
-            }
-        }
-        width.setValue(image.getWidth());
-        height.setValue(image.getHeight());
-        return destPixels;
-	}
-
-	private Memory loadBitmapARGB8888(BufferedImage image, Memory destPixels, IntByReference width, IntByReference height, IntByReference pitchByRef) {
-		int bytesPerPixel = 4;
-		int pitch = getPitch(bytesPerPixel * image.getWidth(), 32);
-		pitchByRef.setValue(pitch);
-		if (destPixels == null) {
-			destPixels = new Memory(pitch * image.getHeight());
-		}
-		
-		logger.debug("loadBitmapARGB8888 alg started:{}", () -> Log4jUtil.splitTimer(IMAGE_REALIZE_TIMER));
-        for (int y = 0; y < image.getHeight(); y++) {
-            for (int x = 0; x < image.getWidth(); x++) {
-        		destPixels.setInt((y*(pitch / bytesPerPixel) + x) * bytesPerPixel, image.getRGB(x, y));
-            }
-        }
-		logger.debug("loadBitmapARGB8888 alg complete:{}", () -> Log4jUtil.splitTimer(IMAGE_REALIZE_TIMER));
-
+        RasterConverter.writeRGB565(image, destPixels.getByteBuffer(0, destPixels.size()), pitch);
         width.setValue(image.getWidth());
         height.setValue(image.getHeight());
         return destPixels;
@@ -173,19 +199,154 @@ public class DispManXDevice implements GraphicsOutputInterface {
 	@Override
 	public void showBlankImage() {
 		initializeScreen();
-		removeAllElementsFromScreen();
+		activityLock.lock();
+		try {
+			//A blank the size of the element on the screen only needs the source of the element to be swapped
+			int width = elementSurface != null?elementSurface.width:bounds.width;
+			int height = elementSurface != null?elementSurface.height:bounds.height;
+			present(getPatternSurface("blank:" + width + "x" + height, width, height, null));
+		} finally {
+			activityLock.unlock();
+		}
 	}
 
 	private void removeAllElementsFromScreen() {
-		logger.info("screen cleanup started");
-        int updateHandle = DispManX.INSTANCE.vc_dispmanx_update_start( 0 );
+		stagingLock.lock();
+		activityLock.lock();
+		try {
+			logger.info("screen cleanup started");
+	        int updateHandle = DispManX.INSTANCE.vc_dispmanx_update_start( 0 );
+	        if (updateHandle == 0) {
+	        	logger.info("vc_dispmanx_update_start failed");
+	        } else {
+	        	if (elementHandle != 0) {
+	        		logger.debug("image vc_dispmanx_element_remove result:" + DispManX.INSTANCE.vc_dispmanx_element_remove(updateHandle, elementHandle));
+	        	}
+	        	int returnCode = DispManX.INSTANCE.vc_dispmanx_update_submit_sync(updateHandle);
+	        	logger.debug("vc_dispmanx_update_submit_sync result:" + returnCode);
+	        	if (returnCode == 0) {
+	        		lastPresentNanos = System.nanoTime();
+	        	}
+	        }
+	        elementHandle = 0;
+	        elementSurface = null;
+	        
+	        //The resources can only be deleted once nothing is showing them
+	        for (int t = 0; t < sliceSurfaces.length; t++) {
+	        	if (sliceSurfaces[t] != null) {
+	        		sliceSurfaces[t].delete();
+	        		sliceSurfaces[t] = null;
+	        	}
+	        }
+	        for (Surface surface : patternSurfaces.values()) {
+	        	surface.delete();
+	        }
+	        patternSurfaces.clear();
+	        stagedToken = null;
+		} finally {
+			activityLock.unlock();
+			stagingLock.unlock();
+		}
+	}
+	
+	/**
+	 * Puts the surface on the screen with a single update. When the element on the screen is already the size of the surface
+	 * only the source of the element is swapped, otherwise the old element is replaced in the same update.
+	 */
+	private void present(Surface surface) {
+        int updateHandle = DispManX.INSTANCE.vc_dispmanx_update_start(0);  //This method should be called create update
         if (updateHandle == 0) {
-        	logger.info("vc_dispmanx_update_start failed");
+        	throw new IllegalArgumentException("Couldn't vc_dispmanx_update_start for dispmanx");
+        }
+
+        if (elementSurface != null && elementSurface.width == surface.width && elementSurface.height == surface.height) {
+        	int returnCode = DispManX.INSTANCE.vc_dispmanx_element_change_source(updateHandle, elementHandle, surface.resourceHandle);
+        	if (returnCode != 0) {
+        		throw new IllegalArgumentException("Couldn't vc_dispmanx_element_change_source for dispmanx:" + returnCode);
+        	}
         } else {
-        	logger.debug("image vc_dispmanx_element_remove result:" + DispManX.INSTANCE.vc_dispmanx_element_remove(updateHandle, imageElementHandle));
-        	logger.debug("vc_dispmanx_update_submit_sync result:" + DispManX.INSTANCE.vc_dispmanx_update_submit_sync(updateHandle));
-        	logger.debug("image vc_dispmanx_resource_delete result:" + DispManX.INSTANCE.vc_dispmanx_resource_delete(imageResourceHandle));
+        	if (elementHandle != 0) {
+        		logger.debug("image vc_dispmanx_element_remove result:" + DispManX.INSTANCE.vc_dispmanx_element_remove(updateHandle, elementHandle));
+        		elementHandle = 0;
+        		elementSurface = null;
+        	}
+        	
+	        VC_RECT_T.ByReference sourceRect = new VC_RECT_T.ByReference();
+	        DispManX.INSTANCE.vc_dispmanx_rect_set(sourceRect, 0, 0, surface.width<<16, surface.height<<16);//Shifting by 16 is a zoom factor of zero
+	        VC_RECT_T.ByReference destinationRect = new VC_RECT_T.ByReference();
+	        DispManX.INSTANCE.vc_dispmanx_rect_set(
+	        		destinationRect, 
+	        		(bounds.width - surface.width) / 2, 
+	        		(bounds.height - surface.height) / 2, 
+	        		surface.width, 
+	        		surface.height);
+	        elementHandle = DispManX.INSTANCE.vc_dispmanx_element_add(     //Creates and adds the element to the current screen update
+	        		updateHandle, 
+	        		displayHandle, 
+	        		1, 
+	        		destinationRect, 
+	        		surface.resourceHandle, 
+	        		sourceRect, 
+	        		PROTECTION.DISPMANX_PROTECTION_NONE.getcConst(), 
+	        		alpha, 
+	        		0, 
+	        		VC_IMAGE_TRANSFORM_T.VC_IMAGE_ROT0.getcConst());
+	        if (elementHandle == 0) {
+	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_element_add for dispmanx");
+	        }
+        }
+
+        int returnCode = DispManX.INSTANCE.vc_dispmanx_update_submit_sync(updateHandle);//Wait for the update to complete
+        if (returnCode != 0) {
+        	throw new IllegalArgumentException("Couldn't vc_dispmanx_update_submit_sync for dispmanx:" + returnCode);
         }
+        lastPresentNanos = System.nanoTime();//submit_sync doesn't return until the vsync that put the image on the screen
+        elementSurface = surface;
+	}
+	
+	/**
+	 * Blank, grid and calibration frames are drawn and uploaded the first time they are shown and kept after that. Only a few of them
+	 * are kept since every one of them holds a full frame of GPU memory.
+	 */
+	private Surface getPatternSurface(String key, int width, int height, PatternPainter painter) {
+		Surface surface = patternSurfaces.get(key);
+		if (surface != null) {
+			return surface;
+		}
+		
+		BufferedImage image;
+		if (painter == null) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D graphics = (Graphics2D)image.createGraphics();
+			graphics.setBackground(Color.black);
+			graphics.clearRect(0, 0, width, height);
+			graphics.dispose();
+		} else {
+			initializeCalibrationAndGridImage();
+			image = calibrationAndGridImage;
+			Graphics2D graphics = (Graphics2D)image.createGraphics();
+			painter.paint(graphics);
+			graphics.dispose();
+		}
+		
+		surface = new Surface(width, height);
+		surface.write(image);
+		surface.pixels = null;//It's never written again
+		patternSurfaces.put(key, surface);
+		
+		Iterator<Surface> eldest = patternSurfaces.values().iterator();
+		while (patternSurfaces.size() > MAX_PATTERN_SURFACES && eldest.hasNext()) {
+			Surface evicted = eldest.next();
+			if (evicted != elementSurface && evicted != surface) {
+				evicted.delete();
+				eldest.remove();
+			}
+		}
+		return surface;
+	}
+	
+	private interface PatternPainter {
+		public void paint(Graphics2D graphics);
 	}
 	
 	private void initializeCalibrationAndGridImage() {
@@ -199,117 +360,99 @@ public class DispManXDevice implements GraphicsOutputInterface {
 	@Override
 	public void showCalibrationImage(int xPixels, int yPixels) {
 		logger.debug("Calibration assigned:{}", () -> Log4jUtil.startTimer(IMAGE_REALIZE_TIMER));
-		showBlankImage();
-		initializeCalibrationAndGridImage();
-		Graphics2D graphics = (Graphics2D)calibrationAndGridImage.createGraphics();
-		GraphicsOutputInterface.showCalibration(graphics, bounds, xPixels, yPixels);
-		graphics.dispose();
-		calibrationAndGridPixels = showImage(calibrationAndGridPixels, calibrationAndGridImage);
+		initializeScreen();
+		activityLock.lock();
+		try {
+			present(getPatternSurface("calibration:" + xPixels + "x" + yPixels, bounds.width, bounds.height, graphics -> GraphicsOutputInterface.showCalibration(graphics, bounds, xPixels, yPixels)));
+		} finally {
+			activityLock.unlock();
+		}
 		logger.debug("Calibration realized:{}", () -> Log4jUtil.completeTimer(IMAGE_REALIZE_TIMER));
 	}
 	
 	@Override
 	public void showGridImage(int pixels) {
 		logger.debug("Grid assigned:{}", () -> Log4jUtil.startTimer(IMAGE_REALIZE_TIMER));
-		showBlankImage();
-		initializeCalibrationAndGridImage();
-		Graphics2D graphics = (Graphics2D)calibrationAndGridImage.createGraphics();
-		GraphicsOutputInterface.showGrid(graphics, bounds, pixels);
-		graphics.dispose();
-		
-		calibrationAndGridPixels = showImage(calibrationAndGridPixels, calibrationAndGridImage);		
-		logger.debug("Grid realized:{}", () -> Log4jUtil.completeTimer(IMAGE_REALIZE_TIMER));
-	}
-	
-	private Memory showImage(Memory memory, BufferedImage image) {
+		initializeScreen();
 		activityLock.lock();
 		try {
-			showBlankImage();//delete the old resources because we are creating new ones...
-			
-	        IntByReference imageWidth = new IntByReference();
-	        IntByReference imageHeight = new IntByReference();
-	        IntByReference imagePitch = new IntByReference();
-	        
-	        memory = loadBitmapARGB8888(image, memory, imageWidth, imageHeight, imagePitch);
-	        VC_RECT_T.ByReference sourceRect = new VC_RECT_T.ByReference();
-	        DispManX.INSTANCE.vc_dispmanx_rect_set(sourceRect, 0, 0, imageWidth.getValue()<<16, imageHeight.getValue()<<16);//Shifting by 16 is a zoom factor of zero
-	        
-	        IntByReference nativeImageReference = new IntByReference();
-	        imageResourceHandle = DispManX.INSTANCE.vc_dispmanx_resource_create(
-	        		VC_IMAGE_TYPE_T.VC_IMAGE_ARGB8888.getcIndex(), 
-	        		imageWidth.getValue(), 
-	        		imageHeight.getValue(), 
-	        		nativeImageReference);
-	        if (imageResourceHandle == 0) {
-	        	throw new IllegalArgumentException("Couldn't create resourceHandle for dispmanx");
-	        }
-	        
-	        VC_RECT_T.ByReference sizeRect = new VC_RECT_T.ByReference();
-	        DispManX.INSTANCE.vc_dispmanx_rect_set(sizeRect, 0, 0, imageWidth.getValue(), imageHeight.getValue());
-	        int returnCode = DispManX.INSTANCE.vc_dispmanx_resource_write_data( 
-	        		imageResourceHandle, 
-	        		VC_IMAGE_TYPE_T.VC_IMAGE_ARGB8888.getcIndex(), 
-	        		imagePitch.getValue() , 
-	        		memory, 
-	        		sizeRect);
-	        if (returnCode != 0) {
-	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_resource_write_data for dispmanx:" + returnCode);
-	        }
-	        
-	        int updateHandle = DispManX.INSTANCE.vc_dispmanx_update_start(0);  //This method should be called create update
-	        if (updateHandle == 0) {
-	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_update_start for dispmanx");
-	        }
+			present(getPatternSurface("grid:" + pixels, bounds.width, bounds.height, graphics -> GraphicsOutputInterface.showGrid(graphics, bounds, pixels)));
+		} finally {
+			activityLock.unlock();
+		}
+		logger.debug("Grid realized:{}", () -> Log4jUtil.completeTimer(IMAGE_REALIZE_TIMER));
+	}
 	
-	        VC_RECT_T.ByReference destinationRect = new VC_RECT_T.ByReference();
-	        DispManX.INSTANCE.vc_dispmanx_rect_set(
-	        		destinationRect, 
-	        		(bounds.width - imageWidth.getValue()) / 2, 
-	        		(bounds.height - imageHeight.getValue()) / 2, 
-	        		imageWidth.getValue(), 
-	        		imageHeight.getValue());
-	        imageElementHandle = DispManX.INSTANCE.vc_dispmanx_element_add(     //Creates and adds the element to the current screen update
-	        		updateHandle, 
-	        		displayHandle, 
-	        		1, 
-	        		destinationRect, 
-	        		imageResourceHandle, 
-	        		sourceRect, 
-	        		PROTECTION.DISPMANX_PROTECTION_NONE.getcConst(), 
-	        		alpha, 
-	        		0, 
-	        		VC_IMAGE_TRANSFORM_T.VC_IMAGE_ROT0.getcConst());
-	        if (updateHandle == 0) {
-	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_element_add for dispmanx");
-	        }
+	//The back surface is never the one on the screen so it can be recreated whenever the size of the slices change
+	private Surface getBackSliceSurface(BufferedImage image) {
+		int back = 1 - frontSlice;
+		if (sliceSurfaces[back] == null || !sliceSurfaces[back].fits(image)) {
+			if (sliceSurfaces[back] != null) {
+				sliceSurfaces[back].delete();
+			}
+			sliceSurfaces[back] = new Surface(image.getWidth(), image.getHeight());
+		}
+		return sliceSurfaces[back];
+	}
 	
-	        returnCode = DispManX.INSTANCE.vc_dispmanx_update_submit_sync(updateHandle);//Wait for the update to complete
-	        if (returnCode != 0) {
-	        	throw new IllegalArgumentException("Couldn't vc_dispmanx_update_submit_sync for dispmanx:" + returnCode);
-	        }
-	        
-	        return memory;
+	/**
+	 * Uploads the image into the back surface while the front surface is still being exposed. If the next show passes the same
+	 * sliceToken, showing it is only a swap of the source of the element.
+	 */
+	@Override
+	public void stageImage(BufferedImage image, Object sliceToken) {
+		initializeScreen();
+		stagingLock.lock();
+		try {
+			logger.debug("Image staged:{}", () -> Log4jUtil.startTimer(IMAGE_REALIZE_TIMER));
+			stagedToken = null;
+			getBackSliceSurface(image).write(image);
+			stagedToken = sliceToken;
+			logger.debug("Image staged:{}", () -> Log4jUtil.completeTimer(IMAGE_REALIZE_TIMER));
 		} finally {
-			activityLock.unlock();
+			stagingLock.unlock();
 		}
 	}
 	
 	@Override
 	public void showImage(BufferedImage image, boolean performFullUpdate) {
+		showImage(image, performFullUpdate, null);
+	}
+	
+	@Override
+	public void showImage(BufferedImage image, boolean performFullUpdate, Object sliceToken) {
 		logger.debug("Image assigned:{}", () -> Log4jUtil.startTimer(IMAGE_REALIZE_TIMER));
-		if (image.getWidth() == imageWidth && image.getHeight() == imageHeight) {
-			imagePixels = showImage(imagePixels, image);
-		} else {
-			imagePixels = showImage(null, image);
+		initializeScreen();
+		stagingLock.lock();
+		try {
+			Surface back = getBackSliceSurface(image);
+			if (sliceToken == null || sliceToken != stagedToken) {
+				back.write(image);
+			}
+			stagedToken = null;
+			
+			activityLock.lock();
+			try {
+				present(back);
+				frontSlice = 1 - frontSlice;
+			} finally {
+				activityLock.unlock();
+			}
+		} finally {
+			stagingLock.unlock();
 		}
-		imageWidth = image.getWidth();
-		imageHeight = image.getHeight();
 		logger.debug("Image realized:{}", () -> Log4jUtil.completeTimer(IMAGE_REALIZE_TIMER));
 	}
 	
 	@Override
 	public void resetSliceCount() {
-		//Since this isn't used for debugging we don't do anything
+		//Nothing that was staged for the last print is going to be shown
+		stagingLock.lock();
+		try {
+			stagedToken = null;
+		} finally {
+			stagingLock.unlock();
+		}
 	}
 
 	@Override
@@ -318,6 +461,11 @@ public class DispManXDevice implements GraphicsOutputInterface {
 		return bounds;
 	}
 
+	@Override
+	public long getLastPresentNanos() {
+		return lastPresentNanos;
+	}
+
 	@Override
 	public boolean isDisplayBusy() {
 		return activityLock.isLocked();
@@ -0,0 +1,140 @@
+package org.area515.resinprinter.display.dispmanx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Converts a BufferedImage into the pitch aligned pixel formats that DispManX resources are written from.
+ *
+ * The pixels are read straight out of the image's backing array and converted one row at a time, each row is then written to
+ * the destination with a single bulk put. Where each row starts, and where each color is in a pixel, comes from the image's
+ * sample model. Image types that aren't handled here are read a row at a time with getRGB(). The destination is normally the ByteBuffer of a JNA Memory, but any buffer works which is how this is tested
+ * without a VideoCore.
+ */
+public class RasterConverter {
+	public static final int ARGB8888_BYTES_PER_PIXEL = 4;
+	public static final int RGB565_BYTES_PER_PIXEL = 2;
+
+	/**
+	 * @return the number of bytes in a row, rounded up to a multiple of 32
+	 */
+	public static int getPitch(int width, int bytesPerPixel) {
+		return (width * bytesPerPixel + 31) & ~31;
+	}
+
+	/**
+	 * @return the index in the backing array of the first pixel in row y of the image. Subimages share a larger raster and rows
+	 * can be padded, so this comes from the sample model rather than the width of the image.
+	 */
+	private static int getRowStart(WritableRaster raster, int y) {
+		int x = -raster.getSampleModelTranslateX();
+		y -= raster.getSampleModelTranslateY();
+		SampleModel model = raster.getSampleModel();
+		if (model instanceof SinglePixelPackedSampleModel) {
+			return ((SinglePixelPackedSampleModel)model).getOffset(x, y);
+		}
+
+		ComponentSampleModel componentModel = (ComponentSampleModel)model;
+		return y * componentModel.getScanlineStride() + x * componentModel.getPixelStride();
+	}
+
+	/**
+	 * Fills row with the ARGB value of every pixel in row y of the image, the same values getRGB() would return.
+	 */
+	static void readARGBRow(BufferedImage image, int y, int[] row) {
+		int width = image.getWidth();
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		//Java2D doesn't agree with itself on whether a byte raster honors the offset of it's DataBuffer
+		if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			return;
+		}
+
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_ARGB : {
+			System.arraycopy(((DataBufferInt)buffer).getData(), getRowStart(raster, y), row, 0, width);
+			return;
+		}
+		case BufferedImage.TYPE_INT_RGB : {
+			int[] pixels = ((DataBufferInt)buffer).getData();
+			for (int x = 0, i = getRowStart(raster, y); x < width; x++, i++) {
+				row[x] = 0xFF000000 | pixels[i];
+			}
+			return;
+		}
+		case BufferedImage.TYPE_4BYTE_ABGR : {
+			byte[] pixels = ((DataBufferByte)buffer).getData();
+			ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+			int pixelStride = model.getPixelStride();
+			int[] bands = model.getBandOffsets();
+			int red = bands[0];
+			int green = bands[1];
+			int blue = bands[2];
+			int alpha = bands[3];
+			for (int x = 0, i = getRowStart(raster, y); x < width; x++, i += pixelStride) {
+				row[x] = (pixels[i + alpha] & 0xFF) << 24 | (pixels[i + red] & 0xFF) << 16 | (pixels[i + green] & 0xFF) << 8 | (pixels[i + blue] & 0xFF);
+			}
+			return;
+		}
+		case BufferedImage.TYPE_3BYTE_BGR : {
+			byte[] pixels = ((DataBufferByte)buffer).getData();
+			ComponentSampleModel model = (ComponentSampleModel)raster.getSampleModel();
+			int pixelStride = model.getPixelStride();
+			int[] bands = model.getBandOffsets();
+			int red = bands[0];
+			int green = bands[1];
+			int blue = bands[2];
+			for (int x = 0, i = getRowStart(raster, y); x < width; x++, i += pixelStride) {
+				row[x] = 0xFF000000 | (pixels[i + red] & 0xFF) << 16 | (pixels[i + green] & 0xFF) << 8 | (pixels[i + blue] & 0xFF);
+			}
+			return;
+		}
+		default :
+			image.getRGB(0, y, width, 1, row, 0, width);
+		}
+	}
+
+	/**
+	 * Writes the image as native order ARGB8888 rows that are pitch bytes apart, starting at the beginning of the destination.
+	 */
+	public static void writeARGB8888(BufferedImage image, ByteBuffer destination, int pitch) {
+		int width = image.getWidth();
+		IntBuffer pixels = destination.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+		int[] row = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			readARGBRow(image, y, row);
+			pixels.position(y * (pitch / ARGB8888_BYTES_PER_PIXEL));
+			pixels.put(row, 0, width);
+		}
+	}
+
+	/**
+	 * Writes the image as native order RGB565 rows that are pitch bytes apart, starting at the beginning of the destination.
+	 */
+	public static void writeRGB565(BufferedImage image, ByteBuffer destination, int pitch) {
+		int width = image.getWidth();
+		ShortBuffer pixels = destination.duplicate().order(ByteOrder.nativeOrder()).asShortBuffer();
+		int[] row = new int[width];
+		short[] packedRow = new short[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			readARGBRow(image, y, row);
+			for (int x = 0; x < width; x++) {
+				int rgb = row[x];
+				packedRow[x] = (short)(((rgb & 0xf80000) >>> 8) | ((rgb & 0xfc00) >>> 5) | ((rgb & 0xf8) >>> 3));
+			}
+			pixels.position(y * (pitch / RGB565_BYTES_PER_PIXEL));
+			pixels.put(packedRow, 0, width);
+		}
+	}
+}
@@ -1,6 +1,10 @@
 package org.area515.resinprinter.gcode;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -25,6 +29,7 @@ public abstract class GCodeControl {
 	public static Logger logger = LogManager.getLogger();
 	private int SUGGESTED_TIMEOUT_FOR_ONE_GCODE = 1000 * 60 * 2;//2 minutes
 	private Pattern GCODE_RESPONSE_PATTERN = Pattern.compile("(?i)(?:(o?k|e?rror:|a?larm:)(.*)|<?([^>]*)>|\\[?([^]]*)\\])\r?\n");
+	private static final Pattern DELAY_PATTERN = Pattern.compile(";\\s*<\\s*Delay\\s*>\\s*(\\d+).*", Pattern.CASE_INSENSITIVE);
 	
     private Printer printer;
     private ReentrantLock gCodeLock = new ReentrantLock();
@@ -32,11 +37,123 @@ public abstract class GCodeControl {
     private int parseLocation = 0;
     private int gcodeTimeout;
     private boolean restartSerialOnTimeout;
+    private int streamingWindowBytes;
+    private int streamingWindowCommands;
+    
+    /**
+     * Keeps gcode flowing to the firmware without waiting for a round trip on every command, the way a character counting
+     * streamer does. A command is only written when it fits in the firmware's receive buffer alongside every command that
+     * hasn't been acknowledged yet. Responses are matched to commands in the order they were sent.
+     * 
+     * Gcode must never run out of order. When the firmware rejects a command that was the last one sent, it's retried in
+     * place after the pause. When commands behind it had already been sent they may already have run, so neither the failed
+     * command nor the commands behind it can be sent again without running them out of order. Instead, their responses are
+     * read, the rest of the block isn't sent and the job fails with an error that names every command that was outstanding.
+     */
+    private class StreamingWindow {
+    	private Deque<String> inFlight = new ArrayDeque<String>();
+    	private int inFlightBytes;
+    	private StringBuilder responses = new StringBuilder();
+    	private boolean abandoned;
+    	private String failure;
+    	
+    	/**
+    	 * @return false if the block was abandoned and the command wasn't sent
+    	 */
+    	public boolean send(PrintJob printJob, String cmd) throws IOException {
+        	if (!cmd.endsWith("\n")) {
+        		cmd += "\n";
+        	}
+        	
+    		int length = cmd.getBytes().length;
+    		while (!abandoned && !inFlight.isEmpty() && (inFlightBytes + length > streamingWindowBytes || inFlight.size() >= streamingWindowCommands)) {
+    			acknowledgeOldest(printJob);
+    		}
+    		if (abandoned) {
+    			logger.info("Not streaming after an error: {}", cmd);
+    			return false;
+    		}
+    		
+        	logger.info("Stream {}: {}", inFlight.size(), cmd);
+        	getPrinter().getPrinterFirmwareSerialPort().write(cmd.getBytes());
+        	inFlight.add(cmd);
+        	inFlightBytes += length;
+        	return true;
+    	}
+    	
+    	public void drain(PrintJob printJob) throws IOException {
+    		while (!inFlight.isEmpty()) {
+    			acknowledgeOldest(printJob);
+    		}
+    	}
+    	
+    	private PrinterResponse readAcknowledgement() throws IOException {
+    		String cmd = inFlight.poll();
+    		inFlightBytes -= cmd.getBytes().length;
+        	PrinterResponse response = readUntilOkOrStoppedPrinting(true);
+        	if (response == null) {
+        		//The print was stopped or the firmware stopped talking, there is nothing left to match the other commands to
+        		inFlight.clear();
+        		inFlightBytes = 0;
+        		return null;
+        	}
+        	
+        	responses.append(response.getFullResponse().toString());
+        	return response;
+    	}
+    	
+    	private void acknowledgeOldest(PrintJob printJob) throws IOException {
+    		String cmd = inFlight.peek();
+    		PrinterResponse response = readAcknowledgement();
+        	if (response == null || !isPausableError(response.getLastLineMatcher(), printJob)) {
+        		return;
+        	}
+        	
+        	if (inFlight.isEmpty()) {
+        		//Nothing was sent after the failed command, so retrying it keeps the gcode in order
+        		if (pauseForPrinterError(printJob, response)) {
+        			responses.append(sendGcodeAndRespectPrinter(printJob, cmd));
+        		}
+        		return;
+        	}
+        	
+        	//The commands behind the failed one are only acknowledged, any errors they cause aren't retried either
+        	abandoned = true;
+        	List<String> outstanding = new ArrayList<String>();
+        	outstanding.add(cmd.trim());
+        	for (String behind : inFlight) {
+        		outstanding.add(behind.trim());
+        	}
+        	while (!inFlight.isEmpty()) {
+        		readAcknowledgement();
+        	}
+        	failure = "Printer error:" + response.getLastLineMatcher().group(2).trim() + " with commands still outstanding that can't be sent again in order:" + outstanding;
+        	logger.error(failure);
+        	printJob.setErrorDescription(failure);
+    	}
+    	
+    	public boolean isAbandoned() {
+    		return abandoned;
+    	}
+    	
+    	/**
+    	 * @return why the block was abandoned, or null if it wasn't
+    	 */
+    	public String getFailure() {
+    		return failure;
+    	}
+    	
+    	public String getResponses() {
+    		return responses.toString();
+    	}
+    }
     
     public GCodeControl(Printer printer) {
     	this.printer = printer;
     	this.gcodeTimeout = printer.getConfiguration().getMachineConfig().getPrinterResponseTimeoutMillis() != null?printer.getConfiguration().getMachineConfig().getPrinterResponseTimeoutMillis():SUGGESTED_TIMEOUT_FOR_ONE_GCODE;
     	this.restartSerialOnTimeout = printer.getConfiguration().getMachineConfig().getRestartSerialOnTimeout() != null?printer.getConfiguration().getMachineConfig().getRestartSerialOnTimeout():false;
+    	this.streamingWindowBytes = printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowBytes() != null?printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowBytes():0;
+    	this.streamingWindowCommands = printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowCommands() != null && printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowCommands() > 0?printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowCommands():Integer.MAX_VALUE;
     }
 	
     private Printer getPrinter() {
@@ -82,6 +199,29 @@ public abstract class GCodeControl {
 		return responseRegEx != null && responseRegEx.trim().length() > 0 && matcher.group(2) != null && matcher.group(2).matches(responseRegEx);
 	}
 	
+	/**
+	 * @return true if the command that caused the error should be attempted again
+	 */
+	private boolean pauseForPrinterError(PrintJob printJob, PrinterResponse response) {
+		printJob.setErrorDescription(response.getLastLineMatcher().group(2));
+		logger.info("Received error from printer:" + response.getLastLineMatcher().group(2));
+		getPrinter().setStatus(JobStatus.PausedWithWarning);
+		NotificationManager.jobChanged(getPrinter(), printJob);
+		
+		//Allow the user to manipulate the printer while paused, even if the lock is held more than once
+		int holdCount = gCodeLock.getHoldCount();
+		for (int t = 0; t < holdCount; t++) {
+			gCodeLock.unlock();
+		}
+		try {
+			return getPrinter().waitForPauseIfRequired();
+		} finally {
+			for (int t = 0; t < holdCount; t++) {
+				gCodeLock.lock();
+			}
+		}
+	}
+	
 	String sendGcodeAndRespectPrinter(PrintJob printJob, String cmd) throws IOException {
 		gCodeLock.lock();
         try {
@@ -101,18 +241,7 @@ public abstract class GCodeControl {
 	        	
 	        	if (isPausableError(response.getLastLineMatcher(), printJob)) {
 	        		attempt++;
-	        		printJob.setErrorDescription(response.getLastLineMatcher().group(2));
-	        		logger.info("Received error from printer:" + response.getLastLineMatcher().group(2));
-	        		getPrinter().setStatus(JobStatus.PausedWithWarning);
-	        		NotificationManager.jobChanged(getPrinter(), printJob);
-	        		
-	        		//Allow the user to manipulate the printer while paused
-	        		gCodeLock.unlock();
-	        		try {
-	        			mustAttempt = getPrinter().waitForPauseIfRequired();
-	        		} finally {
-	        			gCodeLock.lock();
-	        		}
+	        		mustAttempt = pauseForPrinterError(printJob, response);
 	        	} else {
 	        		mustAttempt = false;
 	        	}
@@ -202,8 +331,7 @@ public abstract class GCodeControl {
     
     private void parseCommentCommand(String comment) {
 		//If a comment was encountered, parse it to determine if something interesting was in there.
-		Pattern delayPattern = Pattern.compile(";\\s*<\\s*Delay\\s*>\\s*(\\d+).*", Pattern.CASE_INSENSITIVE);
-		Matcher matcher = delayPattern.matcher(comment);
+		Matcher matcher = DELAY_PATTERN.matcher(comment);
 		if (matcher.matches()) {
 			try {
 				int sleepTime = Integer.parseInt(matcher.group(1));
@@ -217,36 +345,64 @@ public abstract class GCodeControl {
     }
     
     public String executeGCodeWithTemplating(PrintJob printJob, String gcodes, boolean stopSendingGCodeWhenPrintInactive) throws InappropriateDeviceException {
-		Pattern gCodePattern = Pattern.compile("\\s*([^;]*)\\s*(;.*)?", Pattern.CASE_INSENSITIVE);
 		try {
 			if (gcodes == null || gcodes.trim().isEmpty()) {
 				return null;
 			}
 			
 			StringBuilder buffer = new StringBuilder();
-			gcodes = TemplateEngine.buildData(printJob, printJob.getPrinter(), gcodes);
-			if (gcodes == null) {
-				return null;
+			List<GCodeTemplatePlan.GCodeLine> lines = GCodeTemplatePlan.getPlan(gcodes).buildLines(printJob, printJob.getPrinter());
+			if (lines == null) {
+				gcodes = TemplateEngine.buildData(printJob, printJob.getPrinter(), gcodes);
+				if (gcodes == null) {
+					return null;
+				}
+				lines = GCodeTemplatePlan.parseLines(gcodes);
 			}
 			
-			for (String gcode : gcodes.split("[\r]?\n")) {
-				if (stopSendingGCodeWhenPrintInactive && !printJob.getPrinter().isPrintActive()) {
-					break;
-				}
-				
-				if (gcode != null) {
-					Matcher matcher = gCodePattern.matcher(gcode);
-					if (matcher.matches()) {
-						String singleGCode = matcher.group(1);
-						String comment = matcher.group(2);
-						if (singleGCode != null && singleGCode.trim().length() > 0) {
-							buffer.append(sendGcodeAndRespectPrinter(printJob, singleGCode));
+			StreamingWindow window = streamingWindowBytes > 0?new StreamingWindow():null;
+			//The whole block is streamed at once, so a manual command can't steal one of it's responses
+			if (window != null) {
+				gCodeLock.lock();
+			}
+			try {
+				for (GCodeTemplatePlan.GCodeLine line : lines) {
+					if (stopSendingGCodeWhenPrintInactive && !printJob.getPrinter().isPrintActive()) {
+						break;
+					}
+					
+					if (line.getGCode() != null) {
+						if (window != null) {
+							if (!window.send(printJob, line.getGCode())) {
+								break;
+							}
+						} else {
+							buffer.append(sendGcodeAndRespectPrinter(printJob, line.getGCode()));
 						}
-						if (comment != null) {
-							parseCommentCommand(comment);
+					}
+					if (line.getComment() != null) {
+						//A delay is measured from the moment the firmware has acknowledged everything before it
+						if (window != null && DELAY_PATTERN.matcher(line.getComment()).matches()) {
+							window.drain(printJob);
+							if (window.isAbandoned()) {
+								break;
+							}
 						}
+						parseCommentCommand(line.getComment());
 					}
 				}
+				
+				if (window != null) {
+					window.drain(printJob);
+					if (window.getFailure() != null) {
+						throw new InappropriateDeviceException(window.getFailure());
+					}
+					buffer.append(window.getResponses());
+				}
+			} finally {
+				if (window != null) {
+					gCodeLock.unlock();
+				}
 			}
 			
 			return buffer.toString();
@@ -0,0 +1,448 @@
+package org.area515.resinprinter.gcode;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.util.TemplateEngine;
+import org.area515.util.TemplateEngine.Variable;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A gcode template that has been parsed once into lines of literal text and variable slots, so that a layer only has to
+ * fill in the slots instead of building the whole FreeMarker data model, rendering the template and splitting the result
+ * back into commands and comments.
+ *
+ * Only plain text with ${} interpolations of the layer variables, or of +, - and * arithmetic on them, is compiled. Anything else
+ * that FreeMarker understands isn't compiled and is still rendered by the TemplateEngine. Slots are formatted the same way
+ * FreeMarker formats them, and if a slot turns out to be null the layer is rendered by FreeMarker too so the error handling
+ * doesn't change.
+ */
+public class GCodeTemplatePlan {
+    private static final Logger logger = LogManager.getLogger();
+	private static final Pattern GCODE_PATTERN = Pattern.compile("\\s*([^;]*)\\s*(;.*)?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern FREEMARKER_PATTERN = Pattern.compile("<#|</#|<@|</@|\\[#|\\[/#|\\[@|\\[/@|#\\{");
+	private static final char SLOT_MARKER = '\uE000';
+	private static final String[] BOOLEAN_VALUES = TemplateEngine.BOOLEAN_FORMAT.split(",");
+
+	private static LoadingCache<String, GCodeTemplatePlan> plans = CacheBuilder.newBuilder().maximumSize(100).build(
+		new CacheLoader<String, GCodeTemplatePlan>() {
+			@Override
+			public GCodeTemplatePlan load(String template) {
+				return new GCodeTemplatePlan(template);
+			}
+		});
+
+	private boolean compiled;
+	private List<Object[][]> lines = new ArrayList<Object[][]>();
+
+	public static class GCodeLine {
+		private String gcode;
+		private String comment;
+
+		public GCodeLine(String gcode, String comment) {
+			this.gcode = gcode;
+			this.comment = comment;
+		}
+
+		/**
+		 * @return the command on this line, or null if there isn't one
+		 */
+		public String getGCode() {
+			return gcode;
+		}
+
+		/**
+		 * @return the comment on this line including it's semicolon, or null if there isn't one
+		 */
+		public String getComment() {
+			return comment;
+		}
+	}
+
+	//The variables are only looked up once per layer, and only if a slot uses them
+	private static class Values {
+		private PrintJob job;
+		private Printer printer;
+		private Object[] values = new Object[Variable.values().length];
+		private boolean[] fetched = new boolean[Variable.values().length];
+		private NumberFormat numberFormat;
+
+		private Values(PrintJob job, Printer printer) {
+			this.job = job;
+			this.printer = printer;
+		}
+
+		private Object get(Variable variable) {
+			if (!fetched[variable.ordinal()]) {
+				values[variable.ordinal()] = variable.getValue(job, printer);
+				fetched[variable.ordinal()] = true;
+			}
+			return values[variable.ordinal()];
+		}
+
+		private NumberFormat getNumberFormat() {
+			if (numberFormat == null) {
+				//This is FreeMarker's default "number" format
+				numberFormat = NumberFormat.getNumberInstance(Locale.getDefault());
+			}
+			return numberFormat;
+		}
+	}
+
+	private static interface Expression {
+		/**
+		 * @return the value or null if it's missing or can't be used the way FreeMarker would use it
+		 */
+		Object evaluate(Values values);
+	}
+
+	private static class VariableExpression implements Expression {
+		private Variable variable;
+
+		private VariableExpression(Variable variable) {
+			this.variable = variable;
+		}
+
+		public Object evaluate(Values values) {
+			return values.get(variable);
+		}
+	}
+
+	private static class LiteralExpression implements Expression {
+		private BigDecimal value;
+
+		private LiteralExpression(BigDecimal value) {
+			this.value = value;
+		}
+
+		public Object evaluate(Values values) {
+			return value;
+		}
+	}
+
+	//FreeMarker does it's arithmetic with BigDecimals
+	private static class ArithmeticExpression implements Expression {
+		private char operator;
+		private Expression left;
+		private Expression right;
+
+		private ArithmeticExpression(char operator, Expression left, Expression right) {
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		private static BigDecimal toBigDecimal(Object value) {
+			if (!(value instanceof Number)) {
+				return null;
+			}
+			if (value instanceof BigDecimal) {
+				return (BigDecimal)value;
+			}
+			if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				return BigDecimal.valueOf(((Number)value).longValue());
+			}
+			if (value instanceof Double && (((Double)value).isNaN() || ((Double)value).isInfinite())) {
+				return null;
+			}
+			return new BigDecimal(value.toString());
+		}
+
+		public Object evaluate(Values values) {
+			BigDecimal leftValue = toBigDecimal(left == null?BigDecimal.ZERO:left.evaluate(values));
+			BigDecimal rightValue = toBigDecimal(right.evaluate(values));
+			if (leftValue == null || rightValue == null) {
+				return null;
+			}
+
+			switch (operator) {
+			case '+':
+				return leftValue.add(rightValue);
+			case '-':
+				return leftValue.subtract(rightValue);
+			default:
+				return leftValue.multiply(rightValue);
+			}
+		}
+	}
+
+	//Parses the inside of a ${} with the grammar: sum := product (('+'|'-') product)*, product := unary ('*' unary)*, unary := '-' unary | '(' sum ')' | number | variable
+	private static class ExpressionParser {
+		private String text;
+		private int position;
+
+		private ExpressionParser(String text) {
+			this.text = text;
+		}
+
+		private Expression parse() {
+			Expression expression = parseSum();
+			skipWhitespace();
+			return expression != null && position == text.length()?expression:null;
+		}
+
+		private void skipWhitespace() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		private boolean accept(char c) {
+			skipWhitespace();
+			if (position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private Expression parseSum() {
+			Expression expression = parseProduct();
+			while (expression != null) {
+				if (accept('+')) {
+					expression = combine('+', expression, parseProduct());
+				} else if (accept('-')) {
+					expression = combine('-', expression, parseProduct());
+				} else {
+					return expression;
+				}
+			}
+			return null;
+		}
+
+		private Expression parseProduct() {
+			Expression expression = parseUnary();
+			while (expression != null && accept('*')) {
+				expression = combine('*', expression, parseUnary());
+			}
+			return expression;
+		}
+
+		private Expression combine(char operator, Expression left, Expression right) {
+			return right == null?null:new ArithmeticExpression(operator, left, right);
+		}
+
+		private Expression parseUnary() {
+			if (accept('-')) {
+				Expression negated = parseUnary();
+				return negated == null?null:new ArithmeticExpression('-', null, negated);
+			}
+			if (accept('(')) {
+				Expression expression = parseSum();
+				return expression != null && accept(')')?expression:null;
+			}
+
+			skipWhitespace();
+			int start = position;
+			if (position < text.length() && Character.isDigit(text.charAt(position))) {
+				while (position < text.length() && Character.isDigit(text.charAt(position))) {
+					position++;
+				}
+				if (position + 1 < text.length() && text.charAt(position) == '.' && Character.isDigit(text.charAt(position + 1))) {
+					position++;
+					while (position < text.length() && Character.isDigit(text.charAt(position))) {
+						position++;
+					}
+				}
+				return new LiteralExpression(new BigDecimal(text.substring(start, position)));
+			}
+
+			while (position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+				position++;
+			}
+			if (start == position) {
+				return null;
+			}
+			try {
+				return new VariableExpression(Variable.valueOf(text.substring(start, position)));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * @return the plan for this template, a template is only parsed the first time it's seen
+	 */
+	public static GCodeTemplatePlan getPlan(String template) {
+		try {
+			return plans.get(template);
+		} catch (ExecutionException e) {
+			throw new IllegalArgumentException("Couldn't build plan for:" + template, e);
+		}
+	}
+
+	GCodeTemplatePlan(String template) {
+		compiled = compile(template);
+		if (!compiled) {
+			lines.clear();
+			logger.debug("GCode template will be rendered by FreeMarker:{}", template);
+		}
+	}
+
+	private boolean compile(String template) {
+		if (template.indexOf(SLOT_MARKER) > -1 || FREEMARKER_PATTERN.matcher(template).find()) {
+			return false;
+		}
+
+		//Every slot is replaced with a marker so the line can be split the same way the rendered text would be
+		List<Expression> slots = new ArrayList<Expression>();
+		StringBuilder markedTemplate = new StringBuilder();
+		int position = 0;
+		int slotStart;
+		while ((slotStart = template.indexOf("${", position)) > -1) {
+			int slotEnd = template.indexOf('}', slotStart);
+			if (slotEnd < 0) {
+				return false;
+			}
+			Expression expression = new ExpressionParser(template.substring(slotStart + 2, slotEnd)).parse();
+			if (expression == null) {
+				return false;
+			}
+
+			slots.add(expression);
+			markedTemplate.append(template, position, slotStart).append(SLOT_MARKER);
+			position = slotEnd + 1;
+		}
+		markedTemplate.append(template, position, template.length());
+
+		int slotIndex = 0;
+		for (String line : markedTemplate.toString().split("[\r]?\n")) {
+			Object[] gcode = null;
+			Object[] comment = null;
+			Matcher matcher = GCODE_PATTERN.matcher(line);
+			if (matcher.matches()) {
+				String singleGCode = matcher.group(1);
+				if (singleGCode != null && singleGCode.trim().length() > 0) {
+					gcode = toPieces(singleGCode, slots, slotIndex);
+				}
+				if (matcher.group(2) != null) {
+					comment = toPieces(matcher.group(2), slots, slotIndex + countSlots(singleGCode));
+				}
+				if (gcode != null || comment != null) {
+					lines.add(new Object[][]{gcode, comment});
+				}
+			}
+			slotIndex += countSlots(line);
+		}
+
+		return true;
+	}
+
+	private static int countSlots(String text) {
+		int count = 0;
+		for (int t = 0; text != null && t < text.length(); t++) {
+			if (text.charAt(t) == SLOT_MARKER) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static Object[] toPieces(String text, List<Expression> slots, int slotIndex) {
+		List<Object> pieces = new ArrayList<Object>();
+		int start = 0;
+		for (int t = 0; t < text.length(); t++) {
+			if (text.charAt(t) == SLOT_MARKER) {
+				if (t > start) {
+					pieces.add(text.substring(start, t));
+				}
+				pieces.add(slots.get(slotIndex++));
+				start = t + 1;
+			}
+		}
+		if (start < text.length()) {
+			pieces.add(text.substring(start));
+		}
+		return pieces.toArray();
+	}
+
+	/**
+	 * @return false if this template has to be rendered by FreeMarker
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	/**
+	 * Fills in the slots for the current layer.
+	 *
+	 * @return the lines of the template, or null if it has to be rendered by FreeMarker instead
+	 */
+	public List<GCodeLine> buildLines(PrintJob job, Printer printer) {
+		if (!compiled) {
+			return null;
+		}
+
+		Values values = new Values(job, printer);
+		List<GCodeLine> builtLines = new ArrayList<GCodeLine>(lines.size());
+		StringBuilder builder = new StringBuilder();
+		for (Object[][] line : lines) {
+			String[] parts = new String[2];
+			for (int part = 0; part < 2; part++) {
+				if (line[part] == null) {
+					continue;
+				}
+
+				builder.setLength(0);
+				for (Object piece : line[part]) {
+					if (piece instanceof String) {
+						builder.append((String)piece);
+					} else if (!format(((Expression)piece).evaluate(values), values, builder)) {
+						return null;
+					}
+				}
+				parts[part] = builder.toString();
+			}
+			builtLines.add(new GCodeLine(parts[0], parts[1]));
+		}
+
+		return builtLines;
+	}
+
+	private static boolean format(Object value, Values values, StringBuilder builder) {
+		if (value instanceof Number) {
+			builder.append(values.getNumberFormat().format(value));
+			return true;
+		}
+		if (value instanceof Boolean) {
+			builder.append((Boolean)value?BOOLEAN_VALUES[0]:BOOLEAN_VALUES[1]);
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Splits gcode that was already rendered by FreeMarker into lines.
+	 */
+	public static List<GCodeLine> parseLines(String gcodes) {
+		List<GCodeLine> parsedLines = new ArrayList<GCodeLine>();
+		for (String gcode : gcodes.split("[\r]?\n")) {
+			Matcher matcher = GCODE_PATTERN.matcher(gcode);
+			if (matcher.matches()) {
+				String singleGCode = matcher.group(1);
+				String comment = matcher.group(2);
+				if (singleGCode != null && singleGCode.trim().length() > 0) {
+					parsedLines.add(new GCodeLine(singleGCode, comment));
+				} else if (comment != null) {
+					parsedLines.add(new GCodeLine(null, comment));
+				}
+			}
+		}
+		return parsedLines;
+	}
+}
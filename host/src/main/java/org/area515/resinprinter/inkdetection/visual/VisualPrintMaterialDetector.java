@@ -76,7 +76,7 @@ public class VisualPrintMaterialDetector implements PrintMaterialDetector {
 		final ShapeDetectionCache cache = buildPictures.get(printer);
 		PipedInputStream inputStream = new PipedInputStream();
 		final PipedOutputStream pipedOutputStream = new PipedOutputStream(inputStream);
-		Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		Main.RENDER_EXECUTOR.submit(new Runnable() {
 			@Override
 			public void run() {
 				try {
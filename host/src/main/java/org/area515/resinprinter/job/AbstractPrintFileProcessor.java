@@ -30,8 +30,13 @@ import org.area515.resinprinter.exception.NoPrinterFoundException;
 import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.job.Customizer.PrinterStep;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
+import org.area515.resinprinter.job.render.ImagePool;
 import org.area515.resinprinter.job.render.RenderingCache;
 import org.area515.resinprinter.job.render.RenderingContext;
+import org.area515.resinprinter.job.render.SliceCompositor;
+import org.area515.resinprinter.job.timing.ExposureTimer;
+import org.area515.resinprinter.job.timing.LayerPhase;
+import org.area515.resinprinter.job.timing.LayerTiming;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.PrinterConfiguration;
@@ -66,9 +71,12 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		public boolean optimizeWithPreviewMode;
 		private AffineTransform affineTransform;
 		public RenderingCache cache = new RenderingCache();
+		public SliceCompositor compositor = new SliceCompositor();
+		public ExposureTimer exposureTimer = new ExposureTimer();
 		public Customizer customizer;
 		public Customizer originalCustomizer;
 		public CurrentImageRenderer currentlyRenderingImage;
+		public LayerTiming layerTiming;
 		
 		public DataAid(PrintJob printJob) throws JobManagerException {
 			this.printJob = printJob;
@@ -173,7 +181,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			int sliceJustRendered = customizer.getNextSlice();
 			customizer.setNextSlice(sliceJustRendered + 1);
 			customizer.setNextStep(PrinterStep.PerformPreSlice);
-			CustomizerService.INSTANCE.addOrUpdateCustomizer(customizer);
+			CustomizerService.INSTANCE.checkpointCustomizer(customizer);
 			return sliceJustRendered;
 		}
 	}
@@ -185,7 +193,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			return null;
 		}
 		
-		return Main.GLOBAL_EXECUTOR.submit(aid.currentlyRenderingImage);
+		return Main.RENDER_EXECUTOR.submit(aid.currentlyRenderingImage);
 	}
 	
 	
@@ -241,7 +249,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 	
 	private void moveToNextPrinterStep(Customizer customizer, PrinterStep newState) {
 		customizer.setNextStep(newState);
-		CustomizerService.INSTANCE.addOrUpdateCustomizer(customizer);
+		CustomizerService.INSTANCE.checkpointCustomizer(customizer);
 	}
 	
 	public void performHeader(DataAid aid) throws InappropriateDeviceException, IOException {
@@ -291,6 +299,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 
 		//Start timer
 		aid.currentSliceTime = System.currentTimeMillis();
+		aid.layerTiming = new LayerTiming(aid.printJob.getCurrentSlice());
 
 		//Show the errors to our users if the stl file is broken, but we'll keep on processing like normal
 		if (errors != null && !errors.isEmpty() && aid.customizer.getNextStep() == PrinterStep.PerformPreSlice) {
@@ -308,7 +317,9 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		if (aid.slicingProfile.getgCodePreslice() != null && 
 			aid.slicingProfile.getgCodePreslice().trim().length() > 0 && 
 			aid.customizer.getNextStep() == PrinterStep.PerformPreSlice) {
+			long preSliceStart = System.nanoTime();
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodePreslice(), true);
+			aid.layerTiming.addNanos(LayerPhase.PreSlice, System.nanoTime() - preSliceStart);
 		}
 		
 		moveToNextPrinterStep(aid.customizer, PrinterStep.PerformExposure);
@@ -353,7 +364,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		for (int t = 0; t < timerCount; t++) {
 			final int i = t;
 			logger.info("Exposure timer[{}] will start in: {}ms", i, delay[t]);
-			futures[i] = Main.GLOBAL_EXECUTOR.schedule(new Runnable() {
+			futures[i] = Main.PRINT_CRITICAL_EXECUTOR.schedule(new Runnable() {
 				@Override
 				public void run() {
 					try {
@@ -371,6 +382,14 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 	}
 	
 	public JobStatus printImageAndPerformPostProcessing(DataAid aid, ScriptEngine engine, BufferedImage sliceImage) throws ExecutionException, InterruptedException, InappropriateDeviceException, ScriptException {
+		return printImageAndPerformPostProcessing(aid, engine, sliceImage, null);
+	}
+	
+	/**
+	 * Same as printImageAndPerformPostProcessing(DataAid, ScriptEngine, BufferedImage), but the display can show what it staged
+	 * with sliceToken instead of uploading the image again. See RenderingContext.getSliceToken()
+	 */
+	public JobStatus printImageAndPerformPostProcessing(DataAid aid, ScriptEngine engine, BufferedImage sliceImage, Object sliceToken) throws ExecutionException, InterruptedException, InappropriateDeviceException, ScriptException {
 		if (aid == null) {
 			throw new IllegalStateException("initializeDataAid must be called before this method");
 		}
@@ -387,6 +406,13 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			return null;
 		}
 		
+		LayerTiming layerTiming = aid.layerTiming != null?aid.layerTiming:new LayerTiming(aid.printJob.getCurrentSlice());
+		RenderingContext renderedContext = aid.cache.getCurrentContext();
+		if (renderedContext != null && renderedContext.getPrintableImage() == sliceImage) {
+			layerTiming.addNanos(LayerPhase.Render, renderedContext.getRenderNanos());
+			layerTiming.addNanos(LayerPhase.Transform, renderedContext.getTransformNanos());
+		}
+		
 		//Start but don't wait for a potentially heavy weight operation to determine if we are out of ink.
 		if (aid.inkDetector != null) {
 			aid.inkDetector.startMeasurement();
@@ -402,24 +428,39 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		
 		Future<?>[] timerFutures = startAllExposureTimers(aid, engine, sliceImage);
 		
-		aid.printer.showImage(sliceImage, true);
+		boolean useShutter = aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0;
+		long requestedExposureNanos = TimeUnit.MILLISECONDS.toNanos(aid.printJob.getExposureTime());
+		long showRequested = System.nanoTime();
+		aid.printer.showImage(sliceImage, true, sliceToken);
 		logger.info("ExposureStart:{}", ()->Log4jUtil.startTimer(EXPOSURE_TIMER));
-		 	
-		if (aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0) {
+		
+		//The exposure starts when the light reaches the resin, not when we asked for the image to be shown.
+		long exposureStart = aid.exposureTimer.waitForShow(aid.printer::getLastPresentNanos, showRequested);
+		if (useShutter) {
 			aid.printer.setShutterOpen(true);
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodeShutter(), true);
+			exposureStart = System.nanoTime();
 		}
 		
-		//Sleep for the amount of time that we are exposing the resin.
-		Thread.sleep(aid.printJob.getExposureTime());
+		//Wait until the deadline for the amount of time that we are exposing the resin. Without a shutter the exposure only ends
+		//once the blank image is presented, so the blank is asked for early by the time the display takes to present it.
+		ExposureTimer.waitUntil(useShutter?exposureStart + requestedExposureNanos:aid.exposureTimer.getBlankDeadline(exposureStart, requestedExposureNanos));
 		
-		if (aid.slicingProfile.getgCodeShutter() != null && aid.slicingProfile.getgCodeShutter().trim().length() > 0) {
+		long exposureEnd = 0;
+		if (useShutter) {
 			aid.printer.setShutterOpen(false);
 			aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodeShutter(), false);
+			exposureEnd = System.nanoTime();
 		}
 
 		//Blank the screen
+		long blankRequested = System.nanoTime();
 		aid.printer.showBlankImage();
+		if (!useShutter) {
+			exposureEnd = aid.exposureTimer.waitForBlank(aid.printer::getLastPresentNanos, blankRequested);
+		}
+		layerTiming.addNanos(LayerPhase.Exposure, System.nanoTime() - showRequested);
+		layerTiming.setExposure(requestedExposureNanos, exposureEnd - exposureStart);
 		
 		logger.info("ExposureTime:{}", ()->Log4jUtil.completeTimer(EXPOSURE_TIMER));
 		
@@ -440,6 +481,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			return aid.printer.getStatus();
 		}
 		
+		long liftStart = System.nanoTime();
 		if (!aid.printJob.isZLiftDistanceOverriden() && aid.slicingProfile.getzLiftDistanceCalculator() != null && aid.slicingProfile.getzLiftDistanceCalculator().trim().length() > 0) {
 			Number value = calculate(aid, engine, aid.slicingProfile.getzLiftDistanceCalculator(), "lift distance script");
 			if (value != null) {
@@ -461,6 +503,7 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		
 		//Perform the lift gcode manipulation
 		aid.printer.getGCodeControl().executeGCodeWithTemplating(aid.printJob, aid.slicingProfile.getgCodeLift(), true);
+		layerTiming.addNanos(LayerPhase.Lift, System.nanoTime() - liftStart);
 		
 		Double buildArea = getBuildAreaMM(aid.printJob);
 		// Log slice settings (in JSON for extraction and processing)
@@ -472,7 +515,14 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		aid.printJob.completeRenderingSlice(System.currentTimeMillis() - aid.currentSliceTime, buildArea);
 		
 		//Notify the client that the printJob has increased the currentSlice
+		long notificationStart = System.nanoTime();
 		NotificationManager.jobChanged(aid.printer, aid.printJob);
+		layerTiming.addNanos(LayerPhase.Notification, System.nanoTime() - notificationStart);
+		
+		if (aid.printJob.getLayerTimeline() != null) {
+			aid.printJob.getLayerTimeline().add(layerTiming);
+		}
+		aid.layerTiming = null;
 		
 		moveToNextPrinterStep(aid.customizer, PrinterStep.PerformPreSlice);
 		
@@ -514,30 +564,51 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 	}
 
 	public void applyBulbMask(DataAid aid, ScriptEngine engine, Graphics2D g2, int width, int height) throws ScriptException {
+		Paint maskPaint = getBulbMask(aid, engine);
+		if (maskPaint == null) {
+			return;
+		}
+		
+		g2.setPaint(maskPaint);
+		g2.fillRect(0, 0, width, height);
+	}
+	
+	/**
+	 * @return the bulb mask or null if this printer doesn't use one
+	 */
+	public Paint getBulbMask(DataAid aid, ScriptEngine engine) throws ScriptException {
 		if (aid == null) {
 			throw new IllegalStateException("initializeDataAid must be called before this method");
 		}
 		
 		if (aid.slicingProfile.getProjectorGradientCalculator() == null || aid.slicingProfile.getProjectorGradientCalculator().trim().length() == 0) {
-			return;
+			return null;
 		}
 		
 		if (!aid.configuration.getMachineConfig().getMonitorDriverConfig().isUseMask()) {
-			return;
+			return null;
 		}
 		
 		try {
 			if (aid.maskPaint == null) {
 				aid.maskPaint = (Paint)TemplateEngine.runScript(aid.printJob, aid.printer, engine, aid.slicingProfile.getProjectorGradientCalculator(), "projector gradient script", null);
 			}
-			g2.setPaint(aid.maskPaint);
-			g2.fillRect(0, 0, width, height);
+			return aid.maskPaint;
 		} catch (ClassCastException e) {
 			throw new IllegalArgumentException("The result of your bulb mask script needs to evaluate to an instance of java.awt.Paint");
 		}
 	}
 
 	public BufferedImage applyImageTransforms(DataAid aid, ScriptEngine engineForManipulation, BufferedImage imageToRender) throws ScriptException, JobManagerException {
+		return applyImageTransforms(aid, engineForManipulation, imageToRender, null);
+	}
+	
+	/**
+	 * Same as applyImageTransforms(DataAid, ScriptEngine, BufferedImage), but the printable image left in the RenderingContext from an earlier
+	 * slice is written over instead of allocating a new image.
+	 * Only pass a RenderingContext whose printable image is no longer being displayed.
+	 */
+	public BufferedImage applyImageTransforms(DataAid aid, ScriptEngine engineForManipulation, BufferedImage imageToRender, RenderingContext context) throws ScriptException, JobManagerException {
 		if (aid == null) {
 			throw new IllegalStateException("initializeDataAid must be called before this method");
 		}
@@ -551,19 +622,36 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 		
 		logger.trace("Writing applyImageTransforms1Begin:{}", () -> Log4jUtil.logImage(imageToRender, "applyImageTransforms1Begin.png"));
 
-		BufferedImage imageToRenderAfterTransformations = new BufferedImage(aid.xResolution, aid.yResolution, BufferedImage.TYPE_4BYTE_ABGR);
+		BufferedImage reusableImage = context != null && context.getPrintableImage() != imageToRender?context.getPrintableImage():null;
+		if (reusableImage != null && !SliceCompositor.canWriteInto(reusableImage, aid.xResolution, aid.yResolution)) {
+			context.setPrintableImage(null);
+			ImagePool.Instance().returnImage(reusableImage);
+			reusableImage = null;
+		}
+		BufferedImage imageToRenderAfterTransformations = reusableImage != null?reusableImage:ImagePool.Instance().borrowImage(aid.xResolution, aid.yResolution, BufferedImage.TYPE_4BYTE_ABGR);
+		AffineTransform transform = aid.getAffineTransform(engineForManipulation, imageToRenderAfterTransformations, imageToRender);
+		boolean hasImageManipulation = aid.customizer.getImageManipulationCalculator() != null && aid.customizer.getImageManipulationCalculator().trim().length() > 0;
+		int[] mask = aid.compositor.getMaskPixels(getBulbMask(aid, engineForManipulation), aid.xResolution, aid.yResolution);
+		
+		//Images that only need to be moved are copied and masked in a single pass
+		if (!hasImageManipulation && SliceCompositor.canCopy(transform, imageToRender)) {
+			SliceCompositor.copyAndMask(imageToRender, transform, imageToRenderAfterTransformations, mask);
+			logger.trace("Writing applyImageTransforms5AfterBulbMask:{}", () -> Log4jUtil.logImage(imageToRenderAfterTransformations, "applyImageTransforms5AfterBulbMask.png"));
+			return imageToRenderAfterTransformations;
+		}
+		
 		Graphics2D graphicsAfterTransformations = (Graphics2D)imageToRenderAfterTransformations.getGraphics();
 		graphicsAfterTransformations.setColor(Color.BLACK);
 		graphicsAfterTransformations.fillRect(0, 0, aid.xResolution, aid.yResolution);
 		
 		logger.trace("Writing applyImageTransforms2AfterFill:{}", () -> Log4jUtil.logImage(imageToRenderAfterTransformations, "applyImageTransforms2AfterFill.png"));
 		
-		AffineTransform transform = aid.getAffineTransform(engineForManipulation, imageToRenderAfterTransformations, imageToRender);
 		graphicsAfterTransformations.drawImage(imageToRender, transform, null);
+		graphicsAfterTransformations.dispose();
 	
 		logger.trace("Writing applyImageTransforms3AfterDraw:{}", () -> Log4jUtil.logImage(imageToRenderAfterTransformations, "applyImageTransforms3AfterDraw.png"));
 
-		if (aid.customizer.getImageManipulationCalculator() != null && aid.customizer.getImageManipulationCalculator().trim().length() > 0) {
+		if (hasImageManipulation) {
 			Map<String, Object> overrides = new HashMap<>();
 			overrides.put("affineTransform", transform);
 			TemplateEngine.runScriptInImagingContext(imageToRenderAfterTransformations, imageToRender, aid.printJob, aid.printer, engineForManipulation, overrides, aid.customizer.getImageManipulationCalculator(), "Image manipulation script", false);
@@ -571,9 +659,8 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 
 		logger.trace("Writing applyImageTransforms4AfterImageManipulation:{}", () -> Log4jUtil.logImage(imageToRenderAfterTransformations, "applyImageTransforms4AfterImageManipulation.png"));
 
-		//TODO: I was using imageToRenderAfterTransformations.getGraphics() but recently changed to graphicsAfterTransformations
-		applyBulbMask(aid, engineForManipulation, graphicsAfterTransformations, aid.xResolution, aid.yResolution);
-
+		SliceCompositor.applyMask(imageToRenderAfterTransformations, mask);
+		
 		logger.trace("Writing applyImageTransforms5AfterBulbMask:{}", () -> Log4jUtil.logImage(imageToRenderAfterTransformations, "applyImageTransforms5AfterBulbMask.png"));
 		return imageToRenderAfterTransformations;
 	}
@@ -614,6 +701,15 @@ public abstract class AbstractPrintFileProcessor<G,E> implements PrintFileProces
 			return;
 		}
 	
+		//The images of this print can be used by the next one, but not while the last slice is still on the display
+		DataAid aid = job.getDataAid();
+		if (aid != null) {
+			if (aid.printer != null) {
+				aid.printer.showBlankImage();
+			}
+			aid.cache.clearAll();
+			logger.info("Image pool after print:{}", ImagePool.Instance().getMetrics());
+		}
 		job.setDataAid(null);
 	}
 }
@@ -4,16 +4,11 @@ import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedMap;
@@ -21,30 +16,32 @@ import java.util.TreeMap;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import javax.imageio.ImageIO;
+import javax.script.ScriptEngine;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
+import org.area515.resinprinter.job.render.ImagePool;
 import org.area515.resinprinter.job.render.RenderingContext;
+import org.area515.resinprinter.job.render.SlicePrefetcher;
 import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.server.HostProperties;
+import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.twodim.SimpleImageRenderer;
 import org.area515.util.IOUtilities;
+import org.area515.util.ZipArchive;
 
 import se.sawano.java.text.AlphanumericComparator;
 
 public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcessor<Object,Object> implements Previewable {
 	private static final Logger logger = LogManager.getLogger();
-	
+	private static final Pattern slicePattern = Pattern.compile("\\s*;\\s*<\\s*Slice\\s*>\\s*(\\d+|blank)\\s*", Pattern.CASE_INSENSITIVE);
 	@Override
 	public String[] getFileExtensions() {
 		return new String[]{"cws", "zip"};
@@ -68,18 +65,36 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 		return new SimpleImageRenderer(aid, this, imageIndexToBuild);
 	}
 
-	protected SortedMap<String, File> findImages(File jobFile) throws JobManagerException {
-		String [] extensions = {"png", "PNG"};
-		boolean recursive = true;
+	/**
+	 * Indexing the central directory only takes a moment, so every print and preview opens the archive it reads and closes it
+	 * when it's done instead of keeping an open file around for every printable.
+	 */
+	protected static ZipArchive openArchive(File jobFile) throws JobManagerException {
+		try {
+			ZipArchive archive = new ZipArchive(jobFile);
+			logger.info("Indexed {} entries in {}", archive.getEntries().size(), jobFile.getName());
+			return archive;
+		} catch (IOException e) {
+			throw new JobManagerException("Couldn't read archive:" + jobFile, e);
+		}
+	}
+	
+	protected static void closeArchive(ZipArchive archive) {
+		if (archive == null) {
+			return;
+		}
 		
-		Collection<File> files =
-				FileUtils.listFiles(buildExtractionDirectory(jobFile.getName()),
-				extensions, recursive);
-
-		TreeMap<String, File> images = new TreeMap<>(new AlphanumericComparator());
-
-		for (File file : files) {
-			images.put(file.getName(), file);
+		try {
+			archive.close();
+		} catch (IOException e) {
+			logger.warn("Unable to close archive:" + archive.getFile(), e);
+		}
+	}
+	
+	protected SortedMap<String, ZipArchive.Entry> findImages(ZipArchive archive) {
+		TreeMap<String, ZipArchive.Entry> images = new TreeMap<>(new AlphanumericComparator());
+		for (ZipArchive.Entry entry : archive.findEntries("png")) {
+			images.put(entry.getFileName(), entry);
 		}
 		
 		return images;
@@ -87,13 +102,15 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 
 	@Override
 	public BufferedImage renderPreviewImage(DataAid dataAid) throws SliceHandlingException {
+		ZipArchive archive = null;
 		try {
 			prepareEnvironment(dataAid.printJob.getJobFile(), dataAid.printJob);
 			
-			SortedMap<String, File> imageFiles = findImages(dataAid.printJob.getJobFile());
+			archive = openArchive(dataAid.printJob.getJobFile());
+			SortedMap<String, ZipArchive.Entry> imageFiles = findImages(archive);
 			
 			dataAid.printJob.setTotalSlices(imageFiles.size());
-			Iterator<File> imgIter = imageFiles.values().iterator();
+			Iterator<ZipArchive.Entry> imgIter = imageFiles.values().iterator();
 	
 			// Preload first image then loop
 			int sliceIndex = dataAid.customizer.getNextSlice();
@@ -105,11 +122,14 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 			if (!imgIter.hasNext()) {
 				throw new IOException("No Image Found for index:" + dataAid.customizer.getNextSlice());
 			}
-			File imageFile = imgIter.next();
+			ZipArchive.Entry imageFile = imgIter.next();
 			RenderingContext stdImage = startImageRendering(dataAid, imageFile).get();
-			return stdImage.getPrintableImage();
+			//The preview keeps the image, so it can't be left for the rendering context to return to the pool
+			return stdImage.takePrintableImage();
 		} catch (IOException | JobManagerException | InterruptedException | ExecutionException e) {
 			throw new SliceHandlingException(e);
+		} finally {
+			closeArchive(archive);
 		}
 	}
 
@@ -120,19 +140,40 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 
 	@Override
 	public JobStatus processFile(final PrintJob printJob) throws Exception {
-		File gCodeFile = findGcodeFile(printJob.getJobFile());
+		//Slices are streamed out of the archive, so it stays open until the prefetcher is done with it
+		ZipArchive archive = openArchive(printJob.getJobFile());
+		try {
+			return processArchive(printJob, archive);
+		} finally {
+			closeArchive(archive);
+		}
+	}
+	
+	private JobStatus processArchive(final PrintJob printJob, ZipArchive archive) throws Exception {
+		ZipArchive.Entry gCodeFile = findGcodeFile(archive);
 		DataAid aid = initializeJobCacheWithDataAid(printJob);
 		
 		Printer printer = printJob.getPrinter();
 		BufferedReader stream = null;
+		SlicePrefetcher prefetcher = null;
 		long startOfLastImageDisplay = -1;
 		try {
 			logger.info("Parsing file:{}", gCodeFile);
 			int padLength = determinePadLength(gCodeFile);
-			stream = new BufferedReader(new FileReader(gCodeFile));
+			
+			//Decode and transform upcoming slices while the current one is exposed
+			ScriptEngine transformEngine = aid.cache.getOrCreateIfMissing(Boolean.TRUE).getScriptEngine();
+			prefetcher = new SlicePrefetcher(
+					findSliceFiles(gCodeFile, padLength),
+					HostProperties.Instance().getCwsPrefetchSlices(),
+					Main.RENDER_EXECUTOR,
+					ImagePool.Instance(),
+					image -> applyImageTransforms(aid, transformEngine, image),
+					!hasSliceDependentTransforms(aid));
+			
+			stream = new BufferedReader(new InputStreamReader(gCodeFile.openStream()));
 			String currentLine;
 			Integer sliceCount = null;
-			Pattern slicePattern = Pattern.compile("\\s*;\\s*<\\s*Slice\\s*>\\s*(\\d+|blank)\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern liftSpeedPattern = Pattern.compile(   "\\s*;\\s*\\(?\\s*Z\\s*Lift\\s*Feed\\s*Rate\\s*=\\s*([\\d\\.]+)\\s*(?:[Mm]{2}?/[Ss])?\\s*\\)?\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern liftDistancePattern = Pattern.compile("\\s*;\\s*\\(?\\s*Lift\\s*Distance\\s*=\\s*([\\d\\.]+)\\s*(?:[Mm]{2})?\\s*\\)?\\s*", Pattern.CASE_INSENSITIVE);
 			Pattern sliceCountPattern = Pattern.compile("\\s*;\\s*Number\\s*of\\s*Slices\\s*=\\s*(\\d+)\\s*", Pattern.CASE_INSENSITIVE);
@@ -163,26 +204,30 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 							startOfLastImageDisplay = System.currentTimeMillis();
 							
 							RenderingContext data = aid.cache.getOrCreateIfMissing(Boolean.TRUE);
-							BufferedImage oldImage = data.getPrintableImage();
+							//Once this loop returns the old image to the pool the context mustn't be able to return it again
+							BufferedImage oldImage = data.takePrintableImage();
 							int incoming = Integer.parseInt(matcher.group(1));
 					//printJob.setCurrentSlice(incoming);
-							String imageNumber = String.format("%0" + padLength + "d", incoming);
-							String imageFilename = FilenameUtils.removeExtension(gCodeFile.getName()) + imageNumber + ".png";
-							File imageFile = new File(gCodeFile.getParentFile(), imageFilename);
-							BufferedImage newImage = ImageIO.read(imageFile);
-							newImage = applyImageTransforms(aid, data.getScriptEngine(), newImage);
+							ZipArchive.Entry imageFile = buildSliceFile(gCodeFile, padLength, incoming);
+							BufferedImage newImage = prefetcher.take(imageFile);
 							// applyBulbMask(aid, (Graphics2D)newImage.getGraphics(), newImage.getWidth(), newImage.getHeight());
 							data.setPrintableImage(newImage);
-							logger.info("Show picture: {}", imageFilename);
+							logger.info("Show picture: {}", imageFile.getFileName());
 							
 							//Notify the client that the printJob has increased the currentSlice
 							NotificationManager.jobChanged(printer, printJob);
 
-							printer.showImage(data.getPrintableImage(), true);
+							printer.showImage(data.getPrintableImage(), true, prefetcher.getTakenToken());
 							
-							if (oldImage != null) {
-								oldImage.flush();
+							//Upload the next slice while this one is exposed if it's already been prefetched
+							BufferedImage nextImage = prefetcher.peek();
+							if (nextImage != null) {
+								Object nextToken = prefetcher.getNextToken();
+								Main.RENDER_EXECUTOR.submit(() -> printer.stageImage(nextImage, nextToken));
 							}
+							
+							//The new image is displayed, so the old one can be used for the next slice
+							ImagePool.Instance().returnImage(oldImage);
 						}
 						continue;
 					}
@@ -269,7 +314,10 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 				} catch (IOException e) {
 				}
 			}
-			aid.cache.clearCache(Boolean.TRUE);
+			if (prefetcher != null) {
+				prefetcher.close();
+				logger.info("Prefetched slices hits:{} misses:{}", prefetcher.getHits(), prefetcher.getMisses());
+			}
 			clearDataAid(printJob);
 		}
 	}
@@ -328,16 +376,14 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 			}
 		}
 		
+		//Slices are streamed straight out of the archive, this only cleans up after older versions that extracted it
 		File extractDirectory = buildExtractionDirectory(processingFile.getName());
 		if (extractDirectory.exists()) {
 			deleteDirectory(extractDirectory);
 		}
 
-		try {
-			unpackDir(processingFile);
-		} catch (IOException e) {
-			throw new JobManagerException("Couldn't unpack new job:" + processingFile + " into working directory:" + extractDirectory, e);
-		}
+		//Fail before the print starts if the archive can't be read
+		closeArchive(openArchive(processingFile));
 	}
 
 	@Override
@@ -371,19 +417,12 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
 	}
 	
 	
-	private File findGcodeFile(File jobFile) throws JobManagerException{
+	private ZipArchive.Entry findGcodeFile(ZipArchive archive) throws JobManagerException{
 	
-            String[] extensions = {"gcode"};
-            boolean recursive = true;
-            
             //
-            // Finds files within a root directory and optionally its
-            // subdirectories which match an array of extensions. When the
-            // extensions is null all files will be returned.
+            // Finds the entries anywhere in the archive that have a gcode extension.
             //
-            // This method will returns matched file as java.io.File
-            //
-            List<File> files = new ArrayList<File>(FileUtils.listFiles(buildExtractionDirectory(jobFile.getName()), extensions, recursive));
+            List<ZipArchive.Entry> files = archive.findEntries("gcode");
 
            if (files.size() > 1){
             	throw new JobManagerException("More than one gcode file exists in print directory");
@@ -394,41 +433,53 @@ public class CreationWorkshopSceneFileProcessor extends AbstractPrintFileProcess
            return files.get(0);
 	}
 	
-	private void unpackDir(File jobFile) throws IOException, JobManagerException {
-		ZipFile zipFile = null;
-		InputStream in = null;
-		OutputStream out = null;
-		File extractDirectory = buildExtractionDirectory(jobFile.getName());
-		try {
-			zipFile = new ZipFile(jobFile, Charset.forName("CP437"));
-			Enumeration<? extends ZipEntry> entries = zipFile.entries();
-			while (entries.hasMoreElements()) {
-				ZipEntry entry = entries.nextElement();
-				File entryDestination = new File(extractDirectory, entry.getName());
-				entryDestination.getParentFile().mkdirs();
-				if (entry.isDirectory())
-					entryDestination.mkdirs();
-				else {
-					in = zipFile.getInputStream(entry);
-					out = new FileOutputStream(entryDestination);
-					IOUtils.copy(in, out);
-					IOUtils.closeQuietly(in);
-					IOUtils.closeQuietly(out);
+	/**
+	 * Scripts see the slice that is being printed when they run, so a transform that runs a script can't be done ahead of time.
+	 */
+	static boolean hasSliceDependentTransforms(DataAid aid) {
+		Customizer customizer = aid.customizer;
+		if (customizer == null) {
+			return false;
+		}
+		if (customizer.getImageManipulationCalculator() != null && customizer.getImageManipulationCalculator().trim().length() > 0) {
+			return true;
+		}
+		return customizer.getAffineTransformSettings() != null && 
+				customizer.getAffineTransformSettings().getAffineTransformScriptCalculator() != null &&
+				customizer.getAffineTransformSettings().getAffineTransformScriptCalculator().trim().length() > 0;
+	}
+	
+	private ZipArchive.Entry buildSliceFile(ZipArchive.Entry gCodeFile, int padLength, int sliceNumber) throws FileNotFoundException {
+		String imageNumber = String.format("%0" + padLength + "d", sliceNumber);
+		String imageFilename = FilenameUtils.removeExtension(gCodeFile.getFileName()) + imageNumber + ".png";
+		ZipArchive.Entry imageFile = gCodeFile.getArchive().findSibling(gCodeFile, imageFilename);
+		if (imageFile == null) {
+			throw new FileNotFoundException("Couldn't find slice image:" + imageFilename + " in " + gCodeFile.getArchive().getFile().getName());
+		}
+		return imageFile;
+	}
+	
+	/**
+	 * @return the images of every non blank slice in the order that the gcode shows them
+	 */
+	List<ZipArchive.Entry> findSliceFiles(ZipArchive.Entry gCodeFile, int padLength) throws IOException {
+		List<ZipArchive.Entry> sliceFiles = new ArrayList<ZipArchive.Entry>();
+		try (BufferedReader stream = new BufferedReader(new InputStreamReader(gCodeFile.openStream()))) {
+			String currentLine;
+			while ((currentLine = stream.readLine()) != null) {
+				Matcher matcher = slicePattern.matcher(currentLine);
+				if (matcher.matches() && !matcher.group(1).equalsIgnoreCase("BLANK")) {
+					sliceFiles.add(buildSliceFile(gCodeFile, padLength, Integer.parseInt(matcher.group(1))));
 				}
 			}
-			String basename = FilenameUtils.removeExtension(jobFile.getName());
-			logger.info("BaseName: {}", FilenameUtils.removeExtension(basename));
-			//findGcodeFile(jobFile);
-		} finally {
-			zipFile.close();
 		}
+		return sliceFiles;
 	}
 	
-	public int determinePadLength(File gCode) throws FileNotFoundException {
-		File currentFile = null;
+	public int determinePadLength(ZipArchive.Entry gCode) throws FileNotFoundException {
 		for (int t = 1; t < 10; t++) {
-			currentFile = new File(gCode.getParentFile(), FilenameUtils.removeExtension(gCode.getName()) + String.format("%0" + t + "d", 0) + ".png");
-			if (currentFile.exists()) {
+			String currentFile = FilenameUtils.removeExtension(gCode.getFileName()) + String.format("%0" + t + "d", 0) + ".png";
+			if (gCode.getArchive().findSibling(gCode, currentFile) != null) {
 				return t;
 			}
 		}
@@ -0,0 +1,280 @@
+package org.area515.resinprinter.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.Customizer.PrinterStep;
+import org.area515.resinprinter.server.HostProperties;
+import org.area515.resinprinter.server.Main;
+
+/**
+ * Keeps track of how far a print has gotten(the next slice and step of it's customizer) without rewriting the customizer's
+ * XML file several times a layer.
+ *
+ * Each customizer that is printing gets a small journal file next to it's XML file. The file is preallocated to hold a ring of
+ * fixed size records, so a checkpoint overwrites a few bytes in place instead of growing the file. Checkpoints that arrive
+ * within windowMillis of each other are coalesced, only the last one of them is written.
+ *
+ * The XML file stays the snapshot. Once a snapshot is saved that is at least as new as the journal, the journal is discarded.
+ * When a customizer is loaded after a crash or power loss, the newest valid record in it's journal is replayed on top of the snapshot.
+ */
+public class CustomizerJournal {
+    private static final Logger logger = LogManager.getLogger();
+	public static final String JOURNAL_EXTENSION = ".journal";
+
+	//sequence, nextSlice, nextStep and a checksum of the three
+	static final int RECORD_SIZE = 16;
+	static final int RECORD_COUNT = 256;
+
+	private static CustomizerJournal INSTANCE;
+
+	private File directory;
+	private long windowMillis;
+	private ScheduledExecutorService executor;
+	private Map<String, Journal> journalsByName = new HashMap<String, Journal>();
+	private long recordsWritten;
+
+	private static class Journal {
+		private String name;
+		private FileChannel channel;
+		private int sequence;
+		private long checkpoints;
+		private int pendingSlice;
+		private PrinterStep pendingStep;
+		private ScheduledFuture<?> pendingFlush;
+		private boolean pending;
+	}
+
+	private static class Record {
+		private int sequence;
+		private int nextSlice;
+		private PrinterStep nextStep;
+	}
+
+	public static synchronized CustomizerJournal Instance() {
+		if (INSTANCE == null) {
+			INSTANCE = new CustomizerJournal(HostProperties.Instance().getCustomizerDir(), HostProperties.Instance().getCustomizerJournalWindowMillis(), Main.IO_EXECUTOR);
+		}
+		return INSTANCE;
+	}
+
+	public CustomizerJournal(File directory, long windowMillis, ScheduledExecutorService executor) {
+		this.directory = directory;
+		this.windowMillis = windowMillis;
+		this.executor = executor;
+	}
+
+	File getJournalFile(String customizerName) {
+		return new File(directory, customizerName + JOURNAL_EXTENSION);
+	}
+
+	private static int checksum(ByteBuffer record) {
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 0, RECORD_SIZE - 4);
+		return (int)crc.getValue();
+	}
+
+	//Finds the newest record in the file that wasn't torn by a power loss
+	private static Record readNewestRecord(FileChannel channel) throws IOException {
+		Record newest = null;
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+		for (int recordIndex = 0; recordIndex < RECORD_COUNT; recordIndex++) {
+			buffer.clear();
+			if (channel.read(buffer, (long)recordIndex * RECORD_SIZE) < RECORD_SIZE) {
+				break;
+			}
+
+			int sequence = buffer.getInt(0);
+			int step = buffer.getInt(8);
+			if (sequence <= 0 || buffer.getInt(12) != checksum(buffer) || step < -1 || step >= PrinterStep.values().length) {
+				continue;
+			}
+			if (newest == null || sequence > newest.sequence) {
+				newest = new Record();
+				newest.sequence = sequence;
+				newest.nextSlice = buffer.getInt(4);
+				newest.nextStep = step < 0?null:PrinterStep.values()[step];
+			}
+		}
+		return newest;
+	}
+
+	private Journal openJournal(String customizerName) throws IOException {
+		Journal journal = journalsByName.get(customizerName);
+		if (journal != null) {
+			return journal;
+		}
+
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create customizer directory:" + directory);
+		}
+
+		journal = new Journal();
+		journal.name = customizerName;
+		journal.channel = new RandomAccessFile(getJournalFile(customizerName), "rw").getChannel();
+		if (journal.channel.size() < RECORD_SIZE * RECORD_COUNT) {
+			journal.channel.write(ByteBuffer.allocate((int)(RECORD_SIZE * RECORD_COUNT - journal.channel.size())), journal.channel.size());
+			journal.channel.force(true);
+		}
+
+		//Keep counting from wherever a previous run of this customizer left off
+		Record newest = readNewestRecord(journal.channel);
+		journal.sequence = newest != null?newest.sequence:0;
+		journalsByName.put(customizerName, journal);
+		return journal;
+	}
+
+	/**
+	 * Remembers where the customizer is now, it's written once the coalescing window closes.
+	 */
+	public synchronized void checkpoint(Customizer customizer) {
+		final Journal journal;
+		try {
+			journal = openJournal(customizer.getName());
+		} catch (IOException e) {
+			logger.error("Couldn't open journal for customizer:" + customizer.getName(), e);
+			return;
+		}
+
+		journal.checkpoints++;
+		journal.pendingSlice = customizer.getNextSlice();
+		journal.pendingStep = customizer.getNextStep();
+		journal.pending = true;
+		if (windowMillis <= 0) {
+			writePending(journal);
+		} else if (journal.pendingFlush == null) {
+			journal.pendingFlush = executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (CustomizerJournal.this) {
+						journal.pendingFlush = null;
+						writePending(journal);
+					}
+				}
+			}, windowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void writePending(Journal journal) {
+		if (!journal.pending || !journal.channel.isOpen()) {
+			return;
+		}
+
+		journal.pending = false;
+		journal.sequence++;
+		ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+		record.putInt(0, journal.sequence);
+		record.putInt(4, journal.pendingSlice);
+		record.putInt(8, journal.pendingStep == null?-1:journal.pendingStep.ordinal());
+		record.putInt(12, checksum(record));
+		try {
+			journal.channel.write(record, (long)((journal.sequence - 1) % RECORD_COUNT) * RECORD_SIZE);
+			//The file never changes size, so only the data needs to reach the disk
+			journal.channel.force(false);
+			recordsWritten++;
+		} catch (IOException e) {
+			logger.error("Couldn't write journal for customizer:" + journal.name, e);
+		}
+	}
+
+	/**
+	 * Writes any checkpoint that is still waiting for it's coalescing window to close.
+	 */
+	public synchronized void flush(String customizerName) {
+		Journal journal = journalsByName.get(customizerName);
+		if (journal != null) {
+			cancelPendingFlush(journal);
+			writePending(journal);
+		}
+	}
+
+	private void cancelPendingFlush(Journal journal) {
+		if (journal.pendingFlush != null) {
+			journal.pendingFlush.cancel(false);
+			journal.pendingFlush = null;
+		}
+	}
+
+	/**
+	 * @return the number of checkpoints that have been made, it's used to find out if the journal changed while a snapshot was being saved
+	 */
+	public synchronized long getCheckpointCount(String customizerName) {
+		Journal journal = journalsByName.get(customizerName);
+		return journal == null?0:journal.checkpoints;
+	}
+
+	/**
+	 * Called once a snapshot of the customizer has been saved. The journal is deleted, unless a checkpoint was made after
+	 * checkpointCount was taken, since the snapshot might be older than that checkpoint.
+	 *
+	 * @param checkpointCount from getCheckpointCount() before the snapshot was taken, or -1 to discard the journal regardless
+	 */
+	public synchronized void discard(String customizerName, long checkpointCount) {
+		Journal journal = journalsByName.get(customizerName);
+		if (journal != null) {
+			if (checkpointCount >= 0 && journal.checkpoints != checkpointCount) {
+				return;
+			}
+
+			cancelPendingFlush(journal);
+			journalsByName.remove(customizerName);
+			try {
+				journal.channel.close();
+			} catch (IOException e) {
+				logger.error("Couldn't close journal for customizer:" + customizerName, e);
+			}
+		}
+
+		File journalFile = getJournalFile(customizerName);
+		if (journalFile.exists() && !journalFile.delete()) {
+			logger.error("Couldn't delete journal:{}", journalFile);
+		}
+	}
+
+	/**
+	 * Moves a customizer that was just loaded from it's snapshot to the newest progress in it's journal.
+	 *
+	 * @return true if the journal had progress in it
+	 */
+	public synchronized boolean replay(Customizer customizer) {
+		Journal journal = journalsByName.get(customizer.getName());
+		if (journal != null) {
+			flush(customizer.getName());
+		}
+
+		File journalFile = getJournalFile(customizer.getName());
+		if (!journalFile.exists()) {
+			return false;
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "r")) {
+			Record newest = readNewestRecord(file.getChannel());
+			if (newest == null) {
+				return false;
+			}
+
+			customizer.setNextSlice(newest.nextSlice);
+			customizer.setNextStep(newest.nextStep);
+			logger.info("Replayed journal for customizer:{} nextSlice:{} nextStep:{}", customizer.getName(), newest.nextSlice, newest.nextStep);
+			return true;
+		} catch (IOException e) {
+			logger.error("Couldn't read journal for customizer:" + customizer.getName(), e);
+			return false;
+		}
+	}
+
+	synchronized long getRecordsWritten() {
+		return recordsWritten;
+	}
+}
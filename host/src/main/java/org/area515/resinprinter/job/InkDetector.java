@@ -62,6 +62,6 @@ public class InkDetector {
 	
 	public Future<Boolean> startMeasurement() {
 		detector.startMeasurement(printer);
-		return Main.GLOBAL_EXECUTOR.submit(new CPUIntensiveActionToDetermineIfEmpty());
+		return Main.RENDER_EXECUTOR.submit(new CPUIntensiveActionToDetermineIfEmpty());
 	}
 }
\ No newline at end of file
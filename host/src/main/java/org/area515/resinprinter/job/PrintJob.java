@@ -17,8 +17,10 @@ import javax.xml.bind.annotation.XmlTransient;
 
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
+import org.area515.resinprinter.job.timing.LayerTimeline;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.printer.SlicingProfile.InkConfig;
+import org.area515.resinprinter.server.HostProperties;
 import org.area515.resinprinter.services.PrinterService;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -50,6 +52,7 @@ public class PrintJob {
 	private CompletableFuture<JobStatus> futureJobStatus;
 	private CountDownLatch futureJobStatusAssigned = new CountDownLatch(1);
 	private Map<String, CompiledScript> scriptsByName = new HashMap<>();
+	private LayerTimeline layerTimeline = new LayerTimeline(HostProperties.Instance().getLayerTimelineSize());
 
 	private Customizer customizer;
 
@@ -69,6 +72,11 @@ public class PrintJob {
 		this.dataAid = dataAid;
 	}
 
+	@JsonIgnore
+	public LayerTimeline getLayerTimeline() {
+		return layerTimeline;
+	}
+
 	@JsonIgnore
 	public File getJobFile() {
 		return jobFile;
@@ -68,7 +68,7 @@ public class PrintJobManager {
 		try {
 			PrinterManager.Instance().assignPrinter(newJob, printer);
 			PrintJobSupplier worker = new PrintJobSupplier(newJob, printer);
-			futureJobStatus = CompletableFuture.supplyAsync(worker, Main.GLOBAL_EXECUTOR);
+			futureJobStatus = CompletableFuture.supplyAsync(worker, Main.PRINT_CRITICAL_EXECUTOR);
 			newJob.setPrintFileProcessor(worker.getPrintFileProcessor());
 			newJob.initializePrintJob(futureJobStatus);
 		} catch (AlreadyAssignedException e) {
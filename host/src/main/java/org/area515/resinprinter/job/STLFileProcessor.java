@@ -15,7 +15,11 @@ import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
 import org.area515.resinprinter.job.render.RenderingContext;
 import org.area515.resinprinter.printer.BuildDirection;
+import org.area515.resinprinter.server.HostProperties;
+import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.slice.CloseOffMend;
+import org.area515.resinprinter.slice.SliceCache;
+import org.area515.resinprinter.slice.SlicingPipeline;
 import org.area515.resinprinter.slice.StlError;
 import org.area515.resinprinter.slice.ZSlicer;
 import org.area515.resinprinter.stl.Triangle3d;
@@ -61,8 +65,16 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 					overrideNormals,
 					new CloseOffMend());
 			dataAid.slicer = slicer;
+			dataAid.slicer.setStlDecodeThreads(HostProperties.Instance().getStlDecodeThreads());
 			dataAid.slicer.loadFile(new FileInputStream(printJob.getJobFile()), null, null);
 			printJob.setTotalSlices(slicer.getZMaxIndex() - slicer.getZMinIndex());
+			openSliceCache(dataAid, overrideNormals);
+			
+			//Slice layers ahead of the exposure loop on their own threads
+			int layersAhead = HostProperties.Instance().getSliceLookAheadLayers();
+			if (layersAhead > 0) {
+				dataAid.slicingPipeline = new SlicingPipeline(slicer, Main.SLICING_EXECUTOR, layersAhead, dataAid.slicingProfile.getDirection().getVector());
+			}
 			
 			//Get the slicer queued up for the first image;
 			int startPoint = dataAid.slicingProfile.getDirection() == BuildDirection.Bottom_Up?(slicer.getZMinIndex() + 1 + dataAid.customizer.getNextSlice()): (slicer.getZMaxIndex() + 1);
@@ -102,7 +114,7 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 				}
 				
 				//Performs all of the duties that are common to most print files
-				status = printImageAndPerformPostProcessing(dataAid, renderedData.getScriptEngine(), renderedData.getPrintableImage());
+				status = printImageAndPerformPostProcessing(dataAid, renderedData.getScriptEngine(), renderedData.getPrintableImage(), renderedData.getSliceToken());
 				if (status != null) {
 					return status;
 				}
@@ -110,6 +122,13 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 			
 			return performFooter(dataAid);
 		} finally {
+			STLDataAid dataAid = (STLDataAid)getDataAid(printJob);
+			if (dataAid != null && dataAid.slicingPipeline != null) {
+				dataAid.slicingPipeline.shutdown();
+			}
+			if (dataAid != null) {
+				closeSliceCache(dataAid);
+			}
 			clearDataAid(printJob);
 		}
 	}
@@ -128,18 +147,57 @@ public class STLFileProcessor extends AbstractPrintFileProcessor<Iterator<Triang
 					true, 
 					overrideNormals,
 					new CloseOffMend());
+			dataAid.slicer.setStlDecodeThreads(HostProperties.Instance().getStlDecodeThreads());
 			dataAid.slicer.loadFile(new FileInputStream(dataAid.printJob.getJobFile()), null, null);
 			dataAid.printJob.setTotalSlices(dataAid.slicer.getZMaxIndex() - dataAid.slicer.getZMinIndex());
+			openSliceCache(dataAid, overrideNormals);
 			//Get the slicer queued up for the first image;
 			dataAid.slicer.setZIndex(dataAid.slicer.getZMinIndex() + dataAid.customizer.getNextSlice());
 			Object nextRenderingPointer = dataAid.cache.getCurrentRenderingPointer();
 			STLImageRenderer renderer = new STLImageRenderer(dataAid, this, nextRenderingPointer, true);
-			return renderer.call().getPrintableImage();
+			//The preview keeps the image, so it can't be left for the rendering context to return to the pool
+			return renderer.call().takePrintableImage();
 		} catch (IOException | JobManagerException e) {
 			throw new SliceHandlingException(e);
 		} catch (OutOfMemoryError e) {
 			throw new SliceHandlingException(TOO_LARGE + aid.printJob.getJobFile(), e);
+		} finally {
+			closeSliceCache((STLDataAid)aid);
+		}
+	}
+	
+	//Slices are cached by the content of the model and every setting that changes the geometry of a slice
+	private void openSliceCache(STLDataAid dataAid, boolean overrideNormals) {
+		if (!HostProperties.Instance().isUseSliceCache()) {
+			return;
+		}
+		
+		ZSlicer slicer = dataAid.slicer;
+		String settings = dataAid.customizer.getZScale() + ":" + dataAid.xPixelsPerMM + ":" + dataAid.yPixelsPerMM + ":" + dataAid.sliceHeight + ":" + overrideNormals;
+		try {
+			slicer.setSliceCache(SliceCache.open(
+					HostProperties.Instance().getSliceCacheDir(), 
+					dataAid.printJob.getJobFile(), 
+					settings, 
+					slicer.getZMinIndex(), 
+					slicer.getZMaxIndex() - slicer.getZMinIndex() + 2, 
+					HostProperties.Instance().getSliceCacheMaxFiles()));
+		} catch (IOException e) {
+			logger.error("Couldn't open slice cache for:" + dataAid.printJob.getJobFile(), e);
+		}
+	}
+	
+	private void closeSliceCache(STLDataAid dataAid) {
+		if (dataAid.slicer == null || dataAid.slicer.getSliceCache() == null) {
+			return;
+		}
+		
+		try {
+			dataAid.slicer.getSliceCache().close();
+		} catch (IOException e) {
+			logger.error("Couldn't close slice cache:" + dataAid.slicer.getSliceCache().getCacheFile(), e);
 		}
+		dataAid.slicer.setSliceCache(null);
 	}
 
 	@Override
@@ -5,12 +5,15 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.TexturePaint;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutionException;
 
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
+import org.area515.resinprinter.job.render.ImagePool;
 
 public class STLImageRenderer extends CurrentImageRenderer {
 	private boolean previewMode;
+	private int zIndex;
 	
 	public class HatchPaint extends TexturePaint {
 		public HatchPaint(int hatchSize, int lineWidth, Color col1, Color col2) {
@@ -54,13 +57,37 @@ public class STLImageRenderer extends CurrentImageRenderer {
 	public STLImageRenderer(DataAid aid, AbstractPrintFileProcessor<?,?> processor, Object imageIndexToBuild, boolean previewMode) {
 		super(aid, processor, imageIndexToBuild);
 		this.previewMode = previewMode;
+		this.zIndex = ((STLDataAid)aid).slicer.getZIndex();
 	}
 
 	@Override
-	public BufferedImage renderImage(BufferedImage imageToDisplay) {
+	public BufferedImage renderImage(BufferedImage imageToDisplay) throws JobManagerException {
 		STLDataAid aid = (STLDataAid)this.aid;
-		aid.slicer.colorizePolygons(null, null);
-		if (imageToDisplay == null) {
+		if (aid.slicingPipeline != null) {
+			try {
+				aid.slicer.useSlice(aid.slicingPipeline.getSlice(zIndex));
+			} catch (InterruptedException | ExecutionException e) {
+				throw new JobManagerException("Unable to slice z index:" + zIndex, e);
+			}
+		} else {
+			aid.slicer.useSlice(aid.slicer.getSlice(zIndex));
+		}
+		//Printed slices are only black and white, so they are written straight into a single byte per pixel
+		if (!previewMode) {
+			if (imageToDisplay == null || 
+				imageToDisplay.getType() != BufferedImage.TYPE_BYTE_GRAY || 
+				imageToDisplay.getWidth() != (int)aid.slicer.getWidthPixels() || 
+				imageToDisplay.getHeight() != (int)aid.slicer.getHeightPixels()) {
+				ImagePool.Instance().returnImage(imageToDisplay);
+				imageToDisplay = ImagePool.Instance().borrowImage((int)aid.slicer.getWidthPixels(), (int)aid.slicer.getHeightPixels(), BufferedImage.TYPE_BYTE_GRAY);
+			}
+			
+			aid.slicer.rasterizeSlice(imageToDisplay);
+			return imageToDisplay;
+		}
+		
+		if (imageToDisplay == null || imageToDisplay.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+			ImagePool.Instance().returnImage(imageToDisplay);
 			imageToDisplay = buildImage((int)aid.slicer.getWidthPixels(), (int)aid.slicer.getHeightPixels());
 		}
 		
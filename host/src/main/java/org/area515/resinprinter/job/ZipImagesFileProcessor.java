@@ -8,6 +8,7 @@ import java.util.concurrent.Future;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.job.render.RenderingContext;
+import org.area515.util.ZipArchive;
 
 public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor {
 	private static final Logger logger = LogManager.getLogger();
@@ -31,16 +32,17 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor {
 	
 	@Override
 	public JobStatus processFile(PrintJob printJob) throws Exception {
+		ZipArchive archive = openArchive(printJob.getJobFile());
 		try {
 			DataAid dataAid = initializeJobCacheWithDataAid(printJob);
 
-			SortedMap<String, File> imageFiles = findImages(printJob.getJobFile());
+			SortedMap<String, ZipArchive.Entry> imageFiles = findImages(archive);
 
 			printJob.setTotalSlices(imageFiles.size());
 
 			performHeader(dataAid);
 
-			Iterator<File> imgIter = imageFiles.values().iterator();
+			Iterator<ZipArchive.Entry> imgIter = imageFiles.values().iterator();
 			
 			// Iterate the image stack up to the slice index requested by the customizer
 			if (imgIter.hasNext()) {
@@ -53,7 +55,7 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor {
 
 			// Preload first image then loop
 			if (imgIter.hasNext()) {
-				File imageFile = imgIter.next();
+				ZipArchive.Entry imageFile = imgIter.next();
 				Future<RenderingContext> prepareImage = startImageRendering(dataAid, imageFile);
 				boolean slicePending = true;
 
@@ -74,7 +76,7 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor {
 						slicePending = false;
 					}
 
-					status = printImageAndPerformPostProcessing(dataAid, imageData.getScriptEngine(), imageData.getPrintableImage());
+					status = printImageAndPerformPostProcessing(dataAid, imageData.getScriptEngine(), imageData.getPrintableImage(), imageData.getSliceToken());
 
 					if (status != null) {
 						return status;
@@ -85,6 +87,7 @@ public class ZipImagesFileProcessor extends CreationWorkshopSceneFileProcessor {
 			return performFooter(dataAid);
 		} finally {
 			clearDataAid(printJob);
+			closeArchive(archive);
 		}
 	}
 	
@@ -28,7 +28,7 @@ public abstract class CurrentImageRenderer implements Callable<RenderingContext>
 	}
 	
 	public BufferedImage buildImage(int renderedWidth, int renderedHeight) {
-		return new BufferedImage(renderedWidth, renderedHeight, BufferedImage.TYPE_4BYTE_ABGR);
+		return ImagePool.Instance().borrowClearedImage(renderedWidth, renderedHeight, BufferedImage.TYPE_4BYTE_ABGR);
 	}
 	
 	public RenderingContext call() throws JobManagerException {
@@ -38,18 +38,31 @@ public abstract class CurrentImageRenderer implements Callable<RenderingContext>
 		preImageLock.lock();
 		try {
 			//Do not try to optimize this call out, we need to depend on our ImageRenderer to determine if they want to load a file or not, see: org.area515.resinprinter.twodim.SimpleImageRenderer
+			long renderStart = System.nanoTime();
 			BufferedImage image = renderImage(preImageCache.getPreTransformedImage());
+			preImageCache.setRenderNanos(System.nanoTime() - renderStart);
 			preImageCache.setPreTransformedImage(image);
 			logger.trace("Writing applyTransformsToRenderedData1pre" + imageIndexToBuild + ":{}", () -> Log4jUtil.logImage(image, "applyTransformsToRenderedData1pre" + imageIndexToBuild + ".png"));
 
-			BufferedImage after = processor.applyImageTransforms(aid, preImageCache.getScriptEngine(), image);
+			//The printable image in this context isn't displayed anymore, so it's written over
+			long transformStart = System.nanoTime();
+			BufferedImage after = processor.applyImageTransforms(aid, preImageCache.getScriptEngine(), image, preImageCache);
+			preImageCache.setTransformNanos(System.nanoTime() - transformStart);
 			preImageCache.setPrintableImage(after);
 			logger.trace("Writing applyTransformsToRenderedData2pre" + imageIndexToBuild + ":{}", () -> Log4jUtil.logImage(image, "applyTransformsToRenderedData2pre" + imageIndexToBuild + ".png"));
 
 			if (!aid.optimizeWithPreviewMode) {
-				long pixelArea = computePixelArea(image);//TODO: shouldn't this be after?
+				//Counted before the slice is moved, scaled or masked, exposure and area scripts are written against this number
+				long pixelArea = computePixelArea(image);
 				preImageCache.setArea((double)pixelArea);
 				logger.info("Loaded {} with {} non-black pixels in {}ms", imageIndexToBuild, pixelArea, System.currentTimeMillis()-startTime);
+				
+				//This is usually the next slice, so let the display upload it while the current slice is exposed
+				Object sliceToken = new Object();
+				preImageCache.setSliceToken(sliceToken);
+				if (aid.printer != null) {
+					aid.printer.stageImage(after, sliceToken);
+				}
 			}
 			return preImageCache;
 		} catch (ScriptException e) {
@@ -73,7 +86,7 @@ public abstract class CurrentImageRenderer implements Callable<RenderingContext>
 	 * @param image
 	 * @return
 	 */
-	private long computePixelArea(BufferedImage image) throws JobManagerException {
+	protected long computePixelArea(BufferedImage image) throws JobManagerException {
 		int type = image.getType();
 		if (type != BufferedImage.TYPE_3BYTE_BGR
 				&& type != BufferedImage.TYPE_4BYTE_ABGR
@@ -0,0 +1,202 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.area515.resinprinter.server.HostProperties;
+
+/**
+ * Keeps full resolution slice images around once they are no longer needed so that the next slice can use them instead of
+ * allocating a new image. Allocating(and later collecting) a framebuffer sized image for every slice causes long full GCs on
+ * small machines while a layer is being exposed.
+ *
+ * Images are pooled by width, height and image type. The pool never holds more than maxImages idle images, anything beyond that
+ * is left to the garbage collector.
+ */
+public class ImagePool {
+	private static ImagePool INSTANCE;
+
+	private int maxImages;
+	private int idleImages;
+	private long idleBytes;
+	private Map<String, Deque<BufferedImage>> imagesByKey = new HashMap<String, Deque<BufferedImage>>();
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong returns = new AtomicLong();
+	private AtomicLong discards = new AtomicLong();
+
+	public static class Metrics {
+		private long hits;
+		private long misses;
+		private long returns;
+		private long discards;
+		private int idleImages;
+		private long idleBytes;
+		private int maxImages;
+
+		public long getHits() {
+			return hits;
+		}
+		public long getMisses() {
+			return misses;
+		}
+		public long getReturns() {
+			return returns;
+		}
+		public long getDiscards() {
+			return discards;
+		}
+		public int getIdleImages() {
+			return idleImages;
+		}
+		public long getIdleBytes() {
+			return idleBytes;
+		}
+		public int getMaxImages() {
+			return maxImages;
+		}
+
+		public String toString() {
+			return "hits:" + hits + " misses:" + misses + " returns:" + returns + " discards:" + discards + " idleImages:" + idleImages + " idleBytes:" + idleBytes;
+		}
+	}
+
+	public static synchronized ImagePool Instance() {
+		if (INSTANCE == null) {
+			INSTANCE = new ImagePool(HostProperties.Instance().getImagePoolMaxImages());
+		}
+		return INSTANCE;
+	}
+
+	public ImagePool(int maxImages) {
+		this.maxImages = maxImages;
+	}
+
+	private static String getKey(int width, int height, int type) {
+		return width + "x" + height + ":" + type;
+	}
+
+	private static long getSize(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long)buffer.getSize() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+
+	//Subimages share their pixels with another image, so they can never be handed out to someone else
+	private static boolean isPoolable(BufferedImage image) {
+		if (image.getType() == BufferedImage.TYPE_CUSTOM || image.getRaster().getParent() != null) {
+			return false;
+		}
+
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return buffer.getNumBanks() == 1 && buffer.getOffset() == 0 && (buffer instanceof DataBufferByte || buffer instanceof DataBufferInt);
+	}
+
+	private synchronized BufferedImage pollImage(int width, int height, int type) {
+		Deque<BufferedImage> images = imagesByKey.get(getKey(width, height, type));
+		BufferedImage image = images != null?images.pollFirst():null;
+		if (image != null) {
+			idleImages--;
+			idleBytes -= getSize(image);
+		}
+		return image;
+	}
+
+	/**
+	 * The pixels of the image that is returned are whatever the last user left behind.
+	 */
+	public BufferedImage borrowImage(int width, int height, int type) {
+		BufferedImage image = pollImage(width, height, type);
+		if (image != null) {
+			hits.incrementAndGet();
+			return image;
+		}
+
+		misses.incrementAndGet();
+		return new BufferedImage(width, height, type);
+	}
+
+	/**
+	 * Same as borrowImage(), but every pixel is zero(transparent black), just like a new image.
+	 */
+	public BufferedImage borrowClearedImage(int width, int height, int type) {
+		BufferedImage image = pollImage(width, height, type);
+		if (image == null) {
+			misses.incrementAndGet();
+			return new BufferedImage(width, height, type);
+		}
+
+		hits.incrementAndGet();
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		if (buffer instanceof DataBufferByte) {
+			Arrays.fill(((DataBufferByte)buffer).getData(), (byte)0);
+		} else {
+			Arrays.fill(((DataBufferInt)buffer).getData(), 0);
+		}
+		return image;
+	}
+
+	/**
+	 * Hands an image back to the pool. The caller must not use the image, or hand it to anyone else afterwards.
+	 */
+	public void returnImage(BufferedImage image) {
+		if (image == null) {
+			return;
+		}
+		if (!isPoolable(image)) {
+			discards.incrementAndGet();
+			return;
+		}
+
+		synchronized (this) {
+			String key = getKey(image.getWidth(), image.getHeight(), image.getType());
+			Deque<BufferedImage> images = imagesByKey.get(key);
+			if (images == null) {
+				images = new ArrayDeque<BufferedImage>();
+				imagesByKey.put(key, images);
+			}
+
+			//An image that is returned twice would be handed out to two different users
+			for (BufferedImage current : images) {
+				if (current == image) {
+					return;
+				}
+			}
+
+			if (idleImages >= maxImages) {
+				discards.incrementAndGet();
+				return;
+			}
+
+			images.addFirst(image);
+			idleImages++;
+			idleBytes += getSize(image);
+			returns.incrementAndGet();
+		}
+	}
+
+	public synchronized void clear() {
+		imagesByKey.clear();
+		idleImages = 0;
+		idleBytes = 0;
+	}
+
+	public synchronized Metrics getMetrics() {
+		Metrics metrics = new Metrics();
+		metrics.hits = hits.get();
+		metrics.misses = misses.get();
+		metrics.returns = returns.get();
+		metrics.discards = discards.get();
+		metrics.idleImages = idleImages;
+		metrics.idleBytes = idleBytes;
+		metrics.maxImages = maxImages;
+		return metrics;
+	}
+}
@@ -10,18 +10,37 @@ import org.apache.logging.log4j.Logger;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 
 public class RenderingCache {
 	private static final Logger logger = LogManager.getLogger();
-	private LoadingCache<Object, RenderingContext> imageSync = CacheBuilder.newBuilder().softValues().build(
+	//The image being displayed, the one being rendered and a couple of older ones. A single segment keeps the eviction in true LRU order.
+	private static final int MAX_CONTEXTS = 4;
+	
+	private LoadingCache<Object, RenderingContext> imageSync;
+	private Object currentImagePointer = Boolean.TRUE;
+	
+	public RenderingCache() {
+		this(ImagePool.Instance());
+	}
+	
+	//Contexts that fall out of the cache hand the images they still own to the pool instead of leaving them to the garbage collector
+	public RenderingCache(ImagePool pool) {
+		imageSync = CacheBuilder.newBuilder().maximumSize(MAX_CONTEXTS).concurrencyLevel(1).removalListener(
+			new RemovalListener<Object, RenderingContext>() {
+				@Override
+				public void onRemoval(RemovalNotification<Object, RenderingContext> notification) {
+					notification.getValue().returnImages(pool);
+				}
+			}).build(
 			new CacheLoader<Object, RenderingContext>() {
 				@Override
 				public RenderingContext load(Object key) throws Exception {
 					return new RenderingContext();
 				}
 			});
-	
-	private Object currentImagePointer = Boolean.TRUE;
+	}
 
 	public RenderingContext getOrCreateIfMissing(Object imageToBuild) {
 		try {
@@ -36,6 +55,17 @@ public class RenderingCache {
 		imageSync.invalidate(imageToBuild);
 	}
 	
+	public void clearAll() {
+		imageSync.invalidateAll();
+	}
+	
+	/**
+	 * @return the context that is currently displayed, without creating it
+	 */
+	public RenderingContext getCurrentContext() {
+		return imageSync.getIfPresent(currentImagePointer);
+	}
+	
 	public ReentrantLock getCurrentLock() {
 		return getOrCreateIfMissing(currentImagePointer).getLock();
 	}
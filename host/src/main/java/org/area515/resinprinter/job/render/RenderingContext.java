@@ -11,6 +11,9 @@ public class RenderingContext {
 	private BufferedImage image;
 	private BufferedImage preTransformedImage;
 	private Double area;
+	private long renderNanos;
+	private long transformNanos;
+	private Object sliceToken;
 	private ReentrantLock lock = new ReentrantLock();
 	private ScriptEngine scriptEngine = HostProperties.Instance().buildScriptEngine();
 	
@@ -23,6 +26,19 @@ public class RenderingContext {
 	public BufferedImage getPrintableImage() {
 		return this.image;
 	}
+	
+	/**
+	 * Removes the printable image from this context and makes the caller it's only owner. The context will never give it to the
+	 * ImagePool, so anything that keeps the image after the context could be evicted(a preview, the slice on the display) must take it.
+	 */
+	public BufferedImage takePrintableImage() {
+		BufferedImage takenImage = image;
+		if (preTransformedImage == image) {
+			preTransformedImage = null;
+		}
+		image = null;
+		return takenImage;
+	}
 
 	public BufferedImage getPreTransformedImage() {
 		return preTransformedImage;
@@ -38,6 +54,30 @@ public class RenderingContext {
 		return this.area;
 	}
 	
+	public long getRenderNanos() {
+		return renderNanos;
+	}
+	public void setRenderNanos(long renderNanos) {
+		this.renderNanos = renderNanos;
+	}
+
+	public long getTransformNanos() {
+		return transformNanos;
+	}
+	public void setTransformNanos(long transformNanos) {
+		this.transformNanos = transformNanos;
+	}
+	
+	/**
+	 * @return the token that the printable image was staged on the display with, a new one is made every time the context is rendered
+	 */
+	public Object getSliceToken() {
+		return sliceToken;
+	}
+	public void setSliceToken(Object sliceToken) {
+		this.sliceToken = sliceToken;
+	}
+	
 	public ReentrantLock getLock() {
 		return lock;
 	}
@@ -45,4 +85,24 @@ public class RenderingContext {
 	public ScriptEngine getScriptEngine() {
 		return scriptEngine;
 	}
+	
+	/**
+	 * Gives the images this context still owns to the pool, unless this context is still rendering.
+	 */
+	public void returnImages(ImagePool pool) {
+		if (!lock.tryLock()) {
+			return;
+		}
+		
+		try {
+			pool.returnImage(image);
+			if (preTransformedImage != image) {
+				pool.returnImage(preTransformedImage);
+			}
+			image = null;
+			preTransformedImage = null;
+		} finally {
+			lock.unlock();
+		}
+	}
 }
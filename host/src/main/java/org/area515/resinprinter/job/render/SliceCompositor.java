@@ -0,0 +1,229 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Builds the printable image of a slice in a single sweep over the destination pixels.
+ *
+ * Without this, every slice was filled black, had the rendered image drawn onto it through an AffineTransform and then had the bulb
+ * mask painted over it. Here, a source that only needs to be moved by a whole number of pixels is copied row by row and the bulb
+ * mask is applied from a precomputed raster as each pixel is written.
+ *
+ * The lit pixels of a slice aren't counted here. The area of a slice has always been counted on the image before it's transformed,
+ * see CurrentImageRenderer.
+ *
+ * The destination is always a TYPE_4BYTE_ABGR image, every pixel of it is written so it can be an image that is no longer displayed
+ * instead of a new one.
+ */
+public class SliceCompositor {
+	private Paint maskPaint;
+	private int[] maskPixels;
+	private int maskWidth;
+	private int maskHeight;
+
+	/**
+	 * @return true if the image can be used as a destination of the given size
+	 */
+	public static boolean canWriteInto(BufferedImage image, int width, int height) {
+		return image.getType() == BufferedImage.TYPE_4BYTE_ABGR &&
+				image.getWidth() == width &&
+				image.getHeight() == height &&
+				isDirectlyAccessible(image.getRaster());
+	}
+
+	/**
+	 * The bulb mask is painted once into a premultiplied raster and reused until the paint or resolution changes.
+	 *
+	 * @return The premultiplied ARGB value of the mask for every pixel or null if there is no mask
+	 */
+	public synchronized int[] getMaskPixels(Paint paint, int width, int height) {
+		if (paint == null) {
+			return null;
+		}
+		if (paint == maskPaint && maskWidth == width && maskHeight == height) {
+			return maskPixels;
+		}
+
+		BufferedImage maskImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		Graphics2D graphics = maskImage.createGraphics();
+		try {
+			graphics.setPaint(paint);
+			graphics.fillRect(0, 0, width, height);
+		} finally {
+			graphics.dispose();
+		}
+
+		maskPixels = ((DataBufferInt)maskImage.getRaster().getDataBuffer()).getData();
+		maskPaint = paint;
+		maskWidth = width;
+		maskHeight = height;
+		return maskPixels;
+	}
+
+	/**
+	 * @return true if the transform only moves the image by a whole number of pixels and the source can be read directly
+	 */
+	public static boolean canCopy(AffineTransform transform, BufferedImage source) {
+		if ((transform.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0) {
+			return false;
+		}
+		if (transform.getTranslateX() != Math.rint(transform.getTranslateX()) || transform.getTranslateY() != Math.rint(transform.getTranslateY())) {
+			return false;
+		}
+
+		switch (source.getType()) {
+		case BufferedImage.TYPE_BYTE_GRAY:
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_ARGB:
+			return isDirectlyAccessible(source.getRaster());
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isDirectlyAccessible(Raster raster) {
+		return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0 && raster.getDataBuffer().getOffset() == 0;
+	}
+
+	/**
+	 * Copies the source into the destination at the translation given by the transform(see canCopy()), writes black everywhere
+	 * else and applies the mask to every pixel in the same pass.
+	 *
+	 * @param mask from getMaskPixels(), or null if there isn't one
+	 */
+	public static void copyAndMask(BufferedImage source, AffineTransform transform, BufferedImage destination, int[] mask) {
+		int offsetX = (int)transform.getTranslateX();
+		int offsetY = (int)transform.getTranslateY();
+		int width = destination.getWidth();
+		int height = destination.getHeight();
+		byte[] pixels = ((DataBufferByte)destination.getRaster().getDataBuffer()).getData();
+		int stride = ((ComponentSampleModel)destination.getSampleModel()).getScanlineStride();
+
+		int type = source.getType();
+		byte[] sourceBytes = null;
+		int[] sourceInts = null;
+		int sourceStride;
+		if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+			sourceInts = ((DataBufferInt)source.getRaster().getDataBuffer()).getData();
+			sourceStride = ((SinglePixelPackedSampleModel)source.getSampleModel()).getScanlineStride();
+		} else {
+			sourceBytes = ((DataBufferByte)source.getRaster().getDataBuffer()).getData();
+			sourceStride = ((ComponentSampleModel)source.getSampleModel()).getScanlineStride();
+		}
+
+		//The part of the destination that the source lands on
+		int startX = Math.max(offsetX, 0);
+		int endX = Math.min(offsetX + source.getWidth(), width);
+		int startY = Math.max(offsetY, 0);
+		int endY = Math.min(offsetY + source.getHeight(), height);
+
+		for (int y = 0; y < height; y++) {
+			int row = y * stride;
+			int maskRow = y * width;
+			int sourceRow = (y - offsetY) * sourceStride;
+			boolean sourceRowVisible = y >= startY && y < endY;
+			for (int x = 0; x < width; x++) {
+				int r = 0;
+				int g = 0;
+				int b = 0;
+				if (sourceRowVisible && x >= startX && x < endX) {
+					int sourceX = x - offsetX;
+					switch (type) {
+					case BufferedImage.TYPE_BYTE_GRAY:
+						r = g = b = sourceBytes[sourceRow + sourceX] & 0xff;
+						break;
+					case BufferedImage.TYPE_3BYTE_BGR: {
+						int index = sourceRow + sourceX * 3;
+						b = sourceBytes[index] & 0xff;
+						g = sourceBytes[index + 1] & 0xff;
+						r = sourceBytes[index + 2] & 0xff;
+						break;
+					}
+					case BufferedImage.TYPE_4BYTE_ABGR: {
+						//Drawn over black, so the color is scaled by it's alpha
+						int index = sourceRow + sourceX * 4;
+						int alpha = sourceBytes[index] & 0xff;
+						b = multiply(sourceBytes[index + 1] & 0xff, alpha);
+						g = multiply(sourceBytes[index + 2] & 0xff, alpha);
+						r = multiply(sourceBytes[index + 3] & 0xff, alpha);
+						break;
+					}
+					case BufferedImage.TYPE_INT_RGB: {
+						int pixel = sourceInts[sourceRow + sourceX];
+						r = (pixel >> 16) & 0xff;
+						g = (pixel >> 8) & 0xff;
+						b = pixel & 0xff;
+						break;
+					}
+					case BufferedImage.TYPE_INT_ARGB: {
+						int pixel = sourceInts[sourceRow + sourceX];
+						int alpha = pixel >>> 24;
+						r = multiply((pixel >> 16) & 0xff, alpha);
+						g = multiply((pixel >> 8) & 0xff, alpha);
+						b = multiply(pixel & 0xff, alpha);
+						break;
+					}
+					}
+				}
+
+				writePixel(pixels, row + x * 4, r, g, b, mask == null?0:mask[maskRow + x]);
+			}
+		}
+	}
+
+	/**
+	 * Used when the image had to be drawn through Graphics2D. This applies the mask without painting it through Graphics2D.
+	 *
+	 * @param image A TYPE_4BYTE_ABGR image that is opaque
+	 * @param mask from getMaskPixels(), or null if there isn't one
+	 */
+	public static void applyMask(BufferedImage image, int[] mask) {
+		if (mask == null) {
+			return;
+		}
+
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		int stride = ((ComponentSampleModel)image.getSampleModel()).getScanlineStride();
+
+		for (int y = 0; y < height; y++) {
+			int row = y * stride;
+			int maskRow = y * width;
+			for (int x = 0; x < width; x++) {
+				int index = row + x * 4;
+				writePixel(pixels, index, pixels[index + 3] & 0xff, pixels[index + 2] & 0xff, pixels[index + 1] & 0xff, mask[maskRow + x]);
+			}
+		}
+	}
+
+	//The mask is painted over an opaque pixel, so it's the premultiplied mask color plus whatever the mask lets through
+	private static void writePixel(byte[] pixels, int index, int r, int g, int b, int maskPixel) {
+		int maskAlpha = maskPixel >>> 24;
+		if (maskAlpha != 0) {
+			int through = 255 - maskAlpha;
+			r = ((maskPixel >> 16) & 0xff) + multiply(r, through);
+			g = ((maskPixel >> 8) & 0xff) + multiply(g, through);
+			b = (maskPixel & 0xff) + multiply(b, through);
+		}
+
+		pixels[index] = (byte)0xff;
+		pixels[index + 1] = (byte)b;
+		pixels[index + 2] = (byte)g;
+		pixels[index + 3] = (byte)r;
+	}
+
+	private static int multiply(int value, int alpha) {
+		return (value * alpha + 127) / 255;
+	}
+}
@@ -0,0 +1,284 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Decodes and transforms the slice images that a print is about to show while the current slice is being exposed, so that
+ * showing the next slice is only a matter of taking a frame that is already finished.
+ *
+ * Up to lookahead slices are decoded at once, but only one of them is transformed at a time since transforms share the state of
+ * the print(affine transform, bulb mask and script engine). Decoded images are read into pooled images whenever the image type
+ * allows it and are given back to the pool as soon as they are transformed.
+ *
+ * Transforms that depend on the slice being printed(scripts that read $CURSLICE and friends) can't run ahead of the print. When
+ * transformAhead is false only the decode is prefetched and the transform runs in take(), on the print thread, exactly where it
+ * would have run without a prefetcher.
+ *
+ * Slices are read from a SliceSource, an image file or an entry of a ZipArchive.
+ */
+public class SlicePrefetcher implements AutoCloseable {
+	private static final Logger logger = LogManager.getLogger();
+
+	private List<? extends SliceSource> sliceFiles;
+	private int nextSlice;
+	private int lookahead;
+	private ExecutorService executor;
+	private ImagePool pool;
+	private SliceTransformer transformer;
+	private boolean transformAhead;
+	private ReentrantLock transformLock = new ReentrantLock();
+	private Deque<Frame> frames = new ArrayDeque<Frame>();
+	private Frame takenFrame;
+	private volatile boolean closed;
+	private long hits;
+	private long misses;
+
+	public interface SliceTransformer {
+		public BufferedImage transform(BufferedImage decodedImage) throws Exception;
+	}
+
+	private static class Frame {
+		private int sliceIndex;
+		private SliceSource sliceFile;
+		private Future<BufferedImage> image;
+		private volatile boolean peeked;
+		//Guarded by the frame, decides whether the task or discard gives the image back to the pool
+		private boolean discarded;
+		private BufferedImage finishedImage;
+	}
+
+	public SlicePrefetcher(List<? extends SliceSource> sliceFiles, int lookahead, ExecutorService executor, ImagePool pool, SliceTransformer transformer) {
+		this(sliceFiles, lookahead, executor, pool, transformer, true);
+	}
+
+	public SlicePrefetcher(List<? extends SliceSource> sliceFiles, int lookahead, ExecutorService executor, ImagePool pool, SliceTransformer transformer, boolean transformAhead) {
+		this.sliceFiles = sliceFiles;
+		this.transformAhead = transformAhead;
+		this.lookahead = Math.max(lookahead, 1);
+		this.executor = executor;
+		this.pool = pool;
+		this.transformer = transformer;
+		fillLookahead();
+	}
+
+	private void fillLookahead() {
+		while (!closed && frames.size() < lookahead && nextSlice < sliceFiles.size()) {
+			prefetchNext();
+		}
+	}
+
+	private void prefetchNext() {
+		Frame frame = new Frame();
+		frame.sliceIndex = nextSlice;
+		frame.sliceFile = sliceFiles.get(nextSlice++);
+		frame.image = executor.submit(() -> {
+			BufferedImage image = transformAhead?buildFrame(frame.sliceFile):decode(frame.sliceFile, pool);
+			synchronized (frame) {
+				//Nobody is going to take this frame anymore
+				if (frame.discarded) {
+					pool.returnImage(image);
+					return null;
+				}
+				frame.finishedImage = image;
+			}
+			return image;
+		});
+		frames.add(frame);
+	}
+
+	private BufferedImage buildFrame(SliceSource sliceFile) throws Exception {
+		return transform(decode(sliceFile, pool));
+	}
+
+	private BufferedImage transform(BufferedImage decodedImage) throws Exception {
+		BufferedImage transformedImage;
+		transformLock.lock();
+		try {
+			transformedImage = transformer.transform(decodedImage);
+		} finally {
+			transformLock.unlock();
+		}
+		if (transformedImage != decodedImage) {
+			pool.returnImage(decodedImage);
+		}
+		return transformedImage;
+	}
+
+	//Indexed and packed images carry their own palette so a pooled image of the same type still wouldn't match
+	private static boolean isPoolable(int imageType) {
+		switch (imageType) {
+		case BufferedImage.TYPE_BYTE_GRAY :
+		case BufferedImage.TYPE_3BYTE_BGR :
+		case BufferedImage.TYPE_4BYTE_ABGR :
+		case BufferedImage.TYPE_INT_RGB :
+		case BufferedImage.TYPE_INT_ARGB :
+			return true;
+		default :
+			return false;
+		}
+	}
+
+	/**
+	 * Reads an image into an image from the pool when the pool has one of the right size and type, otherwise into a new image.
+	 */
+	public static BufferedImage decode(SliceSource imageFile, ImagePool pool) throws IOException {
+		//Images are decoded as they are read(or inflated), a MemoryCacheImageInputStream never writes a cache file
+		try (InputStream in = imageFile.openStream()) {
+			return decode(new MemoryCacheImageInputStream(in), imageFile, pool);
+		}
+	}
+	
+	private static BufferedImage decode(ImageInputStream stream, SliceSource imageFile, ImagePool pool) throws IOException {
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				throw new IOException("No image reader for:" + imageFile);
+			}
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				ImageTypeSpecifier type = reader.getRawImageType(0);
+				if (type != null && isPoolable(type.getBufferedImageType())) {
+					param.setDestination(pool.borrowImage(reader.getWidth(0), reader.getHeight(0), type.getBufferedImageType()));
+				}
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Waits for the next frame. If the print asks for a different slice than the one that was prefetched, that slice is built
+	 * right now, the prefetched frames are thrown away and prefetching starts over after the first later occurrence of that slice.
+	 *
+	 * @return the transformed image, the caller owns it from now on
+	 */
+	public BufferedImage take(SliceSource sliceFile) throws Exception {
+		Frame frame = frames.poll();
+		takenFrame = null;
+		if (frame == null || !frame.sliceFile.equals(sliceFile)) {
+			misses++;
+			logger.info("Slice {} wasn't prefetched, expected {}", sliceFile, frame != null?frame.sliceFile:null);
+			int searchFrom = frame != null?frame.sliceIndex:nextSlice;
+			discard(frame);
+			while ((frame = frames.poll()) != null) {
+				discard(frame);
+			}
+			int found = sliceFiles.subList(searchFrom, sliceFiles.size()).indexOf(sliceFile);
+			nextSlice = found < 0?searchFrom:searchFrom + found + 1;
+			fillLookahead();
+			return buildFrame(sliceFile);
+		}
+
+		hits++;
+		takenFrame = frame;
+		fillLookahead();
+		try {
+			return transformAhead?frame.image.get():transform(frame.image.get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception)e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the image of the next frame if it's already finished, otherwise null. The frame still has to be taken. A frame
+	 * that is only decoded isn't finished until it's taken, so this is always null when transforms don't run ahead.
+	 */
+	public BufferedImage peek() {
+		Frame frame = frames.peek();
+		if (!transformAhead || frame == null || !frame.image.isDone() || frame.image.isCancelled()) {
+			return null;
+		}
+		
+		frame.peeked = true;
+		try {
+			return frame.image.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Frames are never reused, so a frame makes a token that can't be mistaken for a different showing of a slice the way a
+	 * recycled image can.
+	 * 
+	 * @return a token for the frame that peek() looks at, the same token is returned by getTakenToken() once it's taken
+	 */
+	public Object getNextToken() {
+		return frames.peek();
+	}
+	
+	/**
+	 * @return the token of the frame that the last take() returned, or null if the slice had to be built because it wasn't prefetched
+	 */
+	public Object getTakenToken() {
+		return takenFrame;
+	}
+
+	private void discard(Frame frame) {
+		if (frame == null) {
+			return;
+		}
+
+		//The executor is shared, so a task that's already reading an image is left to finish and give it's image back itself
+		frame.image.cancel(false);
+		BufferedImage image;
+		synchronized (frame) {
+			frame.discarded = true;
+			image = frame.finishedImage;
+		}
+		
+		//Whoever peeked at the frame might still be holding on to it's image, so it can't go back to the pool
+		if (image != null && !frame.peeked) {
+			pool.returnImage(image);
+		}
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Cancels every frame that hasn't been taken and gives it's image back to the pool.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		Frame frame = null;
+		while ((frame = frames.poll()) != null) {
+			discard(frame);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package org.area515.resinprinter.job.render;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where the image of a slice is read from, a file or an entry of an archive. Sources are compared with equals() to find the
+ * slice a print asks for among the slices that were prefetched.
+ */
+public interface SliceSource {
+	public InputStream openStream() throws IOException;
+	public String getName();
+}
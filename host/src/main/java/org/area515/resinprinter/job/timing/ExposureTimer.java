@@ -0,0 +1,115 @@
+package org.area515.resinprinter.job.timing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Times exposures against deadlines instead of sleeping for a duration, so the time it takes to get an image onto the display
+ * or to wake a thread doesn't get added to the cure time.
+ *
+ * The thread parks until it's within spinNanos of the deadline and then spins(yielding) the rest of the way, since a park
+ * can oversleep by a scheduler tick.
+ *
+ * An instance remembers how long the display takes to present what it's asked to show. Without a shutter, the exposure ends when
+ * the blank image is presented, so the blank has to be asked for that long before the exposure should end.
+ */
+public class ExposureTimer {
+	public static final long DEFAULT_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(1500);
+	public static final long PRESENT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+	private static final long PRESENT_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	
+	private long showLatencyNanos;
+	private long blankLatencyNanos = -1;
+
+	/**
+	 * Waits for the slice that was asked to be shown at requestedNanos to be presented and remembers how long it took.
+	 *
+	 * @return when the exposure started
+	 */
+	public long waitForShow(LongSupplier lastPresentNanos, long requestedNanos) throws InterruptedException {
+		long presentNanos = waitForPresent(lastPresentNanos, requestedNanos, PRESENT_TIMEOUT_NANOS);
+		if (isPresented(lastPresentNanos, requestedNanos)) {
+			showLatencyNanos = presentNanos - requestedNanos;
+		}
+		return presentNanos;
+	}
+
+	/**
+	 * Waits for the blank image that was asked to be shown at requestedNanos to be presented and remembers how long it took.
+	 *
+	 * @return when the exposure ended
+	 */
+	public long waitForBlank(LongSupplier lastPresentNanos, long requestedNanos) throws InterruptedException {
+		long presentNanos = waitForPresent(lastPresentNanos, requestedNanos, PRESENT_TIMEOUT_NANOS);
+		if (isPresented(lastPresentNanos, requestedNanos)) {
+			blankLatencyNanos = presentNanos - requestedNanos;
+		}
+		return presentNanos;
+	}
+
+	/**
+	 * The blank latency is only known after the first blank, until then the show latency of the same display is used.
+	 *
+	 * @return when the blank image should be asked for, so that it's presented exposureNanos after exposureStartNanos
+	 */
+	public long getBlankDeadline(long exposureStartNanos, long exposureNanos) {
+		return exposureStartNanos + exposureNanos - (blankLatencyNanos >= 0?blankLatencyNanos:showLatencyNanos);
+	}
+
+	//A display that doesn't report presents, or that timed out, would otherwise be remembered as a latency
+	private static boolean isPresented(LongSupplier lastPresentNanos, long requestedNanos) {
+		long presentNanos = lastPresentNanos.getAsLong();
+		return presentNanos != 0 && presentNanos - requestedNanos >= 0;
+	}
+
+	public static void waitUntil(long deadlineNanos) throws InterruptedException {
+		waitUntil(deadlineNanos, DEFAULT_SPIN_NANOS);
+	}
+
+	public static void waitUntil(long deadlineNanos, long spinNanos) throws InterruptedException {
+		while (true) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException("Exposure was interrupted");
+			}
+
+			long remainingNanos = deadlineNanos - System.nanoTime();
+			if (remainingNanos <= 0) {
+				return;
+			}
+
+			if (remainingNanos > spinNanos) {
+				LockSupport.parkNanos(remainingNanos - spinNanos);
+			} else {
+				Thread.yield();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the display to report that it presented what it was asked to show at requestedNanos.
+	 *
+	 * @param lastPresentNanos the System.nanoTime() of the last present reported by the display, 0 when the display doesn't report them
+	 * @return when the display presented it, or now if the display doesn't report presents or took longer than timeoutNanos
+	 */
+	public static long waitForPresent(LongSupplier lastPresentNanos, long requestedNanos, long timeoutNanos) throws InterruptedException {
+		long presentNanos = lastPresentNanos.getAsLong();
+		if (presentNanos == 0) {
+			return System.nanoTime();
+		}
+
+		long deadlineNanos = System.nanoTime() + timeoutNanos;
+		while (presentNanos - requestedNanos < 0) {
+			if (System.nanoTime() - deadlineNanos >= 0) {
+				return System.nanoTime();
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException("Waiting for display was interrupted");
+			}
+
+			LockSupport.parkNanos(PRESENT_POLL_NANOS);
+			presentNanos = lastPresentNanos.getAsLong();
+		}
+		return presentNanos;
+	}
+}
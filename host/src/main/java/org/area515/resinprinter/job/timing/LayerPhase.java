@@ -0,0 +1,13 @@
+package org.area515.resinprinter.job.timing;
+
+/**
+ * The parts of a layer that are timed, in the order they show up in the CSV export.
+ */
+public enum LayerPhase {
+	Render,
+	Transform,
+	PreSlice,
+	Exposure,
+	Lift,
+	Notification
+}
@@ -0,0 +1,278 @@
+package org.area515.resinprinter.job.timing;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Keeps the timing of the most recent layers of a print in a ring buffer, and a histogram of every layer that was ever added
+ * for each phase so that the distribution is still known once the early layers have been pushed out of the ring.
+ *
+ * Histogram buckets double in size, bucket zero is under 1ms, bucket one is under 2ms, bucket two is under 4ms and so on.
+ * The last bucket holds everything that didn't fit in the others.
+ *
+ * Exposure accuracy is kept the same way, but since the error should be small it's histogram buckets are in microseconds
+ * instead of milliseconds.
+ */
+public class LayerTimeline {
+	public static final int HISTOGRAM_BUCKETS = 18;
+	public static final int ERROR_HISTOGRAM_BUCKETS = 20;
+
+	private LayerTiming[] layers;
+	private int next;
+	private int size;
+	private long layerCount;
+	private PhaseStatistics[] statistics = new PhaseStatistics[LayerPhase.values().length];
+	private ExposureAccuracy exposureAccuracy = new ExposureAccuracy();
+
+	public static class PhaseStatistics {
+		private LayerPhase phase;
+		private long count;
+		private long totalNanos;
+		private long minNanos = Long.MAX_VALUE;
+		private long maxNanos;
+		private long[] histogram = new long[HISTOGRAM_BUCKETS];
+
+		private PhaseStatistics(LayerPhase phase) {
+			this.phase = phase;
+		}
+
+		private PhaseStatistics(PhaseStatistics other) {
+			this.phase = other.phase;
+			this.count = other.count;
+			this.totalNanos = other.totalNanos;
+			this.minNanos = other.minNanos;
+			this.maxNanos = other.maxNanos;
+			this.histogram = other.histogram.clone();
+		}
+
+		private void add(long nanos) {
+			count++;
+			totalNanos += nanos;
+			minNanos = Math.min(minNanos, nanos);
+			maxNanos = Math.max(maxNanos, nanos);
+			histogram[getBucket(nanos)]++;
+		}
+
+		public LayerPhase getPhase() {
+			return phase;
+		}
+		public long getCount() {
+			return count;
+		}
+		public double getTotalMillis() {
+			return totalNanos / 1000000.0;
+		}
+		public double getMinMillis() {
+			return count == 0?0:minNanos / 1000000.0;
+		}
+		public double getMaxMillis() {
+			return maxNanos / 1000000.0;
+		}
+		public double getAverageMillis() {
+			return count == 0?0:totalNanos / 1000000.0 / count;
+		}
+		/**
+		 * The number of layers in each bucket, see getBucketUpperBoundMillis()
+		 */
+		public long[] getHistogram() {
+			return histogram;
+		}
+	}
+
+	/**
+	 * How far the exposure the resin actually got was from the exposure that was asked for. Errors are positive for overexposed layers.
+	 */
+	public static class ExposureAccuracy {
+		private long count;
+		private long overexposedCount;
+		private long totalErrorNanos;
+		private long totalAbsoluteErrorNanos;
+		private long minErrorNanos = Long.MAX_VALUE;
+		private long maxErrorNanos = Long.MIN_VALUE;
+		private long[] histogram = new long[ERROR_HISTOGRAM_BUCKETS];
+
+		private ExposureAccuracy() {
+		}
+
+		private ExposureAccuracy(ExposureAccuracy other) {
+			this.count = other.count;
+			this.overexposedCount = other.overexposedCount;
+			this.totalErrorNanos = other.totalErrorNanos;
+			this.totalAbsoluteErrorNanos = other.totalAbsoluteErrorNanos;
+			this.minErrorNanos = other.minErrorNanos;
+			this.maxErrorNanos = other.maxErrorNanos;
+			this.histogram = other.histogram.clone();
+		}
+
+		private void add(long errorNanos) {
+			count++;
+			if (errorNanos > 0) {
+				overexposedCount++;
+			}
+			totalErrorNanos += errorNanos;
+			totalAbsoluteErrorNanos += Math.abs(errorNanos);
+			minErrorNanos = Math.min(minErrorNanos, errorNanos);
+			maxErrorNanos = Math.max(maxErrorNanos, errorNanos);
+			histogram[getErrorBucket(Math.abs(errorNanos))]++;
+		}
+
+		public long getCount() {
+			return count;
+		}
+		public long getOverexposedCount() {
+			return overexposedCount;
+		}
+		public double getAverageErrorMillis() {
+			return count == 0?0:totalErrorNanos / 1000000.0 / count;
+		}
+		public double getAverageAbsoluteErrorMillis() {
+			return count == 0?0:totalAbsoluteErrorNanos / 1000000.0 / count;
+		}
+		public double getMinErrorMillis() {
+			return count == 0?0:minErrorNanos / 1000000.0;
+		}
+		public double getMaxErrorMillis() {
+			return count == 0?0:maxErrorNanos / 1000000.0;
+		}
+		/**
+		 * The number of layers in each bucket of absolute error, see getErrorBucketUpperBoundMicros()
+		 */
+		public long[] getHistogram() {
+			return histogram;
+		}
+		public long[] getErrorBucketUpperBoundMicros() {
+			long[] bounds = new long[ERROR_HISTOGRAM_BUCKETS - 1];
+			for (int t = 0; t < bounds.length; t++) {
+				bounds[t] = 1l << t;
+			}
+			return bounds;
+		}
+	}
+
+	public static class Snapshot {
+		private long layerCount;
+		private int capacity;
+		private List<LayerTiming> layers;
+		private List<PhaseStatistics> phases;
+		private ExposureAccuracy exposureAccuracy;
+
+		public long getLayerCount() {
+			return layerCount;
+		}
+		public int getCapacity() {
+			return capacity;
+		}
+		public List<LayerTiming> getLayers() {
+			return layers;
+		}
+		public List<PhaseStatistics> getPhases() {
+			return phases;
+		}
+		public ExposureAccuracy getExposureAccuracy() {
+			return exposureAccuracy;
+		}
+		public long[] getBucketUpperBoundMillis() {
+			long[] bounds = new long[HISTOGRAM_BUCKETS - 1];
+			for (int t = 0; t < bounds.length; t++) {
+				bounds[t] = 1l << t;
+			}
+			return bounds;
+		}
+	}
+
+	public LayerTimeline(int capacity) {
+		layers = new LayerTiming[Math.max(capacity, 1)];
+		for (LayerPhase phase : LayerPhase.values()) {
+			statistics[phase.ordinal()] = new PhaseStatistics(phase);
+		}
+	}
+
+	static int getBucket(long nanos) {
+		long millis = nanos / 1000000;
+		int bucket = millis == 0?0:64 - Long.numberOfLeadingZeros(millis);
+		return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+	}
+
+	static int getErrorBucket(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = micros == 0?0:64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, ERROR_HISTOGRAM_BUCKETS - 1);
+	}
+
+	/**
+	 * Phases that never happened for this layer(a zero time) aren't counted in the histograms, neither are layers that weren't exposed.
+	 */
+	public synchronized void add(LayerTiming timing) {
+		layers[next] = timing;
+		next = (next + 1) % layers.length;
+		size = Math.min(size + 1, layers.length);
+		layerCount++;
+
+		for (LayerPhase phase : LayerPhase.values()) {
+			long nanos = timing.getNanos(phase);
+			if (nanos > 0) {
+				statistics[phase.ordinal()].add(nanos);
+			}
+		}
+		if (timing.hasExposure()) {
+			exposureAccuracy.add(timing.getActualExposureNanos() - timing.getRequestedExposureNanos());
+		}
+	}
+
+	/**
+	 * @return the layers that are still in the ring, oldest first
+	 */
+	public synchronized List<LayerTiming> getLayers() {
+		List<LayerTiming> ordered = new ArrayList<LayerTiming>(size);
+		int start = (next - size + layers.length) % layers.length;
+		for (int t = 0; t < size; t++) {
+			ordered.add(layers[(start + t) % layers.length]);
+		}
+		return ordered;
+	}
+
+	public synchronized PhaseStatistics getStatistics(LayerPhase phase) {
+		return new PhaseStatistics(statistics[phase.ordinal()]);
+	}
+
+	public synchronized ExposureAccuracy getExposureAccuracy() {
+		return new ExposureAccuracy(exposureAccuracy);
+	}
+
+	public synchronized Snapshot getSnapshot() {
+		Snapshot snapshot = new Snapshot();
+		snapshot.layerCount = layerCount;
+		snapshot.capacity = layers.length;
+		snapshot.layers = getLayers();
+		snapshot.phases = new ArrayList<PhaseStatistics>();
+		for (LayerPhase phase : LayerPhase.values()) {
+			snapshot.phases.add(getStatistics(phase));
+		}
+		snapshot.exposureAccuracy = getExposureAccuracy();
+		return snapshot;
+	}
+
+	/**
+	 * Writes one line per layer that is still in the ring with the time of every phase in milliseconds.
+	 */
+	public void writeCSV(Writer writer) throws IOException {
+		StringBuilder header = new StringBuilder("layer,startTime");
+		for (LayerPhase phase : LayerPhase.values()) {
+			header.append(',').append(phase.name());
+		}
+		writer.write(header.append("\n").toString());
+
+		for (LayerTiming timing : getLayers()) {
+			StringBuilder line = new StringBuilder();
+			line.append(timing.getLayer()).append(',').append(timing.getStartTime());
+			for (LayerPhase phase : LayerPhase.values()) {
+				line.append(',').append(String.format(Locale.US, "%.3f", timing.getNanos(phase) / 1000000.0));
+			}
+			writer.write(line.append("\n").toString());
+		}
+		writer.flush();
+	}
+}
@@ -0,0 +1,85 @@
+package org.area515.resinprinter.job.timing;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The wall time that each phase of a single layer took. Phases that didn't happen for a layer stay at zero.
+ *
+ * The exposure phase also includes getting the image onto the display, the exposure the resin actually got is kept separately
+ * along with the exposure that was asked for.
+ */
+public class LayerTiming {
+	private int layer;
+	private long startTime;
+	private long[] nanos = new long[LayerPhase.values().length];
+	private long requestedExposureNanos;
+	private long actualExposureNanos;
+
+	public LayerTiming(int layer) {
+		this.layer = layer;
+		this.startTime = System.currentTimeMillis();
+	}
+
+	public int getLayer() {
+		return layer;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public void addNanos(LayerPhase phase, long elapsedNanos) {
+		nanos[phase.ordinal()] += elapsedNanos;
+	}
+
+	@JsonIgnore
+	public long getNanos(LayerPhase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	public void setExposure(long requestedNanos, long actualNanos) {
+		this.requestedExposureNanos = requestedNanos;
+		this.actualExposureNanos = actualNanos;
+	}
+
+	@JsonIgnore
+	public boolean hasExposure() {
+		return requestedExposureNanos > 0;
+	}
+
+	@JsonIgnore
+	public long getRequestedExposureNanos() {
+		return requestedExposureNanos;
+	}
+
+	@JsonIgnore
+	public long getActualExposureNanos() {
+		return actualExposureNanos;
+	}
+
+	public double getRequestedExposureMillis() {
+		return requestedExposureNanos / 1000000.0;
+	}
+
+	public double getActualExposureMillis() {
+		return actualExposureNanos / 1000000.0;
+	}
+
+	/**
+	 * Positive when the layer was overexposed
+	 */
+	public double getExposureErrorMillis() {
+		return (actualExposureNanos - requestedExposureNanos) / 1000000.0;
+	}
+
+	public Map<LayerPhase, Double> getMillis() {
+		Map<LayerPhase, Double> millis = new EnumMap<LayerPhase, Double>(LayerPhase.class);
+		for (LayerPhase phase : LayerPhase.values()) {
+			millis.put(phase, nanos[phase.ordinal()] / 1000000.0);
+		}
+		return millis;
+	}
+}
@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 
@@ -23,6 +22,7 @@ import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
 import org.area515.resinprinter.job.render.RenderingContext;
 import org.area515.resinprinter.server.Main;
+import org.area515.util.JAXBUtilities;
 
 public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Object,Object> {
     private static final Logger logger = LogManager.getLogger();
@@ -125,12 +125,10 @@ public class MinerCubePrintFileProcessor extends AbstractPrintFileProcessor<Obje
 
 	@Override
 	public void prepareEnvironment(File processingFile, PrintJob printJob) throws JobManagerException {
-		JAXBContext jaxbContext;
 		try {
-			jaxbContext = JAXBContext.newInstance(MinerCube.class);
-			Unmarshaller jaxbUnMarshaller = jaxbContext.createUnmarshaller();
+			Unmarshaller jaxbUnMarshaller = JAXBUtilities.getUnmarshaller(MinerCube.class);
 			final MinerCube cube = (MinerCube)jaxbUnMarshaller.unmarshal(processingFile);
-			Future<MinerCube> future = Main.GLOBAL_EXECUTOR.submit(new Callable<MinerCube>() {
+			Future<MinerCube> future = Main.RENDER_EXECUTOR.submit(new Callable<MinerCube>() {
 				@Override
 				public MinerCube call() throws Exception {
 					cube.buildMaze();
@@ -4,7 +4,10 @@ import java.io.File;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.websocket.server.ServerContainer;
 
@@ -20,6 +23,7 @@ import org.area515.resinprinter.slice.StlError;
 public class NotificationManager {
     private static final Logger logger = LogManager.getLogger();
 	private static List<Notifier> notifiers = null;
+	private static ConcurrentHashMap<PrintJob, Future<?>> pendingJobChanges = new ConcurrentHashMap<PrintJob, Future<?>>();
 	
 	public static void start(URI uri, ServerContainer container) {
 		if (notifiers != null) {
@@ -40,15 +44,37 @@ public class NotificationManager {
 		}
 	}
 	
+	/**
+	 * Changes to a job that happen before the notifiers have been told about it's last change don't need a task of their own,
+	 * the notifiers read the job when the task runs so they see those changes too.
+	 */
 	public static Future<?> jobChanged(final Printer printer, final PrintJob job) {
-		return Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		Future<?> pendingJobChange = pendingJobChanges.get(job);
+		if (pendingJobChange != null) {
+			return pendingJobChange;
+		}
+		
+		FutureTask<Object> jobChange = new FutureTask<Object>(new Runnable() {
 			@Override
 			public void run() {
+				pendingJobChanges.remove(job);
 				for (Notifier currentNotifier : notifiers) {
 					currentNotifier.jobChanged(printer, job);
 				}
 			}
-		});
+		}, null);
+		pendingJobChange = pendingJobChanges.putIfAbsent(job, jobChange);
+		if (pendingJobChange != null) {
+			return pendingJobChange;
+		}
+		
+		try {
+			Main.NOTIFICATION_EXECUTOR.execute(jobChange);
+		} catch (RejectedExecutionException e) {
+			pendingJobChanges.remove(job, jobChange);
+			throw e;
+		}
+		return jobChange;
 	}
 	
 	public static void errorEncountered(PrintJob job, List<StlError> errors) {
@@ -58,7 +84,7 @@ public class NotificationManager {
 	}
 	
 	public static Future<?> printerChanged(final Printer printer) {
-		return Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+		return Main.NOTIFICATION_EXECUTOR.submit(new Runnable() {
 			@Override
 			public void run() {
 				for (Notifier currentNotifier : notifiers) {
@@ -0,0 +1,270 @@
+package org.area515.resinprinter.notification;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.Session;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.notification.Notifier.NotificationEvent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Sends the events of a single print job to every WebSocket session that is watching it.
+ *
+ * A job change only remembers the job, the job is serialized once the window closes and that serialization is shared by every
+ * session. The first job change a session is sent is the whole PrintJobEvent, after that it's only sent the fields that changed
+ * since the last one it received, marked with "delta":true. Nested objects are diffed the same way, a field that was removed is sent as null.
+ *
+ * Each session has at most one message in flight. Job changes that happen while a slow client is still receiving are folded
+ * into it's next delta, other events wait in a small queue that drops it's oldest event once it's full.
+ */
+public class PrintJobEventChannel {
+    private static final Logger logger = LogManager.getLogger();
+	private static final ObjectMapper mapper = new ObjectMapper();
+	static {
+		mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+	}
+
+	private long windowMillis;
+	private int maxQueuedEvents;
+	private ScheduledExecutorService executor;
+	private ConcurrentHashMap<String, Outbox> outboxesBySessionId = new ConcurrentHashMap<String, Outbox>();
+	private PrintJob pendingJob;
+	private ScheduledFuture<?> pendingPublish;
+	private long version;
+	private volatile Snapshot latest;
+	private AtomicLong droppedEvents = new AtomicLong();
+
+	private static class Snapshot {
+		private long version;
+		private ObjectNode event;
+		private String fullMessage;
+		private Map<Long, String> deltasByVersion = new ConcurrentHashMap<Long, String>();
+
+		private synchronized String getFullMessage() throws JsonProcessingException {
+			if (fullMessage == null) {
+				ObjectNode message = event.deepCopy();
+				message.put("delta", false);
+				fullMessage = mapper.writeValueAsString(message);
+			}
+			return fullMessage;
+		}
+
+		//Sessions that were sent the same snapshot share the same delta
+		private String getDeltaMessage(Snapshot from) throws JsonProcessingException {
+			String message = deltasByVersion.get(from.version);
+			if (message == null) {
+				ObjectNode delta = diff(from.event, event);
+				delta.set("notificationEvent", event.get("notificationEvent"));
+				delta.put("delta", true);
+				message = mapper.writeValueAsString(delta);
+				deltasByVersion.put(from.version, message);
+			}
+			return message;
+		}
+	}
+
+	private static class Outbox {
+		private Session session;
+		private Deque<String> queuedEvents = new ArrayDeque<String>();
+		private Snapshot sent;
+		private boolean sending;
+
+		private Outbox(Session session) {
+			this.session = session;
+		}
+	}
+
+	public PrintJobEventChannel(long windowMillis, int maxQueuedEvents, ScheduledExecutorService executor) {
+		this.windowMillis = windowMillis;
+		this.maxQueuedEvents = Math.max(maxQueuedEvents, 1);
+		this.executor = executor;
+	}
+
+	static ObjectNode diff(ObjectNode from, ObjectNode to) {
+		ObjectNode delta = mapper.createObjectNode();
+		Iterator<Map.Entry<String, JsonNode>> fields = to.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			JsonNode oldValue = from.get(field.getKey());
+			if (oldValue != null && oldValue.equals(field.getValue())) {
+				continue;
+			}
+
+			if (oldValue instanceof ObjectNode && field.getValue() instanceof ObjectNode) {
+				delta.set(field.getKey(), diff((ObjectNode)oldValue, (ObjectNode)field.getValue()));
+			} else {
+				delta.set(field.getKey(), field.getValue());
+			}
+		}
+
+		Iterator<String> oldNames = from.fieldNames();
+		while (oldNames.hasNext()) {
+			String oldName = oldNames.next();
+			if (!to.has(oldName)) {
+				delta.putNull(oldName);
+			}
+		}
+		return delta;
+	}
+
+	public void addSession(Session session) {
+		outboxesBySessionId.put(session.getId(), new Outbox(session));
+	}
+
+	public void removeSession(Session session) {
+		outboxesBySessionId.remove(session.getId());
+	}
+
+	public List<Session> getSessions() {
+		List<Session> sessions = new ArrayList<Session>();
+		for (Outbox outbox : outboxesBySessionId.values()) {
+			sessions.add(outbox.session);
+		}
+		return sessions;
+	}
+
+	/**
+	 * @return the number of events that were never sent to a session because newer ones replaced them or it's queue was full
+	 */
+	public long getDroppedEvents() {
+		return droppedEvents.get();
+	}
+
+	public synchronized void jobChanged(PrintJob job) {
+		if (outboxesBySessionId.isEmpty()) {
+			return;
+		}
+
+		pendingJob = job;
+		if (windowMillis <= 0) {
+			publishPendingJob();
+		} else if (pendingPublish == null) {
+			pendingPublish = executor.schedule(this::publishPendingJob, windowMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private synchronized void publishPendingJob() {
+		pendingPublish = null;
+		if (pendingJob == null) {
+			return;
+		}
+
+		Snapshot snapshot = new Snapshot();
+		snapshot.version = ++version;
+		snapshot.event = mapper.valueToTree(new PrintJobEvent(pendingJob, NotificationEvent.PrintJobChanged));
+		pendingJob = null;
+		latest = snapshot;
+		for (Outbox outbox : outboxesBySessionId.values()) {
+			sendNext(outbox);
+		}
+	}
+
+	/**
+	 * Events other than job changes are never coalesced, they are serialized once and queued for every session.
+	 */
+	public void publish(PrintJobEvent event) {
+		if (outboxesBySessionId.isEmpty()) {
+			return;
+		}
+
+		String message;
+		try {
+			message = mapper.writeValueAsString(event);
+		} catch (JsonProcessingException e) {
+			logger.error("Couldn't serialize event:" + event.getNotificationEvent(), e);
+			return;
+		}
+
+		for (Outbox outbox : outboxesBySessionId.values()) {
+			synchronized (outbox) {
+				if (outbox.queuedEvents.size() >= maxQueuedEvents) {
+					outbox.queuedEvents.poll();
+					droppedEvents.incrementAndGet();
+				}
+				outbox.queuedEvents.add(message);
+			}
+			sendNext(outbox);
+		}
+	}
+
+	private void sendNext(final Outbox outbox) {
+		String message;
+		synchronized (outbox) {
+			if (outbox.sending) {
+				return;
+			}
+
+			message = outbox.queuedEvents.poll();
+			if (message == null) {
+				Snapshot current = latest;
+				if (current == null || outbox.sent != null && outbox.sent.version >= current.version) {
+					return;
+				}
+
+				try {
+					if (outbox.sent == null) {
+						message = current.getFullMessage();
+					} else {
+						droppedEvents.addAndGet(current.version - outbox.sent.version - 1);
+						message = current.getDeltaMessage(outbox.sent);
+					}
+				} catch (JsonProcessingException e) {
+					logger.error("Couldn't serialize job change for websocket:" + outbox.session.getId(), e);
+					return;
+				}
+				outbox.sent = current;
+			}
+			outbox.sending = true;
+		}
+
+		try {
+			outbox.session.getAsyncRemote().sendText(message, result -> {
+				synchronized (outbox) {
+					outbox.sending = false;
+				}
+				if (result.isOK()) {
+					sendNext(outbox);
+				} else {
+					sendFailed(outbox, result.getException());
+				}
+			});
+		} catch (RuntimeException e) {
+			sendFailed(outbox, e);
+		}
+	}
+
+	//The session is either gone or too slow to keep up within the send timeout
+	private void sendFailed(Outbox outbox, Throwable cause) {
+		if (!outboxesBySessionId.remove(outbox.session.getId(), outbox)) {
+			return;
+		}
+
+		logger.info("Dropping websocket:" + outbox.session.getId(), cause);
+		try {
+			outbox.session.close(new CloseReason(CloseCodes.TRY_AGAIN_LATER, "Couldn't keep up with print job notifications"));
+		} catch (IOException | RuntimeException e) {
+			logger.debug("Couldn't close websocket:" + outbox.session.getId(), e);
+		}
+	}
+}
@@ -24,6 +24,8 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.server.HostProperties;
+import org.area515.resinprinter.server.Main;
 import org.area515.resinprinter.slice.StlError;
 import org.area515.util.JacksonEncoder;
 import org.area515.util.PrintJobJacksonDecoder;
@@ -31,7 +33,7 @@ import org.area515.util.PrintJobJacksonDecoder;
 @ServerEndpoint(value="/printJobNotification/{printJobName}", encoders={JacksonEncoder.class}, decoders={PrintJobJacksonDecoder.class})
 public class WebSocketPrintJobNotifier implements Notifier {
     private static final Logger logger = LogManager.getLogger();
-	private static ConcurrentHashMap<String, ConcurrentHashMap<String, Session>> sessionsByPrintJobName = new ConcurrentHashMap<String, ConcurrentHashMap<String, Session>>();
+	private static ConcurrentHashMap<String, PrintJobEventChannel> channelsByPrintJobName = new ConcurrentHashMap<String, PrintJobEventChannel>();
 	
 	public WebSocketPrintJobNotifier() {
 		super();
@@ -39,26 +41,32 @@ public class WebSocketPrintJobNotifier implements Notifier {
 	
 	@OnError
 	public void onError(Session session, Throwable cause) {
-		for (ConcurrentHashMap<String, Session> sessions : sessionsByPrintJobName.values()) {
-			sessions.remove(session.getId());
+		for (PrintJobEventChannel channel : channelsByPrintJobName.values()) {
+			channel.removeSession(session);
 		}
 	}
 	
 	@OnOpen
 	public void onOpen(Session session, @PathParam("printJobName") String printJobName) {
-		ConcurrentHashMap<String, Session> sessionsBySessionId = new ConcurrentHashMap<String, Session>();
-		sessionsBySessionId.put(session.getId(), session);
-		ConcurrentHashMap<String, Session> otherSessionsBySessionId = sessionsByPrintJobName.putIfAbsent(printJobName, sessionsBySessionId);
-		if (otherSessionsBySessionId != null) {
-			otherSessionsBySessionId.put(session.getId(), session);
+		PrintJobEventChannel channel = new PrintJobEventChannel(
+				HostProperties.Instance().getNotificationWindowMillis(), 
+				HostProperties.Instance().getNotificationMaxQueuedEvents(), 
+				Main.NOTIFICATION_EXECUTOR);
+		PrintJobEventChannel otherChannel = channelsByPrintJobName.putIfAbsent(printJobName, channel);
+		if (otherChannel != null) {
+			channel = otherChannel;
 		}
+		
+		//A client that can't take a message within this time is dropped instead of holding up everyone else
+		session.getAsyncRemote().setSendTimeout(HostProperties.Instance().getNotificationSendTimeoutMillis());
+		channel.addSession(session);
 	}
 	
 	@OnClose
 	public void onClose(Session session, @PathParam("printJobName") String printJobName) {
-		ConcurrentHashMap<String, Session> otherSessionsBySessionId = sessionsByPrintJobName.get(printJobName);
-		if (otherSessionsBySessionId != null) {
-			otherSessionsBySessionId.remove(session.getId());
+		PrintJobEventChannel channel = channelsByPrintJobName.get(printJobName);
+		if (channel != null) {
+			channel.removeSession(session);
 		}
 	}
 	
@@ -73,18 +81,12 @@ public class WebSocketPrintJobNotifier implements Notifier {
 
 	@Override
 	public void jobChanged(Printer printer, PrintJob job) {
-		ConcurrentHashMap<String, Session> sessionsBySessionId = sessionsByPrintJobName.get(job.getJobFile().getName());
-		if (sessionsBySessionId == null) {
+		PrintJobEventChannel channel = channelsByPrintJobName.get(job.getJobFile().getName());
+		if (channel == null) {
 			return;
 		}
 		
-		for (Session currentSession : sessionsBySessionId.values()) {
-			try {
-				currentSession.getAsyncRemote().sendObject(new PrintJobEvent(job, NotificationEvent.PrintJobChanged));
-			} catch (Exception e) {
-				logger.error("Error sending event to websocket:" + currentSession.getId(), e);
-			}
-		}
+		channel.jobChanged(job);
 	}
 
 	@Override
@@ -94,8 +96,8 @@ public class WebSocketPrintJobNotifier implements Notifier {
 	
 	@Override
 	public void stop() {
-		for (ConcurrentHashMap<String, Session> sessions : sessionsByPrintJobName.values()) {
-			for (Session currentSession : sessions.values()) {
+		for (PrintJobEventChannel channel : channelsByPrintJobName.values()) {
+			for (Session currentSession : channel.getSessions()) {
 				try {
 					currentSession.close(new CloseReason(CloseCodes.NORMAL_CLOSURE, "The printer host has been asked to shut down now!"));
 				} catch (IOException e) {
@@ -107,37 +109,25 @@ public class WebSocketPrintJobNotifier implements Notifier {
 
 	@Override
 	public void fileUploadComplete(File fileUploaded) {
-		ConcurrentHashMap<String, Session> sessionsBySessionId = sessionsByPrintJobName.get(fileUploaded.getName());
-		if (sessionsBySessionId == null) {
+		PrintJobEventChannel channel = channelsByPrintJobName.get(fileUploaded.getName());
+		if (channel == null) {
 			return;
 		}
 		
-		for (Session currentSession : sessionsBySessionId.values()) {
-			try {
-				//This just mocks up a printJob it's not a real print job, it's just something we can notify our clients with.
-				PrintJob job = new PrintJob(fileUploaded);
-				job.initializePrintJob(CompletableFuture.completedFuture(JobStatus.Ready));
-				currentSession.getAsyncRemote().sendObject(new PrintJobEvent(job, NotificationEvent.FileUploadComplete));
-			} catch (Exception e) {
-				logger.error("Error sending event to websocket:" + currentSession.getId(), e);
-			}
-		}
+		//This just mocks up a printJob it's not a real print job, it's just something we can notify our clients with.
+		PrintJob job = new PrintJob(fileUploaded);
+		job.initializePrintJob(CompletableFuture.completedFuture(JobStatus.Ready));
+		channel.publish(new PrintJobEvent(job, NotificationEvent.FileUploadComplete));
 	}
 	
 	@Override
 	public void geometryError(PrintJob job, List<StlError> errors) {
-		ConcurrentHashMap<String, Session> sessionsBySessionId = sessionsByPrintJobName.get(job.getJobFile().getName());
-		if (sessionsBySessionId == null) {
+		PrintJobEventChannel channel = channelsByPrintJobName.get(job.getJobFile().getName());
+		if (channel == null) {
 			return;
 		}
 		
-		for (Session currentSession : sessionsBySessionId.values()) {
-			try {
-				currentSession.getAsyncRemote().sendObject(new PrintJobEvent(job, NotificationEvent.GeometryError, errors));
-			} catch (Exception e) {
-				logger.error("Error sending event to websocket:" + currentSession.getId(), e);
-			}
-		}
+		channel.publish(new PrintJobEvent(job, NotificationEvent.GeometryError, errors));
 	}
 
 	@Override
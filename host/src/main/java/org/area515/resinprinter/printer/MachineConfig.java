@@ -71,6 +71,8 @@ public class MachineConfig implements Named {
 		private boolean useMask;
 		@XmlElement(name="FullScreenMode")
 		private FullScreenMode fullScreenMode;
+		@XmlElement(name="ActiveRendering")
+		private boolean activeRendering;
 		
 		@XmlTransient
 		public boolean isUseMask() {
@@ -115,6 +117,15 @@ public class MachineConfig implements Named {
 		public void setFullScreenMode(FullScreenMode fullScreenMode) {
 			this.fullScreenMode = fullScreenMode;
 		}
+		
+		//Java2D displays flip pages themselves instead of waiting for Swing to repaint them
+		@XmlTransient
+		public boolean isActiveRendering() {
+			return activeRendering;
+		}
+		public void setActiveRendering(boolean activeRendering) {
+			this.activeRendering = activeRendering;
+		}
 	}
 	
 	@XmlAttribute(name="FileVersion")
@@ -153,6 +164,10 @@ public class MachineConfig implements Named {
 	private Boolean overrideModelNormalsWithRightHandRule;
 	@XmlElement(name="RestartSerialOnTimeout")
 	private Boolean restartSerialOnTimeout;
+	@XmlElement(name="StreamingGCodeWindowBytes")
+	private Integer streamingGCodeWindowBytes;
+	@XmlElement(name="StreamingGCodeWindowCommands")
+	private Integer streamingGCodeWindowCommands;
 	private String name;
 
 	@XmlTransient
@@ -266,6 +281,29 @@ public class MachineConfig implements Named {
 		this.restartSerialOnTimeout = restartSerialOnTimeout;
 	}
 	
+	/**
+	 * The size of the firmware's serial receive buffer. When this is set, the gcode in a template is streamed
+	 * without waiting for each command to be acknowledged, as long as the unacknowledged commands fit in this many bytes.
+	 */
+	@XmlTransient
+	public Integer getStreamingGCodeWindowBytes() {
+		return streamingGCodeWindowBytes;
+	}
+	public void setStreamingGCodeWindowBytes(Integer streamingGCodeWindowBytes) {
+		this.streamingGCodeWindowBytes = streamingGCodeWindowBytes;
+	}
+	
+	/**
+	 * The most unacknowledged commands the firmware can queue while streaming, or null if only the bytes are counted.
+	 */
+	@XmlTransient
+	public Integer getStreamingGCodeWindowCommands() {
+		return streamingGCodeWindowCommands;
+	}
+	public void setStreamingGCodeWindowCommands(Integer streamingGCodeWindowCommands) {
+		this.streamingGCodeWindowCommands = streamingGCodeWindowCommands;
+	}
+	
 	@XmlTransient
 	public String getOSMonitorID() {
 		return monitorDriverConfig.osMonitorID;
@@ -206,6 +206,28 @@ public class Printer implements Named {
 		refreshFrame.showImage(image, performFullUpdate);
 	}
 	
+	public void showImage(BufferedImage image, boolean performFullUpdate, Object sliceToken) {
+		refreshFrame.showImage(image, performFullUpdate, sliceToken);
+	}
+	
+	public void stageImage(BufferedImage image, Object sliceToken) {
+		if (refreshFrame == null) {
+			return;
+		}
+		
+		refreshFrame.stageImage(image, sliceToken);
+	}
+	
+	@JsonIgnore
+	@XmlTransient
+	public long getLastPresentNanos() {
+		if (refreshFrame == null) {
+			return 0;
+		}
+		
+		return refreshFrame.getLastPresentNanos();
+	}
+	
 	@JsonIgnore
 	@XmlTransient
 	public boolean isDisplayBusy() {
@@ -0,0 +1,15 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+
+/**
+ * A port that is told by the serial driver when data arrives, so a reader can wait for a response instead of polling read().
+ */
+public interface EventDrivenCommPort extends SerialCommunicationsPort {
+	/**
+	 * Blocks until any data arrives or the timeout expires.
+	 * 
+	 * @return the data that arrived, or null if nothing arrived before the timeout
+	 */
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException;
+}
@@ -3,6 +3,8 @@ package org.area515.resinprinter.serial;
 import java.io.IOException;
 
 import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortEventListener;
 import jssc.SerialPortException;
 
 import org.apache.logging.log4j.LogManager;
@@ -12,12 +14,13 @@ import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.printer.ComPortSettings;
 import org.area515.resinprinter.printer.Printer;
 
-public class JSSCCommPort implements SerialCommunicationsPort {
+public class JSSCCommPort implements EventDrivenCommPort, SerialPortEventListener {
     private static final Logger logger = LogManager.getLogger();
 	private SerialPort port;
 	private String name;
 	private ComPortSettings settings;
 	private int timeout;
+	private SerialResponseBuffer responseBuffer = new SerialResponseBuffer();
 	
 	@Override
 	public void open(String controllingDevice, int timeout,
@@ -71,6 +74,8 @@ public class JSSCCommPort implements SerialCommunicationsPort {
 			if (!port.purgePort(SerialPort.PURGE_RXCLEAR | SerialPort.PURGE_TXCLEAR)) {
 				throw new InappropriateDeviceException("Comm port couldn't be purged:" + settings.getPortName());
 			}
+			responseBuffer.clear();
+			port.addEventListener(this, SerialPort.MASK_RXCHAR);
 		} catch (SerialPortException e) {
 			if (e.getExceptionType().equals(SerialPortException.TYPE_PORT_BUSY) ||
 				e.getExceptionType().equals(SerialPortException.TYPE_PORT_ALREADY_OPENED)) {
@@ -121,14 +126,27 @@ public class JSSCCommPort implements SerialCommunicationsPort {
 
 	@Override
 	public byte[] read() throws IOException {
+		return responseBuffer.read();
+	}
+	
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return responseBuffer.read(timeoutMillis);
+	}
+	
+	@Override
+	public void serialEvent(SerialPortEvent event) {
+		if (!event.isRXCHAR() || event.getEventValue() <= 0) {
+			return;
+		}
+		
 		try {
-			if (port.getInputBufferBytesCount() > 0) {
-				return port.readBytes(port.getInputBufferBytesCount());
+			byte[] data = port.readBytes(event.getEventValue());
+			if (data != null) {
+				responseBuffer.write(data);
 			}
-			
-			return null;
 		} catch (SerialPortException e) {
-			throw new IOException("Couldn't read bytes from serial port.", e);
+			responseBuffer.setException(new IOException("Couldn't read bytes from serial port.", e));
 		}
 	}
 	
@@ -6,19 +6,16 @@ import gnu.io.SerialPortEventListener;
 
 import java.io.IOException;
 import java.util.TooManyListenersException;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEventListener {
+public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEventListener, EventDrivenCommPort {
     private static final Logger logger = LogManager.getLogger();
-	private Lock asynchReadLock = new ReentrantLock();
-	private byte[] buffer;
-	private IOException exceptionThrown;
+	private SerialResponseBuffer responseBuffer = new SerialResponseBuffer();
 	
 	public void init(SerialPort serialPort) throws TooManyListenersException {
+		responseBuffer.clear();
 		serialPort.addEventListener(this);
 		serialPort.notifyOnDataAvailable(true);
 		serialPort.notifyOnBreakInterrupt(true);
@@ -34,24 +31,12 @@ public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEv
 	
 	@Override
 	public byte[] read() throws IOException {
-		asynchReadLock.lock();
-		try {
-			if (buffer != null) {
-				byte[] returnbuffer = buffer;
-				buffer = null;
-				return returnbuffer;
-			}
-			
-			if (exceptionThrown != null) {
-				IOException throwException = exceptionThrown;
-				exceptionThrown = null;
-				throw throwException;
-			}
-			
-			return null;
-		} finally {
-			asynchReadLock.unlock();
-		}
+		return responseBuffer.read();
+	}
+	
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return responseBuffer.read(timeoutMillis);
 	}
 
 	@Override
@@ -61,14 +46,15 @@ public class RXTXEventBasedCommPort extends RXTXCommPort implements SerialPortEv
 			return;
 		}
 		
-		asynchReadLock.lock();
+		//Appended to whatever hasn't been read yet, instead of replacing it
 		try {
-			buffer = new byte[inputStream.available()];
-			inputStream.read(buffer);
+			byte[] buffer = new byte[inputStream.available()];
+			int bytesRead = inputStream.read(buffer);
+			if (bytesRead > 0) {
+				responseBuffer.write(buffer, 0, bytesRead);
+			}
 		} catch (IOException e) {
-			exceptionThrown = e;
-		} finally {
-			asynchReadLock.unlock();
+			responseBuffer.setException(e);
 		}
 	}
 }
@@ -0,0 +1,150 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ring buffer that serial port events write into, and that readers can block on until data arrives instead of
+ * polling the port and sleeping between empty reads.
+ *
+ * The ring grows instead of throwing away responses that haven't been read yet, firmware responses are small so it
+ * rarely does.
+ */
+public class SerialResponseBuffer {
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	private Lock lock = new ReentrantLock();
+	private Condition dataArrived = lock.newCondition();
+	private byte[] ring;
+	private int head;
+	private int size;
+	private IOException exceptionThrown;
+	
+	public SerialResponseBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public SerialResponseBuffer(int capacity) {
+		ring = new byte[Math.max(capacity, 1)];
+	}
+	
+	public void write(byte[] data) {
+		write(data, 0, data.length);
+	}
+	
+	public void write(byte[] data, int offset, int length) {
+		if (length <= 0) {
+			return;
+		}
+		
+		lock.lock();
+		try {
+			if (size + length > ring.length) {
+				byte[] newRing = new byte[Math.max(ring.length * 2, size + length)];
+				copyOut(newRing, size);
+				ring = newRing;
+				head = 0;
+			}
+			
+			int tail = (head + size) % ring.length;
+			int firstLength = Math.min(length, ring.length - tail);
+			System.arraycopy(data, offset, ring, tail, firstLength);
+			System.arraycopy(data, offset + firstLength, ring, 0, length - firstLength);
+			size += length;
+			dataArrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * The exception is thrown to the next reader once the data that arrived before it has been read.
+	 */
+	public void setException(IOException e) {
+		lock.lock();
+		try {
+			exceptionThrown = e;
+			dataArrived.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return everything that has arrived so far, or null if nothing has arrived
+	 */
+	public byte[] read() throws IOException {
+		lock.lock();
+		try {
+			return takeAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Blocks until any data arrives or the timeout expires.
+	 * 
+	 * @return everything that has arrived, or null if nothing arrived before the timeout
+	 */
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		lock.lock();
+		try {
+			while (size == 0 && exceptionThrown == null && remainingNanos > 0) {
+				remainingNanos = dataArrived.awaitNanos(remainingNanos);
+			}
+			
+			return takeAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public int available() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	public void clear() {
+		lock.lock();
+		try {
+			head = 0;
+			size = 0;
+			exceptionThrown = null;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private byte[] takeAll() throws IOException {
+		if (size > 0) {
+			byte[] data = new byte[size];
+			copyOut(data, size);
+			head = 0;
+			size = 0;
+			return data;
+		}
+		
+		if (exceptionThrown != null) {
+			IOException throwException = exceptionThrown;
+			exceptionThrown = null;
+			throw throwException;
+		}
+		
+		return null;
+	}
+	
+	private void copyOut(byte[] destination, int length) {
+		int firstLength = Math.min(length, ring.length - head);
+		System.arraycopy(ring, head, destination, 0, firstLength);
+		System.arraycopy(ring, 0, destination, firstLength, length - firstLength);
+	}
+}
@@ -23,13 +23,9 @@ import java.util.zip.ZipOutputStream;
 
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.bind.util.JAXBSource;
-import javax.xml.namespace.QName;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -39,6 +35,7 @@ import org.area515.resinprinter.display.AlreadyAssignedException;
 import org.area515.resinprinter.display.GraphicsOutputInterface;
 import org.area515.resinprinter.display.InappropriateDeviceException;
 import org.area515.resinprinter.job.Customizer;
+import org.area515.resinprinter.job.CustomizerJournal;
 import org.area515.resinprinter.job.PrintFileProcessor;
 import org.area515.resinprinter.network.LinuxNetworkManager;
 import org.area515.resinprinter.network.NetworkManager;
@@ -58,6 +55,8 @@ import org.area515.resinprinter.serial.SerialCommunicationsPort;
 import org.area515.resinprinter.services.UserService;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.IOUtilities;
+import org.area515.util.JAXBBeanCopier;
+import org.area515.util.JAXBUtilities;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -83,6 +82,25 @@ public class HostProperties {
 	private boolean removeJobOnCompletion = true;
 	private boolean forceCalibrationOnFirstUse = false;
 	private boolean limitLiveStreamToOneCPU = false;
+	private int sliceLookAheadLayers;
+	private int slicingThreads;
+	private int stlDecodeThreads;
+	private boolean useSliceCache;
+	private File sliceCacheDir;
+	private int sliceCacheMaxFiles;
+	private int imagePoolMaxImages;
+	private int cwsPrefetchSlices;
+	private int layerTimelineSize;
+	private int customizerJournalWindowMillis;
+	private int notificationWindowMillis;
+	private int notificationMaxQueuedEvents;
+	private int notificationSendTimeoutMillis;
+	private int liveCaptureWidth;
+	private int liveCaptureHeight;
+	private int liveCaptureFramesPerSecond;
+	private int liveCaptureRingFrames;
+	private int liveCaptureIdleMillis;
+	private int liveCaptureTimeoutMillis;
 	private ConcurrentHashMap<String, PrinterConfiguration> configurations;
 	private Map<Class<Feature>, String> featureClasses = new HashMap<Class<Feature>, String>();
 	private List<Class<Notifier>> notificationClasses = new ArrayList<Class<Notifier>>();
@@ -116,6 +134,7 @@ public class HostProperties {
 	//These are OS specific commands
 	private String[] streamingCommand;
 	private String[] imagingCommand;
+	private String[] liveCaptureCommand;
 	private String[] dumpStackTraceCommand;
 	private String[] rebootCommand;
 	
@@ -308,11 +327,31 @@ public class HostProperties {
 		removeJobOnCompletion = new Boolean(configurationProperties.getProperty("removeJobOnCompletion", "true"));
 		forceCalibrationOnFirstUse = new Boolean(configurationProperties.getProperty("forceCalibrationOnFirstUse", "false"));
 		limitLiveStreamToOneCPU = new Boolean(configurationProperties.getProperty("limitLiveStreamToOneCPU", "false"));
+		sliceLookAheadLayers = new Integer(configurationProperties.getProperty("sliceLookAheadLayers", "4"));
+		slicingThreads = new Integer(configurationProperties.getProperty("slicingThreads", Math.max(1, Runtime.getRuntime().availableProcessors() - 1) + ""));
+		stlDecodeThreads = new Integer(configurationProperties.getProperty("stlDecodeThreads", "1"));
+		useSliceCache = new Boolean(configurationProperties.getProperty("useSliceCache", "true"));
+		sliceCacheDir = new File(configurationProperties.getProperty("sliceCacheDir", new File(System.getProperty("user.home"), "SliceCache").getAbsolutePath()));
+		sliceCacheMaxFiles = new Integer(configurationProperties.getProperty("sliceCacheMaxFiles", "20"));
+		imagePoolMaxImages = new Integer(configurationProperties.getProperty("imagePoolMaxImages", "4"));
+		cwsPrefetchSlices = new Integer(configurationProperties.getProperty("cwsPrefetchSlices", "2"));
+		layerTimelineSize = new Integer(configurationProperties.getProperty("layerTimelineSize", "5000"));
+		customizerJournalWindowMillis = new Integer(configurationProperties.getProperty("customizerJournalWindowMillis", "1000"));
+		notificationWindowMillis = new Integer(configurationProperties.getProperty("notificationWindowMillis", "250"));
+		notificationMaxQueuedEvents = new Integer(configurationProperties.getProperty("notificationMaxQueuedEvents", "16"));
+		notificationSendTimeoutMillis = new Integer(configurationProperties.getProperty("notificationSendTimeoutMillis", "10000"));
+		liveCaptureWidth = new Integer(configurationProperties.getProperty("liveCaptureWidth", "1280"));
+		liveCaptureHeight = new Integer(configurationProperties.getProperty("liveCaptureHeight", "720"));
+		liveCaptureFramesPerSecond = new Integer(configurationProperties.getProperty("liveCaptureFramesPerSecond", "10"));
+		liveCaptureRingFrames = new Integer(configurationProperties.getProperty("liveCaptureRingFrames", "8"));
+		liveCaptureIdleMillis = new Integer(configurationProperties.getProperty("liveCaptureIdleMillis", "10000"));
+		liveCaptureTimeoutMillis = new Integer(configurationProperties.getProperty("liveCaptureTimeoutMillis", "5000"));
 		scriptEngineLanguage = configurationProperties.getProperty("scriptEngineLanguage", "js");
 		printerProfileRepo = configurationProperties.getProperty("printerProfileRepo", "WesGilster/Creation-Workshop-Host");
 		
 		streamingCommand = getJSonStringArray(configurationProperties, "streamingCommand");
 		imagingCommand = getJSonStringArray(configurationProperties, "imagingCommand");
+		liveCaptureCommand = getJSonStringArray(configurationProperties, "liveCaptureCommand");
 		hexCodeBasedProjectorsJson = configurationProperties.getProperty("hexCodeBasedProjectors");
 		dumpStackTraceCommand = getJSonStringArray(configurationProperties, "dumpStackTraceCommand");
 		rebootCommand = getJSonStringArray(configurationProperties, "rebootCommand");
@@ -566,9 +605,93 @@ public class HostProperties {
 		return imagingCommand;
 	}
 	
+	public String[] getLiveCaptureCommand() {
+		return liveCaptureCommand;
+	}
+	
+	public int getLiveCaptureWidth() {
+		return liveCaptureWidth;
+	}
+	
+	public int getLiveCaptureHeight() {
+		return liveCaptureHeight;
+	}
+	
+	public int getLiveCaptureFramesPerSecond() {
+		return liveCaptureFramesPerSecond;
+	}
+	
+	public int getLiveCaptureRingFrames() {
+		return liveCaptureRingFrames;
+	}
+	
+	public int getLiveCaptureIdleMillis() {
+		return liveCaptureIdleMillis;
+	}
+	
+	public int getLiveCaptureTimeoutMillis() {
+		return liveCaptureTimeoutMillis;
+	}
+	
 	public boolean getLimitLiveStreamToOneCPU() {
 		return limitLiveStreamToOneCPU;
 	}
+	
+	public int getSliceLookAheadLayers() {
+		return sliceLookAheadLayers;
+	}
+	
+	public int getSlicingThreads() {
+		return slicingThreads;
+	}
+	
+	public int getStlDecodeThreads() {
+		return stlDecodeThreads;
+	}
+	
+	public boolean isUseSliceCache() {
+		return useSliceCache;
+	}
+	
+	public File getSliceCacheDir() {
+		return sliceCacheDir;
+	}
+	
+	public int getSliceCacheMaxFiles() {
+		return sliceCacheMaxFiles;
+	}
+	
+	public int getImagePoolMaxImages() {
+		return imagePoolMaxImages;
+	}
+	
+	public int getCwsPrefetchSlices() {
+		return cwsPrefetchSlices;
+	}
+	
+	public int getLayerTimelineSize() {
+		return layerTimelineSize;
+	}
+	
+	public int getCustomizerJournalWindowMillis() {
+		return customizerJournalWindowMillis;
+	}
+	
+	public int getNotificationWindowMillis() {
+		return notificationWindowMillis;
+	}
+	
+	public int getNotificationMaxQueuedEvents() {
+		return notificationMaxQueuedEvents;
+	}
+	
+	public int getNotificationSendTimeoutMillis() {
+		return notificationSendTimeoutMillis;
+	}
+	
+	public File getCustomizerDir() {
+		return CUSTOMIZER_DIR;
+	}
 
 	public List<String> getVisibleCards() {
 		return visibleCards;
@@ -686,10 +809,8 @@ public class HostProperties {
 		});
 		
 		for (File currentFile : files) {
-			JAXBContext jaxbContext;
 			try {
-				jaxbContext = JAXBContext.newInstance(clazz);
-				Unmarshaller jaxbUnMarshaller = jaxbContext.createUnmarshaller();
+				Unmarshaller jaxbUnMarshaller = JAXBUtilities.getUnmarshaller(clazz);
 				
 				T machine = (T)jaxbUnMarshaller.unmarshal(currentFile);
 				machine.setName(currentFile.getName().substring(0, currentFile.getName().length() - extension.length()));
@@ -713,13 +834,13 @@ public class HostProperties {
 			return null;
 		}
 		
-		JAXBContext jaxbContext;
 		try {
-			jaxbContext = JAXBContext.newInstance(Customizer.class);
-			Unmarshaller jaxbUnMarshaller = jaxbContext.createUnmarshaller();
+			Unmarshaller jaxbUnMarshaller = JAXBUtilities.getUnmarshaller(Customizer.class);
 			
 			Customizer customizer = (Customizer)jaxbUnMarshaller.unmarshal(currentFile);
 			
+			//The snapshot might be behind a print that was interrupted
+			CustomizerJournal.Instance().replay(customizer);
 			logger.info("Loaded customizer for:{}", customizer);
 			return customizer;
 		} catch (JAXBException e) {
@@ -733,12 +854,11 @@ public class HostProperties {
 		}
 
 		File currentFile = new File(CUSTOMIZER_DIR, customizer.getName() + CUSTOMIZER_EXTENSION);
-		JAXBContext jaxbContext;
 		try {
-			jaxbContext = JAXBContext.newInstance(Customizer.class);
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			long checkpointCount = CustomizerJournal.Instance().getCheckpointCount(customizer.getName());
+			Marshaller jaxbMarshaller = JAXBUtilities.getMarshaller(Customizer.class);
 			jaxbMarshaller.marshal(customizer, currentFile);
+			CustomizerJournal.Instance().discard(customizer.getName(), checkpointCount);
 			logger.info("Saved customizer for:{}", customizer);
 			NotificationManager.hostSettingsChanged();
 			return customizer;
@@ -774,10 +894,8 @@ public class HostProperties {
 		});
 		
 		for (File currentFile : printerFiles) {
-			JAXBContext jaxbContext;
 			try {
-				jaxbContext = JAXBContext.newInstance(PrinterConfiguration.class, MachineConfig.class, SlicingProfile.class);
-				Unmarshaller jaxbUnMarshaller = jaxbContext.createUnmarshaller();
+				Unmarshaller jaxbUnMarshaller = JAXBUtilities.getUnmarshaller(PrinterConfiguration.class, MachineConfig.class, SlicingProfile.class);
 				
 				PrinterConfiguration configuration = (PrinterConfiguration)jaxbUnMarshaller.unmarshal(currentFile);
 				configuration.setName(currentFile.getName().replace(PRINTER_EXTENSION, ""));
@@ -811,19 +929,13 @@ public class HostProperties {
 	}
 	
 	public static <T> T deepCopyJAXB(T object, Class<T> clazz) throws JAXBException {
-	    JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
-	    JAXBElement<T> contentObject = new JAXBElement<T>(new QName(clazz.getSimpleName()), clazz, object);
-	    JAXBSource source = new JAXBSource(jaxbContext, contentObject);
-	    return jaxbContext.createUnmarshaller().unmarshal(source, clazz).getValue();
+		return JAXBBeanCopier.deepCopy(object, clazz);
 	}
 	
 	private void saveConfigurations(PrinterConfiguration focusedSave) {
 		for (PrinterConfiguration currentConfiguration : configurations.values()) {
-			JAXBContext jaxbContext;
 			try {
-				jaxbContext = JAXBContext.newInstance(PrinterConfiguration.class);
-				Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-				jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+				Marshaller jaxbMarshaller = JAXBUtilities.getMarshaller(PrinterConfiguration.class);
 
 				MachineConfig machineConfig = currentConfiguration.getMachineConfig();
 				if (focusedSave != null && currentConfiguration.getMachineConfigName().equals(focusedSave.getMachineConfigName())) {
@@ -3,10 +3,9 @@ package org.area515.resinprinter.server;
 import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -37,8 +36,6 @@ import org.eclipse.jetty.util.security.Constraint;
 import org.eclipse.jetty.websocket.jsr356.server.deploy.WebSocketServerContainerInitializer;
 import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
-
 /*
  * References:
  * http://news-anand.blogspot.com/2012/05/today-i-am-going-tell-you-how-to-create.html
@@ -50,7 +47,19 @@ public class Main {
     private static final Logger logger = LogManager.getLogger();
     
     public static final String AUTHENTICATION_SCHEME = Constraint.__BASIC_AUTH;
-	public static ScheduledExecutorService GLOBAL_EXECUTOR = new ScheduledThreadPoolExecutor(20, new ThreadFactoryBuilder().setNameFormat("PrintJobProcessorThread-%d").setDaemon(true).build());
+	//Print jobs and their exposure timers, nothing else should be able to hold these up
+	public static MonitoredExecutor PRINT_CRITICAL_EXECUTOR = new MonitoredExecutor("PrintCritical", 8, Thread.MAX_PRIORITY);
+	//Slice rendering and other CPU bound work for a print
+	public static MonitoredExecutor RENDER_EXECUTOR = new MonitoredExecutor("Render", Math.max(2, Runtime.getRuntime().availableProcessors()), Thread.NORM_PRIORITY);
+	//Layers sliced ahead of the print, renders wait on these so they can't share a pool with them. Sized by slicingThreads at startup.
+	public static MonitoredExecutor SLICING_EXECUTOR = new MonitoredExecutor("Slicing", Math.max(1, Runtime.getRuntime().availableProcessors() - 1), Thread.NORM_PRIORITY);
+	//Uploads, file saves, network and camera work
+	public static MonitoredExecutor IO_EXECUTOR = new MonitoredExecutor("IO", 8, Thread.NORM_PRIORITY - 1);
+	public static MonitoredExecutor NOTIFICATION_EXECUTOR = new MonitoredExecutor("Notification", 2, Thread.MIN_PRIORITY + 1);
+	
+	public static List<MonitoredExecutor> getExecutors() {
+		return Arrays.asList(PRINT_CRITICAL_EXECUTOR, RENDER_EXECUTOR, SLICING_EXECUTOR, IO_EXECUTOR, NOTIFICATION_EXECUTOR);
+	}
 	
 	public static void setupAuthentication(ServletContextHandler context, UserManagementFeature loginService) {
         //All below is user based security
@@ -90,6 +99,7 @@ public class Main {
 		logger.info("=================================================================");
 
 		int port = HostProperties.Instance().getPrinterHostPort();
+		SLICING_EXECUTOR.setCorePoolSize(HostProperties.Instance().getSlicingThreads());
 		/*
 		 * Sequence
 		 * Setup ResourceHandler for html files
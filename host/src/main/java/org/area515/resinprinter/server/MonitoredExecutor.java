@@ -0,0 +1,147 @@
+package org.area515.resinprinter.server;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A named thread pool that keeps track of how far behind it is.
+ *
+ * Start lateness is how long after a task was supposed to start that a thread actually started it. For a scheduled task
+ * that's measured from it's scheduled time, for everything else it's the time the task spent waiting in the queue. This is
+ * what turns into jitter for exposure timers when the pool doesn't have a free thread.
+ *
+ * Start lateness histogram buckets double in size, bucket zero is under 1us, bucket one is under 2us, bucket two is under 4us
+ * and so on. The last bucket holds everything that didn't fit in the others.
+ */
+public class MonitoredExecutor extends ScheduledThreadPoolExecutor {
+	public static final int HISTOGRAM_BUCKETS = 24;
+
+	private String name;
+	private int priority;
+	private long startedTasks;
+	private long totalLatenessNanos;
+	private long maxLatenessNanos;
+	private int maxQueueDepth;
+	private long[] latenessHistogram = new long[HISTOGRAM_BUCKETS];
+
+	public static class Metrics {
+		private String name;
+		private int priority;
+		private int poolSize;
+		private int activeThreads;
+		private int queueDepth;
+		private int overdueTasks;
+		private int maxQueueDepth;
+		private long completedTasks;
+		private long startedTasks;
+		private double averageStartLatenessMillis;
+		private double maxStartLatenessMillis;
+		private long[] startLatenessHistogram;
+
+		public String getName() {
+			return name;
+		}
+		public int getPriority() {
+			return priority;
+		}
+		public int getPoolSize() {
+			return poolSize;
+		}
+		public int getActiveThreads() {
+			return activeThreads;
+		}
+		/**
+		 * Every task that hasn't started yet, including scheduled tasks that aren't due
+		 */
+		public int getQueueDepth() {
+			return queueDepth;
+		}
+		/**
+		 * Tasks that are due but are still waiting on a thread
+		 */
+		public int getOverdueTasks() {
+			return overdueTasks;
+		}
+		public int getMaxQueueDepth() {
+			return maxQueueDepth;
+		}
+		public long getCompletedTasks() {
+			return completedTasks;
+		}
+		public long getStartedTasks() {
+			return startedTasks;
+		}
+		public double getAverageStartLatenessMillis() {
+			return averageStartLatenessMillis;
+		}
+		public double getMaxStartLatenessMillis() {
+			return maxStartLatenessMillis;
+		}
+		public long[] getStartLatenessHistogram() {
+			return startLatenessHistogram;
+		}
+	}
+
+	public MonitoredExecutor(String name, int threads, int priority) {
+		super(threads, new ThreadFactoryBuilder().setNameFormat(name + "Thread-%d").setPriority(priority).setDaemon(true).build());
+		this.name = name;
+		this.priority = priority;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	static int getBucket(long nanos) {
+		long micros = nanos / 1000;
+		int bucket = micros == 0?0:64 - Long.numberOfLeadingZeros(micros);
+		return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+	}
+
+	@Override
+	protected void beforeExecute(Thread thread, Runnable task) {
+		super.beforeExecute(thread, task);
+
+		long latenessNanos = 0;
+		if (task instanceof RunnableScheduledFuture) {
+			latenessNanos = Math.max(0, -((Delayed)task).getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		int queueDepth = getQueue().size();
+		synchronized (this) {
+			startedTasks++;
+			totalLatenessNanos += latenessNanos;
+			maxLatenessNanos = Math.max(maxLatenessNanos, latenessNanos);
+			maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+			latenessHistogram[getBucket(latenessNanos)]++;
+		}
+	}
+
+	public Metrics getMetrics() {
+		Metrics metrics = new Metrics();
+		metrics.name = name;
+		metrics.priority = priority;
+		metrics.poolSize = getPoolSize();
+		metrics.activeThreads = getActiveCount();
+		metrics.completedTasks = getCompletedTaskCount();
+		for (Runnable task : getQueue()) {
+			metrics.queueDepth++;
+			if (task instanceof Delayed && ((Delayed)task).getDelay(TimeUnit.NANOSECONDS) <= 0) {
+				metrics.overdueTasks++;
+			}
+		}
+
+		synchronized (this) {
+			metrics.maxQueueDepth = maxQueueDepth;
+			metrics.startedTasks = startedTasks;
+			metrics.averageStartLatenessMillis = startedTasks == 0?0:totalLatenessNanos / 1000000.0 / startedTasks;
+			metrics.maxStartLatenessMillis = maxLatenessNanos / 1000000.0;
+			metrics.startLatenessHistogram = latenessHistogram.clone();
+		}
+		return metrics;
+	}
+}
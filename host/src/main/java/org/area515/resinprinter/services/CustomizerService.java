@@ -34,6 +34,7 @@ import org.area515.resinprinter.exception.SliceHandlingException;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.job.Customizer;
+import org.area515.resinprinter.job.CustomizerJournal;
 import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.Previewable;
 import org.area515.resinprinter.job.PrintFileProcessor;
@@ -192,7 +193,7 @@ public class CustomizerService {
 		
 		customizersByName.put(customizer.getName(), customizer);
 		//Don't wait for us to save the file to disk
-		Main.GLOBAL_EXECUTOR.submit(new Runnable(){
+		Main.IO_EXECUTOR.submit(new Runnable(){
 			@Override
 			public void run() {
 				try {
@@ -205,6 +206,17 @@ public class CustomizerService {
 		return customizer;
 	}
 
+	/**
+	 * Used while printing to record the progress of a customizer that is already known. Unlike addOrUpdateCustomizer()
+	 * this doesn't rewrite the customizer's XML file or notify anyone, the progress goes into the CustomizerJournal.
+	 */
+	public void checkpointCustomizer(Customizer customizer) {
+		if (customizersByName.getIfPresent(customizer.getName()) != customizer) {
+			customizersByName.put(customizer.getName(), customizer);
+		}
+		CustomizerJournal.Instance().checkpoint(customizer);
+	}
+
 	@ApiOperation(value="Deletes a Customizer given it's name")
 	@DELETE
 	@Path("delete/{customizerName}")
@@ -54,7 +54,6 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.StreamingOutput;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 
@@ -64,6 +63,7 @@ import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.display.DisplayManager;
 import org.area515.resinprinter.display.GraphicsOutputInterface;
 import org.area515.resinprinter.job.PrintFileProcessor;
+import org.area515.resinprinter.job.render.ImagePool;
 import org.area515.resinprinter.network.NetInterface;
 import org.area515.resinprinter.network.NetworkManager;
 import org.area515.resinprinter.network.WirelessNetwork;
@@ -76,8 +76,10 @@ import org.area515.resinprinter.server.CwhEmailSettings;
 import org.area515.resinprinter.server.HostInformation;
 import org.area515.resinprinter.server.HostProperties;
 import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.server.MonitoredExecutor;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.IOUtilities;
+import org.area515.util.JAXBUtilities;
 import org.area515.util.MailUtilities;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 
@@ -184,7 +186,7 @@ public class MachineService {
 			
 			final NetworkInterface iFace = NetworkInterface.getByInetAddress(InetAddress.getByName(ipAddress));
 			final long startTime = System.currentTimeMillis();
-			restartProcess = Main.GLOBAL_EXECUTOR.submit(new Callable<Boolean>() {
+			restartProcess = Main.IO_EXECUTOR.submit(new Callable<Boolean>() {
 				@Override
 				public Boolean call() throws Exception {
 					boolean iFaceUp = true;
@@ -464,6 +466,33 @@ public class MachineService {
 		 
 		 return deviceStrings;
 	}
+	
+    @ApiOperation(value = "Shows how often slice images were reused from the image pool instead of being allocated.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+    @GET
+    @Path("imagePool/metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ImagePool.Metrics getImagePoolMetrics() {
+		 return ImagePool.Instance().getMetrics();
+	}
+	 
+    @ApiOperation(value = "Shows the priority, queue depth and start lateness of each of the thread pools on the Photonic 3D host. "
+    		+ "Start lateness on the PrintCritical pool is the jitter exposure timers are seeing.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 500, message = SwaggerMetadata.UNEXPECTED_ERROR)})
+    @GET
+    @Path("executors/metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<MonitoredExecutor.Metrics> getExecutorMetrics() {
+    	List<MonitoredExecutor.Metrics> metrics = new ArrayList<MonitoredExecutor.Metrics>();
+    	for (MonitoredExecutor executor : Main.getExecutors()) {
+    		metrics.add(executor.getMetrics());
+    	}
+		return metrics;
+	}
 	 
     
     
@@ -486,9 +515,7 @@ public class MachineService {
 	@Path("machineConfigurations")
 	public void saveMachineConfiguration(MachineConfig machineConfig) throws JAXBException {
 		File machineFile = new File(HostProperties.Instance().MACHINE_DIR, machineConfig.getName() + HostProperties.MACHINE_EXTENSION);
-		JAXBContext jaxbContext = JAXBContext.newInstance(MachineConfig.class);
-		Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-		jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		Marshaller jaxbMarshaller = JAXBUtilities.getMarshaller(MachineConfig.class);
 		jaxbMarshaller.marshal(machineConfig, machineFile);
 	}
 	
@@ -529,9 +556,7 @@ public class MachineService {
 	@Path("slicingProfiles")
 	public void saveSlicingProfile(SlicingProfile slicingProfile) throws JAXBException {
 		File profileFile = new File(HostProperties.Instance().PROFILES_DIR, slicingProfile.getName() + HostProperties.PROFILES_EXTENSION);
-		JAXBContext jaxbContext = JAXBContext.newInstance(SlicingProfile.class);
-		Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-		jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		Marshaller jaxbMarshaller = JAXBUtilities.getMarshaller(SlicingProfile.class);
 		jaxbMarshaller.marshal(slicingProfile, profileFile);
 	}
 	
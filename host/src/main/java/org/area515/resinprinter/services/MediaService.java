@@ -6,7 +6,6 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -40,13 +39,14 @@ import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.server.HostProperties;
-import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.stream.CameraCapture;
+import org.area515.resinprinter.stream.FrameRing;
+import org.area515.resinprinter.stream.FrameScaler;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.Log4jUtil;
 import org.eclipse.jetty.http.HttpStatus;
 
 import com.coremedia.iso.boxes.Container;
-import com.google.common.io.ByteStreams;
 import com.googlecode.mp4parser.FileDataSourceImpl;
 import com.googlecode.mp4parser.authoring.Movie;
 import com.googlecode.mp4parser.authoring.builder.FragmentedMp4Builder;
@@ -63,15 +63,19 @@ public class MediaService {
 	//TODO: We need to Lock per Printer, not a global lock!
 	private Lock processLock = new ReentrantLock();
 	
+	//Live streams and snapshots all read from the same camera process
+	private Lock captureLock = new ReentrantLock();
+	private CameraCapture capture;
+	private FrameScaler scaler = new FrameScaler(HostProperties.Instance().getLiveCaptureWidth(), HostProperties.Instance().getLiveCaptureHeight());
+	
 	//All static for now, just to get this done...
 	private File rawh264StreamFile = new File(System.getProperty("java.io.tmpdir"), "tempraw.h246");
 	private File mp4StreamFile = new File(System.getProperty("java.io.tmpdir"), "temp.mp4");
-	private Process rawH264ProducerProcess;
+	private volatile Process rawH264ProducerProcess;
 	
 	//These are for live streaming only
 	private Map<String, ClientStream> mjpegStreamerClients = new HashMap<String, ClientStream>();
 	private Lock liveStreamerModificationLock = new ReentrantLock(true);
-	private Future<byte[]> nextLiveStreamImage;
 	private ExecutorService liveStreamingThrottlingService;
 	
 	private MediaService() {
@@ -86,42 +90,48 @@ public class MediaService {
 		return mp4StreamFile;
 	}
 	
-	public class SourceImageReader implements Callable<byte[]> {
-		private int x;
-		private int y;
-		private int timeBetweenFrames;
-		private boolean firstIteration;
-		
-		public SourceImageReader(int x, int y, int timeBetweenFrames, boolean firstIteration) {
-			this.x = x;
-			this.y = y;
-			this.timeBetweenFrames = timeBetweenFrames;
-			this.firstIteration = firstIteration;
+	//The camera can only be opened by one process at a time, so it always captures at the configured size and clients are given scaled frames
+	private CameraCapture getCapture() throws IOException {
+		captureLock.lock();
+		try {
+			if (rawH264ProducerProcess != null) {
+				throw new IOException("The camera is busy recording video");
+			}
+			
+			if (capture != null) {
+				return capture;
+			}
+			
+			int x = HostProperties.Instance().getLiveCaptureWidth();
+			int y = HostProperties.Instance().getLiveCaptureHeight();
+			String[] captureCommand = HostProperties.Instance().getLiveCaptureCommand();
+			if (captureCommand == null) {
+				captureCommand = HostProperties.Instance().getImagingCommand();
+			}
+			String[] replacedCommands = new String[captureCommand.length];
+			for (int t = 0; t < captureCommand.length; t++) {
+				replacedCommands[t] = MessageFormat.format(captureCommand[t], x + "", y + "", HostProperties.Instance().getLiveCaptureFramesPerSecond() + "");
+			}
+			
+			capture = new CameraCapture(replacedCommands, HostProperties.Instance().getLiveCaptureRingFrames(), HostProperties.Instance().getLiveCaptureIdleMillis());
+			return capture;
+		} finally {
+			captureLock.unlock();
 		}
-
-		@Override
-		public byte[] call() throws Exception {
-			try {
-				ImageSnapshotCapture taker = new ImageSnapshotCapture(x, y);
-				ByteArrayOutputStream stream = new ByteArrayOutputStream();
-				taker.write(stream);
-				return stream.toByteArray();
-			} catch (IOException | WebApplicationException e) {
-				logger.error("Problem occurred while taking snapshot (recovering)", e);
-				throw e;
-			} finally {
-				liveStreamerModificationLock.lock();//TODO: Can we can eliminate this critical section?
-				try {
-					if (mjpegStreamerClients.size() > 0) {
-						nextLiveStreamImage = Main.GLOBAL_EXECUTOR.submit(new SourceImageReader(x, y, timeBetweenFrames, false));
-					}
-				} finally {
-					liveStreamerModificationLock.unlock();
-				}
-				if (!firstIteration) {
-					Thread.sleep(timeBetweenFrames);
-				}
+	}
+	
+	private void stopCapture() {
+		captureLock.lock();
+		try {
+			if (capture != null) {
+				capture.stop();
+				capture.awaitStop(HostProperties.Instance().getLiveCaptureTimeoutMillis());
+				capture = null;
 			}
+		} catch (InterruptedException e) {
+			logger.warn("Interrupted while waiting for the camera to stop");
+		} finally {
+			captureLock.unlock();
 		}
 	}
 	
@@ -137,40 +147,22 @@ public class MediaService {
 		@Override
 		public void write(OutputStream output) throws IOException, WebApplicationException {
 			logger.debug("Image snapshot start", ()->Log4jUtil.startTimer("PictureTimer"));
-			String[] streamingCommand = HostProperties.Instance().getImagingCommand();
-			String[] replacedCommands = new String[streamingCommand.length];
-			for (int t = 0; t < streamingCommand.length; t++) {
-				replacedCommands[t] = MessageFormat.format(streamingCommand[t], x, y);
-			}
-			
-			InputStream inputStream = null;
-			processLock.lock();
-			Process imagingProcess = null;
 			try {
-				imagingProcess = Runtime.getRuntime().exec(replacedCommands);
-				ByteStreams.copy(imagingProcess.getInputStream(), output);
+				CameraCapture camera = getCapture();
+				//Only a frame that was taken after the snapshot was asked for will do
+				FrameRing.Frame frame = camera.nextFrame(camera.getRing().getLatestSequence(), HostProperties.Instance().getLiveCaptureTimeoutMillis());
+				output.write(scaler.scale(frame, x, y));
 				logger.debug("Image snapshot complete {}ms", ()-> Log4jUtil.completeTimer("PictureTimer"));
+			} catch (IOException e) {
+				logger.error("Couldn't take snapshot", e);
+				throw new WebApplicationException(e.getMessage(), 400);
+			} catch (InterruptedException e) {
+				throw new WebApplicationException("Interrupted while taking snapshot", 400);
 			} finally {
-				if (inputStream != null) {
-					try {
-						inputStream.close();
-					} catch (IOException e) {
-					}
-				}
-				if (output != null) {
-					try {
-						output.close();
-					} catch (IOException e) {
-					}
-				}
-				if (imagingProcess != null && imagingProcess.exitValue() != 0) {
-					ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
-					ByteStreams.copy(imagingProcess.getErrorStream(), errorOutput);
-					String error = new String(errorOutput.toByteArray());
-					logger.error(error);
-					throw new WebApplicationException(error, 400);
+				try {
+					output.close();
+				} catch (IOException e) {
 				}
-				processLock.unlock();
 			}
 		}
 	}
@@ -182,19 +174,27 @@ public class MediaService {
 
 	public class ClientStream implements StreamingOutput {
 		private String clientId;
+		private int x;
+		private int y;
 		private CloseType closeNow;
 		
-		public ClientStream(String clientId) {
+		public ClientStream(String clientId, int x, int y) {
 			this.clientId = clientId;
+			this.x = x;
+			this.y = y;
 		}
 		
 		@Override
 		public void write(OutputStream outputStream) throws IOException, WebApplicationException {
-			while (true) {//Stream forever until they tell us to quit.
-				try {
+			long sequence = -1;
+			try {
+				while (true) {//Stream forever until they tell us to quit.
 					logger.debug("Client asking to stream", ()->Log4jUtil.startTimer("ClientStreamTimer"));
 					
-					byte[] imageData = nextLiveStreamImage.get();
+					//Every client reads the same frames, a client that's too slow just skips the frames it missed
+					FrameRing.Frame frame = getCapture().nextFrame(sequence, HostProperties.Instance().getLiveCaptureTimeoutMillis());
+					sequence = frame.getSequence();
+					byte[] imageData = scaler.scale(frame, x, y);
 					Future<Object> run = liveStreamingThrottlingService.submit(new Callable<Object>() {
 						public Object call() throws IOException {
 						    outputStream.write((
@@ -214,27 +214,29 @@ public class MediaService {
 					//We've been asked to close nicely from the browser instead of the user just closing the page.
 					if (closeNow != null) {
 						outputStream.close();
+						break;
 					}
-				} catch (InterruptedException | ExecutionException e) {
-					logger.debug("Client destroyed with close status of:{}", closeNow);
-					
-					if (closeNow == null || closeNow == CloseType.Normal) {
-						liveStreamerModificationLock.lock();
-						try {
+				}
+			} catch (InterruptedException e) {
+				logger.debug("Client interrupted", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException)e.getCause();
+				}
+				
+				logger.error("Unknown error while streaming", e);
+			} finally {
+				logger.debug("Client destroyed with close status of:{}", closeNow);
+				if (closeNow == null || closeNow == CloseType.Normal) {
+					liveStreamerModificationLock.lock();
+					try {
+						//A newer stream with the same clientId isn't ours to remove
+						if (mjpegStreamerClients.get(clientId) == this) {
 							mjpegStreamerClients.remove(clientId);
-						} finally {
-							liveStreamerModificationLock.unlock();
 						}
+					} finally {
+						liveStreamerModificationLock.unlock();
 					}
-					if (e instanceof InterruptedException) {
-						e.printStackTrace();
-						break;
-					}
-					if (e.getCause().getCause() instanceof IOException) {
-						throw (IOException)e.getCause().getCause();
-					}
-					
-					logger.error("Unknown error while streaming", e);
 				}
 			}
 		}
@@ -300,34 +302,41 @@ public class MediaService {
 
 			logger.info("Attempting to start video");
 			final String[] streamingCommand = HostProperties.Instance().getStreamingCommand();
+			//The recording needs the camera to itself, live streams and snapshots are refused until it's stopped
+			captureLock.lock();
 			try {
-				String[] replacedCommands = new String[streamingCommand.length];
-				StringBuffer buffer = new StringBuffer();
-				for (int t = 0; t < streamingCommand.length; t++) {
-					replacedCommands[t] = MessageFormat.format(streamingCommand[t], x, y);
-					buffer.append(replacedCommands[t]);
-					buffer.append(" ");
-				}				
+				stopCapture();
+				try {
+					String[] replacedCommands = new String[streamingCommand.length];
+					StringBuffer buffer = new StringBuffer();
+					for (int t = 0; t < streamingCommand.length; t++) {
+						replacedCommands[t] = MessageFormat.format(streamingCommand[t], x, y);
+						buffer.append(replacedCommands[t]);
+						buffer.append(" ");
+					}				
 				
-				rawH264ProducerProcess = Runtime.getRuntime().exec(replacedCommands);
-				final BufferedInputStream inputStream = new BufferedInputStream(rawH264ProducerProcess.getInputStream());
-				final FileOutputStream outputStream = new FileOutputStream(rawh264StreamFile);
-				final BufferedInputStream errorStream = new BufferedInputStream(rawH264ProducerProcess.getErrorStream());
+					rawH264ProducerProcess = Runtime.getRuntime().exec(replacedCommands);
+					final BufferedInputStream inputStream = new BufferedInputStream(rawH264ProducerProcess.getInputStream());
+					final FileOutputStream outputStream = new FileOutputStream(rawh264StreamFile);
+					final BufferedInputStream errorStream = new BufferedInputStream(rawH264ProducerProcess.getErrorStream());
 				
-				Thread writingThread = new Thread(new StreamCopier(inputStream, outputStream, buffer.toString()), "OriginalVideoWritingThread");
-				writingThread.setDaemon(true);
-				writingThread.start();
-				Thread errorThread = new Thread(new StreamCopier(errorStream, System.err, buffer.toString() + " LOG"), "VideoErrorLoggingThread");
-				errorThread.setDaemon(true);
-				errorThread.start();
-				return new MachineResponse("startrecord", true, "Printer:" + printerName + " started recording");
-			} catch (IOException e) {
-				logger.error("Couldn't start command line process:" + Arrays.toString(streamingCommand), e);
-				if (rawH264ProducerProcess != null) {
-					rawH264ProducerProcess.destroy();
-					rawH264ProducerProcess = null;
+					Thread writingThread = new Thread(new StreamCopier(inputStream, outputStream, buffer.toString()), "OriginalVideoWritingThread");
+					writingThread.setDaemon(true);
+					writingThread.start();
+					Thread errorThread = new Thread(new StreamCopier(errorStream, System.err, buffer.toString() + " LOG"), "VideoErrorLoggingThread");
+					errorThread.setDaemon(true);
+					errorThread.start();
+					return new MachineResponse("startrecord", true, "Printer:" + printerName + " started recording");
+				} catch (IOException e) {
+					logger.error("Couldn't start command line process:" + Arrays.toString(streamingCommand), e);
+					if (rawH264ProducerProcess != null) {
+						rawH264ProducerProcess.destroy();
+						rawH264ProducerProcess = null;
+					}
+					return new MachineResponse("startrecord", false, "Printer:" + printerName + " couldn't record");
 				}
-				return new MachineResponse("startrecord", false, "Printer:" + printerName + " couldn't record");
+			} finally {
+				captureLock.unlock();
 			}
 		} finally {
 			processLock.unlock();
@@ -420,11 +429,7 @@ public class MediaService {
 			if (stream != null) {
 				stream.closeWithoutRemovingClient();//We don't want to remove the client because it will happen after this critical section and it will actually remove us and not the "old" one!!
 			}
-			stream = new ClientStream(clientId);
-			
-			if (mjpegStreamerClients.size() == 0) {
-				nextLiveStreamImage = Main.GLOBAL_EXECUTOR.submit(new SourceImageReader(x, y, 1000, true));
-			}
+			stream = new ClientStream(clientId, x, y);
 			mjpegStreamerClients.put(clientId, stream);
 		} finally {
 			liveStreamerModificationLock.unlock();
@@ -9,6 +9,8 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +36,7 @@ import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.JobStatus;
 import org.area515.resinprinter.job.PrintJob;
 import org.area515.resinprinter.job.PrintJobManager;
+import org.area515.resinprinter.job.timing.LayerTimeline;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.slice.StlError;
 import org.area515.resinprinter.stl.Triangle3d;
@@ -395,4 +398,93 @@ public class PrintJobService {
 			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Couldn't convert geometry to JSON").build();
 		}
 	}
+    
+    @ApiOperation(value="Retrieves the time that the render, transform, preslice gcode, exposure, lift and notification phases took for the most recent layers "
+    		+ "of the PrintJob designated by the specified job id, along with a histogram of each phase across every layer of the print.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Invalid job id"),
+            @ApiResponse(code = 400, message = "Job not found")
+            })
+	@GET
+	@Path("layerTimeline/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Response getLayerTimeline(@PathParam("jobId") String jobId) {
+		UUID uuid = null;
+		PrintJob printJob = null;
+		try {
+			uuid = UUID.fromString(jobId);
+			printJob = PrintJobManager.Instance().getJob(uuid);
+		} catch (IllegalArgumentException e) {
+			return Response.status(Status.BAD_REQUEST).entity("Invalid jobId: "+ jobId).build();
+		}
+		if (printJob == null) {
+			return Response.status(Status.BAD_REQUEST).entity("Job not found: "+ jobId).build();
+		}
+		
+		return Response.status(Status.OK).entity(printJob.getLayerTimeline().getSnapshot()).build();
+	}
+    
+    @ApiOperation(value="Downloads the layer timeline of the PrintJob designated by the specified job id as a CSV file with one line per layer. "
+    		+ "Every phase is in milliseconds.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = SwaggerMetadata.SUCCESS),
+            @ApiResponse(code = 400, message = "Invalid job id"),
+            @ApiResponse(code = 400, message = "Job not found")
+            })
+	/**
+	 * Job names come from uploaded file names, so they can hold quotes, semicolons, line breaks or anything else. The quoted filename
+	 * only keeps letters, digits and a little punctuation, and the full name is sent in the RFC 6266 filename* form.
+	 */
+	static String buildAttachmentDisposition(String fileName) {
+		StringBuilder safeName = new StringBuilder();
+		for (int t = 0; t < fileName.length(); t++) {
+			char character = fileName.charAt(t);
+			safeName.append(isAsciiLetterOrDigit(character) || " ()-._".indexOf(character) >= 0?character:'_');
+		}
+
+		StringBuilder encodedName = new StringBuilder();
+		for (byte utf8Byte : fileName.getBytes(StandardCharsets.UTF_8)) {
+			char character = (char)(utf8Byte & 0xff);
+			if (isAsciiLetterOrDigit(character) || "!#$&+-.^_`|~".indexOf(character) >= 0) {
+				encodedName.append(character);
+			} else {
+				encodedName.append(String.format("%%%02X", (int)character));
+			}
+		}
+		return "attachment; filename=\"" + safeName + "\"; filename*=UTF-8''" + encodedName;
+	}
+
+	private static boolean isAsciiLetterOrDigit(char character) {
+		return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z') || (character >= '0' && character <= '9');
+	}
+
+	@GET
+	@Path("layerTimeline/{jobId}/csv")
+	@Produces("text/csv")
+	public Response getLayerTimelineCSV(@PathParam("jobId") String jobId) {
+		UUID uuid = null;
+		PrintJob printJob = null;
+		try {
+			uuid = UUID.fromString(jobId);
+			printJob = PrintJobManager.Instance().getJob(uuid);
+		} catch (IllegalArgumentException e) {
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Invalid jobId: "+ jobId).build();
+		}
+		if (printJob == null) {
+			return Response.status(Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Job not found: "+ jobId).build();
+		}
+		
+		final LayerTimeline timeline = printJob.getLayerTimeline();
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException, WebApplicationException {
+				timeline.writeCSV(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			}
+		};
+		return Response.status(Status.OK)
+				.entity(output)
+				.header("Content-Disposition", buildAttachmentDisposition(printJob.getJobName() + ".timeline.csv"))
+				.build();
+	}
 }
@@ -6,7 +6,6 @@ import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -21,6 +20,8 @@ import java.util.List;
 import java.util.Map;
 
 import javax.annotation.security.RolesAllowed;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
@@ -28,12 +29,11 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
-import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
-import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -53,12 +53,12 @@ import org.area515.resinprinter.notification.NotificationManager;
 import org.area515.resinprinter.printer.Printer;
 import org.area515.resinprinter.server.HostProperties;
 import org.area515.resinprinter.server.Main;
+import org.area515.resinprinter.stream.FileRangeServer;
 import org.area515.resinprinter.util.security.PhotonicUser;
 import org.area515.util.PrintFileFilter;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 
-import com.google.common.io.ByteStreams;
 
 @Api(value="printables")
 @RolesAllowed(PhotonicUser.FULL_RIGHTS)
@@ -201,20 +201,13 @@ public class PrintableService {
 	@GET
 	@Path("/downloadPrintableFile/{filename}")
 	@Produces("application/octet-stream")
-	public StreamingOutput downloadPrintableFile(@PathParam("filename")String fileName) {
-		return new StreamingOutput() {
-			@Override
-			public void write(OutputStream output) throws IOException, WebApplicationException {
-				InputStream stream = new FileInputStream(new File(HostProperties.Instance().getUploadDir(), fileName));
-				try {
-					ByteStreams.copy(stream, output);
-				} finally {
-					try {
-						stream.close();
-					} catch (IOException e) {}
-				}
-			}
-		};
+	public void downloadPrintableFile(
+			@PathParam("filename")String fileName,
+			@Context HttpServletRequest request,
+			@Context HttpServletResponse response) throws IOException {
+		//Written straight to the servlet response so that Jetty can send the file without copying it through the heap, serve() commits
+		//the response so the 204 that RESTEasy gives a void resource can't replace the 200, 206 or 304 it picked
+		FileRangeServer.serve(request, response, new File(HostProperties.Instance().getUploadDir(), fileName), "application/octet-stream");
 	}
 	
 	// Parse Content-Disposition header to get the original file name
@@ -358,7 +351,7 @@ public class PrintableService {
 			        CloseableHttpResponse response = httpclient.execute(httpget);
 			        
 					final InputStream stream = response.getEntity().getContent();
-			        Main.GLOBAL_EXECUTOR.submit(new Runnable() {
+			        Main.IO_EXECUTOR.submit(new Runnable() {
 						@Override
 						public void run() {
 							try {
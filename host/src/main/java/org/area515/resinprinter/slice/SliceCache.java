@@ -0,0 +1,330 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Polygon;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+
+/**
+ * Keeps the scanlines and polygons of every slice of a model on disk so that reprints, resumed prints and previews
+ * can read a slice instead of slicing it again.
+ *
+ * A cache file starts with a header and a table with the file offset of every z index, followed by the slices in the
+ * order they were written. A slice is found with one seek into the table and one read of the record. An offset of zero
+ * means that z index hasn't been written yet. The record is forced to disk before it's offset is written, and every record
+ * starts with it's length and a CRC32 of it's contents. A record that was torn by a power loss anyway is treated as a miss.
+ *
+ * Only slices without errors are cached so that a cached slice never hides an error notification from the user.
+ *
+ * Cache files are keyed on SLICER_VERSION as well as the model and settings, so slices cut by an older slicer are never read back.
+ */
+public class SliceCache implements Closeable {
+	private static final Logger logger = LogManager.getLogger();
+	//Bump this whenever a change to ZSlicer(or to the record format below) changes what is cached for the same model and settings
+	static final int SLICER_VERSION = 2;
+	private static final int MAGIC = 0x534c4331;//SLC1
+	static final int HEADER_SIZE = 16;
+	//Length and CRC32 of the record
+	private static final int RECORD_HEADER_SIZE = 8;
+	private static final String EXTENSION = ".slices";
+	private static final Map<String, String> HASHES_BY_FILE_VERSION = new ConcurrentHashMap<String, String>();
+	//A print and a preview of the same model share the same cache file, so they need to share the same instance
+	private static final Map<File, SliceCache> OPEN_CACHES = new HashMap<File, SliceCache>();
+
+	private RandomAccessFile file;
+	private File cacheFile;
+	private int firstZ;
+	private long[] offsets;
+	private int openCount = 1;
+
+	private SliceCache(File cacheFile, int firstZ, int layerCount) throws IOException {
+		this.cacheFile = cacheFile;
+		this.firstZ = firstZ;
+		this.offsets = new long[layerCount];
+		this.file = new RandomAccessFile(cacheFile, "rw");
+
+		try {
+			if (file.length() >= HEADER_SIZE + layerCount * 8l) {
+				file.seek(0);
+				if (file.readInt() == MAGIC && file.readInt() == SLICER_VERSION && file.readInt() == firstZ && file.readInt() == layerCount) {
+					byte[] table = new byte[layerCount * 8];
+					file.readFully(table);
+					ByteBuffer.wrap(table).asLongBuffer().get(offsets);
+					return;
+				}
+				logger.info("Slice cache:{} doesn't match this model, it will be rebuilt", cacheFile);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + layerCount * 8);
+			header.putInt(MAGIC);
+			header.putInt(SLICER_VERSION);
+			header.putInt(firstZ);
+			header.putInt(layerCount);
+			file.setLength(0);
+			file.write(header.array());
+		} catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens(or creates) the cache for a model file that was sliced with the given settings.
+	 *
+	 * @param settings Everything that changes the outcome of a slice(scale, dots per mm, slice height...)
+	 * @param maxCacheFiles The least recently used cache files are deleted to keep the directory at this size
+	 */
+	public static SliceCache open(File directory, File modelFile, String settings, int firstZ, int layerCount, int maxCacheFiles) throws IOException {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Couldn't create slice cache directory:" + directory);
+		}
+
+		File cacheFile = new File(directory, buildKey(modelFile, settings) + EXTENSION);
+		synchronized (OPEN_CACHES) {
+			SliceCache cache = OPEN_CACHES.get(cacheFile);
+			if (cache != null) {
+				synchronized (cache) {
+					cache.openCount++;
+				}
+				return cache;
+			}
+			
+			cache = new SliceCache(cacheFile, firstZ, layerCount);
+			OPEN_CACHES.put(cacheFile, cache);
+			cacheFile.setLastModified(System.currentTimeMillis());
+			removeOldCacheFiles(directory, maxCacheFiles);
+			return cache;
+		}
+	}
+
+	private static void removeOldCacheFiles(File directory, int maxCacheFiles) {
+		File[] cacheFiles = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		if (cacheFiles == null || cacheFiles.length <= maxCacheFiles) {
+			return;
+		}
+
+		Arrays.sort(cacheFiles, Comparator.comparingLong(File::lastModified));
+		for (int t = 0; t < cacheFiles.length - maxCacheFiles; t++) {
+			if (OPEN_CACHES.containsKey(cacheFiles[t])) {
+				continue;
+			}
+			logger.info("Removing old slice cache:{}", cacheFiles[t]);
+			if (!cacheFiles[t].delete()) {
+				logger.warn("Couldn't delete old slice cache:{}", cacheFiles[t]);
+			}
+		}
+	}
+
+	/**
+	 * The content of the model is hashed, but the hash is remembered for as long as the file isn't changed.
+	 */
+	public static String buildKey(File modelFile, String settings) throws IOException {
+		return buildKey(modelFile, settings, SLICER_VERSION);
+	}
+
+	static String buildKey(File modelFile, String settings, int slicerVersion) throws IOException {
+		String fileVersion = modelFile.getAbsolutePath() + ":" + modelFile.length() + ":" + modelFile.lastModified();
+		String fileHash = HASHES_BY_FILE_VERSION.get(fileVersion);
+		if (fileHash == null) {
+			MessageDigest digest = getDigest();
+			InputStream stream = new FileInputStream(modelFile);
+			try {
+				byte[] buffer = new byte[65536];
+				int count;
+				while ((count = stream.read(buffer)) > 0) {
+					digest.update(buffer, 0, count);
+				}
+			} finally {
+				stream.close();
+			}
+			fileHash = new BigInteger(1, digest.digest()).toString(16);
+			HASHES_BY_FILE_VERSION.put(fileVersion, fileHash);
+		}
+
+		MessageDigest digest = getDigest();
+		digest.update((fileHash + ":" + slicerVersion + ":" + settings).getBytes("UTF-8"));
+		return new BigInteger(1, digest.digest()).toString(16);
+	}
+
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA1 isn't available", e);
+		}
+	}
+
+	private int getLayer(int z) {
+		int layer = z - firstZ;
+		return layer < 0 || layer >= offsets.length?-1:layer;
+	}
+
+	public synchronized boolean contains(int z) {
+		int layer = getLayer(z);
+		return layer >= 0 && offsets[layer] > 0;
+	}
+
+	/**
+	 * @return the slice or null if it hasn't been cached
+	 */
+	public synchronized SliceResult read(int z) throws IOException {
+		int layer = getLayer(z);
+		if (layer < 0 || offsets[layer] == 0) {
+			return null;
+		}
+
+		ByteBuffer buffer = readRecord(offsets[layer]);
+		if (buffer == null) {
+			logger.warn("Slice cache:{} has a damaged record for z:{}, it will be sliced again", cacheFile, z);
+			offsets[layer] = 0;
+			return null;
+		}
+
+		return readSlice(z, buffer);
+	}
+
+	//Returns null if the record doesn't fit in the file or doesn't match it's checksum
+	private ByteBuffer readRecord(long offset) throws IOException {
+		if (offset + RECORD_HEADER_SIZE > file.length()) {
+			return null;
+		}
+
+		file.seek(offset);
+		int length = file.readInt();
+		int checksum = file.readInt();
+		if (length < 0 || offset + RECORD_HEADER_SIZE + length > file.length()) {
+			return null;
+		}
+
+		byte[] record = new byte[length];
+		file.readFully(record);
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		if ((int)crc.getValue() != checksum) {
+			return null;
+		}
+		return ByteBuffer.wrap(record);
+	}
+
+	private static SliceResult readSlice(int z, ByteBuffer buffer) {
+		int buildArea = buffer.getInt();
+		int scanLineCount = buffer.getInt();
+		List<Line3d> scanLines = new ArrayList<Line3d>(scanLineCount);
+		for (int t = 0; t < scanLineCount; t++) {
+			int y = buffer.getInt();
+			int x1 = buffer.getInt();
+			int x2 = buffer.getInt();
+			scanLines.add(new Line3d(new Point3d(x1, y, 0), new Point3d(x2, y, 0), null, null, false));
+		}
+
+		int polygonCount = buffer.getInt();
+		List<Polygon> polygons = new ArrayList<Polygon>(polygonCount);
+		for (int t = 0; t < polygonCount; t++) {
+			int points = buffer.getInt();
+			int[] xpoints = new int[points];
+			int[] ypoints = new int[points];
+			buffer.asIntBuffer().get(xpoints);
+			buffer.position(buffer.position() + points * 4);
+			buffer.asIntBuffer().get(ypoints);
+			buffer.position(buffer.position() + points * 4);
+			polygons.add(new Polygon(xpoints, ypoints, points));
+		}
+
+		return new SliceResult(z, Collections.<List<Line3d>>emptyList(), polygons, scanLines, Collections.<StlError>emptyList(), buildArea);
+	}
+
+	/**
+	 * Stores a slice unless it has errors, or it's already cached
+	 */
+	public synchronized void write(SliceResult slice) throws IOException {
+		int layer = getLayer(slice.getZIndex());
+		if (layer < 0 || offsets[layer] > 0 || !slice.getErrors().isEmpty()) {
+			return;
+		}
+
+		//Record length and checksum, then the build area, scanline count and polygon count followed by the scanlines and polygons
+		int size = RECORD_HEADER_SIZE + 12 + slice.getFillInScanLines().size() * 12;
+		for (Polygon polygon : slice.getFillInPolygons()) {
+			size += 4 + polygon.npoints * 8;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(size - RECORD_HEADER_SIZE);
+		buffer.putInt(0);
+		buffer.putInt(slice.getBuildArea());
+		buffer.putInt(slice.getFillInScanLines().size());
+		for (Line3d scanLine : slice.getFillInScanLines()) {
+			int y1 = (int)Math.round(scanLine.getPointOne().y);
+			int y2 = (int)Math.round(scanLine.getPointTwo().y);
+			if (y1 != y2) {
+				logger.warn("Not caching z:{} since it has a scanline that isn't horizontal:{}", slice.getZIndex(), scanLine);
+				return;
+			}
+			buffer.putInt(y1);
+			buffer.putInt((int)Math.round(scanLine.getPointOne().x));
+			buffer.putInt((int)Math.round(scanLine.getPointTwo().x));
+		}
+		buffer.putInt(slice.getFillInPolygons().size());
+		for (Polygon polygon : slice.getFillInPolygons()) {
+			buffer.putInt(polygon.npoints);
+			for (int t = 0; t < polygon.npoints; t++) {
+				buffer.putInt(polygon.xpoints[t]);
+			}
+			for (int t = 0; t < polygon.npoints; t++) {
+				buffer.putInt(polygon.ypoints[t]);
+			}
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE);
+		buffer.putInt(4, (int)crc.getValue());
+
+		long offset = file.length();
+		file.seek(offset);
+		file.write(buffer.array());
+		//The record has to be on disk before anything points to it
+		file.getChannel().force(false);
+		file.seek(HEADER_SIZE + layer * 8l);
+		file.writeLong(offset);
+		offsets[layer] = offset;
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (OPEN_CACHES) {
+			synchronized (this) {
+				if (--openCount > 0) {
+					return;
+				}
+				
+				OPEN_CACHES.remove(cacheFile);
+				file.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.area515.resinprinter.stl.Line3d;
+
+/**
+ * The loops, polygons, scanlines and errors for a single z index.
+ *
+ * A SliceResult is never modified after ZSlicer.slice() returns it, so it can be handed between the slicing
+ * threads and the rendering thread without any locking.
+ */
+public class SliceResult {
+	private final int zIndex;
+	private final List<List<Line3d>> completedLoops;
+	private final List<Polygon> fillInPolygons;
+	private final List<Line3d> fillInScanLines;
+	private final List<StlError> errors;
+	private final int buildArea;
+
+	public SliceResult(int zIndex, List<List<Line3d>> completedLoops, List<Polygon> fillInPolygons, List<Line3d> fillInScanLines, List<StlError> errors, int buildArea) {
+		this.zIndex = zIndex;
+		this.completedLoops = Collections.unmodifiableList(completedLoops);
+		this.fillInPolygons = Collections.unmodifiableList(fillInPolygons);
+		this.fillInScanLines = Collections.unmodifiableList(fillInScanLines);
+		this.errors = Collections.unmodifiableList(errors);
+		this.buildArea = buildArea;
+	}
+
+	public int getZIndex() {
+		return zIndex;
+	}
+
+	public List<List<Line3d>> getCompletedLoops() {
+		return completedLoops;
+	}
+
+	public List<Polygon> getFillInPolygons() {
+		return fillInPolygons;
+	}
+
+	public List<Line3d> getFillInScanLines() {
+		return fillInScanLines;
+	}
+
+	public List<StlError> getErrors() {
+		return errors;
+	}
+
+	public int getBuildArea() {
+		return buildArea;
+	}
+
+	public void paint(Graphics2D g, boolean fillBlackFirst) {
+		if (fillBlackFirst) {
+			g.setBackground(Color.black);
+			Rectangle r = g.getDeviceConfiguration().getBounds();
+			g.clearRect(0, 0, r.width, r.height);
+		}
+
+		g.setColor(Color.white);
+		for (Line3d currentLine : fillInScanLines) {
+			int x1 = (int)Math.round(currentLine.getPointOne().x);
+			int y1 = (int)Math.round(currentLine.getPointOne().y);
+			int x2 = (int)Math.round(currentLine.getPointTwo().x);
+			int y2 = (int)Math.round(currentLine.getPointTwo().y);
+			g.drawLine(x1, y1, x2, y2);
+		}
+
+		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+		for (Polygon currentPolygon : fillInPolygons) {
+			g.drawPolygon(currentPolygon);
+		}
+	}
+
+	/**
+	 * Writes the same scanlines and polygon outlines that paint() draws straight into the pixels of a TYPE_BYTE_GRAY image,
+	 * without going through Graphics2D. The image is cleared to black first.
+	 *
+	 * @return the number of white pixels in the image
+	 */
+	public long rasterize(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+			throw new IllegalArgumentException("Slices can only be rasterized into TYPE_BYTE_GRAY images");
+		}
+
+		byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		int stride = ((ComponentSampleModel)image.getSampleModel()).getScanlineStride();
+		int width = image.getWidth();
+		int height = image.getHeight();
+		Arrays.fill(pixels, (byte)0);
+
+		long area = 0;
+		for (Line3d currentLine : fillInScanLines) {
+			int y = (int)Math.round(currentLine.getPointOne().y);
+			int x1 = (int)Math.round(currentLine.getPointOne().x);
+			int x2 = (int)Math.round(currentLine.getPointTwo().x);
+			if (y != (int)Math.round(currentLine.getPointTwo().y)) {
+				area += rasterizeLine(pixels, stride, width, height, x1, y, x2, (int)Math.round(currentLine.getPointTwo().y));
+			} else {
+				area += rasterizeSpan(pixels, stride, width, height, y, x1, x2);
+			}
+		}
+
+		for (Polygon currentPolygon : fillInPolygons) {
+			//Graphics2D doesn't draw anything for a polygon with a single point
+			if (currentPolygon.npoints < 2) {
+				continue;
+			}
+			for (int t = 0; t < currentPolygon.npoints; t++) {
+				int next = t + 1 < currentPolygon.npoints?t + 1:0;
+				area += rasterizeLine(pixels, stride, width, height, currentPolygon.xpoints[t], currentPolygon.ypoints[t], currentPolygon.xpoints[next], currentPolygon.ypoints[next]);
+			}
+		}
+
+		return area;
+	}
+
+	private static int rasterizeSpan(byte[] pixels, int stride, int width, int height, int y, int x1, int x2) {
+		if (y < 0 || y >= height) {
+			return 0;
+		}
+		if (x1 > x2) {
+			int swap = x1;
+			x1 = x2;
+			x2 = swap;
+		}
+
+		int lit = 0;
+		int row = y * stride;
+		for (int x = Math.max(x1, 0); x <= x2 && x < width; x++) {
+			if (pixels[row + x] == 0) {
+				pixels[row + x] = (byte)0xff;
+				lit++;
+			}
+		}
+		return lit;
+	}
+
+	//Bresenham, with both end points included the same way Graphics2D.drawLine() does it
+	private static int rasterizeLine(byte[] pixels, int stride, int width, int height, int x1, int y1, int x2, int y2) {
+		int lit = 0;
+		int dx = Math.abs(x2 - x1);
+		int dy = -Math.abs(y2 - y1);
+		int stepX = x1 < x2?1:-1;
+		int stepY = y1 < y2?1:-1;
+		int error = dx + dy;
+		while (true) {
+			if (x1 >= 0 && x1 < width && y1 >= 0 && y1 < height && pixels[y1 * stride + x1] == 0) {
+				pixels[y1 * stride + x1] = (byte)0xff;
+				lit++;
+			}
+			if (x1 == x2 && y1 == y2) {
+				return lit;
+			}
+
+			int doubleError = error * 2;
+			if (doubleError >= dy) {
+				error += dy;
+				x1 += stepX;
+			}
+			if (doubleError <= dx) {
+				error += dx;
+				y1 += stepY;
+			}
+		}
+	}
+
+	public String toString() {
+		return "z:" + zIndex + " loops:" + completedLoops.size() + " area:" + buildArea + " errors:" + errors.size();
+	}
+}
@@ -0,0 +1,109 @@
+package org.area515.resinprinter.slice;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Slices a bounded number of layers ahead of the layer that is currently being printed.
+ *
+ * Every time a layer is requested, the layers behind it are forgotten and the next layersAhead layers(in the
+ * direction of the build) are queued onto the slicing executor. This way a slow, complex layer has already had
+ * several exposures worth of time to slice before the print loop needs it.
+ *
+ * The executor is shared(Main.SLICING_EXECUTOR) and is never shut down by the pipeline. It mustn't be the executor
+ * that getSlice is called from, since a slice that is waited on could be queued behind the tasks waiting on it.
+ */
+public class SlicingPipeline {
+	private static final Logger logger = LogManager.getLogger();
+
+	private ZSlicer slicer;
+	private ExecutorService executor;
+	private int layersAhead;
+	private int step;
+	private int minZ;
+	private int maxZ;
+	private boolean shutdown;
+	private Map<Integer, Future<SliceResult>> slices = new HashMap<Integer, Future<SliceResult>>();
+
+	public SlicingPipeline(ZSlicer slicer, ExecutorService executor, int layersAhead, int step) {
+		if (step == 0) {
+			throw new IllegalArgumentException("Step must be a non zero number of slices");
+		}
+
+		this.slicer = slicer;
+		this.layersAhead = layersAhead;
+		this.step = step;
+		this.minZ = slicer.getZMinIndex();
+		this.maxZ = slicer.getZMaxIndex() + 1;
+		this.executor = executor;
+	}
+
+	private Future<SliceResult> requestSlice(final int z) {
+		Future<SliceResult> slice = slices.get(z);
+		if (slice == null) {
+			slice = executor.submit(new Callable<SliceResult>() {
+				@Override
+				public SliceResult call() throws Exception {
+					return slicer.getSlice(z);
+				}
+			});
+			slices.put(z, slice);
+		}
+
+		return slice;
+	}
+
+	public SliceResult getSlice(int z) throws InterruptedException, ExecutionException {
+		Future<SliceResult> slice;
+		int slicesInPipeline;
+		synchronized (this) {
+			if (shutdown) {
+				throw new IllegalStateException("Slicing pipeline has already been shutdown");
+			}
+
+			slice = requestSlice(z);
+
+			//Forget all of the slices that are behind us
+			Iterator<Map.Entry<Integer, Future<SliceResult>>> sliceIter = slices.entrySet().iterator();
+			while (sliceIter.hasNext()) {
+				Map.Entry<Integer, Future<SliceResult>> entry = sliceIter.next();
+				if ((entry.getKey() - z) * step < 0) {
+					entry.getValue().cancel(false);
+					sliceIter.remove();
+				}
+			}
+
+			for (int t = 1; t <= layersAhead; t++) {
+				int nextZ = z + t * step;
+				if (nextZ < minZ || nextZ > maxZ) {
+					break;
+				}
+
+				requestSlice(nextZ);
+			}
+			slicesInPipeline = slices.size();
+		}
+
+		logger.debug("Waiting on slice:{} with {} slices in pipeline", z, slicesInPipeline);
+		return slice.get();
+	}
+
+	/**
+	 * Cancels every slice this pipeline queued and interrupts the ones that are running. The executor is left running.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		for (Future<SliceResult> slice : slices.values()) {
+			slice.cancel(true);
+		}
+		slices.clear();
+	}
+}
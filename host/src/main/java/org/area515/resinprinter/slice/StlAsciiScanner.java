@@ -0,0 +1,267 @@
+package org.area515.resinprinter.slice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits an ASCII STL file into words and line endings straight out of a byte buffer.
+ *
+ * This replaces a StreamTokenizer, which allocated a String for every word in the file. Keywords are compared
+ * in place with isWord() and numbers are parsed in place by getNumber(), so the only Strings that are ever
+ * built are the name of the solid and the odd number that is too long to be parsed exactly without help.
+ *
+ *     solid /users/vis/dru/wedge.stl
+ *       facet normal -1 0 0
+ *         outer loop
+ *           vertex 0.005 1 0
+ *           vertex 0 0.543 0
+ *           vertex 0.453 1 1
+ *         endloop
+ *       endfacet
+ *     endsolid /users/vis/dru/wedge.stl
+ */
+public class StlAsciiScanner {
+	public static final int TT_EOF = -1;
+	public static final int TT_EOL = '\n';
+	public static final int TT_WORD = -3;
+
+	private static final int BUFFER_SIZE = 65536;
+	//Every double up to 10^22 is exact, so a mantissa of 15 digits or less can be scaled with a single rounding
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	private InputStream inputStream;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private long bufferStart;
+	private boolean endOfStream;
+	private int lineNumber = 1;
+	private int wordStart;
+	private int wordLength;
+
+	public int ttype;
+	public double nval;
+
+	public StlAsciiScanner(InputStream inputStream) {
+		this.inputStream = inputStream;
+	}
+
+	/**
+	 * Makes sure that at least one more byte is in the buffer, keeping everything from keepFrom onwards.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean fill(int keepFrom) throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		if (endOfStream) {
+			return false;
+		}
+
+		int kept = limit - keepFrom;
+		if (kept >= buffer.length) {
+			throw new IOException("Word longer than " + buffer.length + " characters on line " + lineNumber);
+		}
+		System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+		bufferStart += keepFrom;
+		wordStart -= keepFrom;
+		position = kept;
+		limit = kept;
+
+		while (limit == kept) {
+			int count = inputStream.read(buffer, limit, buffer.length - limit);
+			if (count < 0) {
+				endOfStream = true;
+				return false;
+			}
+			limit += count;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the next word or line ending into ttype.
+	 */
+	public int nextToken() throws IOException {
+		while (true) {
+			if (!fill(position)) {
+				return ttype = TT_EOF;
+			}
+
+			byte current = buffer[position];
+			if (current == '\n') {
+				position++;
+				lineNumber++;
+				return ttype = TT_EOL;
+			}
+			if (current == '\r') {
+				position++;
+				lineNumber++;
+				//Treat \r\n as a single line ending
+				if (fill(position) && buffer[position] == '\n') {
+					position++;
+				}
+				return ttype = TT_EOL;
+			}
+			if (current < 0 || current > ' ') {
+				break;
+			}
+			position++;
+		}
+
+		wordStart = position;
+		while (fill(wordStart)) {
+			byte current = buffer[position];
+			if (current >= 0 && current <= ' ') {
+				break;
+			}
+			position++;
+		}
+		wordLength = position - wordStart;
+		return ttype = TT_WORD;
+	}
+
+	/**
+	 * Case insensitive comparison of the current word against an ASCII keyword
+	 */
+	public boolean isWord(String keyword) {
+		if (ttype != TT_WORD || wordLength != keyword.length()) {
+			return false;
+		}
+
+		for (int t = 0; t < wordLength; t++) {
+			int current = buffer[wordStart + t];
+			if (current >= 'A' && current <= 'Z') {
+				current += 'a' - 'A';
+			}
+			if (current != keyword.charAt(t)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public String getWord() {
+		if (ttype != TT_WORD) {
+			return null;
+		}
+
+		return new String(buffer, wordStart, wordLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the next word as a number into nval.
+	 *
+	 * @return false if the next token isn't a number
+	 */
+	public boolean getNumber() throws IOException {
+		if (nextToken() != TT_WORD) {
+			return false;
+		}
+
+		try {
+			nval = parseNumber();
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private double parseNumber() {
+		int index = wordStart;
+		int end = wordStart + wordLength;
+		boolean negative = false;
+		if (buffer[index] == '-' || buffer[index] == '+') {
+			negative = buffer[index] == '-';
+			index++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean foundDigit = false;
+		boolean exact = true;
+		boolean fraction = false;
+		for (; index < end; index++) {
+			int current = buffer[index];
+			if (current == '.' && !fraction) {
+				fraction = true;
+				continue;
+			}
+			if (current < '0' || current > '9') {
+				break;
+			}
+
+			foundDigit = true;
+			if (mantissa == 0 && current == '0') {
+				//Leading zeros aren't significant
+			} else if (digits < MAX_EXACT_DIGITS) {
+				mantissa = mantissa * 10 + (current - '0');
+				digits++;
+			} else {
+				exact = false;
+				if (!fraction) {
+					exponent++;
+				}
+				continue;
+			}
+
+			if (fraction) {
+				exponent--;
+			}
+		}
+
+		if (foundDigit && index < end && (buffer[index] == 'e' || buffer[index] == 'E')) {
+			index++;
+			boolean negativeExponent = false;
+			if (index < end && (buffer[index] == '-' || buffer[index] == '+')) {
+				negativeExponent = buffer[index] == '-';
+				index++;
+			}
+
+			int exponentStart = index;
+			int exponentValue = 0;
+			for (; index < end && buffer[index] >= '0' && buffer[index] <= '9'; index++) {
+				exponentValue = Math.min(exponentValue * 10 + (buffer[index] - '0'), 100000);
+			}
+			if (index == exponentStart) {
+				foundDigit = false;
+			}
+			exponent += negativeExponent?-exponentValue:exponentValue;
+		}
+
+		if (!foundDigit || index != end) {
+			//Things like NaN, Infinity or garbage are left for Double to sort out
+			return Double.parseDouble(new String(buffer, wordStart, wordLength, StandardCharsets.US_ASCII));
+		}
+
+		if (mantissa == 0) {
+			return negative?-0.0:0.0;
+		}
+
+		if (!exact || exponent < -22 || exponent > 22) {
+			return Double.parseDouble(new String(buffer, wordStart, wordLength, StandardCharsets.US_ASCII));
+		}
+
+		double value = exponent < 0?mantissa / POWERS_OF_TEN[-exponent]:mantissa * POWERS_OF_TEN[exponent];
+		return negative?-value:value;
+	}
+
+	public int lineno() {
+		return lineNumber;
+	}
+
+	public long getBytesRead() {
+		return bufferStart + position;
+	}
+
+	public String toString() {
+		return "Token[" + (ttype == TT_WORD?getWord():ttype == TT_EOL?"EOL":"EOF") + "], line " + lineNumber;
+	}
+}
@@ -12,18 +12,25 @@ package org.area515.resinprinter.slice;
    limitations under the License.
 */
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PushbackInputStream;
-import java.io.Reader;
 import java.nio.ByteBuffer;
 // New from JDK 1.4 for endian related problems
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collection;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.area515.resinprinter.server.Main;
 
 /**
  * Title:         STL Loader
@@ -44,10 +51,18 @@ import org.apache.logging.log4j.Logger;
 
 public abstract class StlFile<T,P> {
   private static final Logger logger = LogManager.getLogger();
+  private static final int DETERMINANT_SIZE = 2048;
+  private static final int BINARY_HEADER_SIZE = 84;
+  private static final int BINARY_FACET_SIZE = 50;
+  //Binary facets are decoded in chunks so that a parallel decode only holds a few chunks in memory at once
+  private static final int FACETS_PER_CHUNK = 65536;
+  //Progress for ASCII files is reported every tenth of the file, but never more often than this
+  private static final long PROGRESS_BYTES = 16 * 1024 * 1024;
 
   //private int flag;                         // Needed cause implements Loader
   private boolean Ascii = true;             // File type Ascii -> true o binary -> false
   private boolean rewriteNormalsWithRightHandRule = false;
+  private int decodeThreads = 1;
   
   protected Collection<T> triangles;
   protected double zmin = Double.MAX_VALUE;
@@ -70,13 +85,13 @@ public abstract class StlFile<T,P> {
    * Method that reads the EOL
    * Needed for verifying that the file has a correct format
    *
-   * @param parser The file parser. An instance of StlFileParser.
+   * @param parser The file parser. An instance of StlAsciiScanner.
    */
-  private void readEOL(StlFileParser parser) throws IOException {
+  private void readEOL(StlAsciiScanner parser) throws IOException {
 	try {
 		do {
 			parser.nextToken();
-		} while (parser.ttype != StlFileParser.TT_EOL);
+		} while (parser.ttype != StlAsciiScanner.TT_EOL && parser.ttype != StlAsciiScanner.TT_EOF);
 	} catch (IOException e) {
 	    throw new IOException("Error getting next token:" + parser, e);
 	}
@@ -89,10 +104,10 @@ public abstract class StlFile<T,P> {
    *    1.- Better way control of exceptions?
    *    2.- Better way to decide between Ascii and Binary?
    *
-   * @param parser The file parser. An instance of StlFileParser.
+   * @param parser The file parser. An instance of StlAsciiScanner.
    */
-	private void readSolid(StlFileParser parser) throws IOException {
-		if (parser.sval == null || !parser.sval.equals("solid")) {
+	private void readSolid(StlAsciiScanner parser) throws IOException {
+		if (!parser.isWord("solid")) {
 			logger.warn("Expecting solid on line:{}", parser.lineno());
 			// If the first word is not "solid" then we consider the file is
 			// binary
@@ -105,12 +120,12 @@ public abstract class StlFile<T,P> {
 			} catch (IOException e) {
 				throw new IOException("IO Error on line " + parser.lineno() + ": " + e.getMessage());
 			}
-			if (parser.ttype != StlFileParser.TT_WORD) {
+			if (parser.ttype != StlAsciiScanner.TT_WORD) {
 				// Is the object name always provided???
 				throw new IOException("Format Error:expecting the object name on line " + parser.lineno());
 			} else {
 				// Store the object Name
-				this.setObjectName(new String(parser.sval));
+				this.setObjectName(parser.getWord());
 				this.readEOL(parser);
 			}
 		}
@@ -121,12 +136,12 @@ public abstract class StlFile<T,P> {
    * Method that reads tokens and allows iteration through facet definition
    * Written by adevalla
    * 
-   * @param parser - file parser, instance of StlFileParser
+   * @param parser - file parser, instance of StlAsciiScanner
    * @param parseKey - string "outer", "loop", "endloop", or "endfacet"
    * */
   
-  private void readToken(StlFileParser parser, String parseKey) throws IOException {
-		if (parser.ttype != StlFileParser.TT_WORD || !parser.sval.equals(parseKey)) {
+  private void readToken(StlAsciiScanner parser, String parseKey) throws IOException {
+		if (parser.ttype != StlAsciiScanner.TT_WORD || !parser.isWord(parseKey)) {
 			throw new IOException("Format Error:expecting " + parseKey + " on line " + parser.lineno());
 	    } else {
 	    	if (parseKey.equals("outer")) {
@@ -145,14 +160,14 @@ public abstract class StlFile<T,P> {
    * Method that reads normal, vertex coordinates; stores them as Point3f.
    * Written by adevalla
    * 
-   * @param parser - file parser, instance of StlFileParser
+   * @param parser - file parser, instance of StlAsciiScanner
    * @param parseKey - string "normal", "vertex"
    * */
   
-  	private double[] read3d(StlFileParser parser, String parseKey, boolean buildPointForNormal) throws IOException {
+  	private double[] read3d(StlAsciiScanner parser, String parseKey, boolean buildPointForNormal) throws IOException {
 		double x, y, z;
 
-		if (!(parser.ttype == StlFileParser.TT_WORD && parser.sval.equals(parseKey))) {
+		if (!(parser.ttype == StlAsciiScanner.TT_WORD && parser.isWord(parseKey))) {
 			throw new IOException("Format Error:expecting '" + parseKey + "' on line " + parser.lineno());
 		}
 		
@@ -180,10 +195,10 @@ public abstract class StlFile<T,P> {
    * Method that reads a face of the object. 
    * (Cares about the format).
    *
-   * @param parser The file parser. An instance of StlFileParser.
+   * @param parser The file parser. An instance of StlAsciiScanner.
    */
-  private void readFacet(StlFileParser parser) throws IOException {
-		if (parser.ttype != StlFileParser.TT_WORD || !parser.sval.equals("facet")) {
+  private void readFacet(StlAsciiScanner parser) throws IOException {
+		if (parser.ttype != StlAsciiScanner.TT_WORD || !parser.isWord("facet")) {
 			throw new IOException("Format Error:expecting 'facet' on line " + parser.lineno());
 		}
 		
@@ -213,8 +228,35 @@ public abstract class StlFile<T,P> {
 
   protected abstract void buildTriangle(P point1, P point2, P point3, double[] normal);
   protected abstract P buildPoint(double x, double y, double z);
+  
+  /**
+   * Return true when buildPoint only depends on it's arguments, so that the points of a binary file can be built on the
+   * decode threads. Otherwise buildPoint is called on the loading thread just before the buildTriangle that uses it.
+   */
+  protected boolean canBuildPointsConcurrently() {
+	return false;
+  }
   protected abstract Collection<T> createSet();
   protected abstract T getFirstTriangle();
+  
+  /**
+   * Called once every triangle in the file has been built
+   */
+  protected void completeLoad() {
+  }
+  
+  /**
+   * Called periodically while a large ASCII file is being read
+   *
+   * @param totalBytes The size of the file or -1 if it isn't known
+   */
+  protected void loadProgress(long bytesRead, long totalBytes) {
+	if (totalBytes > 0) {
+		logger.info("Read {}% of stl file", bytesRead * 100 / totalBytes);
+	} else {
+		logger.info("Read {} bytes of stl file", bytesRead);
+	}
+  }
 
   private void fixNormalIfBadSTLFile(double[] normal, double[] p1, double[] p2, double[] p3) {
 		if ((normal[0] == 0 && normal[1] == 0 && normal[2] == 0) || rewriteNormalsWithRightHandRule) {
@@ -228,40 +270,163 @@ public abstract class StlFile<T,P> {
   }
   
   /**
-   * Method that reads a face in binary files
-   * All binary versions of the methods end by 'B'
-   * As in binary files we can read the number of faces, we don't need
-   * to use coordArray and normArray (reading binary files should be faster)
+   * A chunk of binary facets built as far as it can be off of the loading thread. buildTriangle still has to be called in file
+   * order on the loading thread, since every subclass appends the triangles to a shared set.
+   */
+  private static class FacetChunk {
+	private int count;
+	private double[][] normals;
+	//Either the built points(three per facet) or the raw vertices(nine per facet) when the points can't be built concurrently
+	private Object[] points;
+	private double[] vertices;
+  }
+
+  /**
+   * Decodes count facets starting at firstFacet, fixes their normals and builds their points when the subclass allows it.
+   * The buffer is never modified so this can be called from multiple threads at once.
+   */
+  private FacetChunk buildChunk(ByteBuffer facetBuffer, int firstFacet, int count, boolean buildPoints) {
+	FacetChunk chunk = new FacetChunk();
+	chunk.count = count;
+	chunk.normals = new double[count][];
+	chunk.points = buildPoints?new Object[count * 3]:null;
+	chunk.vertices = buildPoints?null:new double[count * 9];
+	int offset = firstFacet * BINARY_FACET_SIZE;
+	for (int facet = 0; facet < count; facet++) {
+		double normal[] = {facetBuffer.getFloat(offset), facetBuffer.getFloat(offset + 4), facetBuffer.getFloat(offset + 8)};
+		double p1[] = {facetBuffer.getFloat(offset + 12), facetBuffer.getFloat(offset + 16), facetBuffer.getFloat(offset + 20)};
+		double p2[] = {facetBuffer.getFloat(offset + 24), facetBuffer.getFloat(offset + 28), facetBuffer.getFloat(offset + 32)};
+		double p3[] = {facetBuffer.getFloat(offset + 36), facetBuffer.getFloat(offset + 40), facetBuffer.getFloat(offset + 44)};
+		//TODO: After each facet there are 2 bytes that can be used for color information, we should add those two bytes to the triangle.
+		offset += BINARY_FACET_SIZE;
+
+		fixNormalIfBadSTLFile(normal, p1, p2, p3);
+		chunk.normals[facet] = normal;
+		if (buildPoints) {
+			chunk.points[facet * 3] = buildPoint(p1[0], p1[1], p1[2]);
+			chunk.points[facet * 3 + 1] = buildPoint(p2[0], p2[1], p2[2]);
+			chunk.points[facet * 3 + 2] = buildPoint(p3[0], p3[1], p3[2]);
+		} else {
+			System.arraycopy(p1, 0, chunk.vertices, facet * 9, 3);
+			System.arraycopy(p2, 0, chunk.vertices, facet * 9 + 3, 3);
+			System.arraycopy(p3, 0, chunk.vertices, facet * 9 + 6, 3);
+		}
+	}
+	return chunk;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void buildTriangles(FacetChunk chunk) {
+	for (int facet = 0; facet < chunk.count; facet++) {
+		if (chunk.points != null) {
+			buildTriangle((P)chunk.points[facet * 3], (P)chunk.points[facet * 3 + 1], (P)chunk.points[facet * 3 + 2], chunk.normals[facet]);
+			continue;
+		}
+
+		//Built right before the triangle that uses them, a subclass is allowed to keep track of the points of the facet it's building
+		int vertex = facet * 9;
+		P point1 = buildPoint(chunk.vertices[vertex], chunk.vertices[vertex + 1], chunk.vertices[vertex + 2]);
+		P point2 = buildPoint(chunk.vertices[vertex + 3], chunk.vertices[vertex + 4], chunk.vertices[vertex + 5]);
+		P point3 = buildPoint(chunk.vertices[vertex + 6], chunk.vertices[vertex + 7], chunk.vertices[vertex + 8]);
+		buildTriangle(point1, point2, point3, chunk.normals[facet]);
+	}
+  }
+
+  /**
+   * Builds all of the facets in a buffer of binary facet records. The buffer must start at the first facet.
    *
-   * @param in The ByteBuffer with the data of the object.
-   * @param index The facet index
+   * When more than one decode thread is configured, chunks of facets are decoded, have their normals fixed and their points built
+   * on Main.RENDER_EXECUTOR a few chunks ahead of the loading thread. The loading thread only hands each finished chunk to
+   * buildTriangle, in the order the facets are in the file.
+   */
+  private void readFacets(ByteBuffer facetBuffer, int facetCount) throws IOException {
+		int chunkCount = (facetCount + FACETS_PER_CHUNK - 1) / FACETS_PER_CHUNK;
+		if (decodeThreads <= 1 || chunkCount < 2) {
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+				int firstFacet = chunk * FACETS_PER_CHUNK;
+				int count = Math.min(FACETS_PER_CHUNK, facetCount - firstFacet);
+				buildTriangles(buildChunk(facetBuffer, firstFacet, count, false));
+			}
+			return;
+		}
+
+		final boolean buildPoints = canBuildPointsConcurrently();
+		LinkedList<Future<FacetChunk>> builtChunks = new LinkedList<Future<FacetChunk>>();
+		try {
+			int nextChunk = 0;
+			for (int chunk = 0; chunk < chunkCount; chunk++) {
+				while (nextChunk < chunkCount && builtChunks.size() < decodeThreads * 2) {
+					final int firstFacet = nextChunk * FACETS_PER_CHUNK;
+					final int count = Math.min(FACETS_PER_CHUNK, facetCount - firstFacet);
+					builtChunks.add(Main.RENDER_EXECUTOR.submit(new Callable<FacetChunk>() {
+						@Override
+						public FacetChunk call() throws Exception {
+							return buildChunk(facetBuffer, firstFacet, count, buildPoints);
+						}
+					}));
+					nextChunk++;
+				}
+
+				buildTriangles(builtChunks.removeFirst().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while decoding stl facets");
+		} catch (ExecutionException e) {
+			throw new IOException("Couldn't decode stl facets", e.getCause());
+		} finally {
+			//Only left over when the load failed
+			for (Future<FacetChunk> builtChunk : builtChunks) {
+				builtChunk.cancel(true);
+			}
+		}
+  }
+
+  /**
+   * Memory maps a binary file and decodes it's facets straight out of the mapped buffer.
    *
-   * @throws IOException
+   * @return false if the file isn't a binary stl file that can be mapped, and nothing was read
    */
-  public void readFacetB(ByteBuffer dataBuffer, int index) throws IOException {
-	    // Read the Normal
-		double normal[] = {
-			dataBuffer.getFloat(), 
-			dataBuffer.getFloat(), 
-			dataBuffer.getFloat()};
-
-	    // Read vertex1
-		double p1[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
-		double p2[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
-		double p3[] = new double[]{dataBuffer.getFloat(), dataBuffer.getFloat(), dataBuffer.getFloat()};
+  private boolean readMappedBinaryFile(FileChannel channel) throws IOException {
+		long start = channel.position();
+		long size = channel.size() - start;
+		if (size < BINARY_HEADER_SIZE || size > Integer.MAX_VALUE) {
+			return false;
+		}
 		
-		P point1 = buildPoint(p1[0], p1[1], p1[2]);
-		P point2 = buildPoint(p2[0], p2[1], p2[2]);
-		P point3 = buildPoint(p3[0], p3[1], p3[2]);
+		byte[] sample = new byte[(int)Math.min(DETERMINANT_SIZE, size)];
+		ByteBuffer sampleBuffer = ByteBuffer.wrap(sample);
+		while (sampleBuffer.hasRemaining()) {
+			if (channel.read(sampleBuffer, start + sampleBuffer.position()) < 0) {
+				break;
+			}
+		}
+		if (isASCIISample(sample, sampleBuffer.position())) {
+			return false;
+		}
 		
-		fixNormalIfBadSTLFile(normal, p1, p2, p3);
+		setAscii(false);
+		MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+		mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+		int facetCount = getFacetCount(mappedBuffer.getInt(80), (int)size - BINARY_HEADER_SIZE);
+		mappedBuffer.position(BINARY_HEADER_SIZE);
+		ByteBuffer facetBuffer = mappedBuffer.slice();
+		facetBuffer.order(ByteOrder.LITTLE_ENDIAN);
 		
-		buildTriangle(point1, point2, point3, normal);
+		logger.info("Decoding {} facets from memory mapped stl file with {} thread(s)", facetCount, decodeThreads);
+		readFacets(facetBuffer, facetCount);
+		return true;
+  }
+  
+  private int getFacetCount(int expectedFacets, int facetBytes) {
+		int availableFacets = facetBytes / BINARY_FACET_SIZE;
+		if (expectedFacets < 0 || expectedFacets > availableFacets) {
+			logger.warn("Binary stl header claims {} facets, but there is only room for {} facets", expectedFacets, availableFacets);
+			return availableFacets;
+		}
 		
-		//TODO: After each facet there are 2 bytes that can be used for color information, we should add those two bytes to the triangle.
-        dataBuffer.get();
-        dataBuffer.get();
-	  }
+		return expectedFacets;
+  }
   
   /**
    * Method for reading binary files
@@ -280,56 +445,55 @@ public abstract class StlFile<T,P> {
    */
   private void readBinaryFile(InputStream data) throws IOException {
     ByteBuffer dataBuffer;                // For reading in the correct endian
-    byte[] Info=new byte[80];             // Header data
-    byte[] Array_number= new byte[4];     // Holds the number of faces
+    byte[] Info=new byte[BINARY_HEADER_SIZE]; // Header data followed by the number of faces
     byte[] Temp_Info;                     // Intermediate array
 
     int Number_faces; // First info (after the header) on the file
 
+      setAscii(false);
 
       // First 80 bytes aren't important
-      if(80 != data.read(Info)) { // File is incorrect
+      if(BINARY_HEADER_SIZE != readFully(data, Info)) { // File is incorrect
     	logger.error("Format Error: 80 bytes expected");
         throw new IOException("STL Format Error: 80 bytes expected");
       } else { // We must first read the number of faces -> 4 bytes int
-        // It depends on the endian so..
+        // Binary stl files are always little endian
+        dataBuffer = ByteBuffer.wrap(Info);
+        dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        Number_faces = dataBuffer.getInt(80);
+        if (Number_faces < 0) {
+          throw new IOException("STL Format Error: negative facet count " + Number_faces);
+        }
 
-        data.read(Array_number);                      // We get the 4 bytes
-        dataBuffer = ByteBuffer.wrap(Array_number);   // ByteBuffer for reading correctly the int
-        dataBuffer.order(ByteOrder.nativeOrder());    // Set the right order
-        Number_faces = dataBuffer.getInt();
-
-        Temp_Info = new byte[50*Number_faces];        // Each face has 50 bytes of data
+        Temp_Info = new byte[BINARY_FACET_SIZE*Number_faces];        // Each face has 50 bytes of data
 
-        data.read(Temp_Info);                         // We get the rest of the file
+        int bytesRead = readFully(data, Temp_Info);   // We get the rest of the file
 
         dataBuffer = ByteBuffer.wrap(Temp_Info);      // Now we have all the data in this ByteBuffer
-        dataBuffer.order(ByteOrder.nativeOrder());
-
-        // We can create that array directly as we know how big it's going to be
-        //coordArray = new Point3f[Number_faces*3]; // Each face has 3 vertex
-        //normArray = new Vector3f[Number_faces];
-        //stripCounts = new int[Number_faces];
-
-        for(int i=0;i<Number_faces;i++) {
-          //stripCounts[i]=3;
-          try {
-            readFacetB(dataBuffer,i);
-            
-          } catch (IOException e) {
-            // Quitar
-            logger.error("Format Error: iteration number " + i, e);
-            throw new IOException("Format Error: iteration number " + i, e);
-          }
-        }//End for
+        dataBuffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        readFacets(dataBuffer, getFacetCount(Number_faces, bytesRead));
       }// End file reading
   }// End of readBinaryFile
+  
+  private static int readFully(InputStream data, byte[] buffer) throws IOException {
+		int bytesRead = 0;
+		while (bytesRead < buffer.length) {
+			int count = data.read(buffer, bytesRead, buffer.length - bytesRead);
+			if (count < 0) {
+				break;
+			}
+			bytesRead += count;
+		}
+		return bytesRead;
+  }
 
-  private void readASCIIFile(InputStream inputStream) throws IOException {
+  private void readASCIIFile(InputStream inputStream, long totalBytes) throws IOException {
 		setAscii(true);
 		
-		Reader reader = new InputStreamReader(inputStream);
-		StlFileParser parser = new StlFileParser(reader);
+		StlAsciiScanner parser = new StlAsciiScanner(inputStream);
+		long progressStep = Math.max(totalBytes / 10, PROGRESS_BYTES);
+		long nextProgress = progressStep;
 		
 		try {
 			parser.nextToken();
@@ -342,13 +506,20 @@ public abstract class StlFile<T,P> {
 		parser.nextToken();
 
 		// Read all the facets of the object
-		while (parser.ttype != StlFileParser.TT_EOF && !parser.sval.equals("endsolid")) {
-			readFacet(parser);
-				parser.nextToken();
+		while (parser.ttype != StlAsciiScanner.TT_EOF && !parser.isWord("endsolid")) {
+			if (parser.ttype != StlAsciiScanner.TT_EOL) {
+				readFacet(parser);
+			}
+			parser.nextToken();
+			
+			if (parser.getBytesRead() >= nextProgress) {
+				loadProgress(parser.getBytesRead(), totalBytes);
+				nextProgress += progressStep;
+			}
 		}// End while
 
 		// Why are we out of the while?: EOF or endsolid
-		if (parser.ttype == StlFileParser.TT_EOF) {
+		if (parser.ttype == StlAsciiScanner.TT_EOF) {
 			throw new IOException("Format Error:expecting 'endsolid', line " + parser.lineno());
 		}
   }
@@ -356,8 +527,14 @@ public abstract class StlFile<T,P> {
   private boolean isASCIIFile(PushbackInputStream pushStream, int determinantSize) throws IOException {
 		byte sampleSize[] = new byte[determinantSize];
 		int bytesRead = pushStream.read(sampleSize);
-		pushStream.unread(sampleSize);
+		if (bytesRead > 0) {
+			pushStream.unread(sampleSize, 0, bytesRead);
+		}
 		
+		return isASCIISample(sampleSize, bytesRead);
+  }
+  
+  private boolean isASCIISample(byte sampleSize[], int bytesRead) {
 		//If less than 80 bytes, that breaks the binary spec
 		if (bytesRead < 80) {
 			return true;
@@ -404,20 +581,43 @@ public abstract class StlFile<T,P> {
   /** Entry point for all STL file types */
   public void load(InputStream inputStream, boolean rewriteNormalsWithRightHandRule) throws IOException {
 	this.rewriteNormalsWithRightHandRule = rewriteNormalsWithRightHandRule;
-	int determinantSize = 2048;
-	PushbackInputStream pushStream = new PushbackInputStream(inputStream, determinantSize);
 	triangles = createSet();
 	
 	try {
-		if (isASCIIFile(pushStream, determinantSize)) {
-			readASCIIFile(pushStream);
+		//Files can be mapped instead of being copied through the stream a buffer at a time
+		if (inputStream instanceof FileInputStream && readMappedBinaryFile(((FileInputStream)inputStream).getChannel())) {
+			completeLoad();
+			return;
+		}
+		
+		long totalBytes = -1;
+		if (inputStream instanceof FileInputStream) {
+			FileChannel channel = ((FileInputStream)inputStream).getChannel();
+			totalBytes = channel.size() - channel.position();
+		}
+		
+		PushbackInputStream pushStream = new PushbackInputStream(inputStream, DETERMINANT_SIZE);
+		if (isASCIIFile(pushStream, DETERMINANT_SIZE)) {
+			readASCIIFile(pushStream, totalBytes);
 		} else {
 			readBinaryFile(pushStream);
 		}
+		completeLoad();
 	} finally {
-		pushStream.close();
+		inputStream.close();
 	}
   }
+  
+  /**
+   * How many chunks of a binary file are decoded at once on the render executor. One or less decodes on the loading thread.
+   */
+  public void setDecodeThreads(int decodeThreads) {
+	this.decodeThreads = decodeThreads;
+  }
+  
+  public int getDecodeThreads() {
+	return decodeThreads;
+  }
 
   public boolean getAscii()
   {
@@ -0,0 +1,117 @@
+package org.area515.resinprinter.slice;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.area515.resinprinter.stl.Triangle3d;
+
+/**
+ * Buckets every triangle by the z range that it spans so that a slice only needs to look at the triangles that are
+ * active at it's height instead of scanning the entire model.
+ *
+ * Each bucket is as tall as a single slice, and holds the indexes of all triangles whose [minZ, maxZ] overlaps the bucket.
+ * The indexes in each bucket are kept in the original iteration order of the triangle collection so that callers see
+ * exactly the same ordering they would have seen with a full scan.
+ */
+public class ZIntervalIndex {
+	public static final int MAX_BUCKETS = 100000;
+
+	private List<Triangle3d> triangles;
+	private int[][] buckets;
+	private double zMin;
+	private double bucketHeight;
+
+	public ZIntervalIndex(Collection<Triangle3d> triangleCollection, double zMin, double zMax, double sliceHeight) {
+		//A TriangleMesh hands out views, so don't copy it into an array that would hold onto every one of them
+		if (triangleCollection instanceof List && triangleCollection instanceof RandomAccess) {
+			this.triangles = (List<Triangle3d>)triangleCollection;
+		} else {
+			this.triangles = new ArrayList<Triangle3d>(triangleCollection);
+		}
+		this.zMin = zMin;
+
+		if (triangles.size() == 0 || zMax < zMin) {
+			buckets = new int[0][];
+			bucketHeight = sliceHeight;
+			return;
+		}
+
+		double zRange = zMax - zMin;
+		bucketHeight = Math.max(sliceHeight, zRange / MAX_BUCKETS);
+		if (bucketHeight <= 0) {
+			bucketHeight = 1;
+		}
+		int bucketCount = bucketIndex(zMax) + 1;
+
+		//First pass counts so that we can allocate exactly sized primitive arrays
+		int[] counts = new int[bucketCount];
+		for (int t = 0; t < triangles.size(); t++) {
+			Triangle3d triangle = triangles.get(t);
+			int last = bucketIndex(triangle.getMaxZ());
+			for (int b = bucketIndex(triangle.getMinZ()); b <= last; b++) {
+				counts[b]++;
+			}
+		}
+
+		buckets = new int[bucketCount][];
+		for (int b = 0; b < bucketCount; b++) {
+			buckets[b] = new int[counts[b]];
+			counts[b] = 0;
+		}
+
+		//Second pass fills the buckets in ascending triangle order
+		for (int t = 0; t < triangles.size(); t++) {
+			Triangle3d triangle = triangles.get(t);
+			int last = bucketIndex(triangle.getMaxZ());
+			for (int b = bucketIndex(triangle.getMinZ()); b <= last; b++) {
+				buckets[b][counts[b]++] = t;
+			}
+		}
+	}
+
+	private int bucketIndex(double z) {
+		int index = (int)Math.floor((z - zMin) / bucketHeight);
+		if (index < 0) {
+			return 0;
+		}
+		if (buckets != null && index >= buckets.length) {
+			return buckets.length - 1;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns every triangle whose z range could contain z. Callers still need to call Triangle3d.intersectsZ() since
+	 * the bucket is a slice tall.
+	 */
+	public List<Triangle3d> getTrianglesAt(double z) {
+		if (buckets.length == 0 || z < zMin || Math.floor((z - zMin) / bucketHeight) >= buckets.length) {
+			return Collections.emptyList();
+		}
+
+		final int[] bucket = buckets[bucketIndex(z)];
+		return new AbstractList<Triangle3d>() {
+			@Override
+			public Triangle3d get(int index) {
+				return triangles.get(bucket[index]);
+			}
+
+			@Override
+			public int size() {
+				return bucket.length;
+			}
+		};
+	}
+
+	public int getBucketCount() {
+		return buckets.length;
+	}
+
+	public int getTriangleCount() {
+		return triangles.size();
+	}
+}
@@ -4,10 +4,12 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Polygon;
 import java.awt.Rectangle;
-import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,6 +33,7 @@ import org.area515.resinprinter.stl.MultiTriangleFace;
 import org.area515.resinprinter.stl.Point3d;
 import org.area515.resinprinter.stl.Shape3d;
 import org.area515.resinprinter.stl.Triangle3d;
+import org.area515.resinprinter.stl.TriangleMesh;
 import org.area515.resinprinter.stl.XYComparatord;
 import org.area515.util.Log4jUtil;
 
@@ -53,19 +56,13 @@ public class ZSlicer {
 	 private boolean keepTrackOfErrors = false;
 	 private boolean rewriteNormalsWithRightHandRule = false;
 	 private PolygonMendingMechanism fixBrokenLoops;
+	 private ZIntervalIndex zIndex;
+	 private volatile SliceCache sliceCache;
 	 
-	 //These are the variables per z
-	 private List<StlError> errors = new ArrayList<StlError>();
-	 private List<Polygon> fillInPolygons = null;
-	 private List<Line3d> fillInScanLines = null;
+	 //These are the variables for the current z, slice() itself never touches them so it can be called from many threads
+	 private volatile List<StlError> errors = new ArrayList<StlError>();
+	 private volatile SliceResult currentSlice = null;
 	 private int z = 0;
-	 private int sliceMaxX;
-	 private int sliceMaxY;
-	 private int sliceMaxZ;
-	 private int sliceMinX;
-	 private int sliceMinY;
-	 private int sliceMinZ;
-	 private int buildArea;
 	 
 	 //TODO: Need to add in super sampling
 	 public ZSlicer(double stlScale, double pixelsPerMMX, double pixelsPerMMY, double zSliceResolution, double zSliceOffset, boolean keepTrackOfErrors, boolean rewriteNormalsWithRightHandRule, PolygonMendingMechanism fixBrokenLoops) {
@@ -79,9 +76,6 @@ public class ZSlicer {
 		 this.fixBrokenLoops = fixBrokenLoops;
 		 
 		 stlFile = new StlFile<Triangle3d, Point3d>() {
-			private Triangle3d lastTriangle;
-			private Triangle3d firstTriangle;
-			
 			@Override
 			protected Point3d buildPoint(double x, double y, double z) {
 				return new Point3d(
@@ -91,17 +85,18 @@ public class ZSlicer {
 			}
 			
 			@Override
-			public Set<Triangle3d> createSet() {
-				return new TreeSet<Triangle3d>();
+			protected boolean canBuildPointsConcurrently() {
+				return true;
+			}
+			
+			@Override
+			public TriangleMesh createSet() {
+				return new TriangleMesh();
 			}
 			
 			@Override
 			protected void buildTriangle(Point3d point1, Point3d point2, Point3d point3, double[] normal) {
-				Triangle3d newTriangle = new Triangle3d(new Point3d[]{point1, point2, point3}, new Point3d(normal[0], normal[1], normal[2]), null, null, triangles.size());
-				if (lastTriangle != null) {
-					lastTriangle.setNextTriangle(newTriangle);
-				}
-			    triangles.add(newTriangle);
+				((TriangleMesh)triangles).addFacet(point1, point2, point3, normal);
 			    
 			    zmin = Math.min(point1.z, Math.min(point2.z, Math.min(point3.z, zmin)));
 			    zmax = Math.max(point1.z, Math.max(point2.z, Math.max(point3.z, zmax)));
@@ -109,18 +104,23 @@ public class ZSlicer {
 			    xmax = Math.max(point1.x, Math.max(point2.x, Math.max(point3.x, xmax)));
 			    ymin = Math.min(point1.y, Math.min(point2.y, Math.min(point3.y, ymin)));
 			    ymax = Math.max(point1.y, Math.max(point2.y, Math.max(point3.y, ymax)));
-			    lastTriangle = newTriangle;
-			    if (firstTriangle == null) {
-			    	firstTriangle = newTriangle;
-			    }
+			}
+			
+			@Override
+			protected void completeLoad() {
+				((TriangleMesh)triangles).complete();
 			}
 			
 			public Triangle3d getFirstTriangle() {
-				return firstTriangle;
+				return ((TriangleMesh)triangles).getFacet(0);
 			}
 		  };
 	 }
 	 
+	 public void setStlDecodeThreads(int decodeThreads) {
+		 stlFile.setDecodeThreads(decodeThreads);
+	 }
+	 
 	 public List<StlError> getStlErrors() {
 		 return errors;
 	 }
@@ -134,12 +134,6 @@ public class ZSlicer {
 			 double x2 = line.getPointTwo().x / precisionScaler * pixelsPerMMX + imageOffsetX;
 			 double y2 = line.getPointTwo().y / precisionScaler * pixelsPerMMY + imageOffsetY;
 			 double z2 = line.getPointTwo().z / precisionScaler;// / sliceResolution;
-			 sliceMinX = (int)Math.min(sliceMinX, Math.min(Math.floor(x1), Math.floor(x2)));
-			 sliceMaxX = (int)Math.max(sliceMaxX, Math.max(Math.ceil(x1), Math.ceil(x2)));
-			 sliceMinY = (int)Math.min(sliceMinY, Math.min(Math.floor(y1), Math.floor(y2)));
-			 sliceMaxY = (int)Math.max(sliceMaxY, Math.max(Math.ceil(y1), Math.ceil(y2)));
-			 sliceMinZ = (int)Math.min(sliceMinZ, Math.min(Math.floor(z1), Math.floor(z2)));
-			 sliceMaxZ = (int)Math.max(sliceMaxZ, Math.max(Math.ceil(z1), Math.ceil(z2)));
 			 lines.add(new Line3d(new Point3d(x1, y1, z1),
 					 			  new Point3d(x2, y2, z2),
 							 	  line.getNormal(), line.getOriginatingFace(), false));
@@ -348,6 +342,15 @@ public class ZSlicer {
 		 return stlFile.getTriangles();
 	 }
 	 
+	 //Only returns the triangles that are in the same slice bucket as z, callers still need to check Triangle3d.intersectsZ()
+	 private Collection<Triangle3d> getTrianglesNear(double z) {
+		 if (zIndex == null) {
+			 return stlFile.getTriangles();
+		 }
+		 
+		 return zIndex.getTrianglesAt(z);
+	 }
+	 
 	 private boolean isIntersecting(Line3d line, int x, int y) {
 		  double translatedX1 = (x - 1 - imageOffsetX) * precisionScaler / pixelsPerMMX;
 		  double translatedY1 = (y - 1 - imageOffsetY) * precisionScaler / pixelsPerMMY;
@@ -488,63 +491,48 @@ public class ZSlicer {
 				  }
 		  }
 		  
+		  SliceResult slice = currentSlice;
+		  
 		  //Green alpha
-		  if (fillInPolygons != null) {
+		  if (slice != null) {
 			  g.setColor(new Color(0, 0xff, 0, 50));
 			  g.setBackground(new Color(0, 0xff, 0, 50));
-			  for (Polygon currentPolygon : fillInPolygons) {
+			  for (Polygon currentPolygon : slice.getFillInPolygons()) {
 				  g.fillPolygon(currentPolygon);
 				  g.drawPolygon(currentPolygon);
 			  }
 		  }
 		  
 		  //Red alpha
-		  if (fillInScanLines != null) {
+		  if (slice != null) {
 			  g.setColor(new Color(0xff, 0xff/2, 0xff/2, 75));
 			  g.setBackground(new Color(0xff, 0xff/2, 0xff/2, 75));
-			  for (Line3d currentLine : fillInScanLines) {
+			  for (Line3d currentLine : slice.getFillInScanLines()) {
 				  g.drawLine((int)currentLine.getPointOne().x, (int)currentLine.getPointOne().y, (int)currentLine.getPointTwo().x, (int)currentLine.getPointTwo().y);
 			  }
 		  }
 	 }
 	 
+	 //Faster than paintSlice() but only works for TYPE_BYTE_GRAY images, returns the number of white pixels
+	 public long rasterizeSlice(BufferedImage image) {
+		 SliceResult slice = currentSlice;
+		 if (slice != null) {
+			 return slice.rasterize(image);
+		 }
+		 
+		 Arrays.fill(((DataBufferByte)image.getRaster().getDataBuffer()).getData(), (byte)0);
+		 return 0;
+	 }
+	 
 	 public void paintSlice(Graphics2D g, boolean fillBlackFirst) {
-		 if (fillBlackFirst) {
+		 SliceResult slice = currentSlice;
+		 if (slice != null) {
+			 slice.paint(g, fillBlackFirst);
+		 } else if (fillBlackFirst) {
 			g.setBackground(Color.black);
 			Rectangle r = g.getDeviceConfiguration().getBounds();
 			g.clearRect(0, 0, r.width, r.height);
 		 }
-		/*g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-	    g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);*/
-	    
-	    /*float data[] = { -1.0f, -1.0f, -1.0f, -1.0f, 9.0f, -1.0f, -1.0f, -1.0f,
-	            -1.0f };
-	    Kernel kernel = new Kernel(3, 3, data);
-	    ConvolveOp convolve = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-	    */
-		if (fillInScanLines != null) {
-			for (Line3d currentLine : fillInScanLines) {
-				int x1 = (int)Math.round(currentLine.getPointOne().x);
-				int y1 = (int)Math.round(currentLine.getPointOne().y);
-				int x2 = (int)Math.round(currentLine.getPointTwo().x);
-				int y2 = (int)Math.round(currentLine.getPointTwo().y);
-				
-				g.setColor(Color.white);
-				g.drawLine(x1, y1, x2, y2);
-				//g.setColor(Color.darkGray);
-				//g.drawLine(x1, y1, x1, y1);
-				//g.drawLine(x2, y2, x2, y2);
-			}
-		}
-		
-		if (fillInPolygons != null) {
-			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-			g.setColor(Color.white);
-			for (Polygon currentPolygon : fillInPolygons) {
-				g.drawPolygon(currentPolygon);
-			}
-		}
 	 }
 	 
 	 private List<Line3d> findPathThroughTrianglesAndBrokenLoops(Point3d beginning, Point3d ending, List<Line3d> path, List<Face3d> brokenFaceMaze, List<Integer> usedFaces, int currentTriangleIndex) {
@@ -593,18 +581,61 @@ public class ZSlicer {
 		 return findPathThroughTrianglesAndBrokenLoops(beginning, ending, path, brokenFaceMaze, usedFaces, currentTriangleIndex + 1);
 	 }
 
-	 //used in org.area515.resinprinter.job.STLImageRenderer.STLImageRenderer
+	 //Slices the current z index and makes it the slice that paintSlice(), getStlErrors() and getBuildArea() work from
 	 public List<List<Line3d>> colorizePolygons(List<Face3d> watchedTriangles, List<Integer> watchedYs) {
+		 SliceResult slice = slice(z, watchedTriangles, watchedYs);
+		 useSlice(slice);
+		 return slice.getCompletedLoops();
+	 }
+	 
+	 //Reads the slice from the slice cache when there is one, otherwise slices it and stores the result in the cache
+	 public SliceResult getSlice(int z) {
+		 SliceCache cache = sliceCache;
+		 if (cache != null) {
+			 try {
+				 SliceResult slice = cache.read(z);
+				 if (slice != null) {
+					 logger.debug("Slice cache hit for z:{}", z);
+					 return slice;
+				 }
+			 } catch (IOException e) {
+				 logger.error("Couldn't read z:" + z + " from slice cache:" + cache.getCacheFile(), e);
+			 }
+		 }
 		 
-		  sliceMaxX = -Integer.MAX_VALUE;
-		  sliceMaxY = -Integer.MAX_VALUE;
-		  sliceMinX = Integer.MAX_VALUE;
-		  sliceMinY = Integer.MAX_VALUE;
-		  ForkJoinPool pool = new ForkJoinPool();
+		 SliceResult slice = slice(z, null, null);
+		 if (cache != null) {
+			 try {
+				 cache.write(slice);
+			 } catch (IOException e) {
+				 logger.error("Couldn't write z:" + z + " to slice cache:" + cache.getCacheFile(), e);
+			 }
+		 }
+		 return slice;
+	 }
+	 
+	 public void setSliceCache(SliceCache sliceCache) {
+		 this.sliceCache = sliceCache;
+	 }
+	 
+	 public SliceCache getSliceCache() {
+		 return sliceCache;
+	 }
+	 
+	 //Makes a slice that was computed elsewhere(most likely on another thread) the slice that paintSlice(), getStlErrors() and getBuildArea() work from
+	 public void useSlice(SliceResult slice) {
+		 this.errors = slice.getErrors();
+		 this.currentSlice = slice;
+	 }
+	 
+	 //used in org.area515.resinprinter.job.STLImageRenderer.STLImageRenderer
+	 //This method doesn't change the state of the slicer so it's safe to slice many z indexes at once from different threads
+	 public SliceResult slice(int z, List<Face3d> watchedTriangles, List<Integer> watchedYs) {
+		  ForkJoinPool pool = ForkJoinPool.commonPool();
 		  List<Face3d> trianglesAndBrokenFacesForMazeTraversal = new ArrayList<Face3d>();
 		  List<List<Line3d>> completedFillInLoops = new ArrayList<List<Line3d>>();
 		  List<List<Line3d>> brokenLoops = new ArrayList<List<Line3d>>();
-		  errors.clear();
+		  List<StlError> errors = new ArrayList<StlError>();
 
 		  //Find all intersections and put them into a sorted list.
 		  //We put them in a sorted list because the join algorithm can be executed in virtually constant time
@@ -614,14 +645,14 @@ public class ZSlicer {
 		  logger.info("ZSlice started", ()->Log4jUtil.startTimer("sliceTime"));
 		  //TODO: This set assumes that normals should distingish separate points. Is that ok? Should we use: org.area515.resinprinter.stl.XYComparatorNormalImportantd
 		  Set<Line3d> zIntersectionsBySortedX = new TreeSet<Line3d>(new XYComparatord(Triangle3d.EQUAL_TOLERANCE));
-		  for (Triangle3d triangle : stlFile.getTriangles()) {
+		  double actualZ = (double)z * precisionScaler * sliceResolution + zOffset;
+		  for (Triangle3d triangle : getTrianglesNear(actualZ)) {
 			  if (watchedTriangles != null && watchedTriangles.contains(triangle)) {
 				  logger.debug("Watched triangle:{}", ()-> translateTriangle(triangle));
 			  }
 			  /*if (triangle.onZeroZ())  {
 				  logger.debug("on z");//123456
 			  }*/
-			  double actualZ = (double)z * precisionScaler * sliceResolution + zOffset;
 			  if (triangle.intersectsZ(actualZ)) {
 				  Shape3d shape = triangle.getZIntersection(actualZ);
 				  if (shape instanceof Triangle3d) {
@@ -875,6 +906,16 @@ public class ZSlicer {
 			  logger.info("Broken loop mending:{}", ()->Log4jUtil.splitTimer("sliceTime"));
 		  }
 		  
+		  //Find the vertical extent of this slice
+		  int sliceMaxY = -Integer.MAX_VALUE;
+		  int sliceMinY = Integer.MAX_VALUE;
+		  for (List<Line3d> currentPolygon : completedFillInLoops) {
+			  for (Line3d currentLine : currentPolygon) {
+				  sliceMinY = (int)Math.min(sliceMinY, Math.min(Math.floor(currentLine.getPointOne().y), Math.floor(currentLine.getPointTwo().y)));
+				  sliceMaxY = (int)Math.max(sliceMaxY, Math.max(Math.ceil(currentLine.getPointOne().y), Math.ceil(currentLine.getPointTwo().y)));
+			  }
+		  }
+		  
 		  //Preparation work for the Scanline algorithm
 		  Map<Integer, List<Line3d>> inRangeLines = new HashMap<Integer, List<Line3d>>();
 		  int breakupSize = (sliceMaxY - sliceMinY) / ScanlineFillPolygonWork.SMALLEST_UNIT_OF_WORK;
@@ -920,8 +961,8 @@ public class ZSlicer {
 		  }
 		  logger.info("Submit scanline work:{}", ()->Log4jUtil.splitTimer("sliceTime"));
 		  
-		  fillInScanLines = new ArrayList<Line3d>();
-		  buildArea = 0;
+		  List<Line3d> fillInScanLines = new ArrayList<Line3d>();
+		  int buildArea = 0;
 		  for (Future<ScanlineFillPolygonWork> currentWork : completedWork) {
 			  ScanlineFillPolygonWork work;
 				try {
@@ -943,7 +984,7 @@ public class ZSlicer {
 		  //I'm not sure I want to do this. It just traces the polygon but doesn't provide much value other than an edge blur.
 		  logger.debug("Polygons");
 		  logger.debug("======");
-          fillInPolygons = compilePolygons(completedFillInLoops);
+          List<Polygon> fillInPolygons = compilePolygons(completedFillInLoops);
 		  logger.info("Compile polygons:{}", ()->Log4jUtil.splitTimer("sliceTime"));
 			  
 		  if (logger.isDebugEnabled()) {
@@ -961,14 +1002,15 @@ public class ZSlicer {
 			  logger.debug("======");//*/
 			  logger.debug("Print working loops:{}", ()->Log4jUtil.splitTimer("sliceTime"));
 		  }
-		  pool.shutdown();
 		  logger.info("ZSlice complete:{}", ()->Log4jUtil.completeTimer("sliceTime"));
-		  return completedFillInLoops;
+		  return new SliceResult(z, completedFillInLoops, fillInPolygons, fillInScanLines, errors, buildArea);
 	 }
 	 
 	 public void loadFile(InputStream stream, Double buildPlatformXPixels, Double buildPlatformYPixels) throws IOException {
 		  logger.info("Load file start", ()->Log4jUtil.startTimer("fileLoadTime"));
 		  stlFile.load(stream, rewriteNormalsWithRightHandRule);
+		  zIndex = new ZIntervalIndex(stlFile.getTriangles(), stlFile.getZmin(), stlFile.getZmax(), precisionScaler * sliceResolution);
+		  logger.info("Z interval index built with {} buckets:{}", ()->zIndex.getBucketCount(), ()->Log4jUtil.splitTimer("fileLoadTime"));
  
 		if (imageOffsetX == null) {
 			if (buildPlatformXPixels != null) {
@@ -997,13 +1039,12 @@ public class ZSlicer {
 	
      public void setZIndex(int z) {
  		this.z = z;
-		fillInPolygons = null;
-		fillInScanLines = null;
-		buildArea = 0;
+		currentSlice = null;
 	 }
 	
 	 public int getBuildArea() {
-		return buildArea;
+		SliceResult slice = currentSlice;
+		return slice == null?0:slice.getBuildArea();
 	}
 
 	public double getSliceResolution() {
@@ -17,38 +17,81 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
     private static final Logger logger = LogManager.getLogger();
 
     public static final double EQUAL_TOLERANCE = 1.0e-10;
-	private Point3d normal;
-	private Vector3D[] verticies = new Vector3D[3];
-	private Point3d[] points;
-	private Line[] lines = new Line[3];
-	private double min[] = new double[3];
-	private double max[] = new double[3];
+	private Geometry geometry;
 	private Face3d originatingShape;
 	private Integer originalIndex;
 	private Triangle3d nextTriangle;
 	
+	//Only set when this triangle is a view over a facet in a TriangleMesh, all of the other geometry is built on first use
+	private TriangleMesh mesh;
+	private int facet;
+	
+	/**
+	 * Everything that is built from the three points of a triangle. It's immutable so that a view can be handed to another thread
+	 * after it's geometry was built. Two threads that build the geometry of the same view at once build identical copies and either
+	 * one can win.
+	 */
+	private static class Geometry {
+		private final Point3d normal;
+		private final Vector3D[] verticies;
+		private final Point3d[] points;
+		private final Line[] lines;
+		private final double min[];
+		private final double max[];
+		
+		private Geometry(Point3d[] points, Point3d normal) {
+			this.normal = normal;
+			this.verticies = new Vector3D[3];
+			this.lines = new Line[3];
+			this.min = new double[3];
+			this.max = new double[3];
+			this.verticies[0] = new Vector3D(points[0].x, points[0].y, points[0].z);
+			this.verticies[1] = new Vector3D(points[1].x, points[1].y, points[1].z);
+			this.verticies[2] = new Vector3D(points[2].x, points[2].y, points[2].z);
+			this.lines[0] = this.verticies[0].equals(this.verticies[1])?null:new Line(this.verticies[0], this.verticies[1], EQUAL_TOLERANCE);
+			this.lines[1] = this.verticies[1].equals(this.verticies[2])?null:new Line(this.verticies[1], this.verticies[2], EQUAL_TOLERANCE);
+			this.lines[2] = this.verticies[2].equals(this.verticies[0])?null:new Line(this.verticies[2], this.verticies[0], EQUAL_TOLERANCE);
+			min[0] = Math.min(points[0].x, Math.min(points[1].x, points[2].x));
+			max[0] = Math.max(points[0].x, Math.max(points[1].x, points[2].x));
+			min[1] = Math.min(points[0].y, Math.min(points[1].y, points[2].y));
+			max[1] = Math.max(points[0].y, Math.max(points[1].y, points[2].y));
+			min[2] = Math.min(points[0].z, Math.min(points[1].z, points[2].z));
+			max[2] = Math.max(points[0].z, Math.max(points[1].z, points[2].z));
+			this.points = points;
+		}
+	}
+	
 	public Triangle3d(Point3d[] points, Point3d normal, Face3d originatingShape, Triangle3d nextTriangle, Integer originalIndex) {
 		if (points.length != 3) {
 			throw new IllegalArgumentException("A triangle must have exactly three verticies");
 		}
 
 		this.nextTriangle = nextTriangle;
-		this.normal = normal;
 		this.originatingShape = originatingShape;
 		this.originalIndex = originalIndex;
-		this.verticies[0] = new Vector3D(points[0].x, points[0].y, points[0].z);
-		this.verticies[1] = new Vector3D(points[1].x, points[1].y, points[1].z);
-		this.verticies[2] = new Vector3D(points[2].x, points[2].y, points[2].z);
-		this.points = points;
-		this.lines[0] = this.verticies[0].equals(this.verticies[1])?null:new Line(this.verticies[0], this.verticies[1], EQUAL_TOLERANCE);
-		this.lines[1] = this.verticies[1].equals(this.verticies[2])?null:new Line(this.verticies[1], this.verticies[2], EQUAL_TOLERANCE);
-		this.lines[2] = this.verticies[2].equals(this.verticies[0])?null:new Line(this.verticies[2], this.verticies[0], EQUAL_TOLERANCE);
-		min[0] = Math.min(points[0].x, Math.min(points[1].x, points[2].x));
-		max[0] = Math.max(points[0].x, Math.max(points[1].x, points[2].x));
-		min[1] = Math.min(points[0].y, Math.min(points[1].y, points[2].y));
-		max[1] = Math.max(points[0].y, Math.max(points[1].y, points[2].y));
-		min[2] = Math.min(points[0].z, Math.min(points[1].z, points[2].z));
-		max[2] = Math.max(points[0].z, Math.max(points[1].z, points[2].z));
+		this.geometry = new Geometry(points, normal);
+	}
+	
+	Triangle3d(TriangleMesh mesh, int facet) {
+		this.mesh = mesh;
+		this.facet = facet;
+		this.originalIndex = facet;
+	}
+	
+	//The final fields of Geometry make it safe to read this field without synchronization, the worst case is building it twice
+	private Geometry getGeometry() {
+		Geometry geometry = this.geometry;
+		if (geometry != null) {
+			return geometry;
+		}
+		
+		geometry = new Geometry(new Point3d[] {
+				new Point3d(mesh.getVertexCoordinate(facet, 0, 0), mesh.getVertexCoordinate(facet, 0, 1), mesh.getVertexCoordinate(facet, 0, 2)),
+				new Point3d(mesh.getVertexCoordinate(facet, 1, 0), mesh.getVertexCoordinate(facet, 1, 1), mesh.getVertexCoordinate(facet, 1, 2)),
+				new Point3d(mesh.getVertexCoordinate(facet, 2, 0), mesh.getVertexCoordinate(facet, 2, 1), mesh.getVertexCoordinate(facet, 2, 2))},
+				new Point3d(mesh.getNormalCoordinate(facet, 0), mesh.getNormalCoordinate(facet, 1), mesh.getNormalCoordinate(facet, 2)));
+		this.geometry = geometry;
+		return geometry;
 	}
 	
 	public Integer getOriginalIndex() {
@@ -60,30 +103,41 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 	}
 	
 	public Triangle3d getNextTriangle() {
+		if (mesh != null) {
+			return mesh.getFacet(facet + 1);
+		}
+		
 		return nextTriangle;
 	}
 
 	public void setNextTriangle(Triangle3d nextTriangle) {
+		if (mesh != null) {
+			throw new IllegalStateException("Triangles in a mesh are always linked in file order");
+		}
+		
 		this.nextTriangle = nextTriangle;
 	}
 
 	public Point3d getNormal() {
-		return normal;
+		return getGeometry().normal;
 	}
 
 	public Point3d[] getBrokenEnds() {
-		return points;
+		return getGeometry().points;
 	}
 	
 	public int[] getX() {
+		Point3d[] points = getGeometry().points;
 		return new int[] {(int)points[0].x, (int)points[1].x, (int)points[2].x};
 	}
 	
 	public int[] gety() {
+		Point3d[] points = getGeometry().points;
 		return new int[] {(int)points[0].y, (int)points[1].y, (int)points[2].y};
 	}
 	
 	public List<Line3d> getLines() {
+		Point3d[] points = getGeometry().points;
 		List<Line3d> lines = new ArrayList<Line3d>();
 		Face3d parentShape = originatingShape == null? this: originatingShape;
 		lines.add(new Line3d(points[0], points[1], parentShape.getNormal(), parentShape, false));
@@ -93,32 +147,46 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		return lines;
 	}
 	public List<Point3d> getPoints() {
-		return Arrays.asList(points);
+		return Arrays.asList(getGeometry().points);
 	}
 	public double getMinZ() {
-		return min[2];
+		Geometry geometry = this.geometry;
+		if (geometry == null) {
+			return mesh.getMinZ(facet);
+		}
+		return geometry.min[2];
 	}	
 	
 	public double getMinY() {
-		return min[1];
+		return getGeometry().min[1];
 	}
 	
 	public double getMinX() {
-		return min[0];
+		return getGeometry().min[0];
 	}
 	
 	public double getMaxX() {
-		return max[0];
+		return getGeometry().max[0];
 	}
 	public double getMaxY() {
-		return max[1];
+		return getGeometry().max[1];
+	}
+	public double getMaxZ() {
+		Geometry geometry = this.geometry;
+		if (geometry == null) {
+			return mesh.getMaxZ(facet);
+		}
+		return geometry.max[2];
 	}
 
 	public boolean intersectsZ(double z) {
-		return z >= min[2] && z <= max[2];
+		return z >= getMinZ() && z <= getMaxZ();
 	}
 
 	public Shape3d getZIntersection(double z) {
+		Geometry geometry = getGeometry();
+		Point3d[] points = geometry.points;
+		Line[] lines = geometry.lines;
 		Plane zPlane = new Plane(new Vector3D(0, 0, z), new Vector3D(0,0,1), EQUAL_TOLERANCE);
 		//Plane zPlane = new Plane(new Vector3D(100, 3, z), new Vector3D(200,4, z), new Vector3D(30, 100, z),  EQUAL_TOLERANCE);
 		Set<Point3d> intersectedPoints = new LinkedHashSet<Point3d>();
@@ -144,10 +212,10 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		switch (intersectedPoints.size()) {
 		case 3:
 			Face3d parentShape = originatingShape == null? this: originatingShape;
-			return new Triangle3d(intersectedPoints.toArray(new Point3d[3]), normal, parentShape, null, parentShape instanceof Triangle3d?((Triangle3d)parentShape).getOriginalIndex():null);
+			return new Triangle3d(intersectedPoints.toArray(new Point3d[3]), geometry.normal, parentShape, null, parentShape instanceof Triangle3d?((Triangle3d)parentShape).getOriginalIndex():null);
 		case 2:
 			Iterator<Point3d> iter = intersectedPoints.iterator();
-			return new Line3d(iter.next(), iter.next(), normal, this, true);
+			return new Line3d(iter.next(), iter.next(), geometry.normal, this, true);
 		case 1:
 			return intersectedPoints.iterator().next();
 		}
@@ -157,9 +225,11 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 	
 	@Override
 	public int compareTo(Triangle3d o) {
+		Point3d[] points = getGeometry().points;
+		Point3d[] otherPoints = o.getGeometry().points;
 		boolean equals = true;
 		for (int t = 0; t < 3; t++) {
-			if (points[t].pointCompare(o.points[t]) != 0) {
+			if (points[t].pointCompare(otherPoints[t]) != 0) {
 				equals = false;
 			}
 		}
@@ -169,19 +239,19 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		}
 		
 		for (int t = 0; t < 3; t++) {
-			double diff = points[t].x - o.points[t].x;
+			double diff = points[t].x - otherPoints[t].x;
 			if (diff > 0) {
 				return 1;
 			} else if (diff < 0) {
 				return -1;
 			}
-			diff = points[t].y - o.points[t].y;
+			diff = points[t].y - otherPoints[t].y;
 			if (diff > 0) {
 				return 1;
 			} else if (diff < 0) {
 				return -1;
 			}
-			diff = points[t].z - o.points[t].z;
+			diff = points[t].z - otherPoints[t].z;
 			if (diff > 0) {
 				return 1;
 			} else if (diff < 0) {
@@ -194,10 +264,11 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 	
 	@Override
 	public int hashCode() {
+		Geometry geometry = getGeometry();
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((normal == null) ? 0 : normal.hashCode());
-		result = prime * result + Arrays.hashCode(verticies);
+		result = prime * result + ((geometry.normal == null) ? 0 : geometry.normal.hashCode());
+		result = prime * result + Arrays.hashCode(geometry.verticies);
 		return result;
 	}
 
@@ -210,17 +281,23 @@ public class Triangle3d implements Shape3d, Face3d, Comparable<Triangle3d> {
 		if (getClass() != obj.getClass())
 			return false;
 		Triangle3d other = (Triangle3d) obj;
-		if (normal == null) {
-			if (other.normal != null)
+		if (mesh != null && mesh == other.mesh) {
+			return facet == other.facet;
+		}
+		Geometry geometry = getGeometry();
+		Geometry otherGeometry = other.getGeometry();
+		if (geometry.normal == null) {
+			if (otherGeometry.normal != null)
 				return false;
-		} else if (!normal.equals(other.normal))
+		} else if (!geometry.normal.equals(otherGeometry.normal))
 			return false;
-		if (!Arrays.equals(verticies, other.verticies))
+		if (!Arrays.equals(geometry.verticies, otherGeometry.verticies))
 			return false;
 		return true;
 	}
 	
 	public String toString() {
-		return Arrays.toString(verticies) + "@" + normal;
+		Geometry geometry = getGeometry();
+		return Arrays.toString(geometry.verticies) + "@" + geometry.normal;
 	}
 }
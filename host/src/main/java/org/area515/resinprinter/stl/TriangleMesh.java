@@ -0,0 +1,253 @@
+package org.area515.resinprinter.stl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Stores an entire model as flat primitive arrays instead of one Triangle3d(with all of it's points, vectors and lines) per facet.
+ *
+ * Vertex coordinates live in a single double[] and each facet refers to it's three vertices through an int index.
+ * Vertices that are shared between facets are only stored once, they are found through an open addressing hash table
+ * of vertex indexes that is keyed on the exact bits of the coordinates.
+ * Triangle3d instances handed out by this class are lightweight views that are created on demand and only
+ * build their geometry when asked for it, so only the triangles that are currently being sliced take up real memory.
+ * A view can be used from any thread once the mesh is complete, the geometry it builds is immutable.
+ *
+ * This list is iterated in the same order that a TreeSet<Triangle3d> would have iterated the same triangles, with
+ * duplicate facets removed. Facet numbers(Triangle3d.getOriginalIndex()) are the position of the facet in the file.
+ */
+public class TriangleMesh extends AbstractList<Triangle3d> implements RandomAccess {
+	private static final int INITIAL_FACETS = 1024;
+
+	private double[] vertices = new double[INITIAL_FACETS * 9];
+	private int vertexCount;
+	private int[] facetVertices = new int[INITIAL_FACETS * 3];
+	private double[] normals = new double[INITIAL_FACETS * 3];
+	private int facetCount;
+	private int[] sortedFacets;
+	private int sortedFacetCount;
+	//Holds vertexIndex + 1 so that zero is an empty slot, this is dropped once the mesh is complete
+	private int[] vertexTable;
+
+	public synchronized int addVertex(double x, double y, double z) {
+		if ((vertexCount + 1) * 3 > vertices.length) {
+			vertices = Arrays.copyOf(vertices, vertices.length * 2);
+		}
+
+		int index = vertexCount++;
+		vertices[index * 3] = x;
+		vertices[index * 3 + 1] = y;
+		vertices[index * 3 + 2] = z;
+		return index;
+	}
+
+	public synchronized int addFacet(int vertex1, int vertex2, int vertex3, double[] normal) {
+		if ((facetCount + 1) * 3 > facetVertices.length) {
+			facetVertices = Arrays.copyOf(facetVertices, facetVertices.length * 2);
+			normals = Arrays.copyOf(normals, normals.length * 2);
+		}
+
+		int facet = facetCount++;
+		facetVertices[facet * 3] = vertex1;
+		facetVertices[facet * 3 + 1] = vertex2;
+		facetVertices[facet * 3 + 2] = vertex3;
+		normals[facet * 3] = normal[0];
+		normals[facet * 3 + 1] = normal[1];
+		normals[facet * 3 + 2] = normal[2];
+		sortedFacets = null;
+		return facet;
+	}
+
+	/**
+	 * Returns the index of an existing vertex with exactly these coordinates, or adds a new one.
+	 */
+	public synchronized int addSharedVertex(double x, double y, double z) {
+		//Adding zero turns -0.0 into 0.0 so that both hash the same way
+		x += 0.0;
+		y += 0.0;
+		z += 0.0;
+
+		if (vertexTable == null || (vertexCount + 1) * 2 > vertexTable.length) {
+			rebuildVertexTable(Math.max(INITIAL_FACETS * 4, Integer.highestOneBit(Math.max(vertexCount, 1)) * 4));
+		}
+
+		int mask = vertexTable.length - 1;
+		int slot = hash(x, y, z) & mask;
+		while (vertexTable[slot] != 0) {
+			int vertex = (vertexTable[slot] - 1) * 3;
+			if (vertices[vertex] == x && vertices[vertex + 1] == y && vertices[vertex + 2] == z) {
+				return vertex / 3;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int index = addVertex(x, y, z);
+		vertexTable[slot] = index + 1;
+		return index;
+	}
+
+	private void rebuildVertexTable(int size) {
+		vertexTable = new int[size];
+		int mask = size - 1;
+		for (int index = 0; index < vertexCount; index++) {
+			int slot = hash(vertices[index * 3], vertices[index * 3 + 1], vertices[index * 3 + 2]) & mask;
+			while (vertexTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			vertexTable[slot] = index + 1;
+		}
+	}
+
+	private static int hash(double x, double y, double z) {
+		long bits = Double.doubleToLongBits(x);
+		bits = bits * 31 + Double.doubleToLongBits(y);
+		bits = bits * 31 + Double.doubleToLongBits(z);
+		int hash = (int)(bits ^ (bits >>> 32));
+		//Spread the bits since the table size is a power of two
+		return hash ^ (hash >>> 16) ^ (hash >>> 7);
+	}
+
+	public int addFacet(Point3d point1, Point3d point2, Point3d point3, double[] normal) {
+		return addFacet(
+				addSharedVertex(point1.x, point1.y, point1.z),
+				addSharedVertex(point2.x, point2.y, point2.z),
+				addSharedVertex(point3.x, point3.y, point3.z),
+				normal);
+	}
+
+	/**
+	 * Must be called once all facets have been added. This releases the unused portion of the arrays, and
+	 * sorts and removes duplicates the same way the TreeSet<Triangle3d> that this class replaces did.
+	 */
+	public synchronized void complete() {
+		vertexTable = null;
+		vertices = Arrays.copyOf(vertices, vertexCount * 3);
+		facetVertices = Arrays.copyOf(facetVertices, facetCount * 3);
+		normals = Arrays.copyOf(normals, facetCount * 3);
+
+		int[] order = new int[facetCount];
+		for (int t = 0; t < facetCount; t++) {
+			order[t] = t;
+		}
+		mergeSort(order, new int[facetCount], 0, facetCount);
+
+		int unique = 0;
+		for (int t = 0; t < facetCount; t++) {
+			if (unique == 0 || !isSameFacet(order[unique - 1], order[t])) {
+				order[unique++] = order[t];
+			}
+		}
+		sortedFacets = unique == facetCount?order:Arrays.copyOf(order, unique);
+		sortedFacetCount = unique;
+	}
+
+	private void mergeSort(int[] facets, int[] work, int start, int end) {
+		if (end - start < 2) {
+			return;
+		}
+
+		int middle = (start + end) >>> 1;
+		mergeSort(facets, work, start, middle);
+		mergeSort(facets, work, middle, end);
+		if (compareFacets(facets[middle - 1], facets[middle]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(facets, start, work, start, end - start);
+		int left = start;
+		int right = middle;
+		for (int t = start; t < end; t++) {
+			if (right >= end || (left < middle && compareFacets(work[left], work[right]) <= 0)) {
+				facets[t] = work[left++];
+			} else {
+				facets[t] = work[right++];
+			}
+		}
+	}
+
+	private boolean isSameFacet(int facet1, int facet2) {
+		for (int t = 0; t < 3; t++) {
+			int vertex1 = facetVertices[facet1 * 3 + t] * 3;
+			int vertex2 = facetVertices[facet2 * 3 + t] * 3;
+			for (int c = 0; c < 3; c++) {
+				if (Math.abs(vertices[vertex1 + c] - vertices[vertex2 + c]) > Triangle3d.EQUAL_TOLERANCE) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	//Same ordering as Triangle3d.compareTo()
+	private int compareFacets(int facet1, int facet2) {
+		if (isSameFacet(facet1, facet2)) {
+			return 0;
+		}
+
+		for (int t = 0; t < 3; t++) {
+			int vertex1 = facetVertices[facet1 * 3 + t] * 3;
+			int vertex2 = facetVertices[facet2 * 3 + t] * 3;
+			for (int c = 0; c < 3; c++) {
+				double diff = vertices[vertex1 + c] - vertices[vertex2 + c];
+				if (diff > 0) {
+					return 1;
+				} else if (diff < 0) {
+					return -1;
+				}
+			}
+		}
+
+		return Integer.compare(facet1, facet2);
+	}
+
+	public int getFacetCount() {
+		return facetCount;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public double getVertexCoordinate(int facet, int corner, int axis) {
+		return vertices[facetVertices[facet * 3 + corner] * 3 + axis];
+	}
+
+	public double getNormalCoordinate(int facet, int axis) {
+		return normals[facet * 3 + axis];
+	}
+
+	public double getMinZ(int facet) {
+		return Math.min(getVertexCoordinate(facet, 0, 2), Math.min(getVertexCoordinate(facet, 1, 2), getVertexCoordinate(facet, 2, 2)));
+	}
+
+	public double getMaxZ(int facet) {
+		return Math.max(getVertexCoordinate(facet, 0, 2), Math.max(getVertexCoordinate(facet, 1, 2), getVertexCoordinate(facet, 2, 2)));
+	}
+
+	/**
+	 * Returns a view of the facet in the order that it was read from the file. This includes duplicate facets.
+	 */
+	public Triangle3d getFacet(int facet) {
+		if (facet < 0 || facet >= facetCount) {
+			return null;
+		}
+
+		return new Triangle3d(this, facet);
+	}
+
+	@Override
+	public Triangle3d get(int index) {
+		if (sortedFacets == null) {
+			throw new IllegalStateException("complete() must be called before the mesh can be iterated");
+		}
+
+		return new Triangle3d(this, sortedFacets[index]);
+	}
+
+	@Override
+	public int size() {
+		return sortedFacets == null?0:sortedFacetCount;
+	}
+}
@@ -0,0 +1,146 @@
+package org.area515.resinprinter.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An inclusive range of bytes within a file of a known length, as asked for by an HTTP Range header.
+ */
+public class ByteRange implements Comparable<ByteRange> {
+	//A client that asks for more ranges than this is either broken or trying to make us seek all over the disk
+	public static final int MAX_RANGES = 16;
+
+	private long start;
+	private long end;
+
+	public ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	public String toContentRange(long fileLength) {
+		return "bytes " + start + "-" + end + "/" + fileLength;
+	}
+
+	@Override
+	public int compareTo(ByteRange other) {
+		return Long.compare(start, other.start);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof ByteRange)) {
+			return false;
+		}
+
+		ByteRange other = (ByteRange)obj;
+		return start == other.start && end == other.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(start) * 31 + Long.hashCode(end);
+	}
+
+	@Override
+	public String toString() {
+		return start + "-" + end;
+	}
+
+	/**
+	 * Parses a Range header against a file of the given length. Ranges are clipped to the file, sorted and overlapping ranges are merged.
+	 *
+	 * @return null if the header should be ignored and the whole file sent, an empty list if none of the ranges can be satisfied
+	 */
+	public static List<ByteRange> parse(String header, long fileLength) {
+		if (header == null) {
+			return null;
+		}
+
+		header = header.trim();
+		if (!header.regionMatches(true, 0, "bytes=", 0, 6)) {
+			return null;
+		}
+
+		String[] specs = header.substring(6).split(",");
+		if (specs.length > MAX_RANGES) {
+			return null;
+		}
+
+		List<ByteRange> ranges = new ArrayList<ByteRange>();
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0) {
+				return null;
+			}
+
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			long start;
+			long end;
+			try {
+				if (first.isEmpty()) {
+					//Suffix range, the last N bytes of the file
+					if (last.isEmpty()) {
+						return null;
+					}
+					long suffix = parseLength(last);
+					if (suffix == 0) {
+						continue;
+					}
+					start = Math.max(fileLength - suffix, 0);
+					end = fileLength - 1;
+				} else {
+					start = parseLength(first);
+					end = last.isEmpty()?fileLength - 1:Math.min(parseLength(last), fileLength - 1);
+					if (!last.isEmpty() && parseLength(last) < start) {
+						return null;
+					}
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+
+			if (start < fileLength && start <= end) {
+				ranges.add(new ByteRange(start, end));
+			}
+		}
+
+		Collections.sort(ranges);
+		List<ByteRange> merged = new ArrayList<ByteRange>();
+		for (ByteRange range : ranges) {
+			ByteRange previous = merged.isEmpty()?null:merged.get(merged.size() - 1);
+			if (previous != null && range.start <= previous.end + 1) {
+				previous.end = Math.max(previous.end, range.end);
+			} else {
+				merged.add(range);
+			}
+		}
+		return merged;
+	}
+
+	private static long parseLength(String value) {
+		for (int t = 0; t < value.length(); t++) {
+			char c = value.charAt(t);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException("Not a byte position:" + value);
+			}
+		}
+		//Anything past the end of a 64 bit file is as good as the end of the file
+		return value.length() > 18?Long.MAX_VALUE:Long.parseLong(value);
+	}
+}
@@ -0,0 +1,216 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps a single camera process running for as long as someone is reading it's frames, and publishes every JPEG the process writes
+ * into a FrameRing that live streams, snapshots and anything else can share.
+ *
+ * The command is expected to write MJPEG to it's standard output and keep running. A command that takes a single picture and
+ * exits works too, it's just started again for every frame. The process is stopped once nobody has asked for a frame in idleMillis.
+ */
+public class CameraCapture {
+	private static final Logger logger = LogManager.getLogger();
+	private static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+	private static final int MAX_ERROR_BYTES = 4096;
+	private static final long RESTART_DELAY_MILLIS = 1000;
+
+	private String[] command;
+	private FrameRing ring;
+	private long idleNanos;
+	private volatile long lastReadNanos;
+	private volatile boolean running;
+	private volatile Process process;
+	private volatile String lastError;
+	private volatile Thread captureThread;
+
+	public CameraCapture(String[] command, int ringSize, long idleMillis) {
+		this.command = command;
+		this.ring = new FrameRing(ringSize);
+		this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+	}
+
+	public FrameRing getRing() {
+		return ring;
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * @return what the camera process wrote to it's error stream the last time it failed, or null if it hasn't failed
+	 */
+	public String getLastError() {
+		return lastError;
+	}
+
+	public synchronized void start() {
+		lastReadNanos = System.nanoTime();
+		if (running) {
+			return;
+		}
+
+		running = true;
+		captureThread = new Thread(this::capture, "CameraCapture");
+		captureThread.setDaemon(true);
+		captureThread.start();
+	}
+
+	public synchronized void stop() {
+		running = false;
+		Process runningProcess = process;
+		if (runningProcess != null) {
+			runningProcess.destroy();
+		}
+		if (captureThread != null) {
+			captureThread.interrupt();
+		}
+	}
+
+	/**
+	 * Waits for the camera process of a stopped capture to exit so that the camera can be opened by something else.
+	 */
+	public void awaitStop(long timeoutMillis) throws InterruptedException {
+		Thread thread = captureThread;
+		if (thread != null) {
+			thread.join(timeoutMillis);
+		}
+	}
+
+	/**
+	 * Starts the camera if it isn't running and waits for a frame newer than the given sequence.
+	 *
+	 * @param afterSequence -1 takes any frame, getRing().getLatestSequence() waits for a frame that is taken after this call
+	 */
+	public FrameRing.Frame nextFrame(long afterSequence, long timeoutMillis) throws IOException, InterruptedException {
+		start();
+		try {
+			return ring.awaitNewerThan(afterSequence, timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			String error = lastError;
+			throw new IOException("No frame from " + Arrays.toString(command) + " within " + timeoutMillis + "ms" + (error != null?":" + error:""));
+		} finally {
+			lastReadNanos = System.nanoTime();
+		}
+	}
+
+	private boolean isIdle() {
+		return System.nanoTime() - lastReadNanos > idleNanos;
+	}
+
+	//A capture that was stopped and started again before this thread noticed belongs to a new thread
+	private boolean isCapturing() {
+		return running && captureThread == Thread.currentThread();
+	}
+
+	//Decided under the same lock as start() so that a reader that arrives while the camera is going idle isn't left waiting
+	private synchronized boolean keepCapturing() {
+		if (isCapturing() && isIdle()) {
+			running = false;
+		}
+		return isCapturing();
+	}
+
+	private void capture() {
+		logger.info("Camera capture started:{}", Arrays.toString(command));
+		try {
+			while (keepCapturing()) {
+				long framesBefore = ring.getLatestSequence();
+				int exitValue = runProcess();
+				if (exitValue != 0 || ring.getLatestSequence() == framesBefore) {
+					//Don't spin on a camera that's missing or busy
+					Thread.sleep(RESTART_DELAY_MILLIS);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.info("Camera capture interrupted");
+		} finally {
+			synchronized (this) {
+				if (Thread.currentThread() == captureThread) {
+					running = false;
+				}
+			}
+			logger.info("Camera capture stopped:{}", Arrays.toString(command));
+		}
+	}
+
+	private int runProcess() throws InterruptedException {
+		Process currentProcess;
+		try {
+			currentProcess = Runtime.getRuntime().exec(command);
+		} catch (IOException e) {
+			lastError = e.getMessage();
+			logger.error("Couldn't start camera:" + Arrays.toString(command), e);
+			return -1;
+		}
+
+		process = currentProcess;
+		ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+		Thread errorThread = new Thread(() -> drainErrors(currentProcess.getErrorStream(), errorOutput), "CameraCaptureErrors");
+		errorThread.setDaemon(true);
+		errorThread.start();
+
+		try (InputStream frames = currentProcess.getInputStream()) {
+			JpegFrameReader reader = new JpegFrameReader(frames, MAX_FRAME_BYTES);
+			byte[] frame;
+			while (isCapturing() && (frame = reader.readFrame()) != null) {
+				ring.publish(frame);
+				lastError = null;
+				if (isIdle()) {
+					logger.info("Nobody is reading the camera anymore");
+					break;
+				}
+			}
+		} catch (IOException e) {
+			if (isCapturing()) {
+				logger.error("Problem reading camera:" + Arrays.toString(command), e);
+			}
+		} finally {
+			currentProcess.destroy();
+		}
+
+		int exitValue = currentProcess.waitFor();
+		errorThread.join(RESTART_DELAY_MILLIS);
+		if (exitValue != 0 && isCapturing() && !isIdle()) {
+			synchronized (errorOutput) {
+				lastError = new String(errorOutput.toByteArray());
+			}
+			logger.error("Camera exited with {}:{}", exitValue, lastError);
+		}
+		if (process == currentProcess) {
+			process = null;
+		}
+		return isCapturing()?exitValue:0;
+	}
+
+	//Only the start of the error output is kept, a camera that complains on every frame would fill the heap otherwise
+	private void drainErrors(InputStream errors, ByteArrayOutputStream errorOutput) {
+		byte[] buffer = new byte[1024];
+		try {
+			int read;
+			while ((read = errors.read(buffer)) > -1) {
+				synchronized (errorOutput) {
+					if (errorOutput.size() < MAX_ERROR_BYTES) {
+						errorOutput.write(buffer, 0, Math.min(read, MAX_ERROR_BYTES - errorOutput.size()));
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.debug("Camera error stream closed", e);
+		} finally {
+			try {
+				errors.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package org.area515.resinprinter.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Serves a file with support for byte ranges and conditional requests. When the response belongs to Jetty a single range is handed
+ * to the connector as a channel and the parts of a multipart range are copied through one direct buffer, so that the bytes never
+ * pass through the heap.
+ */
+public class FileRangeServer {
+	private static final Logger logger = LogManager.getLogger();
+	private static final int COPY_BUFFER_BYTES = 64 * 1024;
+	private static final String CRLF = "\r\n";
+
+	private FileRangeServer() {
+	}
+
+	/**
+	 * Reads a range of a file and nothing past it, even if the file grows while it's being sent. Closing it leaves the file open.
+	 */
+	static class RangeChannel implements ReadableByteChannel {
+		private FileChannel channel;
+		private long position;
+		private long end;
+		private boolean open = true;
+
+		public RangeChannel(FileChannel channel, long start, long length) {
+			this.channel = channel;
+			this.position = start;
+			this.end = start + length;
+		}
+
+		@Override
+		public int read(ByteBuffer buffer) throws IOException {
+			if (position >= end) {
+				return -1;
+			}
+
+			int limit = buffer.limit();
+			if (buffer.remaining() > end - position) {
+				buffer.limit(buffer.position() + (int)(end - position));
+			}
+			try {
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("File was truncated while it was being sent");
+				}
+				position += read;
+				return read;
+			} finally {
+				buffer.limit(limit);
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
+	public static String buildETag(long lastModified, long length) {
+		return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+	}
+
+	/**
+	 * @return true if any of the entity tags in an If-None-Match header match ours. Weak comparison is used as RFC 7232 asks.
+	 */
+	public static boolean matchesAnyETag(String header, String etag) {
+		if (header == null) {
+			return false;
+		}
+
+		String strippedETag = stripWeak(etag);
+		for (String candidate : header.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*") || stripWeak(candidate).equals(strippedETag)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String stripWeak(String etag) {
+		return etag.startsWith("W/")?etag.substring(2):etag;
+	}
+
+	/**
+	 * @return true if the client's If-Modified-Since date(in milliseconds, or -1 if missing) shows it already has this version
+	 */
+	public static boolean notModifiedSince(long ifModifiedSince, long lastModified) {
+		//HTTP dates only have a resolution of seconds
+		return ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * If-Range only lets the range through when it names the current version of the file; a strong ETag or the exact modified date.
+	 */
+	static boolean ifRangeMatches(String ifRange, long ifRangeDate, String etag, long lastModified) {
+		if (ifRange == null) {
+			return true;
+		}
+
+		ifRange = ifRange.trim();
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return ifRange.equals(etag);
+		}
+		return ifRangeDate >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+	}
+
+	/**
+	 * Writes the whole response, and commits it before returning. A JAX-RS resource that hands us the servlet response returns void,
+	 * and RESTEasy would otherwise answer 204 over the status we picked whenever there's no body to commit it for us(304, HEAD, empty files).
+	 */
+	public static void serve(HttpServletRequest request, HttpServletResponse response, File file, String contentType) throws IOException {
+		serveFile(request, response, file, contentType);
+		if (!response.isCommitted()) {
+			response.flushBuffer();
+		}
+	}
+
+	private static void serveFile(HttpServletRequest request, HttpServletResponse response, File file, String contentType) throws IOException {
+		if (file == null || !file.isFile()) {
+			logger.warn("File doesn't exist:{} for resource:{}", file, request.getRequestURI());
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			//Take the length from the open channel so that a file that's still being recorded is consistent with what we send
+			long fileLength = channel.size();
+			long lastModified = file.lastModified();
+			String etag = buildETag(lastModified, fileLength);
+			boolean sendBody = !"HEAD".equalsIgnoreCase(request.getMethod());
+			contentType = contentType != null?contentType:"application/octet-stream";
+
+			response.setHeader("Accept-Ranges", "bytes");
+			response.setHeader("ETag", etag);
+			response.setDateHeader("Last-Modified", lastModified);
+
+			String ifNoneMatch = request.getHeader("If-None-Match");
+			if (ifNoneMatch != null?matchesAnyETag(ifNoneMatch, etag):notModifiedSince(getDate(request, "If-Modified-Since"), lastModified)) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+
+			List<ByteRange> ranges = ByteRange.parse(request.getHeader("Range"), fileLength);
+			if (ranges != null && !ifRangeMatches(request.getHeader("If-Range"), getDate(request, "If-Range"), etag, lastModified)) {
+				ranges = null;
+			}
+
+			if (ranges == null) {
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentType(contentType);
+				response.setContentLengthLong(fileLength);
+				if (sendBody) {
+					sendAll(channel, 0, fileLength, response.getOutputStream());
+				}
+				return;
+			}
+
+			if (ranges.isEmpty()) {
+				response.setHeader("Content-Range", "bytes */" + fileLength);
+				response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			if (ranges.size() == 1) {
+				ByteRange range = ranges.get(0);
+				response.setContentType(contentType);
+				response.setHeader("Content-Range", range.toContentRange(fileLength));
+				response.setContentLengthLong(range.getLength());
+				if (sendBody) {
+					sendAll(channel, range.getStart(), range.getLength(), response.getOutputStream());
+				}
+				return;
+			}
+
+			String boundary = UUID.randomUUID().toString().replace("-", "");
+			byte[][] partHeaders = new byte[ranges.size()][];
+			long contentLength = 0;
+			for (int t = 0; t < ranges.size(); t++) {
+				ByteRange range = ranges.get(t);
+				partHeaders[t] = (CRLF + "--" + boundary + CRLF +
+						"Content-Type: " + contentType + CRLF +
+						"Content-Range: " + range.toContentRange(fileLength) + CRLF + CRLF).getBytes(StandardCharsets.US_ASCII);
+				contentLength += partHeaders[t].length + range.getLength();
+			}
+			byte[] trailer = (CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII);
+			contentLength += trailer.length;
+
+			response.setContentType("multipart/byteranges; boundary=" + boundary);
+			response.setContentLengthLong(contentLength);
+			if (sendBody) {
+				OutputStream output = response.getOutputStream();
+				ByteBuffer buffer = output instanceof HttpOutput?ByteBuffer.allocateDirect(COPY_BUFFER_BYTES):null;
+				for (int t = 0; t < ranges.size(); t++) {
+					output.write(partHeaders[t]);
+					send(channel, ranges.get(t).getStart(), ranges.get(t).getLength(), output, buffer);
+				}
+				output.write(trailer);
+			}
+		}
+	}
+
+	private static long getDate(HttpServletRequest request, String name) {
+		try {
+			return request.getDateHeader(name);
+		} catch (IllegalArgumentException e) {
+			//If-Range holds an ETag more often than a date and a malformed date is treated as if it wasn't there
+			return -1;
+		}
+	}
+
+	/**
+	 * Sends the only body of the response. Jetty reads it straight from the file with a buffer from it's own pool and completes the
+	 * response once it's written.
+	 */
+	private static void sendAll(FileChannel channel, long start, long length, OutputStream output) throws IOException {
+		if (output instanceof HttpOutput) {
+			((HttpOutput)output).sendContent(new RangeChannel(channel, start, length));
+			return;
+		}
+
+		send(channel, start, length, output, null);
+	}
+
+	private static void send(FileChannel channel, long start, long length, OutputStream output, ByteBuffer buffer) throws IOException {
+		long position = start;
+		long end = start + length;
+		if (output instanceof HttpOutput) {
+			HttpOutput httpOutput = (HttpOutput)output;
+			while (position < end) {
+				buffer.clear();
+				buffer.limit((int)Math.min(buffer.capacity(), end - position));
+				int read = channel.read(buffer, position);
+				if (read <= 0) {
+					throw new IOException("File was truncated while it was being sent");
+				}
+				buffer.flip();
+				httpOutput.write(buffer);
+				position += read;
+			}
+			return;
+		}
+
+		//Not Jetty(a HEAD wrapper or a test), let the channel pick the cheapest copy it can
+		WritableByteChannel target = Channels.newChannel(output);
+		while (position < end) {
+			long sent = channel.transferTo(position, end - position, target);
+			if (sent <= 0) {
+				throw new IOException("File was truncated while it was being sent");
+			}
+			position += sent;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.area515.resinprinter.stream;
+
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent frames from a camera. A camera has a single writer and any number of readers, neither of them ever take a lock.
+ *
+ * Readers that fall behind skip ahead to the latest frame, since a live view would rather be current than complete. Readers that
+ * want to wait for a new frame park on a Phaser that advances every time a frame is published.
+ */
+public class FrameRing {
+	private AtomicReferenceArray<Frame> frames;
+	private volatile Frame latest;
+	private AtomicLong nextSequence = new AtomicLong();
+	private Phaser published = new Phaser(1);
+
+	public static class Frame {
+		private long sequence;
+		private long capturedNanos;
+		private byte[] data;
+
+		private Frame(long sequence, byte[] data) {
+			this.sequence = sequence;
+			this.capturedNanos = System.nanoTime();
+			this.data = data;
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		public long getCapturedNanos() {
+			return capturedNanos;
+		}
+
+		/**
+		 * @return the frame exactly as the camera produced it, it's shared by every reader so it must not be changed
+		 */
+		public byte[] getData() {
+			return data;
+		}
+	}
+
+	public FrameRing(int size) {
+		frames = new AtomicReferenceArray<Frame>(Math.max(size, 1));
+	}
+
+	public Frame publish(byte[] data) {
+		Frame frame = new Frame(nextSequence.getAndIncrement(), data);
+		frames.set((int)(frame.sequence % frames.length()), frame);
+		latest = frame;
+		published.arrive();
+		return frame;
+	}
+
+	/**
+	 * @return the newest frame, or null if nothing has been published yet
+	 */
+	public Frame getLatest() {
+		return latest;
+	}
+
+	/**
+	 * @return the sequence of the newest frame, or -1 if nothing has been published yet
+	 */
+	public long getLatestSequence() {
+		Frame frame = latest;
+		return frame != null?frame.sequence:-1;
+	}
+
+	/**
+	 * @return the frame with this sequence if it's still in the ring, otherwise null
+	 */
+	public Frame get(long sequence) {
+		if (sequence < 0) {
+			return null;
+		}
+
+		Frame frame = frames.get((int)(sequence % frames.length()));
+		return frame != null && frame.sequence == sequence?frame:null;
+	}
+
+	/**
+	 * Waits for a frame that is newer than the given sequence.
+	 *
+	 * @return the newest frame, which skips any frames the reader was too slow for
+	 */
+	public Frame awaitNewerThan(long sequence, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			int phase = published.getPhase();
+			Frame frame = latest;
+			if (frame != null && frame.sequence > sequence) {
+				return frame;
+			}
+
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				throw new TimeoutException("No frame newer than " + sequence);
+			}
+			published.awaitAdvanceInterruptibly(phase, remaining, TimeUnit.NANOSECONDS);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.area515.resinprinter.stream;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Resizes camera frames for clients that asked for a different size than the camera captures at. The camera can only be opened
+ * by one process, so it runs at one size and every other size is scaled from it's frames.
+ *
+ * Only the newest scaled frame of each size is kept, so any number of clients watching at the same size share one scale per frame.
+ */
+public class FrameScaler {
+	private static final int MAX_SIZES = 4;
+
+	private int captureWidth;
+	private int captureHeight;
+	private Map<String, ScaledFrame> scaledFrames = new LinkedHashMap<String, ScaledFrame>(MAX_SIZES, 0.75f, true) {
+		private static final long serialVersionUID = -2467316946003618834L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ScaledFrame> eldest) {
+			return size() > MAX_SIZES;
+		}
+	};
+
+	private static class ScaledFrame {
+		private long sequence = -1;
+		private byte[] data;
+	}
+
+	public FrameScaler(int captureWidth, int captureHeight) {
+		this.captureWidth = captureWidth;
+		this.captureHeight = captureHeight;
+	}
+
+	/**
+	 * @return the frame as a JPEG of the given size, the frame's own data when it's already that size
+	 */
+	public byte[] scale(FrameRing.Frame frame, int width, int height) throws IOException {
+		if (width <= 0 || height <= 0 || (width == captureWidth && height == captureHeight)) {
+			return frame.getData();
+		}
+
+		ScaledFrame scaledFrame;
+		synchronized (scaledFrames) {
+			String size = width + "x" + height;
+			scaledFrame = scaledFrames.get(size);
+			if (scaledFrame == null) {
+				scaledFrame = new ScaledFrame();
+				scaledFrames.put(size, scaledFrame);
+			}
+		}
+
+		//Clients of the same size wait for the first one to scale the frame instead of scaling it themselves
+		synchronized (scaledFrame) {
+			if (scaledFrame.sequence != frame.getSequence()) {
+				scaledFrame.data = scale(frame.getData(), width, height);
+				scaledFrame.sequence = frame.getSequence();
+			}
+			return scaledFrame.data;
+		}
+	}
+
+	private static byte[] scale(byte[] jpeg, int width, int height) throws IOException {
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+		if (image == null) {
+			throw new IOException("Camera frame isn't an image");
+		}
+		if (image.getWidth() == width && image.getHeight() == height) {
+			return jpeg;
+		}
+
+		BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D graphics = scaledImage.createGraphics();
+		try {
+			graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			graphics.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			graphics.dispose();
+		}
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream(jpeg.length);
+		ImageIO.write(scaledImage, "jpg", output);
+		return output.toByteArray();
+	}
+}
@@ -0,0 +1,144 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Splits a stream of back to back JPEG images(the MJPEG output of a camera) into separate frames.
+ *
+ * Frames are found by their SOI and EOI markers. Marker segments are skipped by their length so that thumbnails inside of
+ * EXIF data aren't mistaken for the end of a frame, and inside of entropy coded data only real markers are recognized since
+ * 0xFF is always followed by a stuffed zero or a restart marker there. Anything between frames is thrown away.
+ */
+public class JpegFrameReader {
+	private static final Logger logger = LogManager.getLogger();
+	private static final int SOI = 0xD8;
+	private static final int EOI = 0xD9;
+	private static final int SOS = 0xDA;
+	private static final int TEM = 0x01;
+
+	private InputStream in;
+	private int maxFrameBytes;
+	private byte[] buffer = new byte[16384];
+	private int position;
+	private int limit;
+	private ByteArrayOutputStream frame = new ByteArrayOutputStream(65536);
+
+	public JpegFrameReader(InputStream in, int maxFrameBytes) {
+		this.in = in;
+		this.maxFrameBytes = maxFrameBytes;
+	}
+
+	private int read() throws IOException {
+		if (position == limit) {
+			limit = in.read(buffer);
+			position = 0;
+			if (limit < 0) {
+				limit = 0;
+				throw new EOFException();
+			}
+		}
+		return buffer[position++] & 0xFF;
+	}
+
+	private int readAndKeep() throws IOException {
+		if (frame.size() >= maxFrameBytes) {
+			throw new IOException("Frame is larger than " + maxFrameBytes + " bytes");
+		}
+
+		int value = read();
+		frame.write(value);
+		return value;
+	}
+
+	private void findStartOfImage() throws IOException {
+		int previous = 0;
+		int current = read();
+		while (!(previous == 0xFF && current == SOI)) {
+			previous = current;
+			current = read();
+		}
+
+		frame.reset();
+		frame.write(0xFF);
+		frame.write(SOI);
+	}
+
+	//Skips fill bytes and returns the code of the marker
+	private int readMarker(boolean entropyCoded) throws IOException {
+		while (true) {
+			if (readAndKeep() != 0xFF) {
+				if (!entropyCoded) {
+					throw new IOException("Expected a JPEG marker");
+				}
+				continue;
+			}
+
+			int code = readAndKeep();
+			while (code == 0xFF) {
+				code = readAndKeep();
+			}
+			//Stuffed zeros and restart markers are part of the entropy coded data
+			if (entropyCoded && (code == 0 || (code >= 0xD0 && code <= 0xD7))) {
+				continue;
+			}
+			return code;
+		}
+	}
+
+	private void readRestOfFrame() throws IOException {
+		boolean entropyCoded = false;
+		while (true) {
+			int code = readMarker(entropyCoded);
+			if (code == EOI) {
+				return;
+			}
+			if (code == SOI) {
+				logger.debug("Frame restarted before it ended");
+				frame.reset();
+				frame.write(0xFF);
+				frame.write(SOI);
+				entropyCoded = false;
+				continue;
+			}
+			if (code == TEM || (code >= 0xD0 && code <= 0xD7)) {
+				continue;
+			}
+
+			int length = (readAndKeep() << 8 | readAndKeep()) - 2;
+			if (length < 0) {
+				throw new IOException("Marker segment with a negative length");
+			}
+			for (int t = 0; t < length; t++) {
+				readAndKeep();
+			}
+			entropyCoded = code == SOS;
+		}
+	}
+
+	/**
+	 * @return the next complete frame, or null once the stream has ended. A frame that was cut off by the end of the stream isn't returned.
+	 */
+	public byte[] readFrame() throws IOException {
+		try {
+			while (true) {
+				findStartOfImage();
+				try {
+					readRestOfFrame();
+					return frame.toByteArray();
+				} catch (EOFException e) {
+					throw e;
+				} catch (IOException e) {
+					logger.warn("Dropped a corrupt frame: {}", e.getMessage());
+				}
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+}
@@ -34,6 +34,11 @@ public class JMEStruts {
 			return new Vector3f((float)x, (float)y, (float)z);
 		}
 		
+		@Override
+		protected boolean canBuildPointsConcurrently() {
+			return true;
+		}
+		
 		@Override
 		protected Collection<Mesh> createSet() {
 			return new ArrayList<Mesh>();
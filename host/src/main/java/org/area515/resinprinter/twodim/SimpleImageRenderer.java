@@ -1,15 +1,15 @@
 package org.area515.resinprinter.twodim;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
 
-import javax.imageio.ImageIO;
-
 import org.area515.resinprinter.job.AbstractPrintFileProcessor;
 import org.area515.resinprinter.job.JobManagerException;
 import org.area515.resinprinter.job.AbstractPrintFileProcessor.DataAid;
 import org.area515.resinprinter.job.render.CurrentImageRenderer;
+import org.area515.resinprinter.job.render.ImagePool;
+import org.area515.resinprinter.job.render.SlicePrefetcher;
+import org.area515.resinprinter.job.render.SliceSource;
 
 public class SimpleImageRenderer extends CurrentImageRenderer {
 	public SimpleImageRenderer(DataAid aid, AbstractPrintFileProcessor<?, ?> processor, Object imageIndexToBuild) {
@@ -18,8 +18,12 @@ public class SimpleImageRenderer extends CurrentImageRenderer {
 
 	@Override
 	public BufferedImage renderImage(BufferedImage image) throws JobManagerException {
+		if (!(imageIndexToBuild instanceof SliceSource)) {
+			throw new JobManagerException("Not a slice image:" + imageIndexToBuild);
+		}
+		
 		try {
-			return ImageIO.read((File)imageIndexToBuild);
+			return SlicePrefetcher.decode((SliceSource)imageIndexToBuild, ImagePool.Instance());
 		} catch (IOException e) {
 			throw new JobManagerException("Unable to read image:" + imageIndexToBuild, e);
 		}
@@ -37,7 +37,7 @@ public abstract class TwoDimensionalImageRenderer extends CurrentImageRenderer {
 	
 	//TODO: There is a race condition that causes this method to be called twice. This is awefully wasteful!
 	private Future<BufferedImage> startImageLoad(final PrintJob printJob) {
-		return Main.GLOBAL_EXECUTOR.submit(new Callable<BufferedImage>() {
+		return Main.RENDER_EXECUTOR.submit(new Callable<BufferedImage>() {
 			@Override
 			public BufferedImage call() throws Exception {
 				RenderingContext twoDimensionalImage = aid.cache.getOrCreateIfMissing(imageIndexToBuild);
@@ -139,7 +139,7 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 				currentImage = startImageRendering(dataAid, nextRenderingPointer);
 				
 				//Performs all of the duties that are common to most print files
-				status = printImageAndPerformPostProcessing(dataAid, rendered.getScriptEngine(), rendered.getPrintableImage());
+				status = printImageAndPerformPostProcessing(dataAid, rendered.getScriptEngine(), rendered.getPrintableImage(), rendered.getSliceToken());
 				if (status != null) {
 					return status;
 				}
@@ -191,7 +191,8 @@ public abstract class TwoDimensionalPlatformPrintFileProcessor<T,E> extends Abst
 				return ImageIO.read(PrintJobService.class.getResourceAsStream("noimageavailable.png"));
 			}
 			
-			return renderer.call().getPrintableImage();
+			//The preview keeps the image, so it can't be left for the rendering context to return to the pool
+			return renderer.call().takePrintableImage();
 		} catch (IOException | JobManagerException e) {
 			throw new SliceHandlingException(e);
 		}
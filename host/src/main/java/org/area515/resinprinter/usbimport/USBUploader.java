@@ -67,7 +67,7 @@ public class USBUploader implements Feature {
 			masterRoots.put(root.getAbsolutePath(), root);
 		}
 		
-		future = Main.GLOBAL_EXECUTOR.scheduleWithFixedDelay(new Runnable(){
+		future = Main.IO_EXECUTOR.scheduleWithFixedDelay(new Runnable(){
 			@Override
 			public void run() {
 				Map<String, File> negativeList = new HashMap<>();
@@ -10,6 +10,7 @@ import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
@@ -19,6 +20,7 @@ import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.serial.EventDrivenCommPort;
 import org.area515.resinprinter.serial.SerialCommunicationsPort;
 
 import com.google.common.io.ByteStreams;
@@ -187,6 +189,15 @@ public class IOUtilities {
 	
 	public static String readWithTimeout(SerialCommunicationsPort currentIdentifier, int timeoutMillis, int cpuLimitingDelay) throws IOException, InterruptedException {
 		StringBuilder builder = new StringBuilder();
+		if (currentIdentifier instanceof EventDrivenCommPort) {
+			//Wait for each chunk of data instead of polling, and stop once the port has been quiet for the whole timeout
+			byte[] data = null;
+			while ((data = ((EventDrivenCommPort)currentIdentifier).read(timeoutMillis)) != null) {
+				builder.append(new String(data));
+			}
+			return builder.toString();
+		}
+		
 		long start = System.currentTimeMillis();
 		while (System.currentTimeMillis() - start < timeoutMillis) {
 			byte[] data = currentIdentifier.read();
@@ -223,6 +234,10 @@ public class IOUtilities {
 	}
 	
 	public static ParseState readLine(Printer printer, SerialCommunicationsPort serialPort, StringBuilder builder, int parseLocation, int timeoutMillis, int cpuLimitingDelay) throws IOException {
+		if (serialPort instanceof EventDrivenCommPort) {
+			return readLine(printer, (EventDrivenCommPort)serialPort, builder, parseLocation, timeoutMillis, cpuLimitingDelay);
+		}
+		
 		long startTime = System.currentTimeMillis();
 		boolean workPerformed = false;
 		while (true) {
@@ -272,6 +287,56 @@ public class IOUtilities {
 		}
 	}	
 	
+	/**
+	 * Wakes up as soon as data arrives on the port instead of sleeping between polls. The cpuLimitingDelay is only used
+	 * to limit how long it takes to notice that the printer is no longer printing.
+	 */
+	private static ParseState readLine(Printer printer, EventDrivenCommPort serialPort, StringBuilder builder, int parseLocation, int timeoutMillis, int cpuLimitingDelay) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		byte[] newBuffer = serialPort.read();
+		while (true) {
+			if (newBuffer != null) {
+				builder.append(new String(newBuffer));
+			}
+			
+			for (; parseLocation < builder.length(); parseLocation++) {
+				if (builder.charAt(parseLocation) == '\n') {
+					ParseState state = new ParseState();
+					state.currentLine = builder.substring(0, parseLocation + 1);
+					state.parseLocation = 0;
+					builder.delete(0, parseLocation + 1);
+					return state;
+				}
+			}
+			
+			long remainingNanos = deadline - System.nanoTime();
+			if (remainingNanos <= 0) {
+				ParseState state = new ParseState();
+				state.currentLine = null;
+				state.parseLocation = parseLocation;
+				state.timeout = true;
+				return state;
+			}
+			
+			if (printer != null && !printer.isPrintActive()) {
+				ParseState state = new ParseState();
+				state.currentLine = null;
+				state.parseLocation = parseLocation;
+				return state;
+			}
+			
+			try {
+				long waitMillis = TimeUnit.NANOSECONDS.toMillis(remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+				newBuffer = serialPort.read(printer != null?Math.min(waitMillis, cpuLimitingDelay):waitMillis);
+			} catch (InterruptedException e) {
+				ParseState state = new ParseState();
+				state.currentLine = null;
+				state.parseLocation = parseLocation;
+				return state;
+			}
+		}
+	}
+	
 	public static ParseState readLine(InputStream stream, StringBuilder builder, String eolRegex, int parseLocation, int timeoutMillis, int cpuLimitingDelay) throws IOException {
 		long startTime = System.currentTimeMillis();
 		boolean workPerformed = false;
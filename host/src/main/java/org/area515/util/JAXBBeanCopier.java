@@ -0,0 +1,302 @@
+package org.area515.util;
+
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.namespace.QName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Deep copies JAXB bound objects with reflection instead of marshalling them to XML and back.
+ *
+ * It copies the same state that JAXB would with it's default access type. Fields that have a JAXB annotation, public fields
+ * and public getter/setter pairs that aren't XmlTransient. Setters are called just like the unmarshaller would call them.
+ * Values that are null or empty lists aren't written by the marshaller, so they aren't copied either and the copy keeps
+ * whatever it's constructor set.
+ *
+ * Whether both copies match depends on more than the class, a subclass in a list or an adapted property that's only sometimes
+ * set can make them differ. So the shape of every copy is recorded(the classes in the graph and which of their properties were
+ * set) and the first copy of each shape is also copied with JAXB and the XML of both copies is compared. If they don't match,
+ * that shape is always copied with JAXB from then on.
+ */
+public class JAXBBeanCopier {
+    private static final Logger logger = LogManager.getLogger();
+
+	//Configuration objects only come in a handful of shapes, anything past this is copied with JAXB instead of being remembered
+	private static final int MAX_SHAPES = 256;
+
+	private static final Map<Class<?>, BeanDescriptor> descriptors = new ConcurrentHashMap<Class<?>, BeanDescriptor>();
+	private static final Map<String, Boolean> reflectiveCopyMatches = new ConcurrentHashMap<String, Boolean>();
+
+	private static abstract class Accessor {
+		abstract Object get(Object bean) throws ReflectiveOperationException;
+		abstract void set(Object bean, Object value) throws ReflectiveOperationException;
+	}
+
+	private static class FieldAccessor extends Accessor {
+		private Field field;
+
+		private FieldAccessor(Field field) {
+			this.field = field;
+			field.setAccessible(true);
+		}
+
+		Object get(Object bean) throws IllegalAccessException {
+			return field.get(bean);
+		}
+
+		void set(Object bean, Object value) throws IllegalAccessException {
+			field.set(bean, value);
+		}
+	}
+
+	private static class PropertyAccessor extends Accessor {
+		private Method getter;
+		private Method setter;
+
+		private PropertyAccessor(Method getter, Method setter) {
+			this.getter = getter;
+			this.setter = setter;
+			getter.setAccessible(true);
+			setter.setAccessible(true);
+		}
+
+		Object get(Object bean) throws ReflectiveOperationException {
+			return getter.invoke(bean);
+		}
+
+		void set(Object bean, Object value) throws ReflectiveOperationException {
+			setter.invoke(bean, value);
+		}
+	}
+
+	private static class BeanDescriptor {
+		private Constructor<?> constructor;
+		private List<Accessor> accessors = new ArrayList<Accessor>();
+	}
+
+	private static boolean isJAXBAnnotated(AccessibleObject member) {
+		for (Annotation annotation : member.getAnnotations()) {
+			if (annotation.annotationType().getPackage().getName().equals(XmlTransient.class.getPackage().getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isImmutable(Class<?> clazz) {
+		return clazz.isPrimitive() ||
+				clazz.isEnum() ||
+				clazz == String.class ||
+				clazz == Boolean.class ||
+				clazz == Character.class ||
+				Number.class.isAssignableFrom(clazz) && clazz.getName().startsWith("java.lang.") ||
+				clazz == BigDecimal.class ||
+				clazz == BigInteger.class ||
+				clazz == QName.class;
+	}
+
+	private static String getPropertyName(Method getter) {
+		String name = getter.getName();
+		if (name.startsWith("get") && name.length() > 3 && getter.getReturnType() != void.class) {
+			return name.substring(3);
+		}
+		if (name.startsWith("is") && name.length() > 2 && getter.getReturnType() == boolean.class) {
+			return name.substring(2);
+		}
+		return null;
+	}
+
+	private static BeanDescriptor getDescriptor(Class<?> clazz) throws ReflectiveOperationException {
+		BeanDescriptor descriptor = descriptors.get(clazz);
+		if (descriptor != null) {
+			return descriptor;
+		}
+
+		descriptor = new BeanDescriptor();
+		descriptor.constructor = clazz.getDeclaredConstructor();
+		descriptor.constructor.setAccessible(true);
+		for (Class<?> currentClass = clazz; currentClass != null && currentClass != Object.class; currentClass = currentClass.getSuperclass()) {
+			for (Field field : currentClass.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers) || field.isAnnotationPresent(XmlTransient.class)) {
+					continue;
+				}
+				if (isJAXBAnnotated(field) || Modifier.isPublic(modifiers)) {
+					descriptor.accessors.add(new FieldAccessor(field));
+				}
+			}
+
+			for (Method getter : currentClass.getDeclaredMethods()) {
+				String propertyName = getPropertyName(getter);
+				if (propertyName == null || getter.getParameterCount() > 0 || Modifier.isStatic(getter.getModifiers()) || !Modifier.isPublic(getter.getModifiers()) || getter.isAnnotationPresent(XmlTransient.class)) {
+					continue;
+				}
+
+				Method setter;
+				try {
+					setter = currentClass.getDeclaredMethod("set" + propertyName, getter.getReturnType());
+				} catch (NoSuchMethodException e) {
+					continue;
+				}
+				if (!Modifier.isPublic(setter.getModifiers()) || setter.isAnnotationPresent(XmlTransient.class)) {
+					continue;
+				}
+				descriptor.accessors.add(new PropertyAccessor(getter, setter));
+			}
+		}
+
+		descriptors.put(clazz, descriptor);
+		return descriptor;
+	}
+
+	private static Object copyBean(Object source, Set<String> shape) throws ReflectiveOperationException {
+		BeanDescriptor descriptor = getDescriptor(source.getClass());
+		Object copy = descriptor.constructor.newInstance();
+		for (int t = 0; t < descriptor.accessors.size(); t++) {
+			Accessor accessor = descriptor.accessors.get(t);
+			Object value = accessor.get(source);
+			if (value == null || value instanceof Collection && ((Collection<?>)value).isEmpty()) {
+				continue;
+			}
+			shape.add(source.getClass().getName() + "." + t);
+			accessor.set(copy, copyValue(value, shape));
+		}
+		return copy;
+	}
+
+	/**
+	 * @param shape collects the name of every class that was copied, and the index of every property of a bean that was set
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object copyValue(Object value, Set<String> shape) throws ReflectiveOperationException {
+		if (value == null || isImmutable(value.getClass())) {
+			return value;
+		}
+
+		shape.add(value.getClass().getName());
+		if (value instanceof List) {
+			List<Object> copy = new ArrayList<Object>(((List<?>)value).size());
+			for (Object element : (List<?>)value) {
+				copy.add(copyValue(element, shape));
+			}
+			return copy;
+		}
+
+		if (value instanceof Set) {
+			Set<Object> copy = new LinkedHashSet<Object>();
+			for (Object element : (Set<?>)value) {
+				copy.add(copyValue(element, shape));
+			}
+			return copy;
+		}
+
+		if (value instanceof Map) {
+			Map<Object, Object> copy = value instanceof SortedMap?new TreeMap<Object, Object>((Comparator<Object>)((SortedMap<?, ?>)value).comparator()):new LinkedHashMap<Object, Object>();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>)value).entrySet()) {
+				copy.put(copyValue(entry.getKey(), shape), copyValue(entry.getValue(), shape));
+			}
+			return copy;
+		}
+
+		if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+			for (int t = 0; t < length; t++) {
+				Array.set(copy, t, copyValue(Array.get(value, t), shape));
+			}
+			return copy;
+		}
+
+		if (value instanceof Date) {
+			return ((Date)value).clone();
+		}
+
+		return copyBean(value, shape);
+	}
+
+	private static <T> String toXML(T object, Class<T> clazz) throws JAXBException {
+		StringWriter writer = new StringWriter();
+		JAXBUtilities.getMarshaller(clazz).marshal(new JAXBElement<T>(new QName(clazz.getSimpleName()), clazz, object), writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Copies object without the XML round trip. This doesn't check that the copy matches what JAXB would have made,
+	 * use deepCopy() for that.
+	 */
+	public static <T> T reflectiveCopy(T object, Class<T> clazz) throws ReflectiveOperationException {
+		return clazz.cast(copyValue(object, new HashSet<String>()));
+	}
+
+	public static <T> T deepCopy(T object, Class<T> clazz) throws JAXBException {
+		if (object == null) {
+			return null;
+		}
+
+		//A class that can't be copied with reflection at all is remembered by it's name, shapes are remembered by the classes they hold
+		if (Boolean.FALSE.equals(reflectiveCopyMatches.get(clazz.getName()))) {
+			return JAXBUtilities.roundTripCopy(object, clazz);
+		}
+
+		Set<String> shape = new TreeSet<String>();
+		T reflectiveCopy;
+		try {
+			reflectiveCopy = clazz.cast(copyValue(object, shape));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			logger.warn("Couldn't copy " + clazz + " with reflection, JAXB will be used to copy it", e);
+			reflectiveCopyMatches.put(clazz.getName(), false);
+			return JAXBUtilities.roundTripCopy(object, clazz);
+		}
+
+		String shapeKey = clazz.getName() + shape;
+		Boolean matches = reflectiveCopyMatches.get(shapeKey);
+		if (matches != null) {
+			return matches?reflectiveCopy:JAXBUtilities.roundTripCopy(object, clazz);
+		}
+
+		T jaxbCopy = JAXBUtilities.roundTripCopy(object, clazz);
+		if (reflectiveCopyMatches.size() >= MAX_SHAPES) {
+			return jaxbCopy;
+		}
+
+		try {
+			matches = toXML(jaxbCopy, clazz).equals(toXML(reflectiveCopy, clazz));
+		} catch (RuntimeException e) {
+			logger.warn("Couldn't compare the reflective copy of " + clazz + " with it's JAXB copy", e);
+			matches = false;
+		}
+		if (!matches) {
+			logger.warn("Reflective copy of {} doesn't match it's JAXB copy, JAXB will be used to copy this shape:{}", clazz, shape);
+		}
+		reflectiveCopyMatches.put(shapeKey, matches);
+		return jaxbCopy;
+	}
+}
@@ -0,0 +1,74 @@
+package org.area515.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.util.JAXBSource;
+import javax.xml.namespace.QName;
+
+/**
+ * JAXBContexts are expensive to build and thread safe, so they are built once for each set of classes and shared.
+ * Marshallers and Unmarshallers are cheap but not thread safe, so each thread keeps it's own for every context it uses.
+ */
+public class JAXBUtilities {
+	private static final Map<List<Class<?>>, JAXBContext> contexts = new ConcurrentHashMap<List<Class<?>>, JAXBContext>();
+	private static final ThreadLocal<Map<JAXBContext, Marshaller>> marshallers = ThreadLocal.withInitial(HashMap::new);
+	private static final ThreadLocal<Map<JAXBContext, Unmarshaller>> unmarshallers = ThreadLocal.withInitial(HashMap::new);
+
+	public static JAXBContext getContext(Class<?>... classes) throws JAXBException {
+		List<Class<?>> key = Arrays.asList(classes.clone());
+		JAXBContext context = contexts.get(key);
+		if (context != null) {
+			return context;
+		}
+
+		//Two threads could both build the context, but only the first one is kept
+		context = JAXBContext.newInstance(classes);
+		JAXBContext existingContext = contexts.putIfAbsent(key, context);
+		return existingContext != null?existingContext:context;
+	}
+
+	/**
+	 * @return a formatted Marshaller for the context of these classes that belongs to the calling thread
+	 */
+	public static Marshaller getMarshaller(Class<?>... classes) throws JAXBException {
+		JAXBContext context = getContext(classes);
+		Marshaller marshaller = marshallers.get().get(context);
+		if (marshaller == null) {
+			marshaller = context.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+			marshallers.get().put(context, marshaller);
+		}
+		return marshaller;
+	}
+
+	/**
+	 * @return an Unmarshaller for the context of these classes that belongs to the calling thread
+	 */
+	public static Unmarshaller getUnmarshaller(Class<?>... classes) throws JAXBException {
+		JAXBContext context = getContext(classes);
+		Unmarshaller unmarshaller = unmarshallers.get().get(context);
+		if (unmarshaller == null) {
+			unmarshaller = context.createUnmarshaller();
+			unmarshallers.get().put(context, unmarshaller);
+		}
+		return unmarshaller;
+	}
+
+	/**
+	 * Copies an object by marshalling it and unmarshalling the result, only the state that JAXB binds survives the trip.
+	 */
+	public static <T> T roundTripCopy(T object, Class<T> clazz) throws JAXBException {
+		JAXBElement<T> contentObject = new JAXBElement<T>(new QName(clazz.getSimpleName()), clazz, object);
+		JAXBSource source = new JAXBSource(getContext(clazz), contentObject);
+		return getUnmarshaller(clazz).unmarshal(source, clazz).getValue();
+	}
+}
@@ -37,6 +37,7 @@ public class TemplateEngine {
     private static final Logger logger = LogManager.getLogger();
 	private static StringTemplateLoader templateLoader = new StringTemplateLoader();
 	private static Configuration config = null;
+	public static final String BOOLEAN_FORMAT = "yes,no";
 	
 	public static final TemplateExceptionHandler INFO_IGNORE_HANDLER = new TemplateExceptionHandler() {
 		public void handleTemplateException(TemplateException te, Environment env, Writer out) throws TemplateException {
@@ -44,6 +45,96 @@ public class TemplateEngine {
 		}
 	};
 
+	/**
+	 * The layer variables that every gcode template can use. buildData puts all of them in the FreeMarker data model and
+	 * GCodeTemplatePlan only looks up the ones that a compiled template uses.
+	 */
+	public static enum Variable {
+		CURSLICE {
+			public Object getValue(PrintJob job, Printer printer) {
+				return job.getRenderingSlice();
+			}
+		},
+		LayerThickness {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getSliceHeight();
+			}
+		},
+		ZDir {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getDirection().getVector();
+			}
+		},
+		ZLiftRate {
+			public Object getValue(PrintJob job, Printer printer) {
+				return job.getZLiftSpeed();
+			}
+		},
+		ZLiftDist {
+			public Object getValue(PrintJob job, Printer printer) {
+				return job.getZLiftDistance();
+			}
+		},
+		buildAreaMM {
+			public Object getValue(PrintJob job, Printer printer) {
+				Double buildArea = job.getPrintFileProcessor().getBuildAreaMM(job);
+				return buildArea == null || buildArea < 0?null:buildArea;
+			}
+		},
+		LayerTime {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getExposureTime();
+			}
+		},
+		FirstLayerTime {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getFirstLayerExposureTime();
+			}
+		},
+		NumFirstLayers {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getNumberOfFirstLayers();
+			}
+		},
+		SlideTiltVal {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getSlideTiltValue();
+			}
+		},
+		buildPlatformXPixels {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getxResolution();
+			}
+		},
+		buildPlatformYPixels {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getyResolution();
+			}
+		},
+		pixelsPerMMX {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getDotsPermmX();
+			}
+		},
+		pixelsPerMMY {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getConfiguration().getSlicingProfile().getDotsPermmY();
+			}
+		},
+		bulbHours {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.getCachedBulbHours();
+			}
+		},
+		shutterOpen {
+			public Object getValue(PrintJob job, Printer printer) {
+				return printer.isShutterOpen();
+			}
+		};
+
+		public abstract Object getValue(PrintJob job, Printer printer);
+	}
+
 	public static String convertToFreeMarkerTemplate(String template) {
 		if (template == null || template.trim().length() == 0) {
 			return template;
@@ -75,7 +166,7 @@ public class TemplateEngine {
 	        config.setDefaultEncoding("UTF-8");
 	        config.setTemplateExceptionHandler(INFO_IGNORE_HANDLER);
 	        config.setTemplateLoader(templateLoader);
-	        config.setBooleanFormat("yes,no");
+	        config.setBooleanFormat(BOOLEAN_FORMAT);
 		}
 		
 		//com.cfs.daq.script.SharedInterpreter has similar stuff in it...
@@ -96,29 +187,15 @@ public class TemplateEngine {
         */
 
 		root.put("now", new Date());
-		root.put("shutterOpen", printer.isShutterOpen());
-		root.put("bulbHours", printer.getCachedBulbHours());
-		root.put("CURSLICE", job.getRenderingSlice());
-		root.put("LayerThickness", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getSliceHeight());
-		root.put("ZDir", printer.getConfiguration().getSlicingProfile().getDirection().getVector());
 //TODO: Create a retract calculator
 //TODO: Create a computed ZLiftSpeed
 //TODO: Create a computed ZLiftDistance
 //TODO: What about race conditions on these varaibles?
-root.put("ZLiftRate", job.getZLiftSpeed());
-root.put("ZLiftDist", job.getZLiftDistance());
-Double buildArea = job.getPrintFileProcessor().getBuildAreaMM(job);
-		root.put("buildAreaMM", buildArea == null || buildArea < 0?null:buildArea);
-		root.put("LayerTime", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getExposureTime());
-		root.put("FirstLayerTime", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getFirstLayerExposureTime());
-		root.put("NumFirstLayers", printer.getConfiguration().getSlicingProfile().getSelectedInkConfig().getNumberOfFirstLayers());
 //TODO: Computed Exposure Time
 //TODO: get all other computed values
-		root.put("SlideTiltVal", printer.getConfiguration().getSlicingProfile().getSlideTiltValue());
-		root.put("buildPlatformXPixels", printer.getConfiguration().getSlicingProfile().getxResolution());
-		root.put("buildPlatformYPixels", printer.getConfiguration().getSlicingProfile().getyResolution());
-		root.put("pixelsPerMMX", printer.getConfiguration().getSlicingProfile().getDotsPermmX());
-		root.put("pixelsPerMMY", printer.getConfiguration().getSlicingProfile().getDotsPermmY());
+		for (Variable variable : Variable.values()) {
+			root.put(variable.name(), variable.getValue(job, printer));
+		}
 		root.put("hostProperties", HostProperties.Instance());
 		root.put("job", job);
 		root.put("printer", printer);
@@ -0,0 +1,150 @@
+package org.area515.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.area515.resinprinter.job.render.SliceSource;
+
+/**
+ * Reads the entries of a zip file in place instead of extracting them to disk first.
+ *
+ * The central directory is indexed once when the archive is opened, after that any entry can be streamed straight out of the
+ * archive. Entries can be streamed from several threads at once.
+ */
+public class ZipArchive implements Closeable {
+	private File file;
+	private ZipFile zipFile;
+	private Map<String, Entry> entriesByName = new LinkedHashMap<String, Entry>();
+
+	public static class Entry implements SliceSource {
+		private ZipArchive archive;
+		private ZipEntry zipEntry;
+
+		private Entry(ZipArchive archive, ZipEntry zipEntry) {
+			this.archive = archive;
+			this.zipEntry = zipEntry;
+		}
+
+		public ZipArchive getArchive() {
+			return archive;
+		}
+
+		/**
+		 * @return the full path of this entry inside the archive
+		 */
+		@Override
+		public String getName() {
+			return zipEntry.getName();
+		}
+
+		/**
+		 * @return the name of this entry without the directories it's in
+		 */
+		public String getFileName() {
+			return zipEntry.getName().substring(zipEntry.getName().lastIndexOf('/') + 1);
+		}
+
+		/**
+		 * @return the directories this entry is in with a trailing slash, or an empty string if it's at the root of the archive
+		 */
+		public String getDirectory() {
+			return zipEntry.getName().substring(0, zipEntry.getName().lastIndexOf('/') + 1);
+		}
+
+		public long getSize() {
+			return zipEntry.getSize();
+		}
+
+		@Override
+		public InputStream openStream() throws IOException {
+			return archive.zipFile.getInputStream(zipEntry);
+		}
+
+		@Override
+		public int hashCode() {
+			return archive.file.hashCode() * 31 + zipEntry.getName().hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+
+			Entry other = (Entry)obj;
+			return archive.file.equals(other.archive.file) && zipEntry.getName().equals(other.zipEntry.getName());
+		}
+
+		@Override
+		public String toString() {
+			return archive.file.getName() + "!" + zipEntry.getName();
+		}
+	}
+
+	public ZipArchive(File file) throws IOException {
+		this.file = file;
+		this.zipFile = new ZipFile(file, Charset.forName("CP437"));
+
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry entry = entries.nextElement();
+			if (!entry.isDirectory()) {
+				entriesByName.put(entry.getName(), new Entry(this, entry));
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public List<Entry> getEntries() {
+		return new ArrayList<Entry>(entriesByName.values());
+	}
+
+	public Entry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * @return the entries with any of these extensions(without the dot) no matter their case, in the order they are in the archive
+	 */
+	public List<Entry> findEntries(String... extensions) {
+		List<Entry> found = new ArrayList<Entry>();
+		for (Entry entry : entriesByName.values()) {
+			String name = entry.getName().toLowerCase();
+			for (String extension : extensions) {
+				if (name.endsWith("." + extension.toLowerCase())) {
+					found.add(entry);
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * @return the entry with this file name in the same directory as the given entry, or null if there isn't one
+	 */
+	public Entry findSibling(Entry entry, String fileName) {
+		return entriesByName.get(entry.getDirectory() + fileName);
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipFile.close();
+	}
+}
@@ -0,0 +1,315 @@
+package org.area515.resinprinter.display;
+
+import java.awt.BufferCapabilities;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.ImageCapabilities;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.awt.image.VolatileImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActiveRendererTest {
+	//Video memory that can be told to lose it's contents
+	private static class TestSlice extends VolatileImage {
+		private BufferedImage image;
+		private int validation = IMAGE_OK;
+		private int lostChecks;
+		private int uploads;
+		private boolean flushed;
+
+		public TestSlice(int width, int height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+
+		@Override
+		public Graphics2D createGraphics() {
+			uploads++;
+			validation = IMAGE_OK;
+			return image.createGraphics();
+		}
+
+		@Override
+		public int validate(GraphicsConfiguration configuration) {
+			return validation;
+		}
+
+		@Override
+		public boolean contentsLost() {
+			return lostChecks-- > 0;
+		}
+
+		@Override
+		public void flush() {
+			flushed = true;
+		}
+
+		@Override
+		public BufferedImage getSnapshot() {
+			return image;
+		}
+
+		@Override
+		public int getWidth() {
+			return image.getWidth();
+		}
+
+		@Override
+		public int getHeight() {
+			return image.getHeight();
+		}
+
+		@Override
+		public int getWidth(ImageObserver observer) {
+			return image.getWidth();
+		}
+
+		@Override
+		public int getHeight(ImageObserver observer) {
+			return image.getHeight();
+		}
+
+		@Override
+		public Object getProperty(String name, ImageObserver observer) {
+			return null;
+		}
+
+		@Override
+		public ImageCapabilities getCapabilities() {
+			return new ImageCapabilities(true);
+		}
+	}
+
+	//Pages that remember the color that was on them each time they were flipped onto the screen
+	private static class TestPages extends BufferStrategy {
+		private BufferedImage page = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		private List<Color> shown = new ArrayList<Color>();
+		private int draws;
+		private int restoredChecks;
+		private int lostChecks;
+		private boolean disposed;
+
+		@Override
+		public BufferCapabilities getCapabilities() {
+			return new BufferCapabilities(new ImageCapabilities(true), new ImageCapabilities(true), BufferCapabilities.FlipContents.UNDEFINED);
+		}
+
+		@Override
+		public Graphics getDrawGraphics() {
+			draws++;
+			return page.createGraphics();
+		}
+
+		@Override
+		public boolean contentsRestored() {
+			return restoredChecks-- > 0;
+		}
+
+		@Override
+		public boolean contentsLost() {
+			return lostChecks-- > 0;
+		}
+
+		@Override
+		public void show() {
+			shown.add(new Color(page.getRGB(0, 0)));
+		}
+
+		@Override
+		public void dispose() {
+			disposed = true;
+		}
+	}
+
+	private static class TestSurface implements ActiveRenderer.Surface {
+		private TestPages pages = new TestPages();
+		private List<TestSlice> slices = new ArrayList<TestSlice>();
+
+		@Override
+		public BufferStrategy createBufferStrategy() {
+			return pages;
+		}
+
+		@Override
+		public VolatileImage createVolatileImage(int width, int height) {
+			TestSlice slice = new TestSlice(width, height);
+			slices.add(slice);
+			return slice;
+		}
+
+		@Override
+		public int validate(VolatileImage image) {
+			return image.validate(null);
+		}
+	}
+
+	private static BufferedImage buildSlice(Color color) {
+		BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, 4, 4);
+		graphics.dispose();
+		return image;
+	}
+
+	//Paints the color of the front slice the same way the display frame draws the slice it got from the renderer
+	private static ActiveRenderer.Painter painter(ActiveRenderer renderer) {
+		return g2 -> {
+			VolatileImage slice = renderer.getFrontSlice();
+			g2.setColor(slice != null?new Color(slice.getSnapshot().getRGB(0, 0)):Color.black);
+			g2.fillRect(0, 0, 1, 1);
+		};
+	}
+
+	@Test
+	public void slicesAreFlippedOntoTheScreenInOrder() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+		renderer.showSlice(buildSlice(Color.green), null, painter(renderer));
+		renderer.showSlice(buildSlice(Color.blue), null, painter(renderer));
+
+		Assert.assertEquals(Arrays.asList(Color.red, Color.green, Color.blue), surface.pages.shown);
+		Assert.assertEquals(3, surface.pages.draws);
+		//The two slice caches are reused
+		Assert.assertEquals(2, surface.slices.size());
+	}
+
+	@Test
+	public void stagedSliceIsOnlyCopiedOnce() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		Object token = new Object();
+		BufferedImage green = buildSlice(Color.green);
+		renderer.stageSlice(green, token);
+		TestSlice staged = surface.slices.get(1);
+		Assert.assertEquals(1, staged.uploads);
+		//Staging must not change what is on the screen
+		Assert.assertEquals(Arrays.asList(Color.red), surface.pages.shown);
+
+		renderer.showSlice(green, token, painter(renderer));
+		Assert.assertEquals(1, staged.uploads);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.green), surface.pages.shown);
+	}
+
+	@Test
+	public void stagedSliceWithAnotherTokenIsCopiedAgain() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		renderer.stageSlice(buildSlice(Color.green), new Object());
+		renderer.showSlice(buildSlice(Color.blue), new Object(), painter(renderer));
+		Assert.assertEquals(2, surface.slices.get(1).uploads);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.blue), surface.pages.shown);
+
+		//A staged slice that was cleared isn't used either
+		Object token = new Object();
+		renderer.stageSlice(buildSlice(Color.green), token);
+		renderer.clearStagedSlice();
+		renderer.showSlice(buildSlice(Color.red), token, painter(renderer));
+		Assert.assertEquals(3, surface.slices.get(0).uploads);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.blue, Color.red), surface.pages.shown);
+	}
+
+	@Test
+	public void lostStagedSliceIsCopiedAgain() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		Object token = new Object();
+		BufferedImage green = buildSlice(Color.green);
+		renderer.stageSlice(green, token);
+		TestSlice staged = surface.slices.get(1);
+		staged.validation = VolatileImage.IMAGE_RESTORED;
+		renderer.showSlice(green, token, painter(renderer));
+
+		Assert.assertEquals(2, staged.uploads);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.green), surface.pages.shown);
+	}
+
+	@Test
+	public void lostFrontSliceIsCopiedAgainFromTheShownImage() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		TestSlice front = surface.slices.get(0);
+		front.validation = VolatileImage.IMAGE_RESTORED;
+		//The window was uncovered
+		renderer.present(painter(renderer));
+
+		Assert.assertEquals(2, front.uploads);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.red), surface.pages.shown);
+	}
+
+	@Test
+	public void incompatibleSliceIsReplaced() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		TestSlice front = surface.slices.get(0);
+		front.validation = VolatileImage.IMAGE_INCOMPATIBLE;
+		renderer.present(painter(renderer));
+
+		Assert.assertTrue(front.flushed);
+		Assert.assertEquals(2, surface.slices.size());
+		Assert.assertEquals(Arrays.asList(Color.red, Color.red), surface.pages.shown);
+	}
+
+	@Test
+	public void pageIsDrawnAgainWhenItsLostBeforeItsShown() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		surface.pages.restoredChecks = 1;
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+		Assert.assertEquals(2, surface.pages.draws);
+		Assert.assertEquals(Arrays.asList(Color.red), surface.pages.shown);
+
+		//The slice was lost while the page was being drawn
+		surface.slices.get(0).lostChecks = 1;
+		renderer.present(painter(renderer));
+		Assert.assertEquals(4, surface.pages.draws);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.red), surface.pages.shown);
+	}
+
+	@Test
+	public void pageIsShownAgainWhenItsLostAfterItsShown() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		surface.pages.lostChecks = 1;
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+
+		Assert.assertEquals(2, surface.pages.draws);
+		Assert.assertEquals(Arrays.asList(Color.red, Color.red), surface.pages.shown);
+	}
+
+	@Test
+	public void nothingIsShownOnceDisposed() {
+		TestSurface surface = new TestSurface();
+		ActiveRenderer renderer = new ActiveRenderer(surface);
+		renderer.showSlice(buildSlice(Color.red), null, painter(renderer));
+		renderer.stageSlice(buildSlice(Color.green), new Object());
+		renderer.dispose();
+
+		Assert.assertTrue(surface.pages.disposed);
+		Assert.assertTrue(surface.slices.get(0).flushed);
+		Assert.assertTrue(surface.slices.get(1).flushed);
+
+		renderer.showSlice(buildSlice(Color.blue), null, painter(renderer));
+		renderer.present(painter(renderer));
+		Assert.assertEquals(Arrays.asList(Color.red), surface.pages.shown);
+	}
+}
@@ -0,0 +1,53 @@
+package org.area515.resinprinter.display.dispmanx;
+
+import java.awt.image.BufferedImage;
+
+import com.sun.jna.Memory;
+
+/**
+ * Compares filling a DispManX upload buffer a pixel at a time(getRGB() and a JNA call per pixel) against the bulk row
+ * conversion. Only JNA's Memory is used so this runs on any machine, there doesn't need to be a VideoCore.
+ *
+ * usage: org.area515.resinprinter.display.dispmanx.RasterConverterBenchmark [width height iterations]
+ */
+public class RasterConverterBenchmark {
+	private interface Operation {
+		void run();
+	}
+
+	private static void perPixelARGB8888(BufferedImage image, Memory destPixels, int pitch) {
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				destPixels.setInt((y*(pitch / 4) + x) * 4, image.getRGB(x, y));
+			}
+		}
+	}
+
+	private static void time(String name, int iterations, Operation operation) {
+		//Warm up so that the JIT isn't part of the measurement
+		for (int t = 0; t < Math.max(iterations / 5, 1); t++) {
+			operation.run();
+		}
+
+		long start = System.nanoTime();
+		for (int t = 0; t < iterations; t++) {
+			operation.run();
+		}
+		double millis = (System.nanoTime() - start) / 1000000.0 / iterations;
+		System.out.printf("%-40s %10.2f ms/layer\n", name, millis);
+	}
+
+	public static void main(String[] args) {
+		int width = args.length > 1?Integer.parseInt(args[0]):2560;
+		int height = args.length > 1?Integer.parseInt(args[1]):1600;
+		int iterations = args.length > 2?Integer.parseInt(args[2]):10;
+		int pitch = RasterConverter.getPitch(width, RasterConverter.ARGB8888_BYTES_PER_PIXEL);
+		Memory memory = new Memory(pitch * height);
+
+		for (int type : new int[] {BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_BYTE_GRAY}) {
+			BufferedImage image = RasterConverterTest.buildRandomImage(width, height, type, type);
+			time("Per pixel(image type " + type + ")", iterations, () -> perPixelARGB8888(image, memory, pitch));
+			time("Bulk rows(image type " + type + ")", iterations, () -> RasterConverter.writeARGB8888(image, memory.getByteBuffer(0, memory.size()), pitch));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package org.area515.resinprinter.display.dispmanx;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RasterConverterTest {
+	private static final int[] TYPES = {
+		BufferedImage.TYPE_INT_ARGB,
+		BufferedImage.TYPE_INT_RGB,
+		BufferedImage.TYPE_4BYTE_ABGR,
+		BufferedImage.TYPE_3BYTE_BGR,
+		BufferedImage.TYPE_BYTE_GRAY,
+		BufferedImage.TYPE_4BYTE_ABGR_PRE};
+
+	static BufferedImage buildRandomImage(int width, int height, int type, long seed) {
+		Random random = new Random(seed);
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	//An image of the given type with padding at the end of every row
+	static BufferedImage buildPaddedImage(int width, int height, int type, long seed) {
+		int padding = 5;
+		BufferedImage template = new BufferedImage(1, 1, type);
+		SampleModel model;
+		DataBuffer buffer;
+		if (template.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+			int stride = width + padding;
+			model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, width, height, stride, ((SinglePixelPackedSampleModel)template.getSampleModel()).getBitMasks());
+			buffer = new DataBufferInt(stride * height);
+		} else {
+			ComponentSampleModel templateModel = (ComponentSampleModel)template.getSampleModel();
+			int stride = (width + padding) * templateModel.getPixelStride();
+			model = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, width, height, templateModel.getPixelStride(), stride, templateModel.getBandOffsets());
+			buffer = new DataBufferByte(stride * height);
+		}
+
+		BufferedImage image = new BufferedImage(template.getColorModel(), Raster.createWritableRaster(model, buffer, null), false, null);
+		Random random = new Random(seed);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void pitchIsRoundedToThirtyTwoBytes() {
+		Assert.assertEquals(32, RasterConverter.getPitch(1, 4));
+		Assert.assertEquals(32, RasterConverter.getPitch(8, 4));
+		Assert.assertEquals(64, RasterConverter.getPitch(9, 4));
+		Assert.assertEquals(DispManXDevice.getPitch(4 * 2560, 32), RasterConverter.getPitch(2560, 4));
+		Assert.assertEquals(DispManXDevice.getPitch(2 * 1366, 32), RasterConverter.getPitch(1366, 2));
+	}
+
+	@Test
+	public void argb8888MatchesGetRGB() {
+		for (int type : TYPES) {
+			BufferedImage image = buildRandomImage(13, 7, type, type);
+			int pitch = RasterConverter.getPitch(image.getWidth(), 4);
+			ByteBuffer buffer = ByteBuffer.allocate(pitch * image.getHeight());
+			RasterConverter.writeARGB8888(image, buffer, pitch);
+
+			buffer.order(ByteOrder.nativeOrder());
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					Assert.assertEquals("Image type:" + type + " x:" + x + " y:" + y, image.getRGB(x, y), buffer.getInt(y * pitch + x * 4));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void subimagesAreReadFromTheirOwnOrigin() {
+		BufferedImage parent = buildRandomImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR, 5);
+		BufferedImage image = parent.getSubimage(3, 2, 9, 5);
+		int pitch = RasterConverter.getPitch(image.getWidth(), 4);
+		ByteBuffer buffer = ByteBuffer.allocate(pitch * image.getHeight()).order(ByteOrder.nativeOrder());
+		RasterConverter.writeARGB8888(image, buffer, pitch);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				Assert.assertEquals(parent.getRGB(x + 3, y + 2), buffer.getInt(y * pitch + x * 4));
+			}
+		}
+	}
+
+	@Test
+	public void paddedRowsAreReadFromTheirStride() {
+		for (int type : new int[] {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_3BYTE_BGR}) {
+			BufferedImage image = buildPaddedImage(11, 6, type, type);
+			Assert.assertEquals(type, image.getType());
+			int pitch = RasterConverter.getPitch(image.getWidth(), 4);
+			ByteBuffer buffer = ByteBuffer.allocate(pitch * image.getHeight()).order(ByteOrder.nativeOrder());
+			RasterConverter.writeARGB8888(image, buffer, pitch);
+			for (int y = 0; y < image.getHeight(); y++) {
+				for (int x = 0; x < image.getWidth(); x++) {
+					Assert.assertEquals("Image type:" + type + " x:" + x + " y:" + y, image.getRGB(x, y), buffer.getInt(y * pitch + x * 4));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rgb565KeepsTheHighBitsOfEachColor() {
+		BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, 0xFFFFFF);
+		image.setRGB(1, 0, 0x08F804);
+		int pitch = RasterConverter.getPitch(image.getWidth(), 2);
+		ByteBuffer buffer = ByteBuffer.allocate(pitch).order(ByteOrder.nativeOrder());
+		RasterConverter.writeRGB565(image, buffer, pitch);
+		Assert.assertEquals((short)0xFFFF, buffer.getShort(0));
+		Assert.assertEquals((short)(0x0800 | 0x07C0 | 0x0000), buffer.getShort(2));
+	}
+}
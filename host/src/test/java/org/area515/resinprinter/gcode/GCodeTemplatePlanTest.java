@@ -0,0 +1,80 @@
+package org.area515.resinprinter.gcode;
+
+import java.util.List;
+
+import org.area515.resinprinter.job.AbstractPrintFileProcessor;
+import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.util.TemplateEngine;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class GCodeTemplatePlanTest {
+	private PrintJob buildPrintJob() throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		Mockito.when(printJob.getRenderingSlice()).thenReturn(1234);
+		Mockito.when(printJob.getZLiftDistance()).thenReturn(5.0);
+		Mockito.when(printJob.getZLiftSpeed()).thenReturn(100.0);
+		Mockito.when(printJob.getPrinter().getConfiguration().getSlicingProfile().getSelectedInkConfig().getSliceHeight()).thenReturn(0.05);
+		Mockito.when(printJob.getPrinter().getConfiguration().getSlicingProfile().getSelectedInkConfig().getExposureTime()).thenReturn(8000);
+		Mockito.when(printJob.getPrinter().isShutterOpen()).thenReturn(true);
+		Mockito.when(printJob.getPrinter().getCachedBulbHours()).thenReturn(null);
+		return printJob;
+	}
+	
+	private String toString(List<GCodeTemplatePlan.GCodeLine> lines) {
+		StringBuilder builder = new StringBuilder();
+		for (GCodeTemplatePlan.GCodeLine line : lines) {
+			builder.append(line.getGCode()).append("|").append(line.getComment()).append("\n");
+		}
+		return builder.toString();
+	}
+	
+	@Test
+	public void compiledPlansMatchFreeMarker() throws Exception {
+		PrintJob printJob = buildPrintJob();
+		String[] templates = new String[] {
+				"G1 Z${ZLiftDist} F${ZLiftRate};\nG1 Z-${(ZLiftDist - LayerThickness)} F180;\n\nM17;\n;<delay> ${ZLiftDist * ZLiftRate};\n;",
+				"  M106 S${CURSLICE} ; ${shutterOpen}\r\nG4 P${ -LayerTime + 1 }",
+				"G1 Z${ZDir * -2 * LayerThickness};comment;with;semicolons",
+				"M18"};
+		for (String template : templates) {
+			GCodeTemplatePlan plan = GCodeTemplatePlan.getPlan(template);
+			Assert.assertTrue(template, plan.isCompiled());
+			Assert.assertEquals(
+					toString(GCodeTemplatePlan.parseLines(TemplateEngine.buildData(printJob, printJob.getPrinter(), template))), 
+					toString(plan.buildLines(printJob, printJob.getPrinter())));
+		}
+		
+		Assert.assertEquals("G1 Z5 F100|;\nG1 Z-4.95 F180|;\nM17|;\nnull|;<delay> 500;\nnull|;\n", toString(GCodeTemplatePlan.getPlan(templates[0]).buildLines(printJob, printJob.getPrinter())));
+	}
+	
+	@Test
+	public void everythingElseIsLeftToFreeMarker() throws Exception {
+		PrintJob printJob = buildPrintJob();
+		String[] templates = new String[] {
+				"<#if CURSLICE == 0>G28</#if>",
+				"G1 Z${ZLiftDist / 2}",
+				"; ${now}",
+				"G1 F${job.zliftSpeed}",
+				"G1 Z${ZLiftDist"};
+		for (String template : templates) {
+			GCodeTemplatePlan plan = GCodeTemplatePlan.getPlan(template);
+			Assert.assertFalse(template, plan.isCompiled());
+			Assert.assertNull(plan.buildLines(printJob, printJob.getPrinter()));
+		}
+	}
+	
+	@Test
+	public void missingValuesAreLeftToFreeMarker() throws Exception {
+		PrintJob printJob = buildPrintJob();
+		GCodeTemplatePlan plan = GCodeTemplatePlan.getPlan("M117 ${bulbHours} hours");
+		Assert.assertTrue(plan.isCompiled());
+		Assert.assertNull(plan.buildLines(printJob, printJob.getPrinter()));
+		
+		Mockito.when(printJob.getPrinter().getCachedBulbHours()).thenReturn(12);
+		Assert.assertEquals("M117 12 hours|null\n", toString(plan.buildLines(printJob, printJob.getPrinter())));
+	}
+}
@@ -0,0 +1,129 @@
+package org.area515.resinprinter.gcode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.area515.resinprinter.display.InappropriateDeviceException;
+import org.area515.resinprinter.job.AbstractPrintFileProcessor;
+import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.printer.Printer;
+import org.area515.resinprinter.serial.SimulatedCommPort;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class StreamingGCodeTest {
+	private static final String LIFT = "G91\nG1 Z5 F100\nG1 Z-4.9 F100\nG90\nM114\n";
+	
+	private PrintJob buildPrintJob(SimulatedCommPort port, Integer windowBytes, Integer windowCommands) throws Exception {
+		AbstractPrintFileProcessor processor = Mockito.mock(AbstractPrintFileProcessor.class, Mockito.CALLS_REAL_METHODS);
+		PrintJob printJob = AbstractPrintFileProcessorTest.createTestPrintJob(processor);
+		Printer printer = printJob.getPrinter();
+		Mockito.when(printer.getPrinterFirmwareSerialPort()).thenReturn(port);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowBytes()).thenReturn(windowBytes);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getStreamingGCodeWindowCommands()).thenReturn(windowCommands);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getPrinterResponseTimeoutMillis()).thenReturn(5000);
+		Mockito.when(printer.getConfiguration().getMachineConfig().getPauseOnPrinterResponseRegEx()).thenReturn(".*Busy.*");
+		return printJob;
+	}
+	
+	//Fails each of the given commands once
+	private Function<String, String> failOnce(String... commands) {
+		Set<String> failing = new HashSet<String>(Arrays.asList(commands));
+		return line -> failing.remove(line)?"error:Busy\n":"ok\n";
+	}
+	
+	private String execute(PrintJob printJob, String gcodes) throws Exception {
+		return new eGENERICGCodeControl(printJob.getPrinter()).executeGCodeWithTemplating(printJob, gcodes, true);
+	}
+	
+	@Test
+	public void commandsWaitForTheirRoundTripWithoutAWindow() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponse("ok\n", 10);
+		try {
+			Assert.assertEquals("ok\nok\nok\nok\nok\n", execute(buildPrintJob(port, null, null), LIFT));
+			Assert.assertEquals(1, port.getMaxUnacknowledged());
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void commandsAreLimitedByTheCommandWindow() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponse("ok\n", 30);
+		try {
+			Assert.assertEquals("ok\nok\nok\nok\nok\n", execute(buildPrintJob(port, 128, 3), LIFT));
+			Assert.assertEquals(3, port.getMaxUnacknowledged());
+			Assert.assertEquals(5, port.getWritten().size());
+			Assert.assertEquals("G1 Z-4.9 F100\n", port.getWritten().get(2));
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void commandsAreLimitedByTheFirmwareBuffer() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponse("ok\n", 30);
+		try {
+			//"G1 Z5 F100\n" and "G1 Z-4.9 F100\n" don't fit in the buffer together
+			Assert.assertEquals("ok\nok\nok\nok\nok\n", execute(buildPrintJob(port, 20, null), LIFT));
+			Assert.assertEquals(2, port.getMaxUnacknowledged());
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void delayWaitsForEverythingBeforeIt() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponse("ok\n", 30);
+		try {
+			Assert.assertEquals("ok\nok\nok\n", execute(buildPrintJob(port, 128, null), "G1 Z5\nG1 Z-4.9\n;<Delay>1\nM114\n"));
+			Assert.assertEquals(2, port.getMaxUnacknowledged());
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void errorOnTheLastCommandSentIsRetriedInPlace() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponder(failOnce("M114"), 30);
+		try {
+			PrintJob printJob = buildPrintJob(port, 128, 3);
+			Assert.assertEquals("ok\nok\nok\nok\nerror:Busy\nok\n", execute(printJob, LIFT));
+			Assert.assertEquals(Arrays.asList("G91\n", "G1 Z5 F100\n", "G1 Z-4.9 F100\n", "G90\n", "M114\n", "M114\n"), port.getWritten());
+			Mockito.verify(printJob.getPrinter(), Mockito.times(1)).waitForPauseIfRequired();
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void errorWithCommandsBehindItFailsTheBlock() throws Exception {
+		SimulatedCommPort port = new SimulatedCommPort();
+		port.setAutoResponder(failOnce("G1 Z5 F100", "G1 Z-4.9 F100"), 30);
+		try {
+			PrintJob printJob = buildPrintJob(port, 128, 3);
+			try {
+				execute(printJob, LIFT);
+				Assert.fail("The commands behind the failed command were dropped without failing the block");
+			} catch (InappropriateDeviceException e) {
+				//"G1 Z-4.9 F100" and "G90" were still waiting for their responses when "G1 Z5 F100" failed
+				Assert.assertTrue(e.getMessage(), e.getMessage().contains("[G1 Z5 F100, G1 Z-4.9 F100, G90]"));
+			}
+			//Nothing is resent out of order and nothing after the failure is sent once the window has drained
+			Assert.assertEquals(Arrays.asList("G91\n", "G1 Z5 F100\n", "G1 Z-4.9 F100\n", "G90\n"), port.getWritten());
+			Mockito.verify(printJob).setErrorDescription(Mockito.contains("[G1 Z5 F100, G1 Z-4.9 F100, G90]"));
+			Mockito.verify(printJob.getPrinter(), Mockito.never()).waitForPauseIfRequired();
+		} finally {
+			port.close();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.area515.resinprinter.image;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Stands in for a camera that writes MJPEG to stdout. Every frame shows it's frame number so that frames can be told apart.
+ *
+ * Arguments are width, height, frames per second and optionally the number of frames to write before exiting(forever otherwise).
+ */
+public class CannedMJPEGCamera {
+	public static byte[] buildFrame(int width, int height, int frameNumber) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics g = image.getGraphics();
+		g.setColor(Color.WHITE);
+		g.drawString(frameNumber + "", 2, height / 2);
+		g.dispose();
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", frame);
+		return frame.toByteArray();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int width = Integer.parseInt(args[0]);
+		int height = Integer.parseInt(args[1]);
+		long frameMillis = 1000 / Math.max(Integer.parseInt(args[2]), 1);
+		int frames = args.length > 3?Integer.parseInt(args[3]):Integer.MAX_VALUE;
+		OutputStream out = System.out;
+		for (int frame = 0; frame < frames; frame++) {
+			out.write(buildFrame(width, height, frame));
+			out.flush();
+			Thread.sleep(frameMillis);
+		}
+	}
+}
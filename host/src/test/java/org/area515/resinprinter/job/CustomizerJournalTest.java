@@ -0,0 +1,122 @@
+package org.area515.resinprinter.job;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.io.FileUtils;
+import org.area515.resinprinter.job.Customizer.PrinterStep;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CustomizerJournalTest {
+	private File directory;
+	private ScheduledExecutorService executor;
+	
+	@Before
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("journal").toFile();
+		executor = Executors.newSingleThreadScheduledExecutor();
+	}
+	
+	@After
+	public void cleanup() throws IOException {
+		executor.shutdownNow();
+		FileUtils.deleteDirectory(directory);
+	}
+	
+	private Customizer buildCustomizer(int nextSlice, PrinterStep nextStep) {
+		Customizer customizer = new Customizer();
+		customizer.setName("test.stl.printer");
+		customizer.setNextSlice(nextSlice);
+		customizer.setNextStep(nextStep);
+		return customizer;
+	}
+	
+	@Test
+	public void replayFindsNewestRecordAfterRingWraps() {
+		CustomizerJournal journal = new CustomizerJournal(directory, 0, executor);
+		Customizer customizer = buildCustomizer(0, PrinterStep.PerformHeader);
+		for (int slice = 0; slice < CustomizerJournal.RECORD_COUNT + 10; slice++) {
+			customizer.setNextSlice(slice);
+			customizer.setNextStep(slice % 2 == 0?PrinterStep.PerformExposure:PrinterStep.PerformPreSlice);
+			journal.checkpoint(customizer);
+		}
+		Assert.assertEquals(CustomizerJournal.RECORD_SIZE * CustomizerJournal.RECORD_COUNT, journal.getJournalFile(customizer.getName()).length());
+		
+		//A new journal is what would be used after the host restarts
+		Customizer snapshot = buildCustomizer(0, PrinterStep.PerformHeader);
+		Assert.assertTrue(new CustomizerJournal(directory, 0, executor).replay(snapshot));
+		Assert.assertEquals(CustomizerJournal.RECORD_COUNT + 9, snapshot.getNextSlice());
+		Assert.assertEquals(PrinterStep.PerformPreSlice, snapshot.getNextStep());
+	}
+	
+	@Test
+	public void checkpointsAreCoalesced() throws InterruptedException {
+		CustomizerJournal journal = new CustomizerJournal(directory, 60000, executor);
+		Customizer customizer = buildCustomizer(0, PrinterStep.PerformHeader);
+		for (int slice = 0; slice < 20; slice++) {
+			customizer.setNextSlice(slice);
+			customizer.setNextStep(PrinterStep.PerformPreSlice);
+			journal.checkpoint(customizer);
+			customizer.setNextStep(PrinterStep.PerformExposure);
+			journal.checkpoint(customizer);
+		}
+		Assert.assertEquals(0, journal.getRecordsWritten());
+		
+		journal.flush(customizer.getName());
+		Assert.assertEquals(1, journal.getRecordsWritten());
+		Customizer snapshot = buildCustomizer(0, PrinterStep.PerformHeader);
+		Assert.assertTrue(journal.replay(snapshot));
+		Assert.assertEquals(19, snapshot.getNextSlice());
+		Assert.assertEquals(PrinterStep.PerformExposure, snapshot.getNextStep());
+		
+		//The window closing writes on it's own
+		journal = new CustomizerJournal(directory, 10, executor);
+		journal.checkpoint(buildCustomizer(25, PrinterStep.PerformPreSlice));
+		for (int wait = 0; wait < 500 && journal.getRecordsWritten() == 0; wait++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, journal.getRecordsWritten());
+	}
+	
+	@Test
+	public void tornRecordsAreIgnored() throws IOException {
+		CustomizerJournal journal = new CustomizerJournal(directory, 0, executor);
+		journal.checkpoint(buildCustomizer(7, PrinterStep.PerformExposure));
+		journal.checkpoint(buildCustomizer(8, PrinterStep.PerformPreSlice));
+		
+		//Break the checksum of the second record
+		try (RandomAccessFile file = new RandomAccessFile(journal.getJournalFile("test.stl.printer"), "rw")) {
+			file.seek(CustomizerJournal.RECORD_SIZE + 4);
+			file.writeInt(99);
+		}
+		
+		Customizer snapshot = buildCustomizer(0, PrinterStep.PerformHeader);
+		Assert.assertTrue(new CustomizerJournal(directory, 0, executor).replay(snapshot));
+		Assert.assertEquals(7, snapshot.getNextSlice());
+		Assert.assertEquals(PrinterStep.PerformExposure, snapshot.getNextStep());
+	}
+	
+	@Test
+	public void snapshotsOnlyDiscardOlderJournals() {
+		CustomizerJournal journal = new CustomizerJournal(directory, 0, executor);
+		Customizer customizer = buildCustomizer(3, PrinterStep.PerformPreSlice);
+		journal.checkpoint(customizer);
+		File journalFile = journal.getJournalFile(customizer.getName());
+		
+		long checkpointCount = journal.getCheckpointCount(customizer.getName());
+		journal.checkpoint(customizer);
+		journal.discard(customizer.getName(), checkpointCount);
+		Assert.assertTrue(journalFile.exists());
+		
+		journal.discard(customizer.getName(), journal.getCheckpointCount(customizer.getName()));
+		Assert.assertFalse(journalFile.exists());
+		Assert.assertFalse(journal.replay(buildCustomizer(0, PrinterStep.PerformHeader)));
+	}
+}
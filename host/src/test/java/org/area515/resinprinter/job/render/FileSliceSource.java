@@ -0,0 +1,43 @@
+package org.area515.resinprinter.job.render;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class FileSliceSource implements SliceSource {
+	private File file;
+
+	public FileSliceSource(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public InputStream openStream() throws IOException {
+		return new FileInputStream(file);
+	}
+
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+
+	@Override
+	public int hashCode() {
+		return file.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof FileSliceSource && file.equals(((FileSliceSource)obj).file);
+	}
+
+	@Override
+	public String toString() {
+		return file.toString();
+	}
+}
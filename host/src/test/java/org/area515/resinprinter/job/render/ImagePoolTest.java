@@ -0,0 +1,72 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ImagePoolTest {
+	@Test
+	public void returnedImagesAreBorrowedAgain() {
+		ImagePool pool = new ImagePool(2);
+		BufferedImage image = pool.borrowImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR);
+		Assert.assertEquals(1, pool.getMetrics().getMisses());
+
+		pool.returnImage(image);
+		Assert.assertEquals(1, pool.getMetrics().getIdleImages());
+		Assert.assertEquals(20 * 10 * 4, pool.getMetrics().getIdleBytes());
+
+		//A different size or type can't use it
+		Assert.assertNotSame(image, pool.borrowImage(20, 11, BufferedImage.TYPE_4BYTE_ABGR));
+		Assert.assertNotSame(image, pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertSame(image, pool.borrowImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR));
+
+		ImagePool.Metrics metrics = pool.getMetrics();
+		Assert.assertEquals(1, metrics.getHits());
+		Assert.assertEquals(3, metrics.getMisses());
+		Assert.assertEquals(0, metrics.getIdleImages());
+		Assert.assertEquals(0, metrics.getIdleBytes());
+	}
+
+	@Test
+	public void borrowedImagesCanBeCleared() {
+		ImagePool pool = new ImagePool(2);
+		BufferedImage image = pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+		byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		Arrays.fill(pixels, (byte)0xff);
+		pool.returnImage(image);
+
+		Assert.assertSame(image, pool.borrowClearedImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertArrayEquals(new byte[pixels.length], pixels);
+	}
+
+	@Test
+	public void poolIsBounded() {
+		ImagePool pool = new ImagePool(2);
+		pool.returnImage(new BufferedImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR));
+		pool.returnImage(new BufferedImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR));
+		pool.returnImage(new BufferedImage(5, 5, BufferedImage.TYPE_4BYTE_ABGR));
+
+		ImagePool.Metrics metrics = pool.getMetrics();
+		Assert.assertEquals(2, metrics.getIdleImages());
+		Assert.assertEquals(2, metrics.getReturns());
+		Assert.assertEquals(1, metrics.getDiscards());
+	}
+
+	@Test
+	public void sharedImagesAreNeverPooled() {
+		ImagePool pool = new ImagePool(4);
+		BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR);
+		pool.returnImage(image.getSubimage(0, 0, 10, 10));
+		Assert.assertEquals(0, pool.getMetrics().getIdleImages());
+
+		//Returning the same image twice must not hand it out twice
+		pool.returnImage(image);
+		pool.returnImage(image);
+		Assert.assertEquals(1, pool.getMetrics().getIdleImages());
+		Assert.assertSame(image, pool.borrowImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR));
+		Assert.assertNotSame(image, pool.borrowImage(20, 10, BufferedImage.TYPE_4BYTE_ABGR));
+	}
+}
@@ -0,0 +1,62 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RenderingCacheTest {
+	@Test
+	public void evictedContextsReturnTheirImages() {
+		ImagePool pool = new ImagePool(4);
+		RenderingCache cache = new RenderingCache(pool);
+		BufferedImage image = pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+		cache.getOrCreateIfMissing(Boolean.TRUE).setPrintableImage(image);
+		cache.getOrCreateIfMissing(Boolean.TRUE).setPreTransformedImage(image);
+
+		cache.clearCache(Boolean.TRUE);
+		Assert.assertSame(image, pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertFalse(image == pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+	}
+
+	@Test
+	public void takenImagesArentReturnedByEviction() {
+		ImagePool pool = new ImagePool(4);
+		RenderingCache cache = new RenderingCache(pool);
+		BufferedImage displayed = pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+		RenderingContext context = cache.getOrCreateIfMissing(Boolean.TRUE);
+		context.setPrintableImage(displayed);
+		context.setPreTransformedImage(displayed);
+
+		Assert.assertSame(displayed, context.takePrintableImage());
+		Assert.assertNull(context.getPrintableImage());
+		Assert.assertNull(context.getPreTransformedImage());
+
+		//The image is still displayed, so nobody may borrow it
+		cache.clearAll();
+		Assert.assertFalse(displayed == pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+
+		//It's only in the pool once it's owner gives it back
+		pool.returnImage(displayed);
+		Assert.assertSame(displayed, pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+		Assert.assertFalse(displayed == pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+	}
+
+	@Test
+	public void previewsOwnTheImageTheyTook() {
+		ImagePool pool = new ImagePool(4);
+		RenderingCache cache = new RenderingCache(pool);
+		BufferedImage rendered = pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+		cache.getOrCreateIfMissing(Boolean.TRUE).setPrintableImage(rendered);
+		cache.getOrCreateIfMissing(Boolean.TRUE).setPreTransformedImage(rendered);
+
+		//Like buildPreviewSlice(), the preview is kept in a different context than the one it was rendered in
+		cache.getOrCreateIfMissing("preview").setPreTransformedImage(cache.getOrCreateIfMissing(Boolean.TRUE).takePrintableImage());
+		cache.clearAll();
+
+		Assert.assertSame(rendered, pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY));
+		BufferedImage borrowed = pool.borrowImage(20, 10, BufferedImage.TYPE_BYTE_GRAY);
+		Assert.assertFalse(rendered == borrowed);
+		Assert.assertEquals(1, pool.getMetrics().getHits());
+	}
+}
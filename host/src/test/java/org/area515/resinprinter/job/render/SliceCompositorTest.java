@@ -0,0 +1,110 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RadialGradientPaint;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceCompositorTest {
+	private static final int WIDTH = 40;
+	private static final int HEIGHT = 30;
+
+	private BufferedImage buildSource(int type) {
+		BufferedImage source = new BufferedImage(25, 20, type);
+		Graphics2D graphics = source.createGraphics();
+		graphics.setColor(Color.WHITE);
+		graphics.fillRect(3, 2, 15, 10);
+		graphics.setColor(new Color(200, 100, 50, 128));
+		graphics.fillOval(5, 8, 18, 11);
+		graphics.dispose();
+		return source;
+	}
+
+	private Paint buildMask() {
+		return new RadialGradientPaint(WIDTH / 2f, HEIGHT / 2f, WIDTH / 2f, new float[]{0f, 1f}, new Color[]{new Color(0, 0, 0, 0), new Color(0, 0, 0, 200)});
+	}
+
+	//The old way of building a printable image
+	private BufferedImage drawWithGraphics(BufferedImage source, AffineTransform transform, Paint mask) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.BLACK);
+		graphics.fillRect(0, 0, WIDTH, HEIGHT);
+		graphics.drawImage(source, transform, null);
+		if (mask != null) {
+			graphics.setPaint(mask);
+			graphics.fillRect(0, 0, WIDTH, HEIGHT);
+		}
+		graphics.dispose();
+		return image;
+	}
+
+	private void assertSimilar(BufferedImage expected, BufferedImage actual) {
+		byte[] expectedPixels = ((DataBufferByte)expected.getRaster().getDataBuffer()).getData();
+		byte[] actualPixels = ((DataBufferByte)actual.getRaster().getDataBuffer()).getData();
+		Assert.assertEquals(expectedPixels.length, actualPixels.length);
+		for (int t = 0; t < expectedPixels.length; t++) {
+			//Graphics2D rounds a little differently when it blends
+			if (Math.abs((expectedPixels[t] & 0xff) - (actualPixels[t] & 0xff)) > 2) {
+				Assert.fail("Pixel byte " + t + " expected:" + (expectedPixels[t] & 0xff) + " but was:" + (actualPixels[t] & 0xff));
+			}
+		}
+	}
+
+	@Test
+	public void copyMatchesGraphicsForEverySourceType() {
+		SliceCompositor compositor = new SliceCompositor();
+		Paint mask = buildMask();
+		AffineTransform transform = AffineTransform.getTranslateInstance(20, 15);
+		for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB}) {
+			BufferedImage source = buildSource(type);
+			Assert.assertTrue(SliceCompositor.canCopy(transform, source));
+
+			BufferedImage unmasked = drawWithGraphics(source, transform, null);
+			BufferedImage destination = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR);
+			SliceCompositor.copyAndMask(source, transform, destination, compositor.getMaskPixels(mask, WIDTH, HEIGHT));
+			assertSimilar(drawWithGraphics(source, transform, mask), destination);
+
+			//Written over without a mask
+			SliceCompositor.copyAndMask(source, transform, destination, null);
+			assertSimilar(unmasked, destination);
+		}
+	}
+
+	@Test
+	public void maskMatchesGraphics() {
+		SliceCompositor compositor = new SliceCompositor();
+		Paint mask = buildMask();
+		AffineTransform transform = AffineTransform.getScaleInstance(1.5, 1.5);
+		BufferedImage source = buildSource(BufferedImage.TYPE_4BYTE_ABGR);
+		Assert.assertFalse(SliceCompositor.canCopy(transform, source));
+
+		BufferedImage image = drawWithGraphics(source, transform, null);
+		SliceCompositor.applyMask(image, compositor.getMaskPixels(mask, WIDTH, HEIGHT));
+		assertSimilar(drawWithGraphics(source, transform, mask), image);
+	}
+
+	@Test
+	public void onlyWholePixelTranslationsAreCopied() {
+		BufferedImage source = buildSource(BufferedImage.TYPE_BYTE_GRAY);
+		Assert.assertTrue(SliceCompositor.canCopy(new AffineTransform(), source));
+		Assert.assertFalse(SliceCompositor.canCopy(AffineTransform.getTranslateInstance(0.5, 0), source));
+		Assert.assertFalse(SliceCompositor.canCopy(AffineTransform.getRotateInstance(Math.PI), source));
+		Assert.assertFalse(SliceCompositor.canCopy(new AffineTransform(), new BufferedImage(5, 5, BufferedImage.TYPE_BYTE_BINARY)));
+	}
+
+	@Test
+	public void onlyMatchingDestinationsAreWrittenInto() {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR);
+		Assert.assertTrue(SliceCompositor.canWriteInto(image, WIDTH, HEIGHT));
+		Assert.assertFalse(SliceCompositor.canWriteInto(image, WIDTH + 1, HEIGHT));
+		Assert.assertFalse(SliceCompositor.canWriteInto(image.getSubimage(1, 1, WIDTH - 1, HEIGHT - 1), WIDTH - 1, HEIGHT - 1));
+		Assert.assertFalse(SliceCompositor.canWriteInto(new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_BYTE_GRAY), WIDTH, HEIGHT));
+	}
+}
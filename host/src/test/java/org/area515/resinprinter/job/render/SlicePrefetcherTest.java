@@ -0,0 +1,231 @@
+package org.area515.resinprinter.job.render;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SlicePrefetcherTest {
+	private File directory;
+	private ExecutorService executor;
+
+	@Before
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("SlicePrefetcherTest").toFile();
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		executor.shutdownNow();
+		FileUtils.deleteDirectory(directory);
+	}
+
+	//The width of each slice is it's slice number so that a slice can be told apart from the others
+	private List<SliceSource> writeSlices(int count) throws IOException {
+		List<SliceSource> files = new ArrayList<SliceSource>();
+		for (int slice = 1; slice <= count; slice++) {
+			File file = new File(directory, "slice" + slice + ".png");
+			ImageIO.write(new BufferedImage(slice, 3, BufferedImage.TYPE_BYTE_GRAY), "png", file);
+			files.add(new FileSliceSource(file));
+		}
+		return files;
+	}
+
+	@Test
+	public void slicesAreTakenInOrderAfterTheirTransform() throws Exception {
+		List<SliceSource> files = writeSlices(4);
+		ImagePool pool = new ImagePool(4);
+		List<Integer> transformed = new ArrayList<Integer>();
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 2, executor, pool, image -> {
+				synchronized (transformed) {
+					transformed.add(image.getWidth());
+				}
+				return new BufferedImage(image.getWidth(), 1, BufferedImage.TYPE_4BYTE_ABGR);
+			})) {
+			for (int slice = 1; slice <= 4; slice++) {
+				BufferedImage image = prefetcher.take(files.get(slice - 1));
+				Assert.assertEquals(slice, image.getWidth());
+				Assert.assertEquals(1, image.getHeight());
+			}
+			Assert.assertEquals(4, prefetcher.getHits());
+			Assert.assertEquals(0, prefetcher.getMisses());
+		}
+
+		Assert.assertEquals(4, transformed.size());
+		//Every decoded image went back to the pool once it was transformed
+		Assert.assertEquals(4, pool.getMetrics().getReturns());
+	}
+
+	@Test
+	public void transformsWaitForTakeWhenTheyCantRunAhead() throws Exception {
+		List<SliceSource> files = writeSlices(3);
+		ImagePool pool = new ImagePool(4);
+		List<Integer> transformed = new ArrayList<Integer>();
+		Thread printThread = Thread.currentThread();
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 2, executor, pool, image -> {
+				Assert.assertSame(printThread, Thread.currentThread());
+				transformed.add(image.getWidth());
+				return new BufferedImage(image.getWidth(), 1, BufferedImage.TYPE_4BYTE_ABGR);
+			}, false)) {
+			for (int slice = 1; slice <= 3; slice++) {
+				//Let every decode that was started finish so that a transform that ran ahead would show up
+				Thread.sleep(50);
+				Assert.assertNull(prefetcher.peek());
+				Assert.assertEquals(slice - 1, transformed.size());
+				Assert.assertEquals(slice, prefetcher.take(files.get(slice - 1)).getWidth());
+				Assert.assertEquals(slice, transformed.size());
+			}
+			Assert.assertEquals(3, prefetcher.getHits());
+		}
+		Assert.assertEquals(3, pool.getMetrics().getReturns());
+	}
+
+	@Test
+	public void decodeUsesPooledImages() throws IOException {
+		SliceSource file = writeSlices(1).get(0);
+		ImagePool pool = new ImagePool(4);
+		BufferedImage pooled = new BufferedImage(1, 3, BufferedImage.TYPE_BYTE_GRAY);
+		pooled.getRaster().setSample(0, 0, 0, 255);
+		pool.returnImage(pooled);
+
+		BufferedImage decoded = SlicePrefetcher.decode(file, pool);
+		Assert.assertSame(pooled, decoded);
+		Assert.assertEquals(0, decoded.getRaster().getSample(0, 0, 0));
+	}
+
+	@Test
+	public void unexpectedSliceStartsPrefetchingOver() throws Exception {
+		List<SliceSource> files = writeSlices(4);
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 1, executor, new ImagePool(4), image -> image)) {
+			Assert.assertEquals(1, prefetcher.take(files.get(0)).getWidth());
+			Assert.assertEquals(3, prefetcher.take(files.get(2)).getWidth());
+			Assert.assertEquals(1, prefetcher.getMisses());
+			//Sources are matched by equals(), not by identity
+			Assert.assertEquals(4, prefetcher.take(new FileSliceSource(((FileSliceSource)files.get(3)).getFile())).getWidth());
+			Assert.assertEquals(2, prefetcher.getHits());
+		}
+	}
+
+	@Test
+	public void closeReturnsFramesThatWerentTaken() throws Exception {
+		List<SliceSource> files = writeSlices(2);
+		ImagePool pool = new ImagePool(4);
+		SlicePrefetcher prefetcher = new SlicePrefetcher(files, 2, executor, pool, image -> new BufferedImage(image.getWidth(), 1, BufferedImage.TYPE_4BYTE_ABGR));
+		Assert.assertEquals(1, prefetcher.take(files.get(0)).getWidth());
+		//Let the second frame finish
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+		prefetcher.close();
+
+		pool.borrowImage(2, 1, BufferedImage.TYPE_4BYTE_ABGR);
+		Assert.assertEquals(1, pool.getMetrics().getHits());
+	}
+
+	@Test
+	public void discardedFramesThatAreStillRunningFinishAndReturnTheirImage() throws Exception {
+		List<SliceSource> files = writeSlices(2);
+		ImagePool pool = new ImagePool(4);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		SlicePrefetcher prefetcher = new SlicePrefetcher(files, 1, executor, pool, image -> {
+			if (image.getWidth() == 1) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					interrupted.set(true);
+				}
+			}
+			return new BufferedImage(image.getWidth(), 1, BufferedImage.TYPE_4BYTE_ABGR);
+		});
+		Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+		prefetcher.close();
+		release.countDown();
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		Assert.assertFalse(interrupted.get());
+		//The decoded image and the transformed image of the discarded frame
+		Assert.assertEquals(2, pool.getMetrics().getReturns());
+		pool.borrowImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
+		Assert.assertEquals(1, pool.getMetrics().getHits());
+	}
+
+	@Test
+	public void peekedFramesArentReturnedToThePool() throws Exception {
+		List<SliceSource> files = writeSlices(2);
+		ImagePool pool = new ImagePool(4);
+		SlicePrefetcher prefetcher = new SlicePrefetcher(files, 2, executor, pool, image -> new BufferedImage(image.getWidth(), 1, BufferedImage.TYPE_4BYTE_ABGR));
+		Assert.assertEquals(1, prefetcher.take(files.get(0)).getWidth());
+		executor.shutdown();
+		executor.awaitTermination(10, TimeUnit.SECONDS);
+
+		BufferedImage peeked = prefetcher.peek();
+		Assert.assertEquals(2, peeked.getWidth());
+		prefetcher.close();
+
+		Assert.assertFalse(peeked == pool.borrowImage(2, 1, BufferedImage.TYPE_4BYTE_ABGR));
+		Assert.assertEquals(0, pool.getMetrics().getHits());
+	}
+
+	@Test
+	public void tokensBelongToOneShowingOfASlice() throws Exception {
+		List<SliceSource> files = writeSlices(2);
+		files.add(files.get(0));
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 1, executor, new ImagePool(4), image -> image)) {
+			Object first = prefetcher.getNextToken();
+			prefetcher.take(files.get(0));
+			Assert.assertSame(first, prefetcher.getTakenToken());
+			
+			Object second = prefetcher.getNextToken();
+			Assert.assertFalse(first == second);
+			prefetcher.take(files.get(1));
+			Assert.assertSame(second, prefetcher.getTakenToken());
+			
+			//The same slice shown again gets a different token
+			Object third = prefetcher.getNextToken();
+			prefetcher.take(files.get(0));
+			Assert.assertSame(third, prefetcher.getTakenToken());
+			Assert.assertFalse(first == third);
+		}
+		
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 1, executor, new ImagePool(4), image -> image)) {
+			prefetcher.take(files.get(1));
+			Assert.assertNull(prefetcher.getTakenToken());
+		}
+	}
+
+	@Test
+	public void peekDoesntTakeTheFrame() throws Exception {
+		List<SliceSource> files = writeSlices(2);
+		try (SlicePrefetcher prefetcher = new SlicePrefetcher(files, 1, executor, new ImagePool(4), image -> image)) {
+			BufferedImage first = prefetcher.take(files.get(0));
+			BufferedImage peeked = null;
+			for (int attempt = 0; attempt < 1000 && peeked == null; attempt++) {
+				peeked = prefetcher.peek();
+				Thread.sleep(5);
+			}
+			Assert.assertNotNull(peeked);
+			Assert.assertFalse(first == peeked);
+			Assert.assertSame(peeked, prefetcher.take(files.get(1)));
+			Assert.assertEquals(2, prefetcher.getHits());
+		}
+	}
+}
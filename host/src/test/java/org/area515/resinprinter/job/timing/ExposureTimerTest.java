@@ -0,0 +1,88 @@
+package org.area515.resinprinter.job.timing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExposureTimerTest {
+	//A display that presents everything latencyNanos after it was asked to show it
+	private static class SlowDisplay {
+		private final long latencyNanos;
+		private long requestedNanos;
+		private long previousPresentNanos;
+
+		public SlowDisplay(long latencyNanos) {
+			this.latencyNanos = latencyNanos;
+			this.requestedNanos = System.nanoTime() - latencyNanos;
+		}
+
+		public long show() {
+			previousPresentNanos = getLastPresentNanos();
+			requestedNanos = System.nanoTime();
+			return requestedNanos;
+		}
+
+		public long getLastPresentNanos() {
+			long presentNanos = requestedNanos + latencyNanos;
+			return System.nanoTime() - presentNanos >= 0?presentNanos:previousPresentNanos;
+		}
+	}
+
+	@Test
+	public void waitUntilNeverReturnsEarly() throws InterruptedException {
+		for (int t = 0; t < 5; t++) {
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+			ExposureTimer.waitUntil(deadline);
+			long lateNanos = System.nanoTime() - deadline;
+			Assert.assertTrue(lateNanos >= 0);
+			Assert.assertTrue("Woke up " + lateNanos + "ns late", lateNanos < TimeUnit.MILLISECONDS.toNanos(15));
+		}
+	}
+
+	@Test(expected=InterruptedException.class)
+	public void waitUntilCanBeInterrupted() throws InterruptedException {
+		Thread.currentThread().interrupt();
+		ExposureTimer.waitUntil(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+	}
+
+	@Test
+	public void displayThatDoesntReportPresentsStartsNow() throws InterruptedException {
+		long before = System.nanoTime();
+		long start = ExposureTimer.waitForPresent(() -> 0, before, TimeUnit.SECONDS.toNanos(10));
+		Assert.assertTrue(start - before >= 0);
+		Assert.assertTrue(start - before < TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	public void exposureStartsAtPresent() throws InterruptedException {
+		final long requested = System.nanoTime();
+		final long presented = requested + TimeUnit.MILLISECONDS.toNanos(20);
+		//Still reports the previous image until the new one is presented
+		long start = ExposureTimer.waitForPresent(() -> System.nanoTime() - presented >= 0?presented:requested - 1, requested, TimeUnit.SECONDS.toNanos(10));
+		Assert.assertEquals(presented, start);
+	}
+
+	@Test
+	public void presentTimesOut() throws InterruptedException {
+		long requested = System.nanoTime();
+		long start = ExposureTimer.waitForPresent(() -> requested - 1, requested, TimeUnit.MILLISECONDS.toNanos(20));
+		Assert.assertTrue(start - requested >= TimeUnit.MILLISECONDS.toNanos(20));
+	}
+
+	@Test
+	public void blankIsAskedForEarlyEnoughToEndOnTime() throws InterruptedException {
+		long exposureNanos = TimeUnit.MILLISECONDS.toNanos(100);
+		SlowDisplay display = new SlowDisplay(TimeUnit.MILLISECONDS.toNanos(30));
+		ExposureTimer timer = new ExposureTimer();
+		//The first layer only knows how long the slice took to show, the rest know how long the last blank took
+		for (int t = 0; t < 3; t++) {
+			long start = timer.waitForShow(display::getLastPresentNanos, display.show());
+			ExposureTimer.waitUntil(timer.getBlankDeadline(start, exposureNanos));
+			long end = timer.waitForBlank(display::getLastPresentNanos, display.show());
+
+			long errorNanos = end - start - exposureNanos;
+			Assert.assertTrue("Exposure was off by " + errorNanos + "ns", Math.abs(errorNanos) < TimeUnit.MILLISECONDS.toNanos(10));
+		}
+	}
+}
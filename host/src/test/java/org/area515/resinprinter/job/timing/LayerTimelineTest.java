@@ -0,0 +1,107 @@
+package org.area515.resinprinter.job.timing;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LayerTimelineTest {
+	private LayerTiming buildLayer(int layer, long exposureMillis) {
+		LayerTiming timing = new LayerTiming(layer);
+		timing.addNanos(LayerPhase.Render, 3000000);
+		timing.addNanos(LayerPhase.Exposure, exposureMillis * 1000000);
+		return timing;
+	}
+
+	@Test
+	public void ringKeepsMostRecentLayers() {
+		LayerTimeline timeline = new LayerTimeline(3);
+		for (int layer = 0; layer < 5; layer++) {
+			timeline.add(buildLayer(layer, 1000));
+		}
+
+		List<LayerTiming> layers = timeline.getLayers();
+		Assert.assertEquals(3, layers.size());
+		Assert.assertEquals(2, layers.get(0).getLayer());
+		Assert.assertEquals(3, layers.get(1).getLayer());
+		Assert.assertEquals(4, layers.get(2).getLayer());
+		Assert.assertEquals(5, timeline.getSnapshot().getLayerCount());
+	}
+
+	@Test
+	public void histogramsCoverEveryLayer() {
+		LayerTimeline timeline = new LayerTimeline(2);
+		timeline.add(buildLayer(0, 0));
+		timeline.add(buildLayer(1, 1));
+		timeline.add(buildLayer(2, 3));
+		timeline.add(buildLayer(3, 1000));
+
+		LayerTimeline.PhaseStatistics exposure = timeline.getStatistics(LayerPhase.Exposure);
+		//The layer with no exposure isn't counted
+		Assert.assertEquals(3, exposure.getCount());
+		Assert.assertEquals(1.0, exposure.getMinMillis(), 0.0001);
+		Assert.assertEquals(1000.0, exposure.getMaxMillis(), 0.0001);
+		Assert.assertEquals(1004.0 / 3, exposure.getAverageMillis(), 0.0001);
+		Assert.assertEquals(1, exposure.getHistogram()[1]);
+		Assert.assertEquals(1, exposure.getHistogram()[2]);
+		Assert.assertEquals(1, exposure.getHistogram()[10]);
+
+		Assert.assertEquals(4, timeline.getStatistics(LayerPhase.Render).getCount());
+		Assert.assertEquals(0, timeline.getStatistics(LayerPhase.Lift).getCount());
+	}
+
+	@Test
+	public void exposureErrorIsKeptForExposedLayers() {
+		LayerTimeline timeline = new LayerTimeline(2);
+		LayerTiming over = buildLayer(0, 1000);
+		over.setExposure(1000000000, 1000500000);
+		LayerTiming under = buildLayer(1, 1000);
+		under.setExposure(1000000000, 999998000);
+		timeline.add(over);
+		timeline.add(under);
+		timeline.add(buildLayer(2, 1000));
+
+		Assert.assertEquals(0.5, over.getExposureErrorMillis(), 0.0001);
+		LayerTimeline.ExposureAccuracy accuracy = timeline.getSnapshot().getExposureAccuracy();
+		Assert.assertEquals(2, accuracy.getCount());
+		Assert.assertEquals(1, accuracy.getOverexposedCount());
+		Assert.assertEquals(-0.002, accuracy.getMinErrorMillis(), 0.0001);
+		Assert.assertEquals(0.5, accuracy.getMaxErrorMillis(), 0.0001);
+		Assert.assertEquals(0.249, accuracy.getAverageErrorMillis(), 0.0001);
+		Assert.assertEquals(0.251, accuracy.getAverageAbsoluteErrorMillis(), 0.0001);
+		Assert.assertEquals(1, accuracy.getHistogram()[2]);
+		Assert.assertEquals(1, accuracy.getHistogram()[9]);
+	}
+
+	@Test
+	public void bucketsDoubleInSize() {
+		Assert.assertEquals(0, LayerTimeline.getBucket(999999));
+		Assert.assertEquals(1, LayerTimeline.getBucket(1000000));
+		Assert.assertEquals(2, LayerTimeline.getBucket(2000000));
+		Assert.assertEquals(2, LayerTimeline.getBucket(3999999));
+		Assert.assertEquals(3, LayerTimeline.getBucket(4000000));
+		Assert.assertEquals(LayerTimeline.HISTOGRAM_BUCKETS - 1, LayerTimeline.getBucket(Long.MAX_VALUE));
+		Assert.assertEquals(0, LayerTimeline.getErrorBucket(999));
+		Assert.assertEquals(1, LayerTimeline.getErrorBucket(1000));
+		Assert.assertEquals(LayerTimeline.ERROR_HISTOGRAM_BUCKETS - 1, LayerTimeline.getErrorBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void csvHasOneLinePerLayer() throws IOException {
+		LayerTimeline timeline = new LayerTimeline(10);
+		timeline.add(buildLayer(7, 1500));
+
+		StringWriter writer = new StringWriter();
+		timeline.writeCSV(writer);
+		String[] lines = writer.toString().split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertEquals("layer,startTime,Render,Transform,PreSlice,Exposure,Lift,Notification", lines[0]);
+		String[] values = lines[1].split(",");
+		Assert.assertEquals("7", values[0]);
+		Assert.assertEquals("3.000", values[2]);
+		Assert.assertEquals("0.000", values[3]);
+		Assert.assertEquals("1500.000", values[5]);
+	}
+}
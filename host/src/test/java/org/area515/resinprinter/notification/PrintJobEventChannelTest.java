@@ -0,0 +1,153 @@
+package org.area515.resinprinter.notification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.area515.resinprinter.job.JobStatus;
+import org.area515.resinprinter.job.PrintJob;
+import org.area515.resinprinter.notification.Notifier.NotificationEvent;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class PrintJobEventChannelTest {
+	private ObjectMapper mapper = new ObjectMapper();
+
+	private static class MockSession {
+		private Session session = Mockito.mock(Session.class);
+		private List<String> sent = new ArrayList<String>();
+		private List<SendHandler> handlers = new ArrayList<SendHandler>();
+
+		private MockSession(String id) {
+			RemoteEndpoint.Async remote = Mockito.mock(RemoteEndpoint.Async.class);
+			Mockito.when(session.getId()).thenReturn(id);
+			Mockito.when(session.getAsyncRemote()).thenReturn(remote);
+			Mockito.doAnswer(invocation -> {
+				sent.add((String)invocation.getArguments()[0]);
+				handlers.add((SendHandler)invocation.getArguments()[1]);
+				return null;
+			}).when(remote).sendText(Mockito.anyString(), Mockito.any(SendHandler.class));
+		}
+
+		private void completeLastSend() {
+			handlers.get(handlers.size() - 1).onResult(new SendResult());
+		}
+	}
+
+	private PrintJob createPrintJob() {
+		PrintJob job = new PrintJob(new File("channelTest.stl"));
+		job.initializePrintJob(CompletableFuture.completedFuture(JobStatus.Printing));
+		job.setTotalSlices(10);
+		return job;
+	}
+
+	@Test
+	public void diffOnlyHasChangedFields() throws IOException {
+		ObjectNode from = (ObjectNode)mapper.readTree("{\"a\":1,\"b\":\"same\",\"c\":{\"x\":1,\"y\":2},\"removed\":true}");
+		ObjectNode to = (ObjectNode)mapper.readTree("{\"a\":2,\"b\":\"same\",\"c\":{\"x\":1,\"y\":3},\"added\":[1,2]}");
+		Assert.assertEquals(mapper.readTree("{\"a\":2,\"c\":{\"y\":3},\"added\":[1,2],\"removed\":null}"), PrintJobEventChannel.diff(from, to));
+	}
+
+	@Test
+	public void firstChangeIsWholeJobThenDeltas() throws IOException {
+		PrintJobEventChannel channel = new PrintJobEventChannel(0, 4, null);
+		MockSession client = new MockSession("1");
+		channel.addSession(client.session);
+		PrintJob job = createPrintJob();
+
+		channel.jobChanged(job);
+		Assert.assertEquals(1, client.sent.size());
+		JsonNode full = mapper.readTree(client.sent.get(0));
+		Assert.assertFalse(full.get("delta").asBoolean());
+		Assert.assertEquals(NotificationEvent.PrintJobChanged.name(), full.get("notificationEvent").asText());
+		Assert.assertEquals(10, full.get("printJob").get("totalSlices").asInt());
+		Assert.assertTrue(full.get("printJob").has("id"));
+
+		client.completeLastSend();
+		job.setTotalSlices(20);
+		channel.jobChanged(job);
+		Assert.assertEquals(2, client.sent.size());
+		JsonNode delta = mapper.readTree(client.sent.get(1));
+		Assert.assertTrue(delta.get("delta").asBoolean());
+		Assert.assertEquals(NotificationEvent.PrintJobChanged.name(), delta.get("notificationEvent").asText());
+		Assert.assertEquals(20, delta.get("printJob").get("totalSlices").asInt());
+		Assert.assertFalse(delta.get("printJob").has("id"));
+
+		//Nothing changed, so there is nothing to send
+		client.completeLastSend();
+		Assert.assertEquals(2, client.sent.size());
+	}
+
+	@Test
+	public void slowSessionGetsOneCoalescedDelta() throws IOException {
+		PrintJobEventChannel channel = new PrintJobEventChannel(0, 4, null);
+		MockSession fast = new MockSession("fast");
+		MockSession slow = new MockSession("slow");
+		channel.addSession(fast.session);
+		channel.addSession(slow.session);
+		PrintJob job = createPrintJob();
+
+		channel.jobChanged(job);
+		fast.completeLastSend();
+		//Both were sent the same serialization
+		Assert.assertSame(fast.sent.get(0), slow.sent.get(0));
+
+		for (int slices = 11; slices <= 13; slices++) {
+			job.setTotalSlices(slices);
+			channel.jobChanged(job);
+			fast.completeLastSend();
+		}
+		Assert.assertEquals(4, fast.sent.size());
+		Assert.assertEquals(1, slow.sent.size());
+
+		slow.completeLastSend();
+		Assert.assertEquals(2, slow.sent.size());
+		Assert.assertEquals(13, mapper.readTree(slow.sent.get(1)).get("printJob").get("totalSlices").asInt());
+		Assert.assertEquals(2, channel.getDroppedEvents());
+	}
+
+	@Test
+	public void fullQueueDropsOldestEvent() throws IOException {
+		PrintJobEventChannel channel = new PrintJobEventChannel(0, 2, null);
+		MockSession slow = new MockSession("slow");
+		channel.addSession(slow.session);
+		PrintJob job = createPrintJob();
+
+		for (int t = 0; t < 4; t++) {
+			channel.publish(new PrintJobEvent(job, NotificationEvent.FileUploadComplete));
+		}
+		Assert.assertEquals(1, slow.sent.size());
+		Assert.assertEquals(1, channel.getDroppedEvents());
+
+		slow.completeLastSend();
+		slow.completeLastSend();
+		slow.completeLastSend();
+		Assert.assertEquals(3, slow.sent.size());
+		Assert.assertEquals(NotificationEvent.FileUploadComplete.name(), mapper.readTree(slow.sent.get(2)).get("notificationEvent").asText());
+	}
+
+	@Test
+	public void failedSendClosesSession() throws IOException {
+		PrintJobEventChannel channel = new PrintJobEventChannel(0, 4, null);
+		MockSession client = new MockSession("1");
+		channel.addSession(client.session);
+
+		channel.jobChanged(createPrintJob());
+		client.handlers.get(0).onResult(new SendResult(new IOException("Send timed out")));
+		Assert.assertTrue(channel.getSessions().isEmpty());
+		Mockito.verify(client.session).close(Mockito.any(CloseReason.class));
+	}
+}
@@ -0,0 +1,100 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+
+import org.area515.resinprinter.printer.Printer;
+import org.area515.util.IOUtilities;
+import org.area515.util.IOUtilities.ParseState;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SerialResponseBufferTest {
+	@Test
+	public void ringGrowsAndKeepsOrder() throws IOException {
+		SerialResponseBuffer buffer = new SerialResponseBuffer(4);
+		Assert.assertNull(buffer.read());
+		buffer.write("ab".getBytes());
+		Assert.assertEquals("ab", new String(buffer.read()));
+		//Wraps around the end of the ring, then grows past it
+		buffer.write("cde".getBytes());
+		buffer.write("fghij".getBytes());
+		Assert.assertEquals(8, buffer.available());
+		Assert.assertEquals("cdefghij", new String(buffer.read()));
+		Assert.assertNull(buffer.read());
+	}
+	
+	@Test
+	public void exceptionArrivesAfterData() throws IOException, InterruptedException {
+		SerialResponseBuffer buffer = new SerialResponseBuffer();
+		buffer.write("ok\n".getBytes());
+		buffer.setException(new IOException("Port went away"));
+		Assert.assertEquals("ok\n", new String(buffer.read(1000)));
+		try {
+			buffer.read(1000);
+			Assert.fail("The exception should have been thrown");
+		} catch (IOException e) {
+			Assert.assertEquals("Port went away", e.getMessage());
+		}
+		Assert.assertNull(buffer.read());
+	}
+	
+	@Test
+	public void readWakesWhenDataArrives() throws IOException, InterruptedException {
+		SimulatedCommPort port = new SimulatedCommPort();
+		try {
+			long start = System.currentTimeMillis();
+			Assert.assertNull(port.read(50));
+			Assert.assertTrue(System.currentTimeMillis() - start >= 50);
+			
+			port.respond("ok\n", 20);
+			start = System.currentTimeMillis();
+			Assert.assertEquals("ok\n", new String(port.read(5000)));
+			Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void readLineDoesntWaitForThePollingDelay() throws IOException {
+		SimulatedCommPort port = new SimulatedCommPort();
+		Printer printer = Mockito.mock(Printer.class);
+		Mockito.when(printer.isPrintActive()).thenReturn(true);
+		int cpuLimitingDelay = 3000;
+		try {
+			port.respond("o", 10);
+			port.respond("k\nwo", 30);
+			StringBuilder builder = new StringBuilder();
+			long start = System.currentTimeMillis();
+			ParseState state = IOUtilities.readLine(printer, port, builder, 0, 5000, cpuLimitingDelay);
+			Assert.assertEquals("ok\n", state.currentLine);
+			Assert.assertTrue(System.currentTimeMillis() - start < cpuLimitingDelay);
+			
+			//Only part of the next line arrived before the timeout
+			state = IOUtilities.readLine(printer, port, builder, state.parseLocation, 50, cpuLimitingDelay);
+			Assert.assertNull(state.currentLine);
+			Assert.assertTrue(state.timeout);
+			Assert.assertEquals(2, state.parseLocation);
+			
+			port.respond("rld\n", 10);
+			state = IOUtilities.readLine(printer, port, builder, state.parseLocation, 5000, cpuLimitingDelay);
+			Assert.assertEquals("world\n", state.currentLine);
+			Assert.assertEquals(0, state.parseLocation);
+		} finally {
+			port.close();
+		}
+	}
+	
+	@Test
+	public void readWithTimeoutStopsWhenPortIsQuiet() throws IOException, InterruptedException {
+		SimulatedCommPort port = new SimulatedCommPort();
+		try {
+			port.respond("start\n", 10);
+			port.respond("echo:Marlin\n", 40);
+			Assert.assertEquals("start\necho:Marlin\n", IOUtilities.readWithTimeout(port, 200, 3000));
+		} finally {
+			port.close();
+		}
+	}
+}
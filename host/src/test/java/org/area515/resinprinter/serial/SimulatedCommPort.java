@@ -0,0 +1,116 @@
+package org.area515.resinprinter.serial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.area515.resinprinter.printer.ComPortSettings;
+
+/**
+ * An event driven port for tests. Responses arrive on another thread, the way they would from a serial driver, either when they
+ * are queued or once for every line that is written if an automatic response has been set.
+ */
+public class SimulatedCommPort implements EventDrivenCommPort {
+	private String name = "Simulated";
+	private SerialResponseBuffer responseBuffer = new SerialResponseBuffer(16);
+	private ScheduledExecutorService firmware = Executors.newSingleThreadScheduledExecutor();
+	private List<String> written = new ArrayList<String>();
+	private Function<String, String> autoResponder;
+	private long responseDelayMillis;
+	private int unacknowledged;
+	private int maxUnacknowledged;
+	
+	public void setAutoResponse(String autoResponse, long responseDelayMillis) {
+		setAutoResponder(line -> autoResponse, responseDelayMillis);
+	}
+	
+	/**
+	 * @param autoResponder builds the response to each line that is written, the line is passed without it's line feed
+	 */
+	public void setAutoResponder(Function<String, String> autoResponder, long responseDelayMillis) {
+		this.autoResponder = autoResponder;
+		this.responseDelayMillis = responseDelayMillis;
+	}
+	
+	public void respond(String response, long delayMillis) {
+		firmware.schedule(() -> responseBuffer.write(response.getBytes()), delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	public synchronized List<String> getWritten() {
+		return new ArrayList<String>(written);
+	}
+	
+	/**
+	 * @return the most lines that were ever written without their automatic response having been sent
+	 */
+	public synchronized int getMaxUnacknowledged() {
+		return maxUnacknowledged;
+	}
+	
+	@Override
+	public void open(String controllingDevice, int timeout, ComPortSettings settings) {
+		responseBuffer.clear();
+	}
+
+	@Override
+	public void close() {
+		firmware.shutdownNow();
+	}
+
+	@Override
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void write(byte[] data) throws IOException {
+		String lines = new String(data);
+		synchronized (this) {
+			written.add(lines);
+		}
+		if (autoResponder == null) {
+			return;
+		}
+		int lineStart = 0;
+		for (int t = 0; t < lines.length(); t++) {
+			if (lines.charAt(t) == '\n') {
+				String response = autoResponder.apply(lines.substring(lineStart, t));
+				lineStart = t + 1;
+				synchronized (this) {
+					unacknowledged++;
+					maxUnacknowledged = Math.max(maxUnacknowledged, unacknowledged);
+				}
+				firmware.schedule(() -> {
+					synchronized (this) {
+						unacknowledged--;
+					}
+					responseBuffer.write(response.getBytes());
+				}, responseDelayMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	@Override
+	public byte[] read() throws IOException {
+		return responseBuffer.read();
+	}
+
+	@Override
+	public byte[] read(long timeoutMillis) throws IOException, InterruptedException {
+		return responseBuffer.read(timeoutMillis);
+	}
+
+	@Override
+	public void restartCommunications() {
+		responseBuffer.clear();
+	}
+}
@@ -0,0 +1,64 @@
+package org.area515.resinprinter.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MonitoredExecutorTest {
+	@Test
+	public void bucketsDoubleInSize() {
+		Assert.assertEquals(0, MonitoredExecutor.getBucket(999));
+		Assert.assertEquals(1, MonitoredExecutor.getBucket(1000));
+		Assert.assertEquals(2, MonitoredExecutor.getBucket(2000));
+		Assert.assertEquals(2, MonitoredExecutor.getBucket(3999));
+		Assert.assertEquals(3, MonitoredExecutor.getBucket(4000));
+		Assert.assertEquals(MonitoredExecutor.HISTOGRAM_BUCKETS - 1, MonitoredExecutor.getBucket(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void busyPoolShowsQueueDepthAndLateness() throws InterruptedException, ExecutionException {
+		MonitoredExecutor executor = new MonitoredExecutor("Test", 1, Thread.MAX_PRIORITY);
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			final int[] threadPriority = new int[1];
+			Future<?> blocker = executor.submit(() -> {
+				threadPriority[0] = Thread.currentThread().getPriority();
+				release.await();
+				return null;
+			});
+			Future<?> waiting = executor.submit(() -> {});
+			Future<?> scheduled = executor.schedule(() -> {}, 1, TimeUnit.HOURS);
+
+			Thread.sleep(50);
+			MonitoredExecutor.Metrics metrics = executor.getMetrics();
+			Assert.assertEquals("Test", metrics.getName());
+			Assert.assertEquals(Thread.MAX_PRIORITY, metrics.getPriority());
+			Assert.assertEquals(1, metrics.getActiveThreads());
+			Assert.assertEquals(2, metrics.getQueueDepth());
+			Assert.assertEquals(1, metrics.getOverdueTasks());
+
+			release.countDown();
+			blocker.get();
+			waiting.get();
+			scheduled.cancel(false);
+			Assert.assertEquals(Thread.MAX_PRIORITY, threadPriority[0]);
+
+			metrics = executor.getMetrics();
+			Assert.assertEquals(2, metrics.getStartedTasks());
+			//The second task waited for the first one to finish
+			Assert.assertTrue(metrics.getMaxStartLatenessMillis() >= 50);
+			Assert.assertTrue(metrics.getMaxQueueDepth() >= 1);
+			long histogramTotal = 0;
+			for (long count : metrics.getStartLatenessHistogram()) {
+				histogramTotal += count;
+			}
+			Assert.assertEquals(2, histogramTotal);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package org.area515.resinprinter.services;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrintJobServiceTest {
+	@Test
+	public void plainNamesAreQuoted() {
+		Assert.assertEquals(
+				"attachment; filename=\"Ring_2 (v1).timeline.csv\"; filename*=UTF-8''Ring_2%20%28v1%29.timeline.csv",
+				PrintJobService.buildAttachmentDisposition("Ring_2 (v1).timeline.csv"));
+	}
+
+	@Test
+	public void namesCantBreakOutOfTheHeader() {
+		Assert.assertEquals(
+				"attachment; filename=\"a_ b_ _c__x_y.csv\"; filename*=UTF-8''a%22%20b%3B%20%5Cc%0D%0Ax%3Dy.csv",
+				PrintJobService.buildAttachmentDisposition("a\" b; \\c\r\nx=y.csv"));
+	}
+
+	@Test
+	public void unicodeNamesAreEncodedAsUtf8() {
+		Assert.assertEquals(
+				"attachment; filename=\"_berma_.csv\"; filename*=UTF-8''%C3%9Cberma%C3%9F.csv",
+				PrintJobService.buildAttachmentDisposition("\u00dcberma\u00df.csv"));
+	}
+}
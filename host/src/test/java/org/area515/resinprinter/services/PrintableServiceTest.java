@@ -0,0 +1,77 @@
+package org.area515.resinprinter.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.area515.resinprinter.server.HostProperties;
+import org.area515.resinprinter.stream.FileRangeServer;
+import org.area515.resinprinter.stream.ServletMocks;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class PrintableServiceTest {
+	private static final String CONTENT = "G1 Z1\nG1 Z2\nG1 Z3\n";
+	private File printable;
+
+	@Before
+	public void createPrintable() throws IOException {
+		HostProperties.Instance().getUploadDir().mkdirs();
+		printable = new File(HostProperties.Instance().getUploadDir(), UUID.randomUUID() + ".gcode");
+		Files.write(printable.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	@After
+	public void deletePrintable() {
+		printable.delete();
+	}
+
+	//RESTEasy answers 204 for a void resource unless the response was already committed with the status we picked
+	private static void verifyCommittedWith(HttpServletResponse response, int status) throws IOException {
+		InOrder inOrder = Mockito.inOrder(response);
+		inOrder.verify(response).setStatus(status);
+		inOrder.verify(response).flushBuffer();
+	}
+
+	@Test
+	public void downloadWholePrintable() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		PrintableService.INSTANCE.downloadPrintableFile(printable.getName(), ServletMocks.request("GET"), response);
+
+		verifyCommittedWith(response, HttpServletResponse.SC_OK);
+		Mockito.verify(response).setContentLengthLong(CONTENT.length());
+		Assert.assertEquals(CONTENT, body.toString("US-ASCII"));
+	}
+
+	@Test
+	public void resumePrintableDownload() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		PrintableService.INSTANCE.downloadPrintableFile(printable.getName(), ServletMocks.request("GET", "Range", "bytes=6-"), response);
+
+		verifyCommittedWith(response, HttpServletResponse.SC_PARTIAL_CONTENT);
+		Mockito.verify(response).setHeader("Content-Range", "bytes 6-17/18");
+		Assert.assertEquals("G1 Z2\nG1 Z3\n", body.toString("US-ASCII"));
+	}
+
+	@Test
+	public void unchangedPrintableIsntSentAgain() throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		String etag = FileRangeServer.buildETag(printable.lastModified(), CONTENT.length());
+		PrintableService.INSTANCE.downloadPrintableFile(printable.getName(), ServletMocks.request("GET", "If-None-Match", etag), response);
+
+		verifyCommittedWith(response, HttpServletResponse.SC_NOT_MODIFIED);
+		Assert.assertEquals(0, body.size());
+	}
+}
@@ -0,0 +1,132 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Polygon;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceCacheTest {
+	private SliceResult buildSlice(int z, List<StlError> errors) {
+		List<Line3d> scanLines = new ArrayList<Line3d>();
+		for (int y = 10; y < 20; y++) {
+			scanLines.add(new Line3d(new Point3d(5.2, y, 0), new Point3d(30.7 + z, y, 0), null, null, false));
+		}
+		List<Polygon> polygons = Arrays.asList(new Polygon(new int[]{5, 31, 31, 5}, new int[]{10, 10, 19, 19}, 4));
+		return new SliceResult(z, Collections.<List<Line3d>>emptyList(), polygons, scanLines, errors, 250 + z);
+	}
+
+	private void assertSameSlice(SliceResult expected, SliceResult actual) {
+		Assert.assertEquals(expected.getZIndex(), actual.getZIndex());
+		Assert.assertEquals(expected.getBuildArea(), actual.getBuildArea());
+		Assert.assertEquals(expected.getFillInScanLines().size(), actual.getFillInScanLines().size());
+		for (int t = 0; t < expected.getFillInScanLines().size(); t++) {
+			Line3d expectedLine = expected.getFillInScanLines().get(t);
+			Line3d actualLine = actual.getFillInScanLines().get(t);
+			Assert.assertEquals(Math.round(expectedLine.getPointOne().x), Math.round(actualLine.getPointOne().x));
+			Assert.assertEquals(Math.round(expectedLine.getPointTwo().x), Math.round(actualLine.getPointTwo().x));
+			Assert.assertEquals(Math.round(expectedLine.getPointOne().y), Math.round(actualLine.getPointOne().y));
+		}
+		Assert.assertEquals(expected.getFillInPolygons().size(), actual.getFillInPolygons().size());
+		for (int t = 0; t < expected.getFillInPolygons().size(); t++) {
+			Polygon expectedPolygon = expected.getFillInPolygons().get(t);
+			Polygon actualPolygon = actual.getFillInPolygons().get(t);
+			Assert.assertArrayEquals(Arrays.copyOf(expectedPolygon.xpoints, expectedPolygon.npoints), actualPolygon.xpoints);
+			Assert.assertArrayEquals(Arrays.copyOf(expectedPolygon.ypoints, expectedPolygon.npoints), actualPolygon.ypoints);
+		}
+	}
+
+	@Test
+	public void slicesSurviveReopen() throws IOException {
+		File directory = Files.createTempDirectory("sliceCache").toFile();
+		try {
+			File model = new File(directory, "model.stl");
+			FileOutputStream output = new FileOutputStream(model);
+			output.write("solid model".getBytes());
+			output.close();
+
+			SliceCache cache = SliceCache.open(directory, model, "settings", 5, 10, 5);
+			Assert.assertNull(cache.read(6));
+			cache.write(buildSlice(6, Collections.<StlError>emptyList()));
+			cache.write(buildSlice(8, Arrays.asList(new StlError(null, (Line3d)null))));
+			cache.write(buildSlice(20, Collections.<StlError>emptyList()));
+			Assert.assertSame(cache, SliceCache.open(directory, model, "settings", 5, 10, 5));
+			cache.close();
+			cache.close();
+
+			cache = SliceCache.open(directory, model, "settings", 5, 10, 5);
+			assertSameSlice(buildSlice(6, Collections.<StlError>emptyList()), cache.read(6));
+			Assert.assertNull("Slices with errors aren't cached", cache.read(8));
+			Assert.assertNull("Slices out of range aren't cached", cache.read(20));
+			cache.close();
+
+			cache = SliceCache.open(directory, model, "other settings", 5, 10, 5);
+			Assert.assertNull(cache.read(6));
+			cache.close();
+
+			Assert.assertEquals(SliceCache.buildKey(model, "settings"), SliceCache.buildKey(model, "settings", SliceCache.SLICER_VERSION));
+			Assert.assertFalse("A new slicer can't read slices cut by an older one",
+					SliceCache.buildKey(model, "settings", SliceCache.SLICER_VERSION).equals(SliceCache.buildKey(model, "settings", SliceCache.SLICER_VERSION + 1)));
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+
+	@Test
+	public void damagedRecordsAreMisses() throws IOException {
+		File directory = Files.createTempDirectory("sliceCache").toFile();
+		try {
+			File model = new File(directory, "model.stl");
+			FileOutputStream output = new FileOutputStream(model);
+			output.write("solid model".getBytes());
+			output.close();
+
+			SliceCache cache = SliceCache.open(directory, model, "settings", 5, 10, 5);
+			cache.write(buildSlice(6, Collections.<StlError>emptyList()));
+			cache.write(buildSlice(7, Collections.<StlError>emptyList()));
+			File cacheFile = cache.getCacheFile();
+			cache.close();
+
+			//A power loss tore the last record, and flipped a bit in the one before it
+			RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+			try {
+				file.seek(SliceCache.HEADER_SIZE + 8);
+				long sixOffset = file.readLong();
+				file.setLength(file.length() - 5);
+				file.seek(sixOffset + 20);
+				int value = file.read();
+				file.seek(sixOffset + 20);
+				file.write(value ^ 1);
+			} finally {
+				file.close();
+			}
+
+			cache = SliceCache.open(directory, model, "settings", 5, 10, 5);
+			Assert.assertNull(cache.read(7));
+			Assert.assertNull(cache.read(6));
+			Assert.assertFalse(cache.contains(6));
+
+			//Both can be cached again
+			cache.write(buildSlice(6, Collections.<StlError>emptyList()));
+			cache.write(buildSlice(7, Collections.<StlError>emptyList()));
+			cache.close();
+			cache = SliceCache.open(directory, model, "settings", 5, 10, 5);
+			assertSameSlice(buildSlice(6, Collections.<StlError>emptyList()), cache.read(6));
+			assertSameSlice(buildSlice(7, Collections.<StlError>emptyList()), cache.read(7));
+			cache.close();
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Graphics2D;
+import java.awt.Polygon;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.area515.resinprinter.stl.Point3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SliceResultTest {
+	private SliceResult buildSlice() {
+		List<Line3d> scanLines = new ArrayList<Line3d>();
+		for (int y = 10; y < 20; y++) {
+			scanLines.add(new Line3d(new Point3d(5.2, y, 0), new Point3d(30.7, y, 0), null, null, false));
+		}
+		//Runs off the edges of the image
+		scanLines.add(new Line3d(new Point3d(-5, 25, 0), new Point3d(80, 25, 0), null, null, false));
+		List<Polygon> polygons = Arrays.asList(
+				new Polygon(new int[]{5, 31, 31, 5}, new int[]{10, 10, 19, 19}, 4),
+				new Polygon(new int[]{40, 55, 45}, new int[]{30, 33, 45}, 3));
+		return new SliceResult(0, Collections.<List<Line3d>>emptyList(), polygons, scanLines, Collections.<StlError>emptyList(), 0);
+	}
+
+	private void assertRasterizeMatchesPaint(String message, SliceResult slice) {
+		BufferedImage painted = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_GRAY);
+		Graphics2D g = painted.createGraphics();
+		slice.paint(g, false);
+		g.dispose();
+
+		BufferedImage rasterized = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_GRAY);
+		long area = slice.rasterize(rasterized);
+
+		byte[] expected = ((DataBufferByte)painted.getRaster().getDataBuffer()).getData();
+		byte[] actual = ((DataBufferByte)rasterized.getRaster().getDataBuffer()).getData();
+		long expectedArea = 0;
+		for (byte pixel : expected) {
+			if (pixel != 0) {
+				expectedArea++;
+			}
+		}
+		Assert.assertArrayEquals(message, expected, actual);
+		Assert.assertEquals(message, expectedArea, area);
+	}
+
+	@Test
+	public void rasterizeMatchesPaint() {
+		assertRasterizeMatchesPaint("Slice", buildSlice());
+	}
+
+	//Mostly inside of the image, but some of the points are off of each edge
+	private int[] randomCoordinates(Random random, int count, int size) {
+		int[] coordinates = new int[count];
+		for (int t = 0; t < count; t++) {
+			coordinates[t] = random.nextInt(size + 20) - 10;
+		}
+		return coordinates;
+	}
+
+	private Polygon randomPolygon(Random random) {
+		int points = 1 + random.nextInt(8);
+		int[] x = randomCoordinates(random, points, 64);
+		int[] y = randomCoordinates(random, points, 48);
+		for (int t = 1; t < points; t++) {
+			switch (random.nextInt(6)) {
+			case 0 :
+				//Horizontal
+				y[t] = y[t - 1];
+				break;
+			case 1 :
+				//Vertical
+				x[t] = x[t - 1];
+				break;
+			case 2 :
+				//Steep
+				x[t] = x[t - 1] + random.nextInt(5) - 2;
+				break;
+			case 3 :
+				//Degenerate
+				x[t] = x[t - 1];
+				y[t] = y[t - 1];
+				break;
+			}
+		}
+		return new Polygon(x, y, points);
+	}
+
+	@Test
+	public void rasterizeMatchesPaintForRandomPolygons() {
+		Random random = new Random(515);
+		for (int slice = 0; slice < 2000; slice++) {
+			List<Polygon> polygons = new ArrayList<Polygon>();
+			for (int t = random.nextInt(4); t >= 0; t--) {
+				polygons.add(randomPolygon(random));
+			}
+
+			List<Line3d> scanLines = new ArrayList<Line3d>();
+			for (int t = random.nextInt(3); t > 0; t--) {
+				int[] x = randomCoordinates(random, 2, 64);
+				int[] y = randomCoordinates(random, 2, 48);
+				scanLines.add(new Line3d(new Point3d(x[0], y[0], 0), new Point3d(x[1], y[1], 0), null, null, false));
+			}
+
+			StringBuilder message = new StringBuilder("Slice:" + slice);
+			for (Polygon polygon : polygons) {
+				message.append(" x:").append(Arrays.toString(Arrays.copyOf(polygon.xpoints, polygon.npoints)));
+				message.append(" y:").append(Arrays.toString(Arrays.copyOf(polygon.ypoints, polygon.npoints)));
+			}
+			assertRasterizeMatchesPaint(message.toString(), new SliceResult(0, Collections.<List<Line3d>>emptyList(), polygons, scanLines, Collections.<StlError>emptyList(), 0));
+		}
+	}
+
+	@Test
+	public void rasterizeClearsPreviousSlice() {
+		BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_BYTE_GRAY);
+		Arrays.fill(((DataBufferByte)image.getRaster().getDataBuffer()).getData(), (byte)0xff);
+
+		SliceResult empty = new SliceResult(0, Collections.<List<Line3d>>emptyList(), Collections.<Polygon>emptyList(), Collections.<Line3d>emptyList(), Collections.<StlError>emptyList(), 0);
+		Assert.assertEquals(0, empty.rasterize(image));
+		for (byte pixel : ((DataBufferByte)image.getRaster().getDataBuffer()).getData()) {
+			Assert.assertEquals(0, pixel);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package org.area515.resinprinter.slice;
+
+import java.awt.Polygon;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.area515.resinprinter.stl.Line3d;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+
+public class SlicingPipelineTest {
+	private static SliceResult buildSlice(int z) {
+		return new SliceResult(z, Collections.<List<Line3d>>emptyList(), Collections.<Polygon>emptyList(), Collections.<Line3d>emptyList(), Collections.<StlError>emptyList(), 0);
+	}
+
+	private static ZSlicer mockSlicer(int minZ, int maxZ, Answer<SliceResult> answer) {
+		ZSlicer slicer = Mockito.mock(ZSlicer.class);
+		Mockito.when(slicer.getZMinIndex()).thenReturn(minZ);
+		Mockito.when(slicer.getZMaxIndex()).thenReturn(maxZ);
+		Mockito.when(slicer.getSlice(Mockito.anyInt())).thenAnswer(answer);
+		return slicer;
+	}
+
+	private ExecutorService executor;
+
+	//Each test gets it's own slicing threads in place of Main.SLICING_EXECUTOR
+	private SlicingPipeline buildPipeline(ZSlicer slicer, int threads, int layersAhead, int step) {
+		executor = Executors.newFixedThreadPool(threads);
+		return new SlicingPipeline(slicer, executor, layersAhead, step);
+	}
+
+	@After
+	public void shutdownExecutor() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	private static ZSlicer mockSlicer(int minZ, int maxZ) {
+		return mockSlicer(minZ, maxZ, invocation -> buildSlice((Integer)invocation.getArguments()[0]));
+	}
+
+	@Test
+	public void slicesAreReturnedInTheOrderTheyAreAskedFor() throws Exception {
+		ZSlicer slicer = mockSlicer(0, 100);
+		SlicingPipeline pipeline = buildPipeline(slicer, 4, 3, 1);
+		try {
+			for (int z = 0; z <= 100; z++) {
+				Assert.assertEquals(z, pipeline.getSlice(z).getZIndex());
+			}
+
+			//Every layer was sliced ahead of time once, never again when it was asked for
+			for (int z = 0; z <= 100; z++) {
+				Mockito.verify(slicer).getSlice(z);
+			}
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void layersAheadAreSlicedInTheBuildDirection() throws Exception {
+		ZSlicer slicer = mockSlicer(0, 100);
+		SlicingPipeline pipeline = buildPipeline(slicer, 2, 3, -1);
+		try {
+			Assert.assertEquals(50, pipeline.getSlice(50).getZIndex());
+			Mockito.verify(slicer, Mockito.timeout(5000)).getSlice(49);
+			Mockito.verify(slicer, Mockito.timeout(5000)).getSlice(48);
+			Mockito.verify(slicer, Mockito.timeout(5000)).getSlice(47);
+			Mockito.verify(slicer, Mockito.never()).getSlice(46);
+			Mockito.verify(slicer, Mockito.never()).getSlice(51);
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void slicesArentQueuedPastTheModel() throws Exception {
+		ZSlicer slicer = mockSlicer(0, 10);
+		SlicingPipeline pipeline = buildPipeline(slicer, 2, 5, -1);
+		try {
+			Assert.assertEquals(1, pipeline.getSlice(1).getZIndex());
+			Mockito.verify(slicer, Mockito.timeout(5000)).getSlice(0);
+			Mockito.verify(slicer, Mockito.never()).getSlice(-1);
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void slicesThatWereSkippedAreCancelled() throws Exception {
+		CountDownLatch sliceOneStarted = new CountDownLatch(1);
+		CountDownLatch releaseSliceOne = new CountDownLatch(1);
+		AtomicBoolean sliceOneInterrupted = new AtomicBoolean();
+		ZSlicer slicer = mockSlicer(0, 100, invocation -> {
+			int z = (Integer)invocation.getArguments()[0];
+			if (z == 1) {
+				sliceOneStarted.countDown();
+				try {
+					releaseSliceOne.await();
+				} catch (InterruptedException e) {
+					sliceOneInterrupted.set(true);
+				}
+			}
+			return buildSlice(z);
+		});
+
+		//A single slicing thread, so slice 2 is still waiting behind slice 1 when the print skips ahead to slice 5
+		SlicingPipeline pipeline = buildPipeline(slicer, 1, 2, 1);
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertEquals(0, pipeline.getSlice(0).getZIndex());
+			Assert.assertTrue(sliceOneStarted.await(5, TimeUnit.SECONDS));
+
+			AtomicReference<Thread> callerThread = new AtomicReference<Thread>();
+			Future<SliceResult> sliceFive = caller.submit(() -> {
+				callerThread.set(Thread.currentThread());
+				return pipeline.getSlice(5);
+			});
+			//Once the caller is waiting for slice 5, the slices behind it have already been forgotten
+			long deadline = System.currentTimeMillis() + 5000;
+			while (callerThread.get() == null || callerThread.get().getState() != Thread.State.WAITING) {
+				Assert.assertTrue("Caller never waited for slice 5", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+			releaseSliceOne.countDown();
+
+			Assert.assertEquals(5, sliceFive.get(5, TimeUnit.SECONDS).getZIndex());
+			Mockito.verify(slicer, Mockito.timeout(5000)).getSlice(7);
+			Mockito.verify(slicer, Mockito.never()).getSlice(2);
+			//A slice that already started is left to finish
+			Assert.assertFalse(sliceOneInterrupted.get());
+		} finally {
+			releaseSliceOne.countDown();
+			caller.shutdownNow();
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void sliceErrorsAreThrownToTheCaller() throws Exception {
+		IllegalStateException brokenSlice = new IllegalStateException("Broken slice");
+		ZSlicer slicer = mockSlicer(0, 100, invocation -> {
+			int z = (Integer)invocation.getArguments()[0];
+			if (z == 3) {
+				throw brokenSlice;
+			}
+			return buildSlice(z);
+		});
+
+		SlicingPipeline pipeline = buildPipeline(slicer, 2, 2, 1);
+		try {
+			Assert.assertEquals(2, pipeline.getSlice(2).getZIndex());
+			try {
+				pipeline.getSlice(3);
+				Assert.fail("Slice 3 should have failed");
+			} catch (ExecutionException e) {
+				Assert.assertSame(brokenSlice, e.getCause());
+			}
+
+			//One broken layer doesn't stop the rest of the pipeline
+			Assert.assertEquals(4, pipeline.getSlice(4).getZIndex());
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+
+	@Test
+	public void shutdownInterruptsSlicing() throws Exception {
+		CountDownLatch sliceOneStarted = new CountDownLatch(1);
+		CountDownLatch sliceOneInterrupted = new CountDownLatch(1);
+		ZSlicer slicer = mockSlicer(0, 100, invocation -> {
+			int z = (Integer)invocation.getArguments()[0];
+			if (z == 1) {
+				sliceOneStarted.countDown();
+				try {
+					new CountDownLatch(1).await();
+				} catch (InterruptedException e) {
+					sliceOneInterrupted.countDown();
+				}
+			}
+			return buildSlice(z);
+		});
+
+		SlicingPipeline pipeline = buildPipeline(slicer, 1, 1, 1);
+		Assert.assertEquals(0, pipeline.getSlice(0).getZIndex());
+		Assert.assertTrue(sliceOneStarted.await(5, TimeUnit.SECONDS));
+		pipeline.shutdown();
+		Assert.assertTrue(sliceOneInterrupted.await(5, TimeUnit.SECONDS));
+		//The executor is shared with every other print
+		Assert.assertFalse(executor.isShutdown());
+
+		try {
+			pipeline.getSlice(1);
+			Assert.fail("Pipeline was already shutdown");
+		} catch (IllegalStateException e) {
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.area515.resinprinter.slice;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StlAsciiScannerTest {
+	private StlAsciiScanner scanner(String text) {
+		return new StlAsciiScanner(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void tokenizeLinesAndKeywords() throws IOException {
+		StlAsciiScanner scanner = scanner("solid Part\r\n  FACET normal\t0 0 1\rendsolid");
+		Assert.assertEquals(StlAsciiScanner.TT_WORD, scanner.nextToken());
+		Assert.assertTrue(scanner.isWord("solid"));
+		scanner.nextToken();
+		Assert.assertEquals("Part", scanner.getWord());
+		Assert.assertEquals(StlAsciiScanner.TT_EOL, scanner.nextToken());
+		scanner.nextToken();
+		Assert.assertTrue(scanner.isWord("facet"));
+		scanner.nextToken();
+		Assert.assertTrue(scanner.isWord("normal"));
+		Assert.assertFalse(scanner.isWord("norma"));
+		Assert.assertTrue(scanner.getNumber());
+		Assert.assertTrue(scanner.getNumber());
+		Assert.assertTrue(scanner.getNumber());
+		Assert.assertEquals(1, scanner.nval, 0);
+		Assert.assertEquals(StlAsciiScanner.TT_EOL, scanner.nextToken());
+		Assert.assertEquals(3, scanner.lineno());
+		scanner.nextToken();
+		Assert.assertTrue(scanner.isWord("endsolid"));
+		Assert.assertEquals(StlAsciiScanner.TT_EOF, scanner.nextToken());
+	}
+
+	@Test
+	public void numbersMatchDouble() throws IOException {
+		List<String> numbers = new ArrayList<String>(Arrays.asList("0", "-0", "1", "-1.5", "+2.25", "0.005", "1e-5", "1.234567E+02", "-9.87654321e-003", ".5", "5.",
+				"3.14159265358979323846", "123456789012345678901234", "1e300", "4.9e-324", "NaN", "-Infinity"));
+		Random random = new Random(515);
+		for (int t = 0; t < 10000; t++) {
+			numbers.add(String.format(Locale.ROOT, "%e", (random.nextDouble() - .5) * 1000));
+			numbers.add(Float.toString(random.nextFloat() * 100));
+		}
+
+		StringBuilder text = new StringBuilder();
+		for (String number : numbers) {
+			text.append(number).append(' ');
+		}
+
+		StlAsciiScanner scanner = scanner(text.toString());
+		for (String number : numbers) {
+			Assert.assertTrue(number, scanner.getNumber());
+			Assert.assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)), Double.doubleToLongBits(scanner.nval));
+		}
+		Assert.assertFalse(scanner.getNumber());
+	}
+
+	@Test
+	public void notANumber() throws IOException {
+		StlAsciiScanner scanner = scanner("vertex - 1.2.3");
+		Assert.assertFalse(scanner.getNumber());
+		Assert.assertFalse(scanner.getNumber());
+		Assert.assertFalse(scanner.getNumber());
+	}
+}
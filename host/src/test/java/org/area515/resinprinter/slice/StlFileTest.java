@@ -0,0 +1,149 @@
+package org.area515.resinprinter.slice;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StlFileTest {
+	private static class FacetList extends StlFile<double[], double[]> {
+		private boolean concurrentPoints;
+		private Set<Thread> pointThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+		
+		public FacetList(boolean concurrentPoints) {
+			this.concurrentPoints = concurrentPoints;
+		}
+		
+		@Override
+		protected void buildTriangle(double[] point1, double[] point2, double[] point3, double[] normal) {
+			triangles.add(new double[]{
+					normal[0], normal[1], normal[2], 
+					point1[0], point1[1], point1[2], 
+					point2[0], point2[1], point2[2], 
+					point3[0], point3[1], point3[2]});
+		}
+
+		@Override
+		protected double[] buildPoint(double x, double y, double z) {
+			pointThreads.add(Thread.currentThread());
+			return new double[]{x, y, z};
+		}
+		
+		@Override
+		protected boolean canBuildPointsConcurrently() {
+			return concurrentPoints;
+		}
+
+		@Override
+		protected Collection<double[]> createSet() {
+			return new ArrayList<double[]>();
+		}
+
+		@Override
+		protected double[] getFirstTriangle() {
+			return ((List<double[]>)triangles).get(0);
+		}
+	}
+	
+	private byte[] buildBinaryStl(int facetCount) {
+		Random random = new Random(515);
+		ByteBuffer buffer = ByteBuffer.allocate(84 + facetCount * 50).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(80);
+		buffer.putInt(facetCount);
+		for (int t = 0; t < facetCount; t++) {
+			for (int f = 0; f < 12; f++) {
+				buffer.putFloat(random.nextInt(100) / 4f);
+			}
+			buffer.putShort((short)0);
+		}
+		
+		return buffer.array();
+	}
+	
+	private FacetList loadFile(InputStream stream, int decodeThreads, boolean concurrentPoints) throws IOException {
+		FacetList file = new FacetList(concurrentPoints);
+		file.setDecodeThreads(decodeThreads);
+		file.load(stream, false);
+		Assert.assertFalse(file.getAscii());
+		return file;
+	}
+	
+	private List<double[]> load(InputStream stream, int decodeThreads) throws IOException {
+		return (List<double[]>)loadFile(stream, decodeThreads, true).getTriangles();
+	}
+	
+	private void assertSameFacets(List<double[]> expected, List<double[]> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int t = 0; t < expected.size(); t++) {
+			Assert.assertArrayEquals("Facet:" + t, expected.get(t), actual.get(t), 0);
+		}
+	}
+	
+	@Test
+	public void mappedAndParallelDecodeMatchStream() throws IOException {
+		byte[] stl = buildBinaryStl(150000);
+		File file = File.createTempFile("binary", ".stl");
+		try {
+			FileOutputStream output = new FileOutputStream(file);
+			try {
+				output.write(stl);
+			} finally {
+				output.close();
+			}
+			
+			List<double[]> streamed = load(new ByteArrayInputStream(stl), 1);
+			Assert.assertEquals(150000, streamed.size());
+			assertSameFacets(streamed, load(new FileInputStream(file), 1));
+			assertSameFacets(streamed, load(new FileInputStream(file), 4));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void pointsAreOnlyBuiltConcurrentlyWhenAllowed() throws IOException {
+		byte[] stl = buildBinaryStl(150000);
+		File file = File.createTempFile("binary", ".stl");
+		try {
+			FileOutputStream output = new FileOutputStream(file);
+			try {
+				output.write(stl);
+			} finally {
+				output.close();
+			}
+			
+			List<double[]> streamed = load(new ByteArrayInputStream(stl), 1);
+			FacetList loadingThreadPoints = loadFile(new FileInputStream(file), 4, false);
+			assertSameFacets(streamed, (List<double[]>)loadingThreadPoints.getTriangles());
+			Assert.assertEquals(Collections.singleton(Thread.currentThread()), loadingThreadPoints.pointThreads);
+			
+			FacetList concurrentPoints = loadFile(new FileInputStream(file), 4, true);
+			assertSameFacets(streamed, (List<double[]>)concurrentPoints.getTriangles());
+			Assert.assertFalse(concurrentPoints.pointThreads.contains(Thread.currentThread()));
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void truncatedBinaryFile() throws IOException {
+		byte[] stl = buildBinaryStl(10);
+		byte[] truncated = new byte[stl.length - 25];
+		System.arraycopy(stl, 0, truncated, 0, truncated.length);
+		Assert.assertEquals(9, load(new ByteArrayInputStream(truncated), 1).size());
+	}
+}
@@ -0,0 +1,62 @@
+package org.area515.resinprinter.slice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Compares how long a large binary stl takes to load into a ZSlicer when it's facets are built on the loading thread, against
+ * decoding them a few chunks at a time on the render executor.
+ *
+ * usage: org.area515.resinprinter.slice.StlLoadBenchmark [facets] [iterations] [decodeThreads]
+ */
+public class StlLoadBenchmark {
+	private static File buildBinaryStl(int facetCount) throws Exception {
+		Random random = new Random(515);
+		ByteBuffer buffer = ByteBuffer.allocate(84 + facetCount * 50).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(80);
+		buffer.putInt(facetCount);
+		for (int t = 0; t < facetCount; t++) {
+			//Zero normals so that every facet has it's normal rebuilt from it's vertices
+			buffer.putFloat(0).putFloat(0).putFloat(0);
+			for (int f = 0; f < 9; f++) {
+				buffer.putFloat(random.nextInt(4000) / 20f);
+			}
+			buffer.putShort((short)0);
+		}
+
+		File file = File.createTempFile("StlLoadBenchmark", ".stl");
+		file.deleteOnExit();
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(buffer.array());
+		}
+		return file;
+	}
+
+	private static void time(String name, File file, int iterations, int decodeThreads) throws Exception {
+		for (int t = 0; t < iterations + 1; t++) {
+			ZSlicer slicer = new ZSlicer(1, 10, 10, .1, 0, false, false, new CloseOffMend());
+			slicer.setStlDecodeThreads(decodeThreads);
+
+			long start = System.nanoTime();
+			slicer.loadFile(new FileInputStream(file), 1000.0, 1000.0);
+			//The first load is only there to warm up the JIT
+			if (t > 0) {
+				System.out.printf("%-40s %12.1f ms\n", name, (System.nanoTime() - start) / 1000000.0);
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int facets = args.length > 0?Integer.parseInt(args[0]):2000000;
+		int iterations = args.length > 1?Integer.parseInt(args[1]):3;
+		int decodeThreads = args.length > 2?Integer.parseInt(args[2]):Runtime.getRuntime().availableProcessors();
+		File file = buildBinaryStl(facets);
+
+		time("Load(loading thread)", file, iterations, 1);
+		time("Load(" + decodeThreads + " decode threads)", file, iterations, decodeThreads);
+	}
+}
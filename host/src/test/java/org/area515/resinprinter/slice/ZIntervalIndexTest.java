@@ -0,0 +1,60 @@
+package org.area515.resinprinter.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.area515.resinprinter.stl.Point3d;
+import org.area515.resinprinter.stl.Triangle3d;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZIntervalIndexTest {
+	private Triangle3d buildTriangle(Random random, int index) {
+		double baseZ = random.nextDouble() * 20;
+		return new Triangle3d(new Point3d[]{
+				new Point3d(random.nextDouble(), random.nextDouble(), baseZ),
+				new Point3d(random.nextDouble(), random.nextDouble(), baseZ + random.nextDouble() * 3),
+				new Point3d(random.nextDouble(), random.nextDouble(), baseZ + random.nextDouble())},
+				new Point3d(0, 0, 1), null, null, index);
+	}
+
+	@Test
+	public void indexMatchesFullScan() {
+		Random random = new Random(515);
+		List<Triangle3d> triangles = new ArrayList<Triangle3d>();
+		double zMin = Double.MAX_VALUE;
+		double zMax = -Double.MAX_VALUE;
+		for (int t = 0; t < 2000; t++) {
+			Triangle3d triangle = buildTriangle(random, t);
+			zMin = Math.min(zMin, triangle.getMinZ());
+			zMax = Math.max(zMax, triangle.getMaxZ());
+			triangles.add(triangle);
+		}
+
+		ZIntervalIndex index = new ZIntervalIndex(triangles, zMin, zMax, .1);
+		for (double z = -1; z < 25; z += .05) {
+			List<Triangle3d> expected = new ArrayList<Triangle3d>();
+			for (Triangle3d triangle : triangles) {
+				if (triangle.intersectsZ(z)) {
+					expected.add(triangle);
+				}
+			}
+
+			List<Triangle3d> actual = new ArrayList<Triangle3d>();
+			for (Triangle3d triangle : index.getTrianglesAt(z)) {
+				if (triangle.intersectsZ(z)) {
+					actual.add(triangle);
+				}
+			}
+
+			Assert.assertEquals("Mismatch at z:" + z, expected, actual);
+		}
+	}
+
+	@Test
+	public void emptyModel() {
+		ZIntervalIndex index = new ZIntervalIndex(new ArrayList<Triangle3d>(), Double.MAX_VALUE, -Double.MAX_VALUE, .1);
+		Assert.assertTrue(index.getTrianglesAt(0).isEmpty());
+	}
+}
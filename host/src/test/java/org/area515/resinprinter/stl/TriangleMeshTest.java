@@ -0,0 +1,70 @@
+package org.area515.resinprinter.stl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TriangleMeshTest {
+	private Point3d randomPoint(Random random) {
+		return new Point3d(random.nextInt(5), random.nextInt(5), random.nextInt(5));
+	}
+
+	@Test
+	public void meshIteratesLikeTreeSet() {
+		Random random = new Random(515);
+		TriangleMesh mesh = new TriangleMesh();
+		TreeSet<Triangle3d> expected = new TreeSet<Triangle3d>();
+		for (int t = 0; t < 3000; t++) {
+			Point3d[] points = new Point3d[]{randomPoint(random), randomPoint(random), randomPoint(random)};
+			double[] normal = new double[]{0, 0, 1};
+			mesh.addFacet(points[0], points[1], points[2], normal);
+			expected.add(new Triangle3d(points, new Point3d(normal[0], normal[1], normal[2]), null, null, t));
+		}
+		mesh.complete();
+
+		Assert.assertEquals(3000, mesh.getFacetCount());
+		Assert.assertEquals(expected.size(), mesh.size());
+		List<Triangle3d> actual = new ArrayList<Triangle3d>(mesh);
+		int index = 0;
+		for (Triangle3d triangle : expected) {
+			Assert.assertEquals(triangle.toString(), actual.get(index).toString());
+			Assert.assertEquals(triangle.getMinZ(), actual.get(index).getMinZ(), 0);
+			Assert.assertEquals(triangle.getMaxZ(), actual.get(index).getMaxZ(), 0);
+			index++;
+		}
+	}
+
+	@Test
+	public void sharedVerticesAreStoredOnce() {
+		TriangleMesh mesh = new TriangleMesh();
+		mesh.addFacet(new Point3d(0, 0, 0), new Point3d(1, 0, 0), new Point3d(0, 1, 0), new double[]{0, 0, -1});
+		mesh.addFacet(new Point3d(1, 0, 0), new Point3d(1, 1, 0), new Point3d(0, 1, 0), new double[]{0, 0, -1});
+		mesh.addFacet(new Point3d(-0.0, 0, 0), new Point3d(0, 1, 0), new Point3d(0, 0, 1), new double[]{-1, 0, 0});
+		mesh.complete();
+
+		Assert.assertEquals(3, mesh.getFacetCount());
+		Assert.assertEquals(5, mesh.getVertexCount());
+		Assert.assertEquals(1, mesh.getVertexCoordinate(1, 1, 1), 0);
+		Assert.assertEquals(1, mesh.getVertexCoordinate(2, 2, 2), 0);
+	}
+
+	@Test
+	public void facetViewsFollowFileOrder() {
+		TriangleMesh mesh = new TriangleMesh();
+		mesh.addFacet(new Point3d(0, 0, 2), new Point3d(1, 0, 2), new Point3d(0, 1, 3), new double[]{0, 0, 1});
+		mesh.addFacet(new Point3d(0, 0, 0), new Point3d(1, 0, 0), new Point3d(0, 1, 1), new double[]{0, 0, 1});
+		mesh.complete();
+
+		Triangle3d first = mesh.getFacet(0);
+		Assert.assertEquals(0, first.getOriginalIndex().intValue());
+		Assert.assertEquals(2, first.getMinZ(), 0);
+		Assert.assertTrue(first.intersectsZ(2.5));
+		Assert.assertEquals(1, first.getNextTriangle().getOriginalIndex().intValue());
+		Assert.assertNull(first.getNextTriangle().getNextTriangle());
+		Assert.assertEquals(1, mesh.get(0).getOriginalIndex().intValue());
+	}
+}
@@ -0,0 +1,76 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.area515.resinprinter.image.CannedMJPEGCamera;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CameraCaptureTest {
+	private String[] cannedCamera(String... arguments) {
+		String[] command = new String[4 + arguments.length];
+		command[0] = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+		command[1] = "-cp";
+		command[2] = System.getProperty("java.class.path");
+		command[3] = CannedMJPEGCamera.class.getName();
+		System.arraycopy(arguments, 0, command, 4, arguments.length);
+		return command;
+	}
+
+	@Test
+	public void readersShareOneRunningCamera() throws Exception {
+		CameraCapture capture = new CameraCapture(cannedCamera("32", "24", "20"), 4, 10000);
+		try {
+			FrameRing.Frame first = capture.nextFrame(-1, 10000);
+			FrameRing.Frame second = capture.nextFrame(first.getSequence(), 2000);
+			FrameRing.Frame third = capture.nextFrame(second.getSequence(), 2000);
+			Assert.assertTrue(second.getSequence() > first.getSequence());
+			Assert.assertTrue(third.getSequence() > second.getSequence());
+			Assert.assertEquals(32, ImageIO.read(new ByteArrayInputStream(third.getData())).getWidth());
+			Assert.assertTrue(capture.isRunning());
+		} finally {
+			capture.stop();
+			capture.awaitStop(5000);
+		}
+		Assert.assertFalse(capture.isRunning());
+	}
+
+	@Test
+	public void commandsThatTakeOnePictureAreRestarted() throws Exception {
+		CameraCapture capture = new CameraCapture(cannedCamera("16", "16", "20", "1"), 4, 10000);
+		try {
+			FrameRing.Frame first = capture.nextFrame(-1, 10000);
+			FrameRing.Frame second = capture.nextFrame(first.getSequence(), 10000);
+			Assert.assertEquals(first.getSequence() + 1, second.getSequence());
+		} finally {
+			capture.stop();
+			capture.awaitStop(5000);
+		}
+	}
+
+	@Test
+	public void idleCameraStops() throws Exception {
+		CameraCapture capture = new CameraCapture(cannedCamera("16", "16", "20"), 4, 200);
+		capture.nextFrame(-1, 10000);
+		capture.awaitStop(5000);
+		Assert.assertFalse(capture.isRunning());
+	}
+
+	@Test
+	public void brokenCameraReportsItsError() throws Exception {
+		CameraCapture capture = new CameraCapture(cannedCamera("notANumber", "16", "20"), 4, 10000);
+		try {
+			capture.nextFrame(-1, 3000);
+			Assert.fail("A camera that exits right away shouldn't produce a frame");
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("NumberFormatException"));
+		} finally {
+			capture.stop();
+			capture.awaitStop(5000);
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class FileRangeServerTest {
+	private static final long GIGABYTES_8 = 8L * 1024 * 1024 * 1024;
+	private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+	public static File createContentFile() throws IOException {
+		File file = File.createTempFile("FileRangeServerTest", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), CONTENT.getBytes(StandardCharsets.US_ASCII));
+		return file;
+	}
+
+	@Test
+	public void singleRanges() {
+		Assert.assertEquals(Arrays.asList(new ByteRange(0, 99)), ByteRange.parse("bytes=0-99", 1000));
+		Assert.assertEquals(Arrays.asList(new ByteRange(500, 999)), ByteRange.parse("bytes=500-", 1000));
+		Assert.assertEquals(Arrays.asList(new ByteRange(900, 999)), ByteRange.parse("bytes=-100", 1000));
+		Assert.assertEquals(Arrays.asList(new ByteRange(0, 999)), ByteRange.parse("bytes=-5000", 1000));
+		Assert.assertEquals(Arrays.asList(new ByteRange(990, 999)), ByteRange.parse("bytes=990-5000", 1000));
+	}
+
+	@Test
+	public void rangesPastTwoGigabytes() {
+		ByteRange range = ByteRange.parse("bytes=6442450944-", GIGABYTES_8).get(0);
+		Assert.assertEquals(6442450944L, range.getStart());
+		Assert.assertEquals(GIGABYTES_8 - 1, range.getEnd());
+		Assert.assertEquals(2147483648L, range.getLength());
+		Assert.assertEquals("bytes 6442450944-8589934591/8589934592", range.toContentRange(GIGABYTES_8));
+		Assert.assertEquals(Arrays.asList(new ByteRange(0, GIGABYTES_8 - 1)), ByteRange.parse("bytes=0-99999999999999999999999", GIGABYTES_8));
+	}
+
+	@Test
+	public void multipleRangesAreSortedAndMerged() {
+		Assert.assertEquals(
+				Arrays.asList(new ByteRange(0, 9), new ByteRange(100, 199), new ByteRange(900, 999)),
+				ByteRange.parse("bytes=-100, 100-149,0-9,150-199", 1000));
+		Assert.assertEquals(Arrays.asList(new ByteRange(0, 199)), ByteRange.parse("bytes=0-100,50-150,151-199", 1000));
+	}
+
+	@Test
+	public void rangeChannelStopsAtTheEndOfTheRange() throws IOException {
+		File file = createContentFile();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ReadableByteChannel range = new FileRangeServer.RangeChannel(channel, 10, 7);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+			StringBuilder read = new StringBuilder();
+			int count;
+			while ((count = range.read(buffer)) >= 0) {
+				Assert.assertTrue(count <= 4);
+				buffer.flip();
+				read.append(StandardCharsets.US_ASCII.decode(buffer));
+				buffer.clear();
+			}
+			Assert.assertEquals("abcdefg", read.toString());
+
+			//Jetty closes the channel it was given, the file has to stay open for the rest of the response
+			range.close();
+			Assert.assertFalse(range.isOpen());
+			Assert.assertTrue(channel.isOpen());
+		}
+	}
+
+	@Test
+	public void rangeChannelFailsWhenTheFileWasTruncated() throws IOException {
+		File file = createContentFile();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ReadableByteChannel range = new FileRangeServer.RangeChannel(channel, 30, 20);
+			ByteBuffer buffer = ByteBuffer.allocate(64);
+			Assert.assertEquals(6, range.read(buffer));
+			try {
+				range.read(buffer);
+				Assert.fail("The range runs past the end of the file");
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	@Test
+	public void unsatisfiableRanges() {
+		Assert.assertEquals(Collections.emptyList(), ByteRange.parse("bytes=1000-", 1000));
+		Assert.assertEquals(Collections.emptyList(), ByteRange.parse("bytes=-0", 1000));
+		Assert.assertEquals(Collections.emptyList(), ByteRange.parse("bytes=0-", 0));
+		Assert.assertEquals(Arrays.asList(new ByteRange(0, 0)), ByteRange.parse("bytes=0-0,5000-6000", 1000));
+	}
+
+	@Test
+	public void malformedRangesAreIgnored() {
+		Assert.assertNull(ByteRange.parse(null, 1000));
+		Assert.assertNull(ByteRange.parse("items=0-5", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=5", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=-", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=10-5", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=a-5", 1000));
+		Assert.assertNull(ByteRange.parse("bytes=+1-5", 1000));
+
+		StringBuilder tooMany = new StringBuilder("bytes=0-0");
+		for (int t = 1; t <= ByteRange.MAX_RANGES; t++) {
+			tooMany.append(",").append(t * 2).append("-").append(t * 2);
+		}
+		Assert.assertNull(ByteRange.parse(tooMany.toString(), 1000));
+	}
+
+	@Test
+	public void conditionalRequests() {
+		String etag = FileRangeServer.buildETag(1469494750000L, GIGABYTES_8);
+		Assert.assertTrue(FileRangeServer.matchesAnyETag(etag, etag));
+		Assert.assertTrue(FileRangeServer.matchesAnyETag("\"other\", W/" + etag, etag));
+		Assert.assertTrue(FileRangeServer.matchesAnyETag("*", etag));
+		Assert.assertFalse(FileRangeServer.matchesAnyETag("\"other\"", etag));
+		Assert.assertFalse(FileRangeServer.matchesAnyETag(FileRangeServer.buildETag(1469494750000L, 1), etag));
+
+		Assert.assertTrue(FileRangeServer.notModifiedSince(1469494750000L, 1469494750999L));
+		Assert.assertFalse(FileRangeServer.notModifiedSince(1469494750000L, 1469494751000L));
+		Assert.assertFalse(FileRangeServer.notModifiedSince(-1, 1469494750000L));
+
+		Assert.assertTrue(FileRangeServer.ifRangeMatches(null, -1, etag, 1469494750000L));
+		Assert.assertTrue(FileRangeServer.ifRangeMatches(etag, -1, etag, 1469494750000L));
+		Assert.assertFalse(FileRangeServer.ifRangeMatches("W/" + etag, -1, etag, 1469494750000L));
+		Assert.assertTrue(FileRangeServer.ifRangeMatches("Tue, 26 Jul 2016 00:59:10 GMT", 1469494750000L, etag, 1469494750000L));
+		Assert.assertFalse(FileRangeServer.ifRangeMatches("Tue, 26 Jul 2016 00:59:10 GMT", 1469494750000L, etag, 1469494760000L));
+	}
+
+	@Test
+	public void serveWholeFile() throws IOException {
+		File file = createContentFile();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("GET"), response, file, "text/plain");
+
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+		Mockito.verify(response).setContentType("text/plain");
+		Mockito.verify(response).setContentLengthLong(CONTENT.length());
+		Mockito.verify(response).setHeader("ETag", FileRangeServer.buildETag(file.lastModified(), CONTENT.length()));
+		Mockito.verify(response).flushBuffer();
+		Assert.assertEquals(CONTENT, body.toString("US-ASCII"));
+	}
+
+	@Test
+	public void serveSingleRange() throws IOException {
+		File file = createContentFile();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("GET", "Range", "bytes=10-19"), response, file, "text/plain");
+
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		Mockito.verify(response).setHeader("Content-Range", "bytes 10-19/36");
+		Mockito.verify(response).setContentLengthLong(10);
+		Assert.assertEquals("abcdefghij", body.toString("US-ASCII"));
+	}
+
+	@Test
+	public void serveMultipleRangesAsMultipart() throws IOException {
+		File file = createContentFile();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("GET", "Range", "bytes=30-,0-4"), response, file, "text/plain");
+
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		ArgumentCaptor<String> contentType = ArgumentCaptor.forClass(String.class);
+		Mockito.verify(response).setContentType(contentType.capture());
+		Assert.assertTrue(contentType.getValue().startsWith("multipart/byteranges; boundary="));
+		String boundary = contentType.getValue().substring("multipart/byteranges; boundary=".length());
+
+		String expected =
+				"\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-4/36\r\n\r\n01234" +
+				"\r\n--" + boundary + "\r\nContent-Type: text/plain\r\nContent-Range: bytes 30-35/36\r\n\r\nuvwxyz" +
+				"\r\n--" + boundary + "--\r\n";
+		Assert.assertEquals(expected, body.toString("US-ASCII"));
+		Mockito.verify(response).setContentLengthLong(body.size());
+	}
+
+	@Test
+	public void serveUnsatisfiableRange() throws IOException {
+		File file = createContentFile();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("GET", "Range", "bytes=36-"), response, file, "text/plain");
+
+		Mockito.verify(response).setHeader("Content-Range", "bytes */36");
+		Mockito.verify(response).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		Assert.assertEquals(0, body.size());
+	}
+
+	@Test
+	public void serveHeadWithoutBody() throws IOException {
+		File file = createContentFile();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("HEAD", "Range", "bytes=0-9"), response, file, "text/plain");
+
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+		Mockito.verify(response).setContentLengthLong(10);
+		Mockito.verify(response, Mockito.never()).getOutputStream();
+		Mockito.verify(response).flushBuffer();
+		Assert.assertEquals(0, body.size());
+	}
+
+	@Test
+	public void serveNotModified() throws IOException {
+		File file = createContentFile();
+		String etag = FileRangeServer.buildETag(file.lastModified(), CONTENT.length());
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		HttpServletResponse response = ServletMocks.response(body);
+		FileRangeServer.serve(ServletMocks.request("GET", "If-None-Match", etag, "Range", "bytes=0-9"), response, file, "text/plain");
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		Mockito.verify(response).flushBuffer();
+		Assert.assertEquals(0, body.size());
+
+		response = ServletMocks.response(body);
+		HttpServletRequest request = ServletMocks.request("GET");
+		Mockito.when(request.getDateHeader("If-Modified-Since")).thenReturn(file.lastModified());
+		FileRangeServer.serve(request, response, file, "text/plain");
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		Assert.assertEquals(0, body.size());
+
+		//A stale ETag wins over a date that would have matched
+		response = ServletMocks.response(body);
+		request = ServletMocks.request("GET", "If-None-Match", "\"stale\"");
+		Mockito.when(request.getDateHeader("If-Modified-Since")).thenReturn(file.lastModified());
+		FileRangeServer.serve(request, response, file, "text/plain");
+		Mockito.verify(response).setStatus(HttpServletResponse.SC_OK);
+		Assert.assertEquals(CONTENT, body.toString("US-ASCII"));
+	}
+}
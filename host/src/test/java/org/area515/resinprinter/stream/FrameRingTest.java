@@ -0,0 +1,59 @@
+package org.area515.resinprinter.stream;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameRingTest {
+	@Test
+	public void oldFramesFallOutOfTheRing() {
+		FrameRing ring = new FrameRing(3);
+		Assert.assertNull(ring.getLatest());
+		Assert.assertEquals(-1, ring.getLatestSequence());
+
+		for (int t = 0; t < 5; t++) {
+			ring.publish(new byte[] {(byte)t});
+		}
+		Assert.assertEquals(4, ring.getLatestSequence());
+		Assert.assertNull(ring.get(1));
+		Assert.assertEquals(2, ring.get(2).getData()[0]);
+		Assert.assertEquals(4, ring.get(4).getData()[0]);
+		Assert.assertNull(ring.get(5));
+	}
+
+	@Test
+	public void slowReadersSkipToTheLatestFrame() throws Exception {
+		FrameRing ring = new FrameRing(3);
+		ring.publish(new byte[] {0});
+		ring.publish(new byte[] {1});
+		ring.publish(new byte[] {2});
+		Assert.assertEquals(2, ring.awaitNewerThan(0, 1, TimeUnit.SECONDS).getSequence());
+	}
+
+	@Test(expected=TimeoutException.class)
+	public void waitingForAFrameTimesOut() throws Exception {
+		FrameRing ring = new FrameRing(3);
+		ring.publish(new byte[] {0});
+		ring.awaitNewerThan(0, 50, TimeUnit.MILLISECONDS);
+	}
+
+	@Test
+	public void waitingReadersWakeUpOnPublish() throws Exception {
+		FrameRing ring = new FrameRing(3);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			long before = ring.getLatestSequence();
+			Future<FrameRing.Frame> reader = executor.submit(() -> ring.awaitNewerThan(before, 10, TimeUnit.SECONDS));
+			Thread.sleep(50);
+			ring.publish(new byte[] {7});
+			Assert.assertEquals(7, reader.get(1, TimeUnit.SECONDS).getData()[0]);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
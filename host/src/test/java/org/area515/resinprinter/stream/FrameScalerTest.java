@@ -0,0 +1,38 @@
+package org.area515.resinprinter.stream;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.area515.resinprinter.image.CannedMJPEGCamera;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FrameScalerTest {
+	@Test
+	public void captureSizeIsntScaled() throws IOException {
+		FrameRing ring = new FrameRing(2);
+		FrameRing.Frame frame = ring.publish(CannedMJPEGCamera.buildFrame(64, 48, 1));
+		FrameScaler scaler = new FrameScaler(64, 48);
+		Assert.assertSame(frame.getData(), scaler.scale(frame, 64, 48));
+		Assert.assertSame(frame.getData(), scaler.scale(frame, 0, 0));
+	}
+
+	@Test
+	public void otherSizesAreScaledOncePerFrame() throws IOException {
+		FrameRing ring = new FrameRing(2);
+		FrameScaler scaler = new FrameScaler(64, 48);
+		FrameRing.Frame first = ring.publish(CannedMJPEGCamera.buildFrame(64, 48, 1));
+		byte[] scaled = scaler.scale(first, 32, 24);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(scaled));
+		Assert.assertEquals(32, image.getWidth());
+		Assert.assertEquals(24, image.getHeight());
+		Assert.assertSame(scaled, scaler.scale(first, 32, 24));
+
+		FrameRing.Frame second = ring.publish(CannedMJPEGCamera.buildFrame(64, 48, 2));
+		Assert.assertFalse(scaled == scaler.scale(second, 32, 24));
+		Assert.assertEquals(16, ImageIO.read(new ByteArrayInputStream(scaler.scale(second, 16, 12))).getWidth());
+	}
+}
@@ -0,0 +1,81 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import org.area515.resinprinter.image.CannedMJPEGCamera;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JpegFrameReaderTest {
+	private JpegFrameReader reader(byte[]... parts) throws IOException {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			stream.write(part);
+		}
+		return new JpegFrameReader(new ByteArrayInputStream(stream.toByteArray()), 1024 * 1024);
+	}
+
+	//Puts a whole JPEG inside of an APP1 segment the way EXIF thumbnails are stored
+	private byte[] withThumbnail(byte[] frame, byte[] thumbnail) {
+		int length = thumbnail.length + 2;
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(frame, 0, 2);
+		stream.write(0xFF);
+		stream.write(0xE1);
+		stream.write(length >> 8);
+		stream.write(length & 0xFF);
+		stream.write(thumbnail, 0, thumbnail.length);
+		stream.write(frame, 2, frame.length - 2);
+		return stream.toByteArray();
+	}
+
+	@Test
+	public void framesAreSplitAndGarbageIsSkipped() throws IOException {
+		byte[] first = CannedMJPEGCamera.buildFrame(32, 24, 1);
+		byte[] second = CannedMJPEGCamera.buildFrame(32, 24, 2);
+		JpegFrameReader reader = reader(new byte[] {1, 2, (byte)0xFF, 3}, first, new byte[] {(byte)0xFF, (byte)0xD9, 0}, second);
+
+		Assert.assertTrue(Arrays.equals(first, reader.readFrame()));
+		Assert.assertTrue(Arrays.equals(second, reader.readFrame()));
+		Assert.assertNull(reader.readFrame());
+	}
+
+	@Test
+	public void thumbnailsDontEndTheFrame() throws IOException {
+		byte[] frame = withThumbnail(CannedMJPEGCamera.buildFrame(32, 24, 1), CannedMJPEGCamera.buildFrame(8, 8, 2));
+		JpegFrameReader reader = reader(frame, frame);
+
+		byte[] read = reader.readFrame();
+		Assert.assertTrue(Arrays.equals(frame, read));
+		Assert.assertEquals(32, ImageIO.read(new ByteArrayInputStream(read)).getWidth());
+		Assert.assertTrue(Arrays.equals(frame, reader.readFrame()));
+	}
+
+	@Test
+	public void truncatedFrameIsDropped() throws IOException {
+		byte[] first = CannedMJPEGCamera.buildFrame(32, 24, 1);
+		byte[] second = CannedMJPEGCamera.buildFrame(32, 24, 2);
+		JpegFrameReader reader = reader(first, Arrays.copyOf(second, second.length - 10));
+
+		Assert.assertTrue(Arrays.equals(first, reader.readFrame()));
+		Assert.assertNull(reader.readFrame());
+	}
+
+	@Test
+	public void oversizedFrameIsDropped() throws IOException {
+		byte[] large = CannedMJPEGCamera.buildFrame(640, 480, 1);
+		byte[] small = CannedMJPEGCamera.buildFrame(8, 8, 2);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		stream.write(large);
+		stream.write(small);
+		JpegFrameReader reader = new JpegFrameReader(new ByteArrayInputStream(stream.toByteArray()), small.length + 100);
+
+		Assert.assertTrue(Arrays.equals(small, reader.readFrame()));
+		Assert.assertNull(reader.readFrame());
+	}
+}
@@ -0,0 +1,47 @@
+package org.area515.resinprinter.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.mockito.Mockito;
+
+public class ServletMocks {
+	/**
+	 * @param headers pairs of header names and values
+	 */
+	public static HttpServletRequest request(String method, String... headers) {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+		Mockito.when(request.getMethod()).thenReturn(method);
+		Mockito.when(request.getRequestURI()).thenReturn("/test");
+		Mockito.when(request.getDateHeader(Mockito.anyString())).thenReturn(-1L);
+		for (int t = 0; t < headers.length; t += 2) {
+			Mockito.when(request.getHeader(headers[t])).thenReturn(headers[t + 1]);
+		}
+		return request;
+	}
+
+	public static HttpServletResponse response(ByteArrayOutputStream body) throws IOException {
+		HttpServletResponse response = Mockito.mock(HttpServletResponse.class);
+		Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				body.write(b);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		});
+		return response;
+	}
+}
@@ -1,6 +1,10 @@
 package org.area515.resinprinter.test;
 
+import org.area515.resinprinter.display.ActiveRendererTest;
+import org.area515.resinprinter.display.dispmanx.RasterConverterTest;
 import org.area515.resinprinter.gcode.FirmwareResponseSimulation;
+import org.area515.resinprinter.gcode.GCodeTemplatePlanTest;
+import org.area515.resinprinter.gcode.StreamingGCodeTest;
 import org.area515.resinprinter.gcode.TestGCodeTemplating;
 import org.area515.resinprinter.http.TestByteSession;
 import org.area515.resinprinter.image.ConvertCWMaskToTransparencyMask;
@@ -8,47 +12,103 @@ import org.area515.resinprinter.inkdetection.visual.CircleTest;
 import org.area515.resinprinter.inkdetection.visual.LineTest;
 import org.area515.resinprinter.inkdetection.visual.TestVisualPrintMaterialDetector;
 import org.area515.resinprinter.job.AbstractPrintFileProcessorTest;
+import org.area515.resinprinter.job.CustomizerJournalTest;
 import org.area515.resinprinter.job.TestCustomizer;
+import org.area515.resinprinter.job.render.ImagePoolTest;
+import org.area515.resinprinter.job.render.RenderingCacheTest;
+import org.area515.resinprinter.job.render.SlicePrefetcherTest;
+import org.area515.resinprinter.job.render.SliceCompositorTest;
+import org.area515.resinprinter.job.timing.ExposureTimerTest;
+import org.area515.resinprinter.job.timing.LayerTimelineTest;
 import org.area515.resinprinter.network.LinuxNetworkManagerTest;
+import org.area515.resinprinter.notification.PrintJobEventChannelTest;
 import org.area515.resinprinter.printer.DetectFirmwareMock;
 import org.area515.resinprinter.projector.HexCodeBasedProjectorTesting;
 import org.area515.resinprinter.security.KeystoreSecurityTest;
 import org.area515.resinprinter.security.SerializeMessageAsJson;
 import org.area515.resinprinter.security.keystore.RendezvousExchange;
+import org.area515.resinprinter.serial.SerialResponseBufferTest;
+import org.area515.resinprinter.server.MonitoredExecutorTest;
 import org.area515.resinprinter.services.MachineServiceTest;
+import org.area515.resinprinter.services.PrintJobServiceTest;
+import org.area515.resinprinter.services.PrintableServiceTest;
 import org.area515.resinprinter.services.PrinterServiceTest;
 import org.area515.resinprinter.services.TestScriptAndTemplating;
 import org.area515.resinprinter.slice.CheckSlicePoints;
+import org.area515.resinprinter.slice.SliceCacheTest;
+import org.area515.resinprinter.slice.SliceResultTest;
+import org.area515.resinprinter.slice.SlicingPipelineTest;
+import org.area515.resinprinter.slice.StlAsciiScannerTest;
+import org.area515.resinprinter.slice.StlFileTest;
+import org.area515.resinprinter.slice.ZIntervalIndexTest;
+import org.area515.resinprinter.stl.TriangleMeshTest;
+import org.area515.resinprinter.stream.CameraCaptureTest;
+import org.area515.resinprinter.stream.FileRangeServerTest;
+import org.area515.resinprinter.stream.FrameRingTest;
+import org.area515.resinprinter.stream.FrameScalerTest;
+import org.area515.resinprinter.stream.JpegFrameReaderTest;
 import org.area515.resinprinter.stl.ZSlicingGeometry;
 import org.area515.resinprinter.util.cron.RunCronPredictor;
 import org.area515.util.IOUtilitiesTest;
+import org.area515.util.JAXBBeanCopierTest;
+import org.area515.util.ZipArchiveTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
 	IOUtilitiesTest.class,
+	JAXBBeanCopierTest.class,
+	ZipArchiveTest.class,
+	SerialResponseBufferTest.class,
+	MonitoredExecutorTest.class,
 	TestVisualPrintMaterialDetector.class,
 	CircleTest.class,
 	LineTest.class,
 	LinuxNetworkManagerTest.class,
+	PrintJobEventChannelTest.class,
 	AbstractPrintFileProcessorTest.class,
+	SliceCompositorTest.class,
+	RasterConverterTest.class,
+	ActiveRendererTest.class,
+	ImagePoolTest.class,
+	RenderingCacheTest.class,
+	SlicePrefetcherTest.class,
+	LayerTimelineTest.class,
+	ExposureTimerTest.class,
+	JpegFrameReaderTest.class,
+	FrameRingTest.class,
+	CameraCaptureTest.class,
+	FrameScalerTest.class,
+	FileRangeServerTest.class,
 	TestScriptAndTemplating.class,
 	HexCodeBasedProjectorTesting.class,
 	DetectFirmwareMock.class,
 	FirmwareResponseSimulation.class,
+	StreamingGCodeTest.class,
 	ConvertCWMaskToTransparencyMask.class,
 	CheckSlicePoints.class,
 	ZSlicingGeometry.class,
+	ZIntervalIndexTest.class,
+	StlFileTest.class,
+	StlAsciiScannerTest.class,
+	SliceCacheTest.class,
+	SliceResultTest.class,
+	SlicingPipelineTest.class,
+	TriangleMeshTest.class,
 	KeystoreSecurityTest.class,
 	SerializeMessageAsJson.class,
 	RendezvousExchange.class,
 	TestGCodeTemplating.class,
+	GCodeTemplatePlanTest.class,
 	TestByteSession.class,
 	TestCustomizer.class,
+	CustomizerJournalTest.class,
 	MachineServiceTest.class,
 	RunCronPredictor.class,
-	PrinterServiceTest.class
+	PrinterServiceTest.class,
+	PrintableServiceTest.class,
+	PrintJobServiceTest.class
 })
 
 public class FullTestSuite {
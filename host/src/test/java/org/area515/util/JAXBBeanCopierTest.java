@@ -0,0 +1,145 @@
+package org.area515.util;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.namespace.QName;
+
+import org.area515.resinprinter.job.Customizer;
+import org.area515.resinprinter.job.Customizer.AffineTransformSettings;
+import org.area515.resinprinter.job.Customizer.PrinterStep;
+import org.area515.resinprinter.printer.MachineConfig;
+import org.area515.resinprinter.printer.PrinterConfiguration;
+import org.area515.resinprinter.printer.SlicingProfile;
+import org.area515.resinprinter.services.MachineServiceTest;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JAXBBeanCopierTest {
+	//Only sizes with a single decimal survive the XML, so only a copy with a size set differs from it's JAXB copy
+	public static class OneDecimalAdapter extends XmlAdapter<String, Double> {
+		@Override
+		public Double unmarshal(String value) {
+			return Math.round(Double.parseDouble(value) * 10) / 10.0;
+		}
+
+		@Override
+		public String marshal(Double value) {
+			return value.toString();
+		}
+	}
+
+	public static class Sized {
+		@XmlElement
+		private String name;
+		@XmlElement
+		@XmlJavaTypeAdapter(OneDecimalAdapter.class)
+		private Double size;
+	}
+
+	public static Customizer buildCustomizer() {
+		Customizer customizer = new Customizer();
+		customizer.setName("CopyTest");
+		customizer.setPrinterName("Printer");
+		customizer.setPrintableName("part");
+		customizer.setPrintableExtension("stl");
+		customizer.setZScale(2.5);
+		customizer.setNextSlice(42);
+		customizer.setNextStep(PrinterStep.PerformExposure);
+		customizer.setSupportsAffineTransformSettings(true);
+		AffineTransformSettings settings = new AffineTransformSettings();
+		settings.setXFlip(true);
+		settings.setRotation(90.0);
+		settings.setXTranslate(-100.0);
+		customizer.setAffineTransformSettings(settings);
+		return customizer;
+	}
+
+	private <T> String toXML(T object, Class<T> clazz) throws JAXBException {
+		StringWriter writer = new StringWriter();
+		JAXBUtilities.getMarshaller(clazz).marshal(new JAXBElement<T>(new QName(clazz.getSimpleName()), clazz, object), writer);
+		return writer.toString();
+	}
+
+	private <T> void assertCopiesMatch(T object, Class<T> clazz) throws JAXBException, ReflectiveOperationException {
+		T reflectiveCopy = JAXBBeanCopier.reflectiveCopy(object, clazz);
+		Assert.assertNotSame(object, reflectiveCopy);
+		Assert.assertEquals(toXML(JAXBUtilities.roundTripCopy(object, clazz), clazz), toXML(reflectiveCopy, clazz));
+	}
+
+	@Test
+	public void reflectiveCopiesMatchJAXBCopies() throws JAXBException, ReflectiveOperationException, IOException {
+		PrinterConfiguration configuration = new MachineServiceTest().readConfiguration().getConfiguration();
+		assertCopiesMatch(configuration.getMachineConfig(), MachineConfig.class);
+		assertCopiesMatch(configuration.getSlicingProfile(), SlicingProfile.class);
+		assertCopiesMatch(buildCustomizer(), Customizer.class);
+		assertCopiesMatch(new MachineConfig(), MachineConfig.class);
+		assertCopiesMatch(new SlicingProfile(), SlicingProfile.class);
+	}
+
+	@Test
+	public void copiesAreDeep() throws JAXBException, IOException {
+		SlicingProfile profile = new MachineServiceTest().readConfiguration().getConfiguration().getSlicingProfile();
+		//The first copy is compared against JAXB, the second is the fast path
+		JAXBBeanCopier.deepCopy(profile, SlicingProfile.class);
+		SlicingProfile copy = JAXBBeanCopier.deepCopy(profile, SlicingProfile.class);
+
+		Assert.assertNotSame(profile.getInkConfigs(), copy.getInkConfigs());
+		Assert.assertNotSame(profile.getInkConfigs().get(0), copy.getInkConfigs().get(0));
+		Assert.assertNotSame(profile.getTwoDimensionalSettings(), copy.getTwoDimensionalSettings());
+		copy.getInkConfigs().get(0).getPrintMaterialDetectorSettings().getSettings().put("GoodSetting", "Changed");
+		Assert.assertEquals("GoodValue", profile.getInkConfigs().get(0).getPrintMaterialDetectorSettings().getSettings().get("GoodSetting"));
+		Assert.assertEquals(profile.getSelectedInkConfigIndex(), copy.getSelectedInkConfigIndex());
+
+		Customizer customizer = buildCustomizer();
+		JAXBBeanCopier.deepCopy(customizer, Customizer.class);
+		Customizer customizerCopy = JAXBBeanCopier.deepCopy(customizer, Customizer.class);
+		Assert.assertNotSame(customizer.getAffineTransformSettings(), customizerCopy.getAffineTransformSettings());
+		Assert.assertEquals(customizer.getCacheId(), customizerCopy.getCacheId());
+		Assert.assertEquals(42, customizerCopy.getNextSlice());
+	}
+
+	@Test
+	public void everyShapeIsCheckedAgainstJAXB() throws JAXBException {
+		Sized unsized = new Sized();
+		unsized.name = "unsized";
+		JAXBBeanCopier.deepCopy(unsized, Sized.class);
+		Sized copy = JAXBBeanCopier.deepCopy(unsized, Sized.class);
+		Assert.assertEquals("unsized", copy.name);
+		Assert.assertNull(copy.size);
+
+		//The class already passed it's check, but this shape of it doesn't match what JAXB makes
+		Sized sized = new Sized();
+		sized.name = "sized";
+		sized.size = 1.234;
+		Assert.assertEquals(1.2, JAXBBeanCopier.deepCopy(sized, Sized.class).size, 0);
+		Assert.assertEquals(1.2, JAXBBeanCopier.deepCopy(sized, Sized.class).size, 0);
+		Assert.assertEquals("unsized", JAXBBeanCopier.deepCopy(unsized, Sized.class).name);
+	}
+
+	@Test
+	public void contextsAreSharedAndMarshallersArePerThread() throws JAXBException, InterruptedException, ExecutionException {
+		Assert.assertSame(JAXBUtilities.getContext(MachineConfig.class), JAXBUtilities.getContext(MachineConfig.class));
+		Assert.assertNotSame(JAXBUtilities.getContext(MachineConfig.class), JAXBUtilities.getContext(MachineConfig.class, SlicingProfile.class));
+
+		final Marshaller marshaller = JAXBUtilities.getMarshaller(MachineConfig.class);
+		Assert.assertSame(marshaller, JAXBUtilities.getMarshaller(MachineConfig.class));
+		Assert.assertEquals(true, marshaller.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Assert.assertNotSame(marshaller, executor.submit(() -> JAXBUtilities.getMarshaller(MachineConfig.class)).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.area515.util;
+
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.util.JAXBSource;
+import javax.xml.namespace.QName;
+
+import org.area515.resinprinter.job.Customizer;
+import org.area515.resinprinter.printer.MachineConfig;
+import org.area515.resinprinter.printer.PrinterConfiguration;
+import org.area515.resinprinter.printer.SlicingProfile;
+import org.area515.resinprinter.services.MachineServiceTest;
+
+/**
+ * Compares the latency of what a job start(copying the customizer) and a printer settings save(copying and marshalling
+ * the machine config and slicing profile) cost when a new JAXBContext is built every time, against the shared contexts
+ * and reflective copies.
+ *
+ * usage: org.area515.util.JAXBCopyBenchmark [iterations]
+ */
+public class JAXBCopyBenchmark {
+	private interface Operation {
+		void run() throws Exception;
+	}
+
+	private static <T> T oldDeepCopy(T object, Class<T> clazz) throws Exception {
+		JAXBContext jaxbContext = JAXBContext.newInstance(clazz);
+		JAXBElement<T> contentObject = new JAXBElement<T>(new QName(clazz.getSimpleName()), clazz, object);
+		JAXBSource source = new JAXBSource(jaxbContext, contentObject);
+		return jaxbContext.createUnmarshaller().unmarshal(source, clazz).getValue();
+	}
+
+	private static void oldMarshal(Object object) throws Exception {
+		Marshaller jaxbMarshaller = JAXBContext.newInstance(PrinterConfiguration.class).createMarshaller();
+		jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+		jaxbMarshaller.marshal(object, new ByteArrayOutputStream());
+	}
+
+	private static void time(String name, int iterations, Operation operation) throws Exception {
+		//Warm up so that the JIT and the shared contexts aren't part of the measurement
+		for (int t = 0; t < Math.max(iterations / 10, 1); t++) {
+			operation.run();
+		}
+
+		long start = System.nanoTime();
+		for (int t = 0; t < iterations; t++) {
+			operation.run();
+		}
+		double micros = (System.nanoTime() - start) / 1000.0 / iterations;
+		System.out.printf("%-40s %12.1f us/op\n", name, micros);
+	}
+
+	public static void main(String[] args) throws Exception {
+		int iterations = args.length > 0?Integer.parseInt(args[0]):200;
+		PrinterConfiguration configuration = new MachineServiceTest().readConfiguration().getConfiguration();
+		MachineConfig machineConfig = configuration.getMachineConfig();
+		SlicingProfile slicingProfile = configuration.getSlicingProfile();
+		Customizer customizer = JAXBBeanCopierTest.buildCustomizer();
+
+		time("Job start(new context)", iterations, () -> oldDeepCopy(customizer, Customizer.class));
+		time("Job start(shared context)", iterations, () -> JAXBUtilities.roundTripCopy(customizer, Customizer.class));
+		time("Job start(reflective copy)", iterations, () -> JAXBBeanCopier.deepCopy(customizer, Customizer.class));
+
+		time("Settings save(new context)", iterations, () -> {
+			oldMarshal(oldDeepCopy(machineConfig, MachineConfig.class));
+			oldMarshal(oldDeepCopy(slicingProfile, SlicingProfile.class));
+		});
+		time("Settings save(shared context)", iterations, () -> {
+			JAXBUtilities.getMarshaller(PrinterConfiguration.class).marshal(JAXBUtilities.roundTripCopy(machineConfig, MachineConfig.class), new ByteArrayOutputStream());
+			JAXBUtilities.getMarshaller(PrinterConfiguration.class).marshal(JAXBUtilities.roundTripCopy(slicingProfile, SlicingProfile.class), new ByteArrayOutputStream());
+		});
+		time("Settings save(reflective copy)", iterations, () -> {
+			JAXBUtilities.getMarshaller(PrinterConfiguration.class).marshal(JAXBBeanCopier.deepCopy(machineConfig, MachineConfig.class), new ByteArrayOutputStream());
+			JAXBUtilities.getMarshaller(PrinterConfiguration.class).marshal(JAXBBeanCopier.deepCopy(slicingProfile, SlicingProfile.class), new ByteArrayOutputStream());
+		});
+	}
+}
@@ -0,0 +1,75 @@
+package org.area515.util;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.IOUtils;
+import org.area515.resinprinter.job.render.ImagePool;
+import org.area515.resinprinter.job.render.SlicePrefetcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZipArchiveTest {
+	private File buildScene() throws IOException {
+		File zip = File.createTempFile("ZipArchiveTest", ".cws");
+		zip.deleteOnExit();
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			out.putNextEntry(new ZipEntry("scene/"));
+			out.putNextEntry(new ZipEntry("scene/part.gcode"));
+			out.write(";<Slice> 0\n".getBytes(StandardCharsets.UTF_8));
+			out.putNextEntry(new ZipEntry("scene/part000.png"));
+			ImageIO.write(new BufferedImage(7, 5, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+			out.putNextEntry(new ZipEntry("scene/part001.PNG"));
+			ImageIO.write(new BufferedImage(7, 5, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+		}
+		return zip;
+	}
+
+	@Test
+	public void entriesAreIndexedWithoutDirectories() throws IOException {
+		try (ZipArchive archive = new ZipArchive(buildScene())) {
+			Assert.assertEquals(3, archive.getEntries().size());
+			Assert.assertEquals(2, archive.findEntries("png").size());
+
+			ZipArchive.Entry gcode = archive.findEntries("gcode").get(0);
+			Assert.assertEquals("part.gcode", gcode.getFileName());
+			Assert.assertEquals("scene/", gcode.getDirectory());
+			Assert.assertEquals(archive.getEntry("scene/part000.png"), archive.findSibling(gcode, "part000.png"));
+			Assert.assertNull(archive.findSibling(gcode, "part002.png"));
+			try (InputStream in = gcode.openStream()) {
+				Assert.assertEquals(";<Slice> 0\n", IOUtils.toString(in, StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	@Test
+	public void slicesDecodeStraightFromTheArchive() throws IOException {
+		try (ZipArchive archive = new ZipArchive(buildScene())) {
+			ImagePool pool = new ImagePool(2);
+			BufferedImage pooled = new BufferedImage(7, 5, BufferedImage.TYPE_BYTE_GRAY);
+			pool.returnImage(pooled);
+
+			BufferedImage image = SlicePrefetcher.decode(archive.getEntry("scene/part000.png"), pool);
+			Assert.assertSame(pooled, image);
+			Assert.assertEquals(7, SlicePrefetcher.decode(archive.getEntry("scene/part001.PNG"), pool).getWidth());
+		}
+	}
+
+	@Test
+	public void entriesOfTheSameFileAreEqual() throws IOException {
+		File scene = buildScene();
+		try (ZipArchive first = new ZipArchive(scene); ZipArchive second = new ZipArchive(scene)) {
+			Assert.assertEquals(first.getEntry("scene/part000.png"), second.getEntry("scene/part000.png"));
+			Assert.assertEquals(first.getEntry("scene/part000.png").hashCode(), second.getEntry("scene/part000.png").hashCode());
+			Assert.assertFalse(first.getEntry("scene/part000.png").equals(second.getEntry("scene/part001.PNG")));
+		}
+	}
+}